@@ -0,0 +1,44 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.leoluca.urlshortener.api.url.codegen.BlockShortCodeGenerator;
+import com.leoluca.urlshortener.api.url.codegen.ShortCodeGenerator;
+import com.leoluca.urlshortener.api.url.codegen.SnowflakeShortCodeGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeUrlBenchmark {
+
+    @Param({"block", "snowflake"})
+    public String strategy;
+
+    private ShortCodeGenerator generator;
+
+    @Setup
+    public void setUp() {
+        AtomicLong sequence = new AtomicLong();
+        generator = switch (strategy) {
+            case "block" -> new BlockShortCodeGenerator(sequence::getAndAdd, 1000);
+            case "snowflake" -> new SnowflakeShortCodeGenerator(1);
+            default -> throw new IllegalArgumentException(strategy);
+        };
+    }
+
+    @Benchmark
+    public String encodeURL() {
+        return generator.nextShortCode();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String encodeURLContended() {
+        return generator.nextShortCode();
+    }
+}
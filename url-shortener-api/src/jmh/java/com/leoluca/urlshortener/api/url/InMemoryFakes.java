@@ -0,0 +1,80 @@
+package com.leoluca.urlshortener.api.url;
+
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Map-backed stand-ins for MongoDB and Redis, so benchmarks measure our code rather than the network.
+ * Only the calls made on the paths under test are implemented.
+ */
+final class InMemoryFakes {
+
+    private InMemoryFakes() {}
+
+    @SuppressWarnings("unchecked")
+    static URLRepository urlRepository(Map<String, URL> urlsByShortCode) {
+        return (URLRepository) Proxy.newProxyInstance(URLRepository.class.getClassLoader(), new Class<?>[]{URLRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findByShortCode" -> Optional.ofNullable(urlsByShortCode.get((String) args[0]));
+                    case "findAllByShortCodeIn" -> ((Collection<String>) args[0]).stream()
+                            .map(urlsByShortCode::get).filter(Objects::nonNull).toList();
+                    // Hit counts aren't part of what the benchmarks measure
+                    case "incrementHitCounts" -> Set.of();
+                    case "insert", "save" -> {
+                        URL url = (URL) args[0];
+                        urlsByShortCode.put(url.getShortCode(), url);
+                        yield url;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryURLRepository";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * @param values The backing key space.
+     * @param storeWrites False to drop every write, so every lookup keeps missing.
+     */
+    @SuppressWarnings("unchecked")
+    static RedisTemplate<String, String> redisTemplate(Map<String, String> values, boolean storeWrites) {
+        ValueOperations<String, String> valueOperations = (ValueOperations<String, String>) Proxy.newProxyInstance(
+                ValueOperations.class.getClassLoader(), new Class<?>[]{ValueOperations.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "get" -> values.get((String) args[0]);
+                    case "multiGet" -> ((Collection<String>) args[0]).stream().map(values::get).toList();
+                    case "set" -> {
+                        if (storeWrites) {
+                            values.put((String) args[0], (String) args[1]);
+                        }
+                        yield null;
+                    }
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "InMemoryValueOperations";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+
+        return new RedisTemplate<>() {
+            @Override
+            public ValueOperations<String, String> opsForValue() {
+                return valueOperations;
+            }
+
+            @Override
+            public List<Object> executePipelined(SessionCallback<?> session) {
+                session.execute(this);
+                return List.of();
+            }
+        };
+    }
+}
@@ -0,0 +1,100 @@
+package com.leoluca.urlshortener.api.url;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.leoluca.urlshortener.api.url.accesslog.ResolveAccessLog;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What logging costs a resolve, with lines written to a discarding stream so only the logging itself is measured.
+ * sync is how resolves used to log (three INFO lines through a synchronous appender), async the same lines through
+ * a bounded never-blocking queue, sampled is the current access log (1% of resolves, through the queue).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveLoggingBenchmark {
+
+    @Param({"sync", "async", "sampled"})
+    public String mode;
+
+    private LoggerContext context;
+    private org.slf4j.Logger logger;
+    private ResolveAccessLog accessLog;
+    private String[] shortCodes;
+
+    @Setup
+    public void setUp() {
+        context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        context.reset();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5level %pid --- [%thread] %-40.40logger{39} : %msg%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> output = new OutputStreamAppender<>();
+        output.setContext(context);
+        output.setEncoder(encoder);
+        output.setOutputStream(OutputStream.nullOutputStream());
+        output.start();
+
+        Appender<ILoggingEvent> appender = output;
+        if (!mode.equals("sync")) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setNeverBlock(true);
+            async.addAppender(output);
+            async.start();
+            appender = async;
+        }
+
+        Logger root = context.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+
+        logger = LoggerFactory.getLogger(URLService.class);
+        accessLog = new ResolveAccessLog(0.01, 100);
+        shortCodes = new String[1024];
+        for (int i = 0; i < shortCodes.length; i++) {
+            shortCodes[i] = Integer.toString(i * 7919, 36);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void logResolve(ThreadState state) {
+        String shortCode = shortCodes[state.next++ & (shortCodes.length - 1)];
+        if (mode.equals("sampled")) {
+            accessLog.record(shortCode, "found", 250_000);
+        } else {
+            logger.info("Resolving short code: {}", shortCode);
+            logger.info("Cache hit for {}", shortCode);
+            logger.info("Cached {}", shortCode);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        int next;
+    }
+}
@@ -0,0 +1,115 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leoluca.urlshortener.api.url.accesslog.ResolveAccessLog;
+import com.leoluca.urlshortener.api.url.cache.CacheAffinity;
+import com.leoluca.urlshortener.api.url.cache.OffHeapUrlTable;
+import com.leoluca.urlshortener.api.url.cache.ShortCodeFilter;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import com.leoluca.urlshortener.api.url.cache.StringKeyLayout;
+import com.leoluca.urlshortener.api.url.codegen.SnowflakeShortCodeGenerator;
+import com.leoluca.urlshortener.api.url.dedup.LongUrlFilter;
+import com.leoluca.urlshortener.api.url.hits.HitCountBuffer;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuards;
+import com.leoluca.urlshortener.api.url.warmup.HotSetTracker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves against in-memory fakes, with the tier parameter choosing where lookups are answered:
+ * l1 (in-process cache), offheap (L1 disabled, off-heap table holding every mapping), redis (L1 disabled)
+ * or mongo (L1 disabled and Redis never keeps anything).
+ * The gc profiler's alloc rate shows what each tier allocates per resolve.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolveShortCodeBenchmark {
+
+    private static final int URL_COUNT = 10_000;
+
+    @Param({"l1", "offheap", "redis", "mongo"})
+    public String tier;
+
+    private URLService urlService;
+    private ShortUrlCache shortUrlCache;
+    private BackendGuards backends;
+    private String[] shortCodes;
+
+    @Setup
+    public void setUp() {
+        Map<String, URL> urls = new ConcurrentHashMap<>();
+        Map<String, String> redis = new ConcurrentHashMap<>();
+        shortCodes = new String[URL_COUNT];
+
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(1);
+        ObjectId userId = new ObjectId();
+        for (int i = 0; i < URL_COUNT; i++) {
+            URL url = new URL("https://example.com/articles/" + i, generator.nextShortCode(), userId);
+            urls.put(url.getShortCode(), url);
+            shortCodes[i] = url.getShortCode();
+            if (tier.equals("redis")) {
+                redis.put(ShortUrlCache.KEY_PREFIX + url.getShortCode(), url.getLongUrl());
+            }
+        }
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        URLRepository urlRepository = InMemoryFakes.urlRepository(urls);
+        RedisTemplate<String, String> redisTemplate = InMemoryFakes.redisTemplate(redis, tier.equals("l1") || tier.equals("redis"));
+        long localCacheSize = tier.equals("l1") ? URL_COUNT : 0;
+        OffHeapUrlTable offHeapTable = new OffHeapUrlTable(urlRepository, meterRegistry, tier.equals("offheap"),
+                URL_COUNT, DataSize.ofMegabytes(1), Duration.ofSeconds(5));
+        // No batch window, a single benchmark thread would otherwise just measure the wait
+        shortUrlCache = new ShortUrlCache(redisTemplate, new StringKeyLayout(redisTemplate), offHeapTable,
+                new CacheAffinity(List.of(), ""), meterRegistry, localCacheSize, Duration.ofMinutes(10), Duration.ofSeconds(10),
+                0, Duration.ofHours(1), Duration.ZERO, 256, Duration.ofHours(1));
+        backends = new BackendGuards(meterRegistry, Duration.ofMillis(50), 500, Duration.ofMillis(500), 100,
+                50, 100, 20, Duration.ofSeconds(5), 5);
+        HitCountBuffer hitCountBuffer = new HitCountBuffer(urlRepository, backends, meterRegistry, URL_COUNT, 1000,
+                Duration.ofSeconds(1));
+        HotSetTracker hotSetTracker = new HotSetTracker(shortUrlCache, urlRepository, 1000,
+                Duration.ofSeconds(30), Duration.ofMinutes(5), Duration.ofHours(1));
+        LongUrlFilter longUrlFilter = new LongUrlFilter(urlRepository, meterRegistry, URL_COUNT, 0.01);
+        // Never loaded, so every code might exist and misses still reach the fake repository
+        ShortCodeFilter shortCodeFilter = new ShortCodeFilter(urlRepository, meterRegistry, URL_COUNT, 0.01,
+                Duration.ofSeconds(5), URL_COUNT, Duration.ofSeconds(30));
+
+        urlService = new URLService(urlRepository, shortUrlCache, shortCodeFilter, hitCountBuffer, hotSetTracker,
+                generator, longUrlFilter, new ObjectMapper(), new ResolveAccessLog(0, 1), backends, meterRegistry, 1000);
+
+        for (String shortCode : shortCodes) {
+            urlService.resolveShortCode(shortCode);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        shortUrlCache.close();
+        backends.close();
+    }
+
+    @Benchmark
+    public Resolution resolveShortCode() {
+        return urlService.resolveShortCode(shortCodes[ThreadLocalRandom.current().nextInt(URL_COUNT)]);
+    }
+
+    // Concurrent resolves share Redis round trips, this shows what that costs or saves per resolve
+    @Benchmark
+    @Threads(16)
+    public Resolution resolveShortCodeConcurrently() {
+        return urlService.resolveShortCode(shortCodes[ThreadLocalRandom.current().nextInt(URL_COUNT)]);
+    }
+}
@@ -0,0 +1,49 @@
+package com.leoluca.urlshortener.api.url;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlNormalizerBenchmark {
+
+    @Param({
+            "https://example.com",
+            "http://www.example.com/some/path/",
+            "https://www.example.com/search?q=url+shortener&utm_source=newsletter&utm_medium=email",
+            "HTTP://WWW.Example.COM:80/caf%c3%a9/%7euser/"
+    })
+    public String url;
+
+    private String normalized;
+
+    @Setup
+    public void setUp() {
+        normalized = UrlNormalizer.normalize(url);
+    }
+
+    @Benchmark
+    public String normalizeUrl() {
+        return UrlNormalizer.normalize(url);
+    }
+
+    @Benchmark
+    public boolean isValidUrl() {
+        return UrlNormalizer.isValid(normalized);
+    }
+
+    @Benchmark
+    public String normalizeUrlLegacy() {
+        return LegacyUrlNormalizer.normalize(url);
+    }
+
+    @Benchmark
+    public boolean isValidUrlLegacy() {
+        return LegacyUrlNormalizer.isValid(normalized);
+    }
+}
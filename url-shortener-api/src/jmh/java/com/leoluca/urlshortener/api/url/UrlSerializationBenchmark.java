@@ -0,0 +1,33 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UrlSerializationBenchmark {
+
+    private ObjectWriter writer;
+    private URL url;
+
+    @Setup
+    public void setUp() {
+        writer = new ObjectMapper().writerFor(URL.class);
+        url = new URL("https://example.com/search?q=url+shortener&utm_source=newsletter", "Ab3dE9x", new ObjectId());
+        url.setId(new ObjectId().toHexString());
+    }
+
+    @Benchmark
+    public byte[] serializeUrl() throws JsonProcessingException {
+        return writer.writeValueAsBytes(url);
+    }
+}
@@ -0,0 +1,168 @@
+package com.leoluca.urlshortener.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load test for the redirect endpoint against a running API.
+ * Every connection is a virtual thread that keeps issuing GET requests for random short codes until the time is up,
+ * so the same client can drive 10k+ concurrent connections from one JVM.
+ *
+ * Options are passed as system properties (./gradlew redirectLoadTest -Dloadtest.connections=10000):
+ *   loadtest.baseUrl      API to test, default http://localhost:8080
+ *   loadtest.redirectPath Prefix of the redirect endpoint, default /api/urls/
+ *   loadtest.redirectUrl  Full prefix of the redirect URLs, overrides the two above for redirects only,
+ *                         e.g. http://localhost:8081/ for the dedicated redirect server
+ *   loadtest.connections  Concurrent connections, default 10000
+ *   loadtest.codes        Short URLs created up front and resolved at random, default 1000
+ *   loadtest.warmup       Seconds of warm-up that aren't recorded, default 10
+ *   loadtest.duration     Seconds of measurement, default 60
+ *   loadtest.output       Optional file the JSON summary is written to
+ *
+ * Running 10k connections needs a file descriptor limit above that on both the client and the server.
+ */
+public class RedirectLoadTest {
+
+    private static final Pattern USER_ID = Pattern.compile("\"userId\"\\s*:\\s*\"([0-9a-f]{24})\"");
+    private static final Pattern SHORT_CODE = Pattern.compile("\"shortCode\"\\s*:\\s*\"([A-Za-z0-9]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("loadtest.baseUrl", "http://localhost:8080");
+        String redirectPath = System.getProperty("loadtest.redirectPath", "/api/urls/");
+        // Short codes are still created through the API on baseUrl
+        String redirectUrl = System.getProperty("loadtest.redirectUrl", baseUrl + redirectPath);
+        int connections = Integer.getInteger("loadtest.connections", 10_000);
+        int codeCount = Integer.getInteger("loadtest.codes", 1_000);
+        Duration warmup = Duration.ofSeconds(Integer.getInteger("loadtest.warmup", 10));
+        Duration duration = Duration.ofSeconds(Integer.getInteger("loadtest.duration", 60));
+        String output = System.getProperty("loadtest.output");
+
+        HttpClient client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        List<String> codes = seedShortCodes(client, baseUrl, codeCount);
+        System.out.printf("Seeded %d short codes, running %d connections for %ds after %ds of warm-up%n",
+                codes.size(), connections, duration.toSeconds(), warmup.toSeconds());
+
+        Recorder recorder = new Recorder(3);
+        LongAdder redirects = new LongAdder();
+        LongAdder failures = new LongAdder();
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < connections; i++) {
+                workers.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (true) {
+                        String code = codes.get(random.nextInt(codes.size()));
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(redirectUrl + code)).GET().build();
+
+                        long start = System.nanoTime();
+                        if (start >= measureUntil) {
+                            return;
+                        }
+
+                        boolean redirected;
+                        try {
+                            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            redirected = status == 301 || status == 302;
+                        } catch (IOException e) {
+                            redirected = false;
+                        }
+
+                        long end = System.nanoTime();
+                        if (start >= measureFrom && end <= measureUntil) {
+                            recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(end - start));
+                            (redirected ? redirects : failures).increment();
+                        }
+                    }
+                });
+            }
+        }
+
+        Histogram histogram = recorder.getIntervalHistogram();
+        double seconds = duration.toNanos() / 1e9;
+        String summary = String.format(
+                "{\"connections\":%d,\"durationSeconds\":%.0f,\"requests\":%d,\"failures\":%d,\"requestsPerSecond\":%.1f,"
+                        + "\"latencyMicros\":{\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}}",
+                connections, seconds, redirects.sum(), failures.sum(), redirects.sum() / seconds,
+                histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMaxValue());
+
+        System.out.println(summary);
+        if (output != null) {
+            Files.writeString(Path.of(output), summary);
+        }
+    }
+
+    /**
+     * Creates a throwaway user and shortens {@code count} distinct URLs for it through the batch endpoint.
+     */
+    private static List<String> seedShortCodes(HttpClient client, String baseUrl, int count) throws Exception {
+        String email = "loadtest-" + UUID.randomUUID() + "@example.com";
+        String user = send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/api/users"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"" + email + "\"}"))
+                .build());
+
+        Matcher userId = USER_ID.matcher(user);
+        if (!userId.find()) {
+            throw new IllegalStateException("Could not create a load test user: " + user);
+        }
+
+        StringBuilder batch = new StringBuilder();
+        String runId = UUID.randomUUID().toString();
+        for (int i = 0; i < count; i++) {
+            batch.append("{\"longUrl\":\"https://example.com/loadtest/").append(runId).append('/').append(i)
+                    .append("\",\"userId\":\"").append(userId.group(1)).append("\"}\n");
+        }
+
+        String results = send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/api/urls/shorten/batch"))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(batch.toString()))
+                .build());
+
+        List<String> codes = new ArrayList<>(count);
+        Matcher shortCode = SHORT_CODE.matcher(results);
+        while (shortCode.find()) {
+            codes.add(shortCode.group(1));
+        }
+
+        if (codes.isEmpty()) {
+            throw new IllegalStateException("Could not create any short URLs: " + results);
+        }
+        return codes;
+    }
+
+    private static String send(HttpClient client, HttpRequest request) throws Exception {
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() >= 300) {
+            throw new IllegalStateException(request.uri() + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,124 @@
+package com.leoluca.urlshortener.loadtest;
+
+import com.leoluca.urlshortener.api.url.cache.RedisUrlLayout;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.SplittableRandom;
+import java.util.StringJoiner;
+
+/**
+ * Measures how much Redis memory one cached link costs in each {@link RedisUrlLayout} type and codec.
+ * Every combination writes the same synthetic links into an empty database and reports the growth of
+ * {@code used_memory} per link. The database is flushed after every run, so it has to be empty to begin with.
+ *
+ * Options are passed as system properties (./gradlew redisMemoryBenchmark -Dloadtest.links=10000000):
+ *   loadtest.redisHost  Redis host, default localhost
+ *   loadtest.redisPort  Redis port, default 6379
+ *   loadtest.redisDb    Database to fill, default 15, must be empty
+ *   loadtest.links      Links written per combination, default 1000000
+ *   loadtest.buckets    Buckets of the hash layout, default 65536
+ *   loadtest.output     Optional file the JSON summary is written to
+ *
+ * For the hash layout to pay off, raise hash-max-listpack-entries above links/buckets and
+ * hash-max-listpack-value above the longest encoded value on the server first (CONFIG SET works).
+ */
+public class RedisMemoryBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String BASE62 = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final String[] HOSTS = {
+            "https://www.example.com/", "https://github.com/", "https://www.youtube.com/watch?v=",
+            "https://en.wikipedia.org/wiki/", "http://shop.example.de/products/", "https://blog.example.net/articles/"
+    };
+
+    public static void main(String[] args) throws Exception {
+        String host = System.getProperty("loadtest.redisHost", "localhost");
+        int port = Integer.getInteger("loadtest.redisPort", 6379);
+        int database = Integer.getInteger("loadtest.redisDb", 15);
+        int links = Integer.getInteger("loadtest.links", 1_000_000);
+        int buckets = Integer.getInteger("loadtest.buckets", 65_536);
+        String output = System.getProperty("loadtest.output");
+
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(host, port);
+        configuration.setDatabase(database);
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+
+        StringJoiner results = new StringJoiner(",", "{\"links\":" + links + ",\"buckets\":" + buckets + ",\"results\":[", "]}");
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            Long keys = connection.serverCommands().dbSize();
+            if (keys == null || keys != 0) {
+                throw new IllegalStateException("Database " + database + " holds " + keys + " keys, the benchmark needs an empty one");
+            }
+
+            for (RedisUrlLayout.Type type : RedisUrlLayout.Type.values()) {
+                for (RedisUrlLayout.Codec codec : RedisUrlLayout.Codec.values()) {
+                    RedisUrlLayout layout = RedisUrlLayout.create(connectionFactory, type, codec, buckets);
+                    long before = usedMemory(connection);
+                    long start = System.nanoTime();
+                    write(layout, links);
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    long after = usedMemory(connection);
+                    connection.serverCommands().flushDb();
+
+                    double bytesPerLink = (after - before) / (double) links;
+                    System.out.printf("%-6s %-7s %7.1f bytes/link, written in %.1fs%n", type, codec, bytesPerLink, seconds);
+                    results.add(String.format("{\"layout\":\"%s\",\"codec\":\"%s\",\"bytesPerLink\":%.1f,\"writeSeconds\":%.1f}",
+                            type.name().toLowerCase(), codec.name().toLowerCase(), bytesPerLink, seconds));
+                }
+            }
+        } finally {
+            connectionFactory.destroy();
+        }
+
+        System.out.println(results);
+        if (output != null) {
+            Files.writeString(Path.of(output), results.toString());
+        }
+    }
+
+    // Same seed for every combination, so they all store exactly the same links
+    private static void write(RedisUrlLayout layout, int links) {
+        SplittableRandom random = new SplittableRandom(42);
+        List<RedisUrlLayout.Entry> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < links; i++) {
+            batch.add(new RedisUrlLayout.Entry(shortCode(random), longUrl(random), null));
+            if (batch.size() == BATCH_SIZE || i == links - 1) {
+                layout.setAll(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private static String shortCode(SplittableRandom random) {
+        char[] code = new char[7];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = BASE62.charAt(random.nextInt(BASE62.length()));
+        }
+        return new String(code);
+    }
+
+    private static String longUrl(SplittableRandom random) {
+        StringBuilder url = new StringBuilder(HOSTS[random.nextInt(HOSTS.length)]);
+        for (int i = random.nextInt(8, 40); i > 0; i--) {
+            url.append(BASE62.charAt(random.nextInt(BASE62.length())));
+        }
+        if (random.nextInt(4) == 0) {
+            url.append("?utm_source=newsletter&utm_medium=email&utm_campaign=").append(random.nextInt(1000));
+        }
+        return url.toString();
+    }
+
+    private static long usedMemory(RedisConnection connection) {
+        Properties memory = connection.serverCommands().info("memory");
+        return Long.parseLong(memory.getProperty("used_memory").trim());
+    }
+}
@@ -0,0 +1,256 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only record log over fixed-size memory-mapped segment files.
+ * A record is {@code [int length][byte type][payload][int crc32c]}. The length is written last, so a record torn by
+ * a crash reads as length 0 (the end of the log) or fails its checksum, and recovery cuts the log right before it.
+ * Records are addressed by offset: segment number in the upper 32 bits, position within the segment in the lower.
+ * Appends are serialized, reads need no lock as long as the offset was published after its append returned.
+ */
+final class AppendOnlyLog implements AutoCloseable {
+
+    @FunctionalInterface
+    interface RecordVisitor {
+        void visit(long offset, byte type, ByteBuffer payload);
+    }
+
+    private static final Logger logger = LoggerFactory.getLogger(AppendOnlyLog.class);
+    private static final int HEADER_BYTES = Integer.BYTES + 1;
+    private static final int OVERHEAD_BYTES = HEADER_BYTES + Integer.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    // Only touched by appends, which hold the lock
+    private int position;
+    private int unforcedFrom;
+
+    AppendOnlyLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            for (int segment = 0; Files.exists(segmentPath(segment)); segment++) {
+                segments.add(map(segment));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the log in " + directory, e);
+        }
+    }
+
+    /**
+     * Visits every intact record in append order and positions the log for appending right after the last one.
+     * A torn record at the end of the last segment is zeroed out along with everything after it, anything damaged
+     * before that refuses to start.
+     */
+    synchronized void replay(RecordVisitor visitor) {
+        for (int segment = 0; segment < segments.size(); segment++) {
+            MappedByteBuffer buffer = segments.get(segment);
+            boolean last = segment == segments.size() - 1;
+            int end = replaySegment(segment, buffer, visitor);
+            if (!last) {
+                int length = end + Integer.BYTES <= buffer.capacity() ? buffer.getInt(end) : 0;
+                if (length != 0) {
+                    throw new IllegalStateException("Corrupt record at " + end + " in " + segmentPath(segment)
+                            + " with later segments following it");
+                }
+            } else if (!isZeroFrom(buffer, end)) {
+                // Also when only the length was lost, the rest of the record would otherwise linger behind shorter
+                // records appended here and read as corruption once this is no longer the last segment
+                logger.warn("Dropping a torn record at {} in {}", end, segmentPath(segment));
+                buffer.put(end, new byte[buffer.capacity() - end]);
+                buffer.force();
+            }
+            position = end;
+        }
+        unforcedFrom = position;
+    }
+
+    private int replaySegment(int segment, ByteBuffer buffer, RecordVisitor visitor) {
+        int pos = 0;
+        while (pos + OVERHEAD_BYTES <= buffer.capacity()) {
+            int length = buffer.getInt(pos);
+            if (length <= 0 || length > buffer.capacity() - pos - OVERHEAD_BYTES) {
+                return pos;
+            }
+            if (buffer.getInt(pos + HEADER_BYTES + length) != checksum(buffer, pos + Integer.BYTES, length + 1)) {
+                return pos;
+            }
+            visitor.visit(offset(segment, pos), buffer.get(pos + Integer.BYTES), buffer.slice(pos + HEADER_BYTES, length));
+            pos += OVERHEAD_BYTES + length;
+        }
+        return pos;
+    }
+
+    /**
+     * @param type The record type, up to the caller.
+     * @param payload The record contents, at least one byte.
+     * @return The offset of the new record.
+     */
+    synchronized long append(byte type, byte[] payload) {
+        checkFits(payload.length);
+        int length = payload.length;
+        if (segments.isEmpty() || position + OVERHEAD_BYTES + length > segments.getLast().capacity()) {
+            roll();
+        }
+
+        int segment = segments.size() - 1;
+        MappedByteBuffer buffer = segments.get(segment);
+        int pos = position;
+        buffer.put(pos + Integer.BYTES, type);
+        buffer.put(pos + HEADER_BYTES, payload);
+        buffer.putInt(pos + HEADER_BYTES + length, checksum(buffer, pos + Integer.BYTES, length + 1));
+        buffer.putInt(pos, length);
+        position = pos + OVERHEAD_BYTES + length;
+        return offset(segment, pos);
+    }
+
+    /**
+     * Appends several records as a unit. Every size is checked before the first one is written, and if writing fails
+     * later on, e.g. because the next segment can't be created, the records already written are taken back again.
+     * A crash in the middle can still leave a prefix of them, like any other write that wasn't forced yet.
+     *
+     * @return The offsets of the new records, in order.
+     */
+    synchronized long[] appendAll(byte type, List<byte[]> payloads) {
+        for (byte[] payload : payloads) {
+            checkFits(payload.length);
+        }
+
+        int segmentCount = segments.size();
+        int startPosition = position;
+        int startUnforced = unforcedFrom;
+        long[] offsets = new long[payloads.size()];
+        try {
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = append(type, payloads.get(i));
+            }
+        } catch (RuntimeException e) {
+            rollBack(segmentCount, startPosition, startUnforced);
+            throw e;
+        }
+        return offsets;
+    }
+
+    /**
+     * @param offset An offset returned by {@link #append} or passed to a {@link RecordVisitor}.
+     * @return A read-only view of the record's payload.
+     */
+    ByteBuffer payload(long offset) {
+        ByteBuffer buffer = segments.get((int) (offset >>> 32));
+        int pos = (int) offset;
+        return buffer.slice(pos + HEADER_BYTES, buffer.getInt(pos)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Flushes everything appended so far to disk.
+     */
+    synchronized void force() {
+        if (segments.isEmpty() || position == unforcedFrom) {
+            return;
+        }
+        segments.getLast().force(unforcedFrom, position - unforcedFrom);
+        unforcedFrom = position;
+    }
+
+    @Override
+    public synchronized void close() {
+        force();
+    }
+
+    private void checkFits(int length) {
+        if (length == 0 || length > segmentSize - OVERHEAD_BYTES) {
+            throw new IllegalArgumentException("Record of " + length + " bytes doesn't fit a segment of " + segmentSize);
+        }
+    }
+
+    // Drops the segments created since and zeroes what was written after the position in the segment it was in
+    private void rollBack(int segmentCount, int toPosition, int toUnforced) {
+        boolean rolled = segments.size() > segmentCount;
+        int writtenTo = position;
+        while (segments.size() > segmentCount) {
+            int segment = segments.size() - 1;
+            segments.remove(segment);
+            try {
+                Files.deleteIfExists(segmentPath(segment));
+            } catch (IOException e) {
+                // Replayed as an empty segment, harmless
+                logger.warn("Could not delete {} after a failed append: {}", segmentPath(segment), e.getMessage());
+            }
+        }
+        if (!segments.isEmpty()) {
+            MappedByteBuffer buffer = segments.getLast();
+            int end = rolled ? buffer.capacity() : writtenTo;
+            buffer.put(toPosition, new byte[end - toPosition]);
+        }
+        position = toPosition;
+        unforcedFrom = toUnforced;
+    }
+
+    private void roll() {
+        try {
+            if (!segments.isEmpty()) {
+                segments.getLast().force();
+            }
+            segments.add(map(segments.size()));
+            position = 0;
+            unforcedFrom = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a new log segment in " + directory, e);
+        }
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        // The mapping outlives the channel, and mapping past the end of a new file extends it with zeroes.
+        // Existing segments keep the size they were created with, even if the configured size changed since
+        try (FileChannel channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size() > 0 ? Math.min(channel.size(), Integer.MAX_VALUE) : segmentSize;
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(String.format("segment-%05d.log", segment));
+    }
+
+    private static boolean isZeroFrom(ByteBuffer buffer, int from) {
+        int pos = from;
+        for (; pos + Long.BYTES <= buffer.capacity(); pos += Long.BYTES) {
+            if (buffer.getLong(pos) != 0) {
+                return false;
+            }
+        }
+        for (; pos < buffer.capacity(); pos++) {
+            if (buffer.get(pos) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int checksum(ByteBuffer buffer, int from, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(from, length));
+        return (int) crc.getValue();
+    }
+
+    private static long offset(int segment, int position) {
+        return (long) segment << 32 | position;
+    }
+}
@@ -0,0 +1,123 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.repository.query.FluentQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * The generic part of the MongoRepository contract for the embedded store. Subclasses provide the lookups the
+ * application actually uses, query by example, paging, sorting and deletes aren't supported.
+ *
+ * @param <T> The entity type.
+ * @param <ID> The id type.
+ */
+abstract class EmbeddedRepositorySupport<T, ID> implements MongoRepository<T, ID> {
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        entities.forEach(entity -> saved.add(save(entity)));
+        return saved;
+    }
+
+    @Override
+    public <S extends T> List<S> insert(Iterable<S> entities) {
+        List<S> inserted = new ArrayList<>();
+        entities.forEach(entity -> inserted.add(insert(entity)));
+        return inserted;
+    }
+
+    @Override
+    public boolean existsById(ID id) {
+        return findById(id).isPresent();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<ID> ids) {
+        List<T> found = new ArrayList<>();
+        ids.forEach(id -> findById(id).ifPresent(found::add));
+        return found;
+    }
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        throw unsupported("Sorting");
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        throw unsupported("Offset paging");
+    }
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        throw unsupported("Query by example");
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        throw unsupported("Query by example");
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        throw unsupported("Query by example");
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw unsupported("Query by example");
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        throw unsupported("Query by example");
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        throw unsupported("Query by example");
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw unsupported("Query by example");
+    }
+
+    @Override
+    public void deleteById(ID id) {
+        throw unsupported("Deleting");
+    }
+
+    @Override
+    public void delete(T entity) {
+        throw unsupported("Deleting");
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends ID> ids) {
+        throw unsupported("Deleting");
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        throw unsupported("Deleting");
+    }
+
+    @Override
+    public void deleteAll() {
+        throw unsupported("Deleting");
+    }
+
+    private static UnsupportedOperationException unsupported(String operation) {
+        return new UnsupportedOperationException(operation + " isn't supported by the embedded store");
+    }
+}
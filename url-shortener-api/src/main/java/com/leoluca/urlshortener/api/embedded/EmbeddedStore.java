@@ -0,0 +1,450 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.dedup.UrlDigest;
+import com.leoluca.urlshortener.api.user.User;
+import com.leoluca.urlshortener.api.util.OffHeapLongLongMap;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Single-node storage engine for the embedded profile, a stand-in for MongoDB that needs no external service.
+ * Every write is a record appended to a memory-mapped log, URL lookups go through off-heap hash indexes from short
+ * code and digest to the record's log offset. On startup the whole log is replayed to rebuild the indexes, which is
+ * a sequential read of the mapped segments.
+ * The store assigns ids and creation times itself, both strictly increasing, so the insertion order lists double
+ * as the id and creation time order that keyset pagination needs.
+ * Writes are serialized, reads never lock.
+ */
+@Component
+@Profile("embedded")
+public class EmbeddedStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedStore.class);
+
+    private final AppendOnlyLog log;
+    private final RecordIndex<String> shortCodes;
+    private final RecordIndex<ByteBuffer> urlHashes;
+    // Offsets of all URL records in insertion order, and per user
+    private final LongList urls;
+    private final Map<ObjectId, LongList> urlsByUser = new ConcurrentHashMap<>();
+    // Keyed by URL record offset + 1, since the map can't hold key 0
+    private final OffHeapLongLongMap hitCounts;
+    private final Map<ObjectId, User> users = new ConcurrentHashMap<>();
+    private final Map<String, ObjectId> userIdsByEmail = new ConcurrentHashMap<>();
+    private final boolean syncEachWrite;
+    private final ScheduledExecutorService syncer;
+    // Only touched while holding the lock
+    private long sequence;
+    private ObjectId lastId;
+    private long lastCreatedAt;
+
+    public EmbeddedStore(@Value("${urlshortener.embedded.data-dir:data/embedded}") Path dataDir,
+                         @Value("${urlshortener.embedded.segment-size:64MB}") DataSize segmentSize,
+                         @Value("${urlshortener.embedded.initial-capacity:1000000}") int initialCapacity,
+                         @Value("${urlshortener.embedded.sync-interval:1s}") Duration syncInterval) {
+        this.log = new AppendOnlyLog(dataDir, Math.toIntExact(segmentSize.toBytes()));
+        this.shortCodes = new RecordIndex<>(initialCapacity, EmbeddedStore::hash,
+                (shortCode, offset) -> Records.urlShortCode(log.payload(offset)).equals(shortCode));
+        this.urlHashes = new RecordIndex<>(initialCapacity, urlHash -> urlHash.getLong(0),
+                (urlHash, offset) -> Records.urlHashEquals(log.payload(offset), urlHash.array()));
+        this.urls = new LongList(initialCapacity);
+        this.hitCounts = new OffHeapLongLongMap(initialCapacity);
+
+        long start = System.currentTimeMillis();
+        log.replay(this::apply);
+        logger.info("Recovered {} URLs and {} users from {} in {} ms, {} MB of off-heap index", urls.size(), users.size(),
+                dataDir, System.currentTimeMillis() - start,
+                (shortCodes.memoryUsage() + urlHashes.memoryUsage() + hitCounts.memoryUsage()) >> 20);
+
+        // Zero forces every write to disk before it returns, otherwise a crash loses at most one interval of writes
+        this.syncEachWrite = syncInterval.isZero();
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedded-store-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!syncEachWrite) {
+            long intervalMillis = syncInterval.toMillis();
+            syncer.scheduleWithFixedDelay(this::syncQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        syncer.shutdownNow();
+        log.close();
+    }
+
+    /**
+     * Stores new URLs, all of them or none if any short code or digest is taken or a record can't be written.
+     * Each URL gets its id and creation time assigned.
+     *
+     * @throws DuplicateKeyException If a short code or digest is already stored or repeats within the batch.
+     */
+    synchronized void insertUrls(List<? extends URL> newUrls) {
+        Set<String> batchCodes = new HashSet<>();
+        Set<ByteBuffer> batchHashes = new HashSet<>();
+        for (URL url : newUrls) {
+            if (shortCodes.find(url.getShortCode()) != RecordIndex.MISSING || !batchCodes.add(url.getShortCode())) {
+                throw new DuplicateKeyException("Short code " + url.getShortCode() + " already exists");
+            }
+            // Expiring links have no digest and are never deduplicated
+            if (url.getExpiresAt() != null) {
+                url.setUrlHash(null);
+                continue;
+            }
+            if (url.getUrlHash() == null) {
+                url.setUrlHash(UrlDigest.of(url.getLongUrl()));
+            }
+            ByteBuffer urlHash = ByteBuffer.wrap(url.getUrlHash());
+            if (urlHashes.find(urlHash) != RecordIndex.MISSING || !batchHashes.add(urlHash)) {
+                throw new DuplicateKeyException("A URL with the digest of " + url.getLongUrl() + " already exists");
+            }
+        }
+
+        // Everything is encoded before the first append, and the log takes the batch back if an append fails
+        List<byte[]> records = new ArrayList<>(newUrls.size());
+        for (URL url : newUrls) {
+            url.setId(nextId().toHexString());
+            lastCreatedAt = Math.max(System.currentTimeMillis(), lastCreatedAt);
+            url.setCreatedAt(new Date(lastCreatedAt));
+            records.add(Records.encodeUrl(url));
+        }
+        long[] offsets = log.appendAll(Records.URL, records);
+        for (int i = 0; i < offsets.length; i++) {
+            URL url = newUrls.get(i);
+            index(offsets[i], url.getShortCode(), url.getUrlHash(), url.getUserId());
+        }
+        synced();
+    }
+
+    Optional<URL> findUrlByShortCode(String shortCode) {
+        return readUrl(shortCodes.find(shortCode));
+    }
+
+    Optional<URL> findUrlByUrlHash(byte[] urlHash) {
+        if (urlHash == null || urlHash.length != UrlDigest.LENGTH) {
+            return Optional.empty();
+        }
+        return readUrl(urlHashes.find(ByteBuffer.wrap(urlHash)));
+    }
+
+    Optional<URL> findUrlById(String id) {
+        if (!ObjectId.isValid(id)) {
+            return Optional.empty();
+        }
+        ObjectId objectId = new ObjectId(id);
+        int size = urls.size();
+        int index = firstIndex(size, i -> Records.urlId(log.payload(urls.get(i))).compareTo(objectId) >= 0);
+        if (index == size || !Records.urlId(log.payload(urls.get(index))).equals(objectId)) {
+            return Optional.empty();
+        }
+        return readUrl(urls.get(index));
+    }
+
+    /**
+     * @return URLs in id order starting right after the given id (or the first one if null).
+     */
+    List<URL> findUrlsAfter(String afterId, int limit) {
+        int size = urls.size();
+        int from = 0;
+        if (afterId != null) {
+            ObjectId after = new ObjectId(afterId);
+            from = firstIndex(size, i -> Records.urlId(log.payload(urls.get(i))).compareTo(after) > 0);
+        }
+        return readUrls(urls, from, Math.min(size, from + limit));
+    }
+
+    /**
+     * @return The user's URLs in creation time and id order, starting right after the given position (or the first
+     * one if null).
+     */
+    List<URL> findUserUrlsAfter(ObjectId userId, Date afterCreatedAt, String afterId, int limit) {
+        LongList userUrls = urlsByUser.get(userId);
+        if (userUrls == null) {
+            return List.of();
+        }
+
+        int size = userUrls.size();
+        int from = 0;
+        if (afterCreatedAt != null) {
+            long createdAt = afterCreatedAt.getTime();
+            ObjectId after = new ObjectId(afterId);
+            from = firstIndex(size, i -> {
+                ByteBuffer payload = log.payload(userUrls.get(i));
+                long urlCreatedAt = Records.urlCreatedAt(payload);
+                return urlCreatedAt > createdAt || (urlCreatedAt == createdAt && Records.urlId(payload).compareTo(after) > 0);
+            });
+        }
+        return readUrls(userUrls, from, Math.min(size, from + limit));
+    }
+
+    /**
+     * @return Every URL of the user (or every URL if null) stored when this is called, decoded lazily.
+     */
+    Stream<URL> streamUrls(ObjectId userId) {
+        LongList list = userId == null ? urls : urlsByUser.get(userId);
+        if (list == null) {
+            return Stream.empty();
+        }
+        return IntStream.range(0, list.size()).mapToObj(i -> readUrl(list.get(i)).orElseThrow());
+    }
+
+    /**
+     * @return Every URL created at or after the given time, decoded lazily.
+     */
+    Stream<URL> streamUrlsSince(Date since) {
+        int size = urls.size();
+        long sinceMillis = since.getTime();
+        int from = firstIndex(size, i -> Records.urlCreatedAt(log.payload(urls.get(i))) >= sinceMillis);
+        return IntStream.range(from, size).mapToObj(i -> readUrl(urls.get(i)).orElseThrow());
+    }
+
+    /**
+     * A full pass over the hit counts, fine for the occasional warm-up.
+     */
+    List<URL> findMostClicked(int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        // Min-heap of (hit count, offset) holding the top so far
+        PriorityQueue<long[]> top = new PriorityQueue<>(limit + 1, Comparator.comparingLong(entry -> entry[0]));
+        int size = urls.size();
+        for (int i = 0; i < size; i++) {
+            long offset = urls.get(i);
+            top.add(new long[]{hitCounts.get(offset + 1, 0), offset});
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+
+        List<URL> mostClicked = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            mostClicked.add(readUrl(top.poll()[1]).orElseThrow());
+        }
+        return mostClicked.reversed();
+    }
+
+    long countUrls() {
+        return urls.size();
+    }
+
+    /**
+     * Adds hits to the hit counts of existing URLs, unknown codes are skipped.
+     */
+    synchronized void incrementHitCounts(Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        log.append(Records.HITS, Records.encodeHits(deltas));
+        applyHits(deltas);
+        synced();
+    }
+
+    /**
+     * Inserts or replaces a user.
+     *
+     * @throws DuplicateKeyException If another user has the same email.
+     */
+    synchronized User saveUser(User user) {
+        if (user.getUserId() == null) {
+            user.setUserId(new ObjectId());
+        }
+        ObjectId owner = userIdsByEmail.get(user.getEmail());
+        if (owner != null && !owner.equals(user.getUserId())) {
+            throw new DuplicateKeyException("A user with email " + user.getEmail() + " already exists");
+        }
+
+        log.append(Records.USER, Records.encodeUser(user));
+        applyUser(copy(user));
+        synced();
+        return user;
+    }
+
+    Optional<User> findUser(ObjectId userId) {
+        return Optional.ofNullable(users.get(userId)).map(EmbeddedStore::copy);
+    }
+
+    Optional<User> findUserByEmail(String email) {
+        return Optional.ofNullable(userIdsByEmail.get(email)).flatMap(this::findUser);
+    }
+
+    List<User> findUsers() {
+        return users.values().stream().map(EmbeddedStore::copy).toList();
+    }
+
+    long countUsers() {
+        return users.size();
+    }
+
+    /**
+     * Reserves the next block of the short code sequence, like the Redis INCRBY does.
+     *
+     * @return The first id of the reserved range.
+     */
+    public synchronized long reserveIds(long blockSize) {
+        sequence += blockSize;
+        log.append(Records.SEQUENCE, Records.encodeSequence(sequence));
+        // A block handed out twice would mean duplicate short codes, so this one is always forced
+        log.force();
+        return sequence - blockSize;
+    }
+
+    private void apply(long offset, byte type, ByteBuffer payload) {
+        switch (type) {
+            case Records.URL -> {
+                URL url = Records.decodeUrl(payload);
+                ObjectId id = new ObjectId(url.getId());
+                if (lastId == null || id.compareTo(lastId) > 0) {
+                    lastId = id;
+                }
+                lastCreatedAt = Math.max(lastCreatedAt, url.getCreatedAt().getTime());
+                index(offset, url.getShortCode(), url.getUrlHash(), url.getUserId());
+            }
+            case Records.HITS -> applyHits(Records.decodeHits(payload));
+            case Records.USER -> applyUser(Records.decodeUser(payload));
+            case Records.SEQUENCE -> sequence = Math.max(sequence, Records.decodeSequence(payload));
+            default -> throw new IllegalStateException("Unknown record type " + type + " at offset " + offset);
+        }
+    }
+
+    private void index(long offset, String shortCode, byte[] urlHash, ObjectId userId) {
+        if (!shortCodes.add(shortCode, offset)) {
+            logger.warn("Skipping a second record for short code {}", shortCode);
+            return;
+        }
+        if (urlHash != null) {
+            urlHashes.add(ByteBuffer.wrap(urlHash), offset);
+        }
+        urls.add(offset);
+        if (userId != null) {
+            urlsByUser.computeIfAbsent(userId, id -> new LongList(16)).add(offset);
+        }
+    }
+
+    private void applyHits(Map<String, Long> deltas) {
+        deltas.forEach((shortCode, delta) -> {
+            long offset = shortCodes.find(shortCode);
+            if (offset != RecordIndex.MISSING) {
+                hitCounts.put(offset + 1, hitCounts.get(offset + 1, 0) + delta);
+            }
+        });
+    }
+
+    private void applyUser(User user) {
+        User previous = users.put(user.getUserId(), user);
+        if (previous != null && !previous.getEmail().equals(user.getEmail())) {
+            userIdsByEmail.remove(previous.getEmail(), user.getUserId());
+        }
+        userIdsByEmail.put(user.getEmail(), user.getUserId());
+    }
+
+    private Optional<URL> readUrl(long offset) {
+        if (offset == RecordIndex.MISSING) {
+            return Optional.empty();
+        }
+        URL url = Records.decodeUrl(log.payload(offset));
+        url.setHitCount(hitCounts.get(offset + 1, 0));
+        return Optional.of(url);
+    }
+
+    private List<URL> readUrls(LongList list, int from, int to) {
+        List<URL> result = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            result.add(readUrl(list.get(i)).orElseThrow());
+        }
+        return result;
+    }
+
+    // Ids have to sort in insertion order, even when the clock steps back or within the same second
+    private ObjectId nextId() {
+        ObjectId id = new ObjectId();
+        if (lastId != null && id.compareTo(lastId) <= 0) {
+            byte[] bytes = lastId.toByteArray();
+            int i = bytes.length - 1;
+            while (++bytes[i] == 0 && i > 0) {
+                i--; // Carry into the next byte
+            }
+            id = new ObjectId(bytes);
+        }
+        lastId = id;
+        return id;
+    }
+
+    private void synced() {
+        if (syncEachWrite) {
+            log.force();
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            log.force();
+        } catch (Exception e) {
+            logger.error("Failed to sync the embedded store: {}", e.getMessage(), e);
+        }
+    }
+
+    // Binary search for the first index in [0, size) that satisfies a predicate which is monotonic over the list
+    private static int firstIndex(int size, IntPredicate reached) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (reached.test(mid)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    // Stored users are never handed out, so a caller changing one doesn't change the store behind its back
+    private static User copy(User user) {
+        User copy = new User();
+        copy.setUserId(user.getUserId());
+        copy.setEmail(user.getEmail());
+        copy.setCreatedAt(user.getCreatedAt());
+        return copy;
+    }
+
+    // FNV-1a over the UTF-8 bytes, mixed so the open addressing probes spread well
+    private static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash ^ (hash >>> 29);
+    }
+}
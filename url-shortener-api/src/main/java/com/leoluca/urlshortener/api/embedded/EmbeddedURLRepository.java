@@ -0,0 +1,148 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.dedup.UrlDigest;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * URLRepository on top of the embedded store. URLs are immutable once stored, only their hit count changes.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedURLRepository extends EmbeddedRepositorySupport<URL, String> implements URLRepository {
+
+    private final EmbeddedStore store;
+
+    public EmbeddedURLRepository(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public <S extends URL> S insert(S url) {
+        store.insertUrls(List.of(url));
+        return url;
+    }
+
+    @Override
+    public <S extends URL> List<S> insert(Iterable<S> urls) {
+        List<S> batch = new ArrayList<>();
+        urls.forEach(batch::add);
+        store.insertUrls(batch);
+        return batch;
+    }
+
+    @Override
+    public <S extends URL> S save(S url) {
+        if (url.getId() != null) {
+            throw new UnsupportedOperationException("URLs can't be updated in the embedded store");
+        }
+        return insert(url);
+    }
+
+    @Override
+    public Optional<URL> findById(String id) {
+        return store.findUrlById(id);
+    }
+
+    @Override
+    public List<URL> findAll() {
+        try (Stream<URL> urls = store.streamUrls(null)) {
+            return urls.toList();
+        }
+    }
+
+    @Override
+    public long count() {
+        return store.countUrls();
+    }
+
+    @Override
+    public Optional<URL> findByShortCode(String shortCode) {
+        return store.findUrlByShortCode(shortCode);
+    }
+
+    @Override
+    public Optional<URL> findByUrlHash(byte[] urlHash) {
+        return store.findUrlByUrlHash(urlHash);
+    }
+
+    // Every URL in the embedded store that never expires has its digest, so this is a digest lookup too
+    @Override
+    public Optional<URL> findByLongUrlAndExpiresAtIsNull(String longUrl) {
+        return store.findUrlByUrlHash(UrlDigest.of(longUrl)).filter(url -> url.getLongUrl().equals(longUrl));
+    }
+
+    @Override
+    public List<URL> findAllByShortCodeIn(Collection<String> shortCodes) {
+        return shortCodes.stream().map(store::findUrlByShortCode).flatMap(Optional::stream).toList();
+    }
+
+    @Override
+    public List<URL> findAllByUrlHashIn(Collection<byte[]> urlHashes) {
+        return urlHashes.stream().map(store::findUrlByUrlHash).flatMap(Optional::stream).toList();
+    }
+
+    @Override
+    public List<URL> findAllByLongUrlInAndExpiresAtIsNull(Collection<String> longUrls) {
+        return longUrls.stream().map(this::findByLongUrlAndExpiresAtIsNull).flatMap(Optional::stream).toList();
+    }
+
+    @Override
+    public List<URL> findPageByUserId(ObjectId userId, Date afterCreatedAt, String afterId, int limit) {
+        return store.findUserUrlsAfter(userId, afterCreatedAt, afterId, limit);
+    }
+
+    @Override
+    public List<URL> findPage(String afterId, int limit) {
+        return store.findUrlsAfter(afterId, limit);
+    }
+
+    @Override
+    public Stream<URL> streamForExport(ObjectId userId) {
+        return store.streamUrls(userId);
+    }
+
+    @Override
+    public Stream<URL> streamMostClicked(int limit) {
+        return store.findMostClicked(limit).stream();
+    }
+
+    @Override
+    public Stream<URL> streamShortCodes(Date since) {
+        return since == null ? store.streamUrls(null) : store.streamUrlsSince(since);
+    }
+
+    @Override
+    public Stream<URL> streamMappings(Date since) {
+        return streamShortCodes(since);
+    }
+
+    @Override
+    public Stream<URL> streamDigests() {
+        return store.streamUrls(null).filter(url -> url.getExpiresAt() == null);
+    }
+
+    // Digests are stored with every URL, there is never anything to backfill
+    @Override
+    public int setUrlHashes(Map<String, byte[]> urlHashes) {
+        return 0;
+    }
+
+    @Override
+    public Set<String> incrementHitCounts(Map<String, Long> deltas) {
+        store.incrementHitCounts(deltas);
+        return Set.of();
+    }
+}
@@ -0,0 +1,68 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import com.leoluca.urlshortener.api.url.analytics.Granularity;
+import com.leoluca.urlshortener.api.url.analytics.UrlStatsBucket;
+import com.leoluca.urlshortener.api.url.analytics.UrlStatsRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Click stats for the embedded profile. Kept in memory only, so they start over with every restart.
+ * Buckets past their retention are dropped whenever new deltas come in.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedUrlStatsRepository implements UrlStatsRepository {
+
+    private final ConcurrentMap<String, UrlStatsBucket> buckets = new ConcurrentHashMap<>();
+
+    @Override
+    public Set<String> upsertAll(Collection<UrlStatsBucket> deltas) {
+        Date now = new Date();
+        buckets.values().removeIf(bucket -> bucket.getExpireAt() != null && bucket.getExpireAt().before(now));
+
+        for (UrlStatsBucket delta : deltas) {
+            buckets.compute(delta.getId(), (id, stored) -> {
+                UrlStatsBucket bucket = stored != null ? stored : copyOf(delta);
+                if (stored != null) {
+                    bucket.merge(delta);
+                }
+                return bucket;
+            });
+        }
+        return Set.of();
+    }
+
+    @Override
+    public List<UrlStatsBucket> findBuckets(String shortCode, Granularity granularity, Date from, Date to) {
+        List<UrlStatsBucket> found = new ArrayList<>();
+        for (long start = granularity.bucketStart(from.getTime()); start < to.getTime(); start += granularity.unitMillis()) {
+            // Copied under the key's lock, upsertAll may be merging into the stored bucket right now
+            buckets.computeIfPresent(UrlStatsBucket.id(shortCode, granularity, start), (id, bucket) -> {
+                found.add(copyOf(bucket));
+                return bucket;
+            });
+        }
+        return found;
+    }
+
+    // Stored buckets are mutated in place, so nothing outside this class gets to hold one
+    private static UrlStatsBucket copyOf(UrlStatsBucket delta) {
+        UrlStatsBucket copy = new UrlStatsBucket();
+        copy.setId(delta.getId());
+        copy.setShortCode(delta.getShortCode());
+        copy.setGranularity(delta.getGranularity());
+        copy.setBucket(delta.getBucket());
+        copy.setExpireAt(delta.getExpireAt());
+        copy.merge(delta);
+        return copy;
+    }
+}
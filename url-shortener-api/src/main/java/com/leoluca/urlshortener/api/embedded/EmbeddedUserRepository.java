@@ -0,0 +1,59 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import com.leoluca.urlshortener.api.user.User;
+import com.leoluca.urlshortener.api.user.UserRepository;
+import org.bson.types.ObjectId;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * UserRepository on top of the embedded store.
+ */
+@Repository
+@Profile("embedded")
+public class EmbeddedUserRepository extends EmbeddedRepositorySupport<User, ObjectId> implements UserRepository {
+
+    private final EmbeddedStore store;
+
+    public EmbeddedUserRepository(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public <S extends User> S insert(S user) {
+        if (user.getUserId() != null && store.findUser(user.getUserId()).isPresent()) {
+            throw new DuplicateKeyException("User " + user.getUserId() + " already exists");
+        }
+        return save(user);
+    }
+
+    @Override
+    public <S extends User> S save(S user) {
+        store.saveUser(user);
+        return user;
+    }
+
+    @Override
+    public Optional<User> findById(ObjectId userId) {
+        return store.findUser(userId);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return store.findUsers();
+    }
+
+    @Override
+    public long count() {
+        return store.countUsers();
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        return store.findUserByEmail(email);
+    }
+}
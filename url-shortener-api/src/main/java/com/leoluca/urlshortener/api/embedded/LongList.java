@@ -0,0 +1,41 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of longs with a single writer and lock-free readers. The writer stores the element (into a copy
+ * when growing) before it publishes the new size, so a reader that reads the size first sees every element below it.
+ */
+final class LongList {
+
+    private volatile long[] elements;
+    private volatile int size;
+
+    LongList(int initialCapacity) {
+        this.elements = new long[Math.max(4, initialCapacity)];
+    }
+
+    /**
+     * Appends a value, callers serialize this themselves.
+     */
+    void add(long value) {
+        long[] current = elements;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+            elements = current;
+        }
+        current[size] = value;
+        size = size + 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param index An index below a size read before this call.
+     */
+    long get(int index) {
+        return elements[index];
+    }
+}
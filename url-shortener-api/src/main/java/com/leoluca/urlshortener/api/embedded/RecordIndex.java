@@ -0,0 +1,74 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import com.leoluca.urlshortener.api.util.OffHeapLongLongMap;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Unique index from a key to the log offset of its record.
+ * The off-heap map is keyed by a 64-bit hash of the key and every hit is verified against the record itself.
+ * The rare keys whose hash is already taken by a different key go into a small on-heap map instead.
+ *
+ * @param <K> The key type.
+ */
+final class RecordIndex<K> {
+
+    static final long MISSING = -1;
+
+    private final OffHeapLongLongMap offsets;
+    private final Map<K, Long> collisions = new ConcurrentHashMap<>();
+    private final ToLongFunction<K> hash;
+    private final BiPredicate<K, Long> matches;
+
+    /**
+     * @param hash Hashes a key, 0 is remapped since the map reserves it.
+     * @param matches Tells whether the record at an offset has the given key.
+     */
+    RecordIndex(int initialCapacity, ToLongFunction<K> hash, BiPredicate<K, Long> matches) {
+        this.offsets = new OffHeapLongLongMap(initialCapacity);
+        this.hash = hash;
+        this.matches = matches;
+    }
+
+    /**
+     * @return The offset of the record with this key, or {@link #MISSING}.
+     */
+    long find(K key) {
+        long offset = offsets.get(hashOf(key), MISSING);
+        if (offset == MISSING || matches.test(key, offset)) {
+            return offset;
+        }
+        return collisions.getOrDefault(key, MISSING);
+    }
+
+    /**
+     * Adds a key, callers serialize this themselves.
+     *
+     * @return False if the key is already indexed.
+     */
+    boolean add(K key, long offset) {
+        long keyHash = hashOf(key);
+        long existing = offsets.get(keyHash, MISSING);
+        if (existing == MISSING) {
+            offsets.put(keyHash, offset);
+            return true;
+        }
+        if (matches.test(key, existing) || collisions.containsKey(key)) {
+            return false;
+        }
+        collisions.put(key, offset);
+        return true;
+    }
+
+    long memoryUsage() {
+        return offsets.memoryUsage();
+    }
+
+    private long hashOf(K key) {
+        long keyHash = hash.applyAsLong(key);
+        return keyHash == 0 ? 1 : keyHash;
+    }
+}
@@ -0,0 +1,178 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.dedup.UrlDigest;
+import com.leoluca.urlshortener.api.user.User;
+import org.bson.types.ObjectId;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary layout of the records in the embedded log. Strings are UTF-8 with a length prefix, ids are the 12 raw
+ * ObjectId bytes. A URL record starts with its id and creation time at fixed positions, so listings can compare
+ * them without decoding the rest.
+ */
+final class Records {
+
+    static final byte URL = 1;
+    static final byte HITS = 2;
+    static final byte USER = 3;
+    static final byte SEQUENCE = 4;
+
+    private static final int ID_BYTES = 12;
+    private static final byte HAS_USER = 1;
+    private static final byte HAS_EXPIRY = 2;
+
+    private Records() {}
+
+    // [id][createdAt][flags][userId if flagged][expiresAt if flagged, else urlHash][shortCode][longUrl]
+    static byte[] encodeUrl(URL url) {
+        byte[] shortCode = url.getShortCode().getBytes(StandardCharsets.UTF_8);
+        byte[] longUrl = url.getLongUrl().getBytes(StandardCharsets.UTF_8);
+        boolean hasUser = url.getUserId() != null;
+        boolean hasExpiry = url.getExpiresAt() != null;
+        ByteBuffer buffer = ByteBuffer.allocate(ID_BYTES + Long.BYTES + 1 + (hasUser ? ID_BYTES : 0)
+                + (hasExpiry ? Long.BYTES : UrlDigest.LENGTH) + Short.BYTES + shortCode.length + Integer.BYTES + longUrl.length);
+        buffer.put(new ObjectId(url.getId()).toByteArray());
+        buffer.putLong(url.getCreatedAt().getTime());
+        buffer.put((byte) ((hasUser ? HAS_USER : 0) | (hasExpiry ? HAS_EXPIRY : 0)));
+        if (hasUser) {
+            buffer.put(url.getUserId().toByteArray());
+        }
+        if (hasExpiry) {
+            buffer.putLong(url.getExpiresAt().getTime());
+        } else {
+            buffer.put(url.getUrlHash());
+        }
+        putShortString(buffer, shortCode);
+        buffer.putInt(longUrl.length).put(longUrl);
+        return buffer.array();
+    }
+
+    static URL decodeUrl(ByteBuffer payload) {
+        URL url = new URL();
+        url.setId(getId(payload).toHexString());
+        url.setCreatedAt(new Date(payload.getLong()));
+        byte flags = payload.get();
+        if ((flags & HAS_USER) != 0) {
+            url.setUserId(getId(payload));
+        }
+        if ((flags & HAS_EXPIRY) != 0) {
+            url.setExpiresAt(new Date(payload.getLong()));
+        } else {
+            byte[] urlHash = new byte[UrlDigest.LENGTH];
+            payload.get(urlHash);
+            url.setUrlHash(urlHash);
+        }
+        url.setShortCode(getShortString(payload));
+        byte[] longUrl = new byte[payload.getInt()];
+        payload.get(longUrl);
+        url.setLongUrl(new String(longUrl, StandardCharsets.UTF_8));
+        return url;
+    }
+
+    static ObjectId urlId(ByteBuffer payload) {
+        return getId(payload.position(0));
+    }
+
+    static long urlCreatedAt(ByteBuffer payload) {
+        return payload.getLong(ID_BYTES);
+    }
+
+    static String urlShortCode(ByteBuffer payload) {
+        boolean hasExpiry = skipToUrlHash(payload);
+        payload.position(payload.position() + (hasExpiry ? Long.BYTES : UrlDigest.LENGTH));
+        return getShortString(payload);
+    }
+
+    static boolean urlHashEquals(ByteBuffer payload, byte[] urlHash) {
+        return !skipToUrlHash(payload)
+                && payload.slice(payload.position(), UrlDigest.LENGTH).equals(ByteBuffer.wrap(urlHash));
+    }
+
+    // [count]([shortCode][delta])*
+    static byte[] encodeHits(Map<String, Long> deltas) {
+        int size = Integer.BYTES;
+        Map<byte[], Long> encoded = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> delta : deltas.entrySet()) {
+            byte[] shortCode = delta.getKey().getBytes(StandardCharsets.UTF_8);
+            encoded.put(shortCode, delta.getValue());
+            size += Short.BYTES + shortCode.length + Long.BYTES;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size).putInt(encoded.size());
+        encoded.forEach((shortCode, delta) -> putShortString(buffer, shortCode).putLong(delta));
+        return buffer.array();
+    }
+
+    static Map<String, Long> decodeHits(ByteBuffer payload) {
+        int count = payload.getInt();
+        Map<String, Long> deltas = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            deltas.put(getShortString(payload), payload.getLong());
+        }
+        return deltas;
+    }
+
+    // [id][createdAt][email]
+    static byte[] encodeUser(User user) {
+        byte[] email = user.getEmail().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(ID_BYTES + Long.BYTES + Short.BYTES + email.length);
+        buffer.put(user.getUserId().toByteArray());
+        buffer.putLong(user.getCreatedAt() == null ? 0 : user.getCreatedAt().getTime());
+        putShortString(buffer, email);
+        return buffer.array();
+    }
+
+    static User decodeUser(ByteBuffer payload) {
+        User user = new User();
+        user.setUserId(getId(payload));
+        long createdAt = payload.getLong();
+        user.setCreatedAt(createdAt == 0 ? null : new Date(createdAt));
+        user.setEmail(getShortString(payload));
+        return user;
+    }
+
+    static byte[] encodeSequence(long end) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(end).array();
+    }
+
+    static long decodeSequence(ByteBuffer payload) {
+        return payload.getLong(0);
+    }
+
+    /**
+     * Moves to the digest, or to the expiry that takes its place.
+     *
+     * @return True if the record has an expiry instead of a digest.
+     */
+    private static boolean skipToUrlHash(ByteBuffer payload) {
+        int position = ID_BYTES + Long.BYTES;
+        byte flags = payload.get(position);
+        payload.position(position + 1 + ((flags & HAS_USER) != 0 ? ID_BYTES : 0));
+        return (flags & HAS_EXPIRY) != 0;
+    }
+
+    private static ObjectId getId(ByteBuffer payload) {
+        byte[] id = new byte[ID_BYTES];
+        payload.get(id);
+        return new ObjectId(id);
+    }
+
+    private static ByteBuffer putShortString(ByteBuffer buffer, byte[] value) {
+        if (value.length > 0xFFFF) {
+            throw new IllegalArgumentException("Value of " + value.length + " bytes is too long");
+        }
+        return buffer.putShort((short) value.length).put(value);
+    }
+
+    private static String getShortString(ByteBuffer payload) {
+        byte[] value = new byte[Short.toUnsignedInt(payload.getShort())];
+        payload.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,181 @@
+package com.leoluca.urlshortener.api.mongo;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.analytics.Granularity;
+import com.leoluca.urlshortener.api.url.analytics.UrlStatsBucket;
+import com.leoluca.urlshortener.api.user.User;
+import com.mongodb.ExplainVerbosity;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Creates the indexes every repository query relies on, then runs explain on each of those queries to make sure
+ * none of them ends up as a collection scan or an in-memory sort.
+ * Runs while the context starts, before the web server accepts any request. Not needed with the embedded store.
+ */
+@Component
+@Profile("!embedded")
+public class MongoIndexBootstrap {
+
+    public enum CheckMode { OFF, WARN, FAIL }
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIndexBootstrap.class);
+
+    // Plan stages that mean MongoDB had to look at every document or sort the results itself
+    private static final Set<String> UNINDEXED_STAGES = Set.of("COLLSCAN", "SORT");
+
+    private final MongoTemplate mongoTemplate;
+    private final CheckMode checkMode;
+    private final Duration goneRetention;
+
+    public MongoIndexBootstrap(MongoTemplate mongoTemplate,
+                               @Value("${urlshortener.mongo.index-check:warn}") CheckMode checkMode,
+                               @Value("${urlshortener.expiry.gone-retention:1h}") Duration goneRetention) {
+        this.mongoTemplate = mongoTemplate;
+        this.checkMode = checkMode;
+        this.goneRetention = goneRetention;
+    }
+
+    @PostConstruct
+    void bootstrap() {
+        try {
+            ensureIndexes();
+        } catch (Exception e) {
+            // Missing indexes are reported by the explain check below
+            logger.error("Failed to create MongoDB indexes: {}", e.getMessage(), e);
+        }
+
+        if (checkMode == CheckMode.OFF) {
+            return;
+        }
+
+        List<String> unindexed;
+        try {
+            unindexed = findUnindexedQueries();
+        } catch (Exception e) {
+            if (checkMode == CheckMode.FAIL) {
+                throw new IllegalStateException("Could not verify MongoDB query plans", e);
+            }
+            logger.warn("Could not verify MongoDB query plans: {}", e.getMessage());
+            return;
+        }
+
+        if (unindexed.isEmpty()) {
+            logger.info("All repository queries are index-backed");
+        } else if (checkMode == CheckMode.FAIL) {
+            throw new IllegalStateException("Queries without a usable index: " + String.join(", ", unindexed));
+        } else {
+            logger.warn("Queries without a usable index: {}", String.join(", ", unindexed));
+        }
+    }
+
+    void ensureIndexes() {
+        ensureIndex(URL.class, new Index().on("shortCode", Sort.Direction.ASC).unique().named("shortCode"));
+        // Sparse so documents from before the digest existed don't collide on a missing value
+        ensureIndex(URL.class, new Index().on("urlHash", Sort.Direction.ASC).unique().sparse().named("urlHash"));
+        // _id as the last key matches the keyset pagination sort, so user listings never sort in memory
+        ensureIndex(URL.class, new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.ASC)
+                .on("_id", Sort.Direction.ASC)
+                .named("userId_createdAt"));
+        ensureIndex(URL.class, new Index().on("hitCount", Sort.Direction.DESC).named("hitCount"));
+        // Expired links are kept for the gone retention so they still resolve as gone, links without expiresAt are kept.
+        // Changing the retention needs the index dropped (or collMod), ensureIndex won't change its options
+        ensureIndex(URL.class, new Index().on("expiresAt", Sort.Direction.ASC).expire(goneRetention).named("expiresAt"));
+        ensureIndex(User.class, new Index().on("email", Sort.Direction.ASC).unique().named("email"));
+        ensureIndex(UrlStatsBucket.class, new Index()
+                .on("shortCode", Sort.Direction.ASC)
+                .on("granularity", Sort.Direction.ASC)
+                .on("bucket", Sort.Direction.ASC)
+                .named("shortCode_granularity_bucket"));
+        // Buckets past their retention are removed by the server, buckets without expireAt are kept
+        ensureIndex(UrlStatsBucket.class, new Index().on("expireAt", Sort.Direction.ASC).expire(0).named("expireAt"));
+    }
+
+    private void ensureIndex(Class<?> entityClass, IndexDefinition index) {
+        String name = mongoTemplate.indexOps(entityClass).ensureIndex(index);
+        logger.debug("Ensured index {} on {}", name, mongoTemplate.getCollectionName(entityClass));
+    }
+
+    /**
+     * Explains every query the repositories and services run. The filter values are placeholders,
+     * the planner picks the same plan no matter whether they match anything.
+     *
+     * @return The names of the queries whose winning plan isn't index-backed.
+     */
+    List<String> findUnindexedQueries() {
+        String urls = mongoTemplate.getCollectionName(URL.class);
+        String users = mongoTemplate.getCollectionName(User.class);
+        String stats = mongoTemplate.getCollectionName(UrlStatsBucket.class);
+        ObjectId id = new ObjectId();
+        Date createdAt = new Date();
+        Document byCreatedAt = new Document("createdAt", 1).append("_id", 1);
+
+        // findByLongUrlAndExpiresAtIsNull is left out on purpose, it only serves documents whose digest isn't backfilled yet
+        Map<String, QueryShape> queries = Map.of(
+                "URLRepository.findByShortCode", new QueryShape(urls, new Document("shortCode", "0000000"), null),
+                "URLRepository.findByUrlHash", new QueryShape(urls, new Document("urlHash", new Binary(new byte[16])), null),
+                "URLRepository.streamMostClicked", new QueryShape(urls, new Document(), new Document("hitCount", -1)),
+                "URLRepository.findPageByUserId", new QueryShape(urls, new Document("userId", id), byCreatedAt),
+                "URLRepository.findPageByUserId (next page)", new QueryShape(urls, new Document("userId", id).append("$or", List.of(
+                        new Document("createdAt", new Document("$gt", createdAt)),
+                        new Document("createdAt", createdAt).append("_id", new Document("$gt", id)))), byCreatedAt),
+                "URLRepository.findPage (next page)", new QueryShape(urls, new Document("_id", new Document("$gt", id)), new Document("_id", 1)),
+                "URLRepository.streamShortCodes/streamMappings (since)", new QueryShape(urls, new Document("_id", new Document("$gte", id)), null),
+                "UserRepository.findByEmail", new QueryShape(users, new Document("email", "index-check@example.com"), null),
+                "UrlStatsRepository.findBuckets", new QueryShape(stats, new Document("shortCode", "0000000")
+                        .append("granularity", Granularity.HOUR.label())
+                        .append("bucket", new Document("$gte", createdAt).append("$lt", createdAt)), new Document("bucket", 1)));
+
+        List<String> unindexed = new ArrayList<>();
+        queries.forEach((name, query) -> {
+            List<String> stages = new ArrayList<>();
+            collectStages(explain(query).get("queryPlanner", Document.class).get("winningPlan"), stages);
+            if (stages.stream().anyMatch(UNINDEXED_STAGES::contains)) {
+                unindexed.add(name + " " + stages);
+            }
+        });
+        return unindexed;
+    }
+
+    private Document explain(QueryShape query) {
+        var find = mongoTemplate.getCollection(query.collection()).find(query.filter()).limit(10);
+        if (query.sort() != null) {
+            find = find.sort(query.sort());
+        }
+        return find.explain(ExplainVerbosity.QUERY_PLANNER);
+    }
+
+    // Plans nest their input stages (and on newer servers the whole plan under "queryPlan"), so walk everything
+    private static void collectStages(Object plan, List<String> stages) {
+        if (plan instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            document.values().forEach(value -> collectStages(value, stages));
+        } else if (plan instanceof List<?> list) {
+            list.forEach(value -> collectStages(value, stages));
+        }
+    }
+
+    private record QueryShape(String collection, Document filter, Document sort) {}
+}
@@ -0,0 +1,68 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Buckets in this instance only, so with N instances behind a load balancer a client gets up to N times the limit.
+ * A bucket is a single AtomicLong holding the theoretical arrival time of the next request (GCRA), taking a token
+ * is one compare-and-set and no lock is ever taken.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.ratelimit.mode", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimiter implements RateLimiter {
+
+    private final Map<String, Cache<String, AtomicLong>> buckets = new ConcurrentHashMap<>();
+    private final long maxClients;
+    private final Duration idleTimeout;
+    private final LongSupplier nanoClock;
+
+    public LocalRateLimiter(RateLimitProperties properties) {
+        this(properties.maxClients(), properties.idleTimeout());
+    }
+
+    public LocalRateLimiter(long maxClients, Duration idleTimeout) {
+        this(maxClients, idleTimeout, System::nanoTime);
+    }
+
+    LocalRateLimiter(long maxClients, Duration idleTimeout, LongSupplier nanoClock) {
+        this.maxClients = maxClients;
+        this.idleTimeout = idleTimeout;
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public long tryAcquire(RateLimitRules.Rule rule, String client) {
+        long now = nanoClock.getAsLong();
+        AtomicLong bucket = buckets.computeIfAbsent(rule.name(), name -> newBuckets())
+                .get(client, key -> new AtomicLong(now));
+
+        while (true) {
+            long theoreticalArrival = bucket.get();
+            long next = Math.max(theoreticalArrival, now) + rule.intervalNanos();
+            long wait = next - now - rule.burstNanos();
+            if (wait > 0) {
+                return wait;
+            }
+            if (bucket.compareAndSet(theoreticalArrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private Cache<String, AtomicLong> newBuckets() {
+        // A dropped bucket just starts full again, so eviction only ever errs on the lenient side
+        return Caffeine.newBuilder()
+                .maximumSize(maxClients)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+}
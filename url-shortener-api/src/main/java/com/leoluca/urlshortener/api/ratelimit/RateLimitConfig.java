@@ -0,0 +1,15 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    @Bean
+    public RateLimitRules rateLimitRules(RateLimitProperties properties) {
+        return new RateLimitRules(properties.rules());
+    }
+}
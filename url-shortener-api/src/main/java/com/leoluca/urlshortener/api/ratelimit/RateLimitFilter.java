@@ -0,0 +1,92 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers 429 Too Many Requests, with a Retry-After header, once a client has used up its bucket for the endpoint.
+ * Runs before anything else touches the request, so a rejected request costs no body parsing and no database work.
+ * Requests no rule matches pass straight through.
+ * <p>
+ * Clients are told apart by {@link HttpServletRequest#getRemoteAddr()}, behind a proxy set
+ * {@code server.forward-headers-strategy} so that is the client's address and not the proxy's.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+@ConditionalOnProperty(name = "urlshortener.ratelimit.enabled", havingValue = "true", matchIfMissing = true)
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimitRules rules;
+    private final RateLimiter rateLimiter;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> rejected = new ConcurrentHashMap<>();
+
+    public RateLimitFilter(RateLimitRules rules, RateLimiter rateLimiter, MeterRegistry meterRegistry) {
+        this.rules = rules;
+        this.rateLimiter = rateLimiter;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return rules.isEmpty();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimitRules.Match match = rules.match(request.getMethod(), pathWithinApplication(request));
+        if (match == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long waitNanos = rateLimiter.tryAcquire(match.rule(), clientKey(match, request));
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        rejected.computeIfAbsent(match.rule().name(), rule -> Counter.builder("ratelimit.rejected")
+                        .description("Requests answered with 429 Too Many Requests")
+                        .tag("rule", rule)
+                        .register(meterRegistry))
+                .increment();
+        long retryAfterSeconds = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Too many requests, retry in " + retryAfterSeconds + "s.");
+    }
+
+    private static String pathWithinApplication(HttpServletRequest request) {
+        String uri = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        return contextPath.isEmpty() ? uri : uri.substring(contextPath.length());
+    }
+
+    // Only the path variable identifies a user, a header would let a client pick a fresh bucket for every request
+    private static String clientKey(RateLimitRules.Match match, HttpServletRequest request) {
+        if (match.rule().key() == RateLimitProperties.KeyType.USER && match.userId() != null && !match.userId().isEmpty()) {
+            return "user:" + match.userId();
+        }
+        return request.getRemoteAddr();
+    }
+}
@@ -0,0 +1,48 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Rate limits per endpoint, bound from {@code urlshortener.ratelimit.*}.
+ *
+ * @param enabled False to let every request through.
+ * @param mode Where the buckets live: in this instance, or in Redis so the limit holds across instances.
+ * @param maxClients How many clients per rule get a local bucket, the least recently seen are dropped first.
+ * @param idleTimeout How long a local bucket is kept after its client's last request.
+ * @param rules The limits, the first rule matching a request applies.
+ */
+@ConfigurationProperties("urlshortener.ratelimit")
+public record RateLimitProperties(@DefaultValue("true") boolean enabled,
+                                  @DefaultValue("local") Mode mode,
+                                  @DefaultValue("100000") long maxClients,
+                                  @DefaultValue("10m") Duration idleTimeout,
+                                  List<Rule> rules) {
+
+    public enum Mode { LOCAL, REDIS }
+
+    public enum KeyType { IP, USER }
+
+    /**
+     * @param name Shows up in metrics and Redis keys.
+     * @param method The HTTP method, or null for any.
+     * @param path A path pattern, e.g. {@code /api/users/{userId}/**}.
+     * @param key What a client is: its IP address, or its user id (the {userId} path variable, the IP address if the
+     *            path has none).
+     * @param capacity How many requests a client may burst.
+     * @param refillPerSecond How many requests per second a client may sustain.
+     */
+    public record Rule(String name,
+                       String method,
+                       String path,
+                       @DefaultValue("ip") KeyType key,
+                       long capacity,
+                       double refillPerSecond) {}
+
+    public RateLimitProperties {
+        rules = rules == null ? List.of() : rules;
+    }
+}
@@ -0,0 +1,73 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.List;
+
+/**
+ * The configured rules, parsed once, with the lookup from a request to the rule that applies to it.
+ */
+public final class RateLimitRules {
+
+    static final String USER_ID_VARIABLE = "userId";
+
+    /**
+     * A rule ready for the limiters. The bucket is a GCRA (generic cell rate algorithm) token bucket: one token
+     * per interval, up to burst worth of intervals banked.
+     */
+    public record Rule(String name, String method, PathPattern pattern, RateLimitProperties.KeyType key,
+                       long capacity, long intervalNanos) {
+
+        long burstNanos() {
+            return capacity * intervalNanos;
+        }
+    }
+
+    /**
+     * @param rule The rule that applies.
+     * @param userId The {userId} path variable, if the rule keys on users and the path has one.
+     */
+    public record Match(Rule rule, String userId) {}
+
+    private final Rule[] rules;
+
+    public RateLimitRules(List<RateLimitProperties.Rule> rules) {
+        PathPatternParser parser = PathPatternParser.defaultInstance;
+        this.rules = rules.stream()
+                .map(rule -> new Rule(rule.name(), rule.method(), parser.parse(rule.path()), rule.key(),
+                        Math.max(1, rule.capacity()), Math.max(1, Math.round(1e9 / rule.refillPerSecond()))))
+                .toArray(Rule[]::new);
+    }
+
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    /**
+     * @param method The request method.
+     * @param path The request path, without the context path.
+     * @return The first matching rule, or null if the request isn't limited.
+     */
+    public Match match(String method, String path) {
+        PathContainer container = null;
+        for (Rule rule : rules) {
+            if (rule.method() != null && !rule.method().equalsIgnoreCase(method)) {
+                continue;
+            }
+            if (container == null) {
+                container = PathContainer.parsePath(path);
+            }
+            if (rule.key() == RateLimitProperties.KeyType.USER) {
+                PathPattern.PathMatchInfo info = rule.pattern().matchAndExtract(container);
+                if (info != null) {
+                    return new Match(rule, info.getUriVariables().get(USER_ID_VARIABLE));
+                }
+            } else if (rule.pattern().matches(container)) {
+                return new Match(rule, null);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,16 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+/**
+ * Takes tokens from per-client buckets.
+ */
+public interface RateLimiter {
+
+    /**
+     * Takes one token from the client's bucket for the rule.
+     *
+     * @param rule The rule whose bucket to use.
+     * @param client The client key, e.g. an IP address.
+     * @return 0 if the request may go ahead, otherwise how many nanoseconds until the next token.
+     */
+    long tryAcquire(RateLimitRules.Rule rule, String client);
+}
@@ -0,0 +1,69 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buckets in Redis, shared by every instance. The same GCRA as {@link LocalRateLimiter}, run as a Lua script
+ * so reading and advancing the bucket is atomic, on Redis' clock so instances don't need synchronized clocks.
+ * Costs one round trip per limited request. If Redis can't be reached the request is let through.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.ratelimit.mode", havingValue = "redis")
+public class RedisRateLimiter implements RateLimiter {
+
+    static final String KEY_PREFIX = "ratelimit:";
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisRateLimiter.class);
+
+    // Returns 0 if the request may go ahead, otherwise the microseconds until the next token.
+    // The arrival time is formatted explicitly, Lua would otherwise store it in exponent notation and round it
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>("""
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000000 + tonumber(time[2])
+            local interval = tonumber(ARGV[1])
+            local burst = tonumber(ARGV[2])
+            local arrival = tonumber(redis.call('GET', KEYS[1]) or now)
+            local next = math.max(arrival, now) + interval
+            local wait = next - now - burst
+            if wait > 0 then
+                return wait
+            end
+            redis.call('SET', KEYS[1], string.format('%.0f', next), 'PX', math.ceil((next - now) / 1000))
+            return 0
+            """, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final Counter failures;
+
+    public RedisRateLimiter(RedisTemplate<String, String> redisTemplate, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.failures = Counter.builder("ratelimit.redis.failures")
+                .description("Requests let through because Redis couldn't be asked")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public long tryAcquire(RateLimitRules.Rule rule, String client) {
+        long intervalMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(rule.intervalNanos()));
+        try {
+            Long waitMicros = redisTemplate.execute(ACQUIRE, List.of(KEY_PREFIX + rule.name() + ":" + client),
+                    Long.toString(intervalMicros), Long.toString(intervalMicros * rule.capacity()));
+            return waitMicros == null ? 0 : TimeUnit.MICROSECONDS.toNanos(waitMicros);
+        } catch (RuntimeException e) {
+            failures.increment();
+            logger.debug("Rate limit check failed, letting the request through: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
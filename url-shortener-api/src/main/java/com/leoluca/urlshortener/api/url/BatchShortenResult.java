@@ -0,0 +1,32 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of the POST /shorten/batch response.
+ *
+ * @param index Position of the request in the submitted batch.
+ * @param longUrl The normalized long URL, or the submitted one if it could not be normalized.
+ * @param shortCode The short code, null if the request failed.
+ * @param status One of created, existing, invalid or failed.
+ * @param error Why the request failed, null otherwise.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchShortenResult(long index, String longUrl, String shortCode, String status, String error) {
+
+    static BatchShortenResult created(long index, String longUrl, String shortCode) {
+        return new BatchShortenResult(index, longUrl, shortCode, "created", null);
+    }
+
+    static BatchShortenResult existing(long index, String longUrl, String shortCode) {
+        return new BatchShortenResult(index, longUrl, shortCode, "existing", null);
+    }
+
+    static BatchShortenResult invalid(long index, String longUrl, String error) {
+        return new BatchShortenResult(index, longUrl, null, "invalid", error);
+    }
+
+    static BatchShortenResult failed(long index, String longUrl, String error) {
+        return new BatchShortenResult(index, longUrl, null, "failed", error);
+    }
+}
@@ -0,0 +1,344 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.leoluca.urlshortener.api.url.cache.ShortCodeFilter;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import com.leoluca.urlshortener.api.url.codegen.ShortCodeGenerator;
+import com.leoluca.urlshortener.api.url.dedup.LongUrlFilter;
+import com.leoluca.urlshortener.api.url.dedup.UrlDigest;
+import com.leoluca.urlshortener.api.url.exception.InvalidUrlException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@Service
+public class BatchShortenService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchShortenService.class);
+
+    private final URLRepository urlRepository;
+    private final URLService urlService;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final LongUrlFilter longUrlFilter;
+    private final ShortCodeFilter shortCodeFilter;
+    private final ShortUrlCache shortUrlCache;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public BatchShortenService(URLRepository urlRepository,
+                               URLService urlService,
+                               ShortCodeGenerator shortCodeGenerator,
+                               LongUrlFilter longUrlFilter,
+                               ShortCodeFilter shortCodeFilter,
+                               ShortUrlCache shortUrlCache,
+                               ObjectMapper objectMapper,
+                               @Value("${urlshortener.batch.chunk-size:1000}") int chunkSize) {
+        this.urlRepository = urlRepository;
+        this.urlService = urlService;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.longUrlFilter = longUrlFilter;
+        this.shortCodeFilter = shortCodeFilter;
+        this.shortUrlCache = shortUrlCache;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Shortens every request read from the input and writes one NDJSON result line per request to the output.
+     * Requests are handled chunk by chunk, and each chunk is written and flushed before the next one is read,
+     * so memory use doesn't grow with the size of the batch.
+     *
+     * @param input A JSON array or a newline-delimited stream of shorten requests.
+     * @param output Where the results are written, in the same order as the requests.
+     */
+    public void shortenAll(InputStream input, OutputStream output) throws IOException {
+        List<ShortenUrlRequest> chunk = new ArrayList<>(chunkSize);
+        long index = 0;
+
+        // readValues handles both a root-level array and whitespace separated root values
+        try (MappingIterator<ShortenUrlRequest> requests = objectMapper.readerFor(ShortenUrlRequest.class).readValues(input);
+             SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(output)) {
+            try {
+                while (requests.hasNextValue()) {
+                    chunk.add(requests.nextValue());
+                    if (chunk.size() == chunkSize) {
+                        write(writer, shortenChunk(chunk, index));
+                        index += chunk.size();
+                        chunk.clear();
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // Everything before the broken request still gets shortened, then we stop reading
+                logger.warn("Malformed batch input after {} requests: {}", index + chunk.size(), e.getOriginalMessage());
+                write(writer, shortenChunk(chunk, index));
+                index += chunk.size();
+                chunk.clear();
+                writer.write(BatchShortenResult.invalid(index, null, "Malformed input: " + e.getOriginalMessage()));
+                return;
+            }
+
+            if (!chunk.isEmpty()) {
+                write(writer, shortenChunk(chunk, index));
+            }
+        }
+    }
+
+    private void write(SequenceWriter writer, List<BatchShortenResult> results) throws IOException {
+        for (BatchShortenResult result : results) {
+            writer.write(result);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Shortens one chunk with a single $in lookup and a single insertMany.
+     *
+     * @param requests The requests in this chunk.
+     * @param firstIndex The batch index of the first request.
+     * @return One result per request, in request order.
+     */
+    private List<BatchShortenResult> shortenChunk(List<ShortenUrlRequest> requests, long firstIndex) {
+        int size = requests.size();
+        BatchShortenResult[] results = new BatchShortenResult[size];
+        String[] normalized = new String[size];
+        Instant now = Instant.now();
+
+        // Normalizing is pure CPU work, so spread it over the common pool
+        IntStream.range(0, size).parallel().forEach(i -> {
+            ShortenUrlRequest request = requests.get(i);
+            if (request.getUserId() == null) {
+                results[i] = BatchShortenResult.invalid(firstIndex + i, request.getLongUrl(), "User ID is required");
+                return;
+            }
+
+            try {
+                String longUrl = UrlNormalizer.normalize(request.getLongUrl());
+                if (!UrlNormalizer.isValid(longUrl)) {
+                    results[i] = BatchShortenResult.invalid(firstIndex + i, longUrl,
+                            "Invalid URL format. Please provide a valid HTTP/HTTPS URL.");
+                } else if (request.getExpiresAt() != null && !request.getExpiresAt().isAfter(now)) {
+                    results[i] = BatchShortenResult.invalid(firstIndex + i, longUrl, URLService.EXPIRY_IN_PAST);
+                } else {
+                    normalized[i] = longUrl;
+                }
+            } catch (InvalidUrlException e) {
+                results[i] = BatchShortenResult.invalid(firstIndex + i, request.getLongUrl(), e.getMessage());
+            }
+        });
+
+        // Expiring links are never deduplicated, each of them gets its own short code
+        Map<Integer, URL> expiring = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            Instant expiresAt = requests.get(i).getExpiresAt();
+            if (normalized[i] != null && expiresAt != null) {
+                URL url = new URL(normalized[i], null, shortCodeGenerator.nextShortCode(), requests.get(i).getUserId());
+                url.setExpiresAt(Date.from(expiresAt));
+                expiring.put(i, url);
+                normalized[i] = null;
+            }
+        }
+        if (!expiring.isEmpty()) {
+            insertExpiring(expiring, results, firstIndex);
+        }
+
+        Map<String, byte[]> digests = new HashMap<>();
+        for (String longUrl : normalized) {
+            if (longUrl != null) {
+                digests.computeIfAbsent(longUrl, UrlDigest::of);
+            }
+        }
+        if (digests.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        // Only URLs the Bloom filter can't rule out go into the $in lookup
+        Map<String, byte[]> candidates = new HashMap<>();
+        digests.forEach((longUrl, digest) -> {
+            if (longUrlFilter.mightContain(digest)) {
+                candidates.put(longUrl, digest);
+            }
+        });
+        Map<String, String> existing = candidates.isEmpty() ? new HashMap<>() : findShortCodes(candidates);
+
+        // The first request for a URL that isn't stored yet creates it, later duplicates in the chunk reuse it
+        Map<String, URL> created = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            String longUrl = normalized[i];
+            if (longUrl != null && !existing.containsKey(longUrl) && !created.containsKey(longUrl)) {
+                created.put(longUrl, new URL(longUrl, digests.get(longUrl), shortCodeGenerator.nextShortCode(),
+                        requests.get(i).getUserId()));
+            }
+        }
+
+        if (!created.isEmpty()) {
+            insertAll(created, existing);
+        }
+
+        Set<String> reported = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            String longUrl = normalized[i];
+            if (longUrl == null) {
+                continue;
+            }
+
+            long index = firstIndex + i;
+            URL newUrl = created.get(longUrl);
+            if (newUrl != null && reported.add(longUrl)) {
+                results[i] = BatchShortenResult.created(index, longUrl, newUrl.getShortCode());
+            } else if (newUrl != null) {
+                results[i] = BatchShortenResult.existing(index, longUrl, newUrl.getShortCode());
+            } else if (existing.containsKey(longUrl)) {
+                results[i] = BatchShortenResult.existing(index, longUrl, existing.get(longUrl));
+            } else {
+                results[i] = BatchShortenResult.failed(index, longUrl, "Could not shorten the URL");
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Inserts the new URLs with one insertMany. If that fails (e.g. another request stored one of the URLs in the
+     * meantime) whatever did make it in is looked up again and the rest goes through the regular single insert path.
+     * URLs that end up stored by someone else are moved from {@code created} to {@code existing}.
+     */
+    private void insertAll(Map<String, URL> created, Map<String, String> existing) {
+        try {
+            urlRepository.insert(created.values());
+            created.values().forEach(this::issued);
+            writeThrough(created.values());
+            return;
+        } catch (DataAccessException e) {
+            logger.warn("Batch insert of {} URLs failed, falling back to single inserts: {}", created.size(), e.getMessage());
+        }
+
+        Map<String, byte[]> digests = new HashMap<>();
+        created.values().forEach(url -> digests.put(url.getLongUrl(), url.getUrlHash()));
+        Map<String, String> stored = findShortCodes(digests);
+        List<URL> insertedHere = new ArrayList<>();
+        for (URL url : List.copyOf(created.values())) {
+            String longUrl = url.getLongUrl();
+            String shortCode = stored.get(longUrl);
+            if (shortCode == null) {
+                try {
+                    url.setShortCode(urlService.saveShortUrl(longUrl, url.getUserId()));
+                } catch (RuntimeException e) {
+                    created.remove(longUrl);
+                }
+                continue;
+            }
+
+            if (!shortCode.equals(url.getShortCode())) {
+                created.remove(longUrl);
+                existing.put(longUrl, shortCode);
+            } else {
+                issued(url);
+                insertedHere.add(url);
+            }
+        }
+        // The ones that went through saveShortUrl were written through there
+        writeThrough(insertedHere);
+    }
+
+    /**
+     * Inserts links with an expiry with one insertMany. If that fails, the ones that did make it in are looked up
+     * and the rest goes through the regular single insert path.
+     *
+     * @param urls The new links by their position in the chunk.
+     * @param results Where the result for each link is stored.
+     * @param firstIndex The batch index of the first request in the chunk.
+     */
+    private void insertExpiring(Map<Integer, URL> urls, BatchShortenResult[] results, long firstIndex) {
+        Set<String> stored;
+        try {
+            urlRepository.insert(urls.values());
+            stored = urls.values().stream().map(URL::getShortCode).collect(Collectors.toSet());
+        } catch (DataAccessException e) {
+            logger.warn("Batch insert of {} expiring URLs failed, falling back to single inserts: {}", urls.size(), e.getMessage());
+            List<String> shortCodes = urls.values().stream().map(URL::getShortCode).toList();
+            stored = urlRepository.findAllByShortCodeIn(shortCodes).stream().map(URL::getShortCode).collect(Collectors.toSet());
+        }
+
+        List<URL> insertedHere = new ArrayList<>();
+        for (Map.Entry<Integer, URL> entry : urls.entrySet()) {
+            long index = firstIndex + entry.getKey();
+            URL url = entry.getValue();
+            if (stored.contains(url.getShortCode())) {
+                shortCodeFilter.add(url.getShortCode());
+                insertedHere.add(url);
+                results[entry.getKey()] = BatchShortenResult.created(index, url.getLongUrl(), url.getShortCode());
+                continue;
+            }
+
+            try {
+                String shortCode = urlService.saveShortUrl(url.getLongUrl(), url.getUserId(), url.getExpiresAt().toInstant());
+                results[entry.getKey()] = BatchShortenResult.created(index, url.getLongUrl(), shortCode);
+            } catch (RuntimeException e) {
+                results[entry.getKey()] = BatchShortenResult.failed(index, url.getLongUrl(), "Could not shorten the URL");
+            }
+        }
+        writeThrough(insertedHere);
+    }
+
+    private void issued(URL url) {
+        longUrlFilter.add(url.getUrlHash());
+        shortCodeFilter.add(url.getShortCode());
+    }
+
+    // Like saveShortUrl, so other instances can resolve the new codes before their short code filter catches up
+    private void writeThrough(Collection<URL> urls) {
+        Map<String, String> mappings = new HashMap<>();
+        for (URL url : urls) {
+            mappings.put(url.getShortCode(), ShortUrlCache.cacheValue(url));
+        }
+        try {
+            shortUrlCache.putAll(mappings, null);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to write {} new short codes to the cache: {}", mappings.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Looks up the short codes of the URLs that are already stored, with a single $in on the digest.
+     *
+     * @param digests The normalized long URLs to look up with their digests.
+     * @return The short code per stored long URL.
+     */
+    private Map<String, String> findShortCodes(Map<String, byte[]> digests) {
+        List<URL> stored = new ArrayList<>(urlRepository.findAllByUrlHashIn(digests.values()));
+        if (!longUrlFilter.isLoaded()) {
+            // Old documents may not have their digest backfilled yet
+            stored.addAll(urlRepository.findAllByLongUrlInAndExpiresAtIsNull(digests.keySet()));
+        }
+
+        Map<String, String> shortCodes = new HashMap<>();
+        for (URL url : stored) {
+            // A document with one of our digests but a different URL is a digest collision, not a match
+            if (digests.containsKey(url.getLongUrl())) {
+                shortCodes.putIfAbsent(url.getLongUrl(), url.getShortCode());
+            }
+        }
+        return shortCodes;
+    }
+}
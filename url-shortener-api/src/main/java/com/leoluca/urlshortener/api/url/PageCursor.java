@@ -0,0 +1,66 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.leoluca.urlshortener.api.url.exception.InvalidCursorException;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+
+/**
+ * Keyset pagination cursors. Instead of skipping N documents, each page continues right after the last document
+ * of the previous one, so every page costs the same no matter how deep into the collection it is.
+ */
+final class PageCursor {
+
+    /**
+     * Where a listing ordered by creation time (then id) continues.
+     */
+    record Position(Date createdAt, String id) {}
+
+    private PageCursor() {}
+
+    /**
+     * @param last The last URL of the current page.
+     * @return A cursor for the next page of a listing in id order.
+     */
+    static String byId(URL last) {
+        return last.getId();
+    }
+
+    /**
+     * @param last The last URL of the current page.
+     * @return A cursor for the next page of a listing in creation time order.
+     */
+    static String byCreatedAt(URL last) {
+        return last.getCreatedAt().getTime() + "_" + last.getId();
+    }
+
+    /**
+     * @param cursor A cursor from {@link #byId(URL)}.
+     * @return The id the next page starts after.
+     */
+    static String parseId(String cursor) {
+        if (!ObjectId.isValid(cursor)) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+        return cursor;
+    }
+
+    /**
+     * @param cursor A cursor from {@link #byCreatedAt(URL)}.
+     * @return The position the next page starts after.
+     */
+    static Position parseCreatedAt(String cursor) {
+        int separator = cursor.indexOf('_');
+        if (separator < 0) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+
+        Date createdAt;
+        try {
+            createdAt = new Date(Long.parseLong(cursor.substring(0, separator)));
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+        return new Position(createdAt, parseId(cursor.substring(separator + 1)));
+    }
+}
@@ -0,0 +1,32 @@
+package com.leoluca.urlshortener.api.url;
+
+/**
+ * Outcome of resolving a short code. Unknown and expired codes are expected outcomes, not errors,
+ * so they are answered with 404 and 410 instead of exceptions.
+ *
+ * @param status Whether the code resolved, never existed or has expired.
+ * @param longUrl The long URL to redirect to, null unless the status is FOUND.
+ */
+public record Resolution(Status status, String longUrl) {
+
+    public enum Status { FOUND, NOT_FOUND, GONE }
+
+    private static final Resolution NOT_FOUND = new Resolution(Status.NOT_FOUND, null);
+    private static final Resolution GONE = new Resolution(Status.GONE, null);
+
+    public static Resolution found(String longUrl) {
+        return new Resolution(Status.FOUND, longUrl);
+    }
+
+    public static Resolution notFound() {
+        return NOT_FOUND;
+    }
+
+    public static Resolution gone() {
+        return GONE;
+    }
+
+    public boolean isFound() {
+        return status == Status.FOUND;
+    }
+}
@@ -1,9 +1,12 @@
 package com.leoluca.urlshortener.api.url;
 
+import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import org.bson.types.ObjectId;
 
+import java.time.Instant;
+
 public class ShortenUrlRequest {
     @NotBlank(message = "URL cannot be blank")
     private String longUrl;
@@ -11,6 +14,10 @@ public class ShortenUrlRequest {
     @NotNull(message = "User ID is required")
     private ObjectId userId;
 
+    // Optional, the short URL answers 410 Gone from then on
+    @Future(message = "The expiry has to be in the future.")
+    private Instant expiresAt;
+
     public String getLongUrl() {
         return longUrl;
     }
@@ -18,4 +25,8 @@ public class ShortenUrlRequest {
     public ObjectId getUserId() {
         return userId;
     }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
 }
\ No newline at end of file
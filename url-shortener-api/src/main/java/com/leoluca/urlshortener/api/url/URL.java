@@ -1,5 +1,7 @@
 package com.leoluca.urlshortener.api.url;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.leoluca.urlshortener.api.url.dedup.UrlDigest;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -11,16 +13,26 @@ public class URL {
 
     @Id
     private String id; // mongodb ObjectId
-    private int hitCount = 0; // Number of times this URL has been accessed
+    private long hitCount = 0; // Number of times this URL has been accessed
     private String longUrl; // The original URL
+    // 128-bit digest of longUrl, the dedup key. Documents from before it existed get it backfilled
+    @JsonIgnore
+    private byte[] urlHash;
     private String shortCode; // The generated 7-character short code
     private ObjectId userId; // objectId of the user who created this short URL
     private Date createdAt;
+    // When the link stops resolving, null for links that never expire. Expiring links have no digest and are never deduplicated
+    private Date expiresAt;
 
     public URL() {}
 
     public URL(String longUrl, String shortCode, ObjectId userId) {
+        this(longUrl, UrlDigest.of(longUrl), shortCode, userId);
+    }
+
+    public URL(String longUrl, byte[] urlHash, String shortCode, ObjectId userId) {
         this.longUrl = longUrl;
+        this.urlHash = urlHash;
         this.shortCode = shortCode;
         this.userId = userId;
         this.createdAt = new Date();
@@ -41,6 +53,14 @@ public class URL {
         this.longUrl = longUrl;
     }
 
+    public byte[] getUrlHash() {
+        return urlHash;
+    }
+
+    public void setUrlHash(byte[] urlHash) {
+        this.urlHash = urlHash;
+    }
+
     public String getShortCode() {
         return shortCode;
     }
@@ -65,7 +85,27 @@ public class URL {
         this.createdAt = createdAt;
     }
 
-    public int getHitCount() {
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @param nowMillis The current time in epoch milliseconds.
+     * @return True if the link has an expiry and it has passed.
+     */
+    public boolean isExpiredAt(long nowMillis) {
+        return expiresAt != null && expiresAt.getTime() <= nowMillis;
+    }
+
+    public long getHitCount() {
         return hitCount;
     }
+
+    public void setHitCount(long hitCount) {
+        this.hitCount = hitCount;
+    }
 }
\ No newline at end of file
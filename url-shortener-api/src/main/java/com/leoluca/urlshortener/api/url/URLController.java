@@ -1,60 +1,169 @@
 package com.leoluca.urlshortener.api.url;
 
+import com.leoluca.urlshortener.api.url.analytics.ClickAnalytics;
+import com.leoluca.urlshortener.api.url.analytics.TrendingLinks;
+import com.leoluca.urlshortener.api.url.analytics.TrendingTracker;
+import com.leoluca.urlshortener.api.url.analytics.TrendingWindow;
+import com.leoluca.urlshortener.api.url.analytics.UrlStats;
+import com.leoluca.urlshortener.api.url.analytics.UrlStatsService;
+import com.leoluca.urlshortener.api.url.exception.InvalidStatsQueryException;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/urls")
 public class URLController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
     private final URLService urlService;
+    private final BatchShortenService batchShortenService;
+    private final ClickAnalytics clickAnalytics;
+    private final UrlStatsService urlStatsService;
+    private final TrendingTracker trendingTracker;
 
-    public URLController(URLService urlService) {
+    public URLController(URLService urlService, BatchShortenService batchShortenService,
+                         ClickAnalytics clickAnalytics, UrlStatsService urlStatsService,
+                         TrendingTracker trendingTracker) {
         this.urlService = urlService;
+        this.batchShortenService = batchShortenService;
+        this.clickAnalytics = clickAnalytics;
+        this.urlStatsService = urlStatsService;
+        this.trendingTracker = trendingTracker;
     }
 
-   /**
-     * GET / - Retrieve all URLs.
+    /**
+     * GET / - Retrieve all URLs, one page at a time.
      *
-     * @return A list of all URLs.
+     * @param cursor The X-Next-Cursor header of the previous page, omit it for the first page.
+     * @param limit The maximum number of URLs per page.
+     * @return A page of URLs, with the cursor for the next page in the X-Next-Cursor header.
      */
     @GetMapping
-    public ResponseEntity<Iterable<URL>> getAllUrls() {
-        Iterable<URL> urls = urlService.getAllUrls();
-        return ResponseEntity.ok(urls);
+    public ResponseEntity<List<URL>> getAllUrls(@RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "100") int limit) {
+        return toResponse(urlService.getUrls(cursor, limit));
+    }
+
+    /**
+     * GET /export - Stream all URLs as newline-delimited JSON.
+     *
+     * @return Every URL, one JSON document per line.
+     */
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAllUrls() {
+        StreamingResponseBody urls = output -> urlService.exportUrls(null, output);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(urls);
+    }
+
+    /**
+     * GET /trending - The most clicked links right now, answered from memory without touching the database.
+     *
+     * @param window 5m, 1h or 24h.
+     * @param limit The maximum number of links.
+     * @return The most clicked links within the window, across all instances.
+     */
+    @GetMapping("/trending")
+    public ResponseEntity<TrendingLinks> getTrending(@RequestParam(defaultValue = "1h") String window,
+                                                     @RequestParam(defaultValue = "10") int limit) {
+        TrendingWindow trendingWindow = TrendingWindow.fromLabel(window);
+        if (trendingWindow == null) {
+            throw new InvalidStatsQueryException("Unknown window " + window + ", use 5m, 1h or 24h.");
+        }
+        return ResponseEntity.ok(trendingTracker.top(trendingWindow, limit));
+    }
+
+    /**
+     * Turns a page into a response, the body stays a plain JSON array so existing clients keep working.
+     *
+     * @param page The page to return.
+     * @return The URLs on the page, plus the X-Next-Cursor header if there are more.
+     */
+    public static ResponseEntity<List<URL>> toResponse(UrlPage page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.urls());
     }
 
     /**
      * POST /shorten - Shortens a long URL.
      *
-     * @param request The request containing the long URL.
+     * @param request The request containing the long URL and optionally when it expires.
      * @return The generated short code.
      */
     @PostMapping("/shorten")
     public ResponseEntity<String> shortenUrl(@Valid @RequestBody ShortenUrlRequest request) {
-        String shortCode = urlService.saveShortUrl(request.getLongUrl(), request.getUserId());
+        String shortCode = urlService.saveShortUrl(request.getLongUrl(), request.getUserId(), request.getExpiresAt());
         return ResponseEntity.ok("swisscom.com/" +shortCode);
     }
 
+    /**
+     * POST /shorten/batch - Shortens a batch of long URLs.
+     *
+     * @param body A JSON array or NDJSON stream of shorten requests, read incrementally.
+     * @return One NDJSON result line per request, streamed back as each chunk is done.
+     */
+    @PostMapping(value = "/shorten/batch",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> shortenUrls(InputStream body) {
+        StreamingResponseBody results = output -> batchShortenService.shortenAll(body, output);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(results);
+    }
+
     /**
      * GET /{shortCode} - Resolves a short code to its long URL.
      *
      * @param shortCode The short code from the request path.
-     * @return A redirect to the long URL.
+     * @param referrer The Referer header, counted in the click stats.
+     * @param userAgent The User-Agent header, counted in the click stats.
+     * @return A redirect to the long URL, 404 for unknown and 410 for expired short codes, 503 while the backends
+     * are unavailable and no stale copy is cached.
      */
     @GetMapping("/{shortCode}")
-    public ResponseEntity<Void> resolveShortUrl(@PathVariable String shortCode) {
-        try {
-            String longUrl = urlService.resolveShortCode(shortCode);
-
-            // Return an HTTP 302 redirect to the original URL
-            return ResponseEntity.status(HttpStatus.FOUND) // For some reason this returns 200
-                    .header("Location", longUrl)
-                    .build();
-        } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
-        }
+    public ResponseEntity<Void> resolveShortUrl(@PathVariable String shortCode,
+                                                @RequestHeader(value = HttpHeaders.REFERER, required = false) String referrer,
+                                                @RequestHeader(value = HttpHeaders.USER_AGENT, required = false) String userAgent) {
+        // Failures go to the GlobalExceptionHandler, a backend outage must not look like an unknown code
+        Resolution resolution = urlService.resolveShortCode(shortCode);
+        return switch (resolution.status()) {
+            case FOUND -> {
+                clickAnalytics.record(shortCode, referrer, userAgent);
+                // Return an HTTP 302 redirect to the original URL
+                yield ResponseEntity.status(HttpStatus.FOUND) // For some reason this returns 200
+                        .header("Location", resolution.longUrl())
+                        .build();
+            }
+            case GONE -> ResponseEntity.status(HttpStatus.GONE).build();
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+        };
+    }
+
+    /**
+     * GET /{shortCode}/stats - Clicks on a short URL over time.
+     *
+     * @param shortCode The short code from the request path.
+     * @param granularity The bucket size: minute, hour or day.
+     * @param from The start of the range as an ISO-8601 instant, defaults to a window that fits the granularity.
+     * @param to The end of the range as an ISO-8601 instant, defaults to now.
+     * @return Clicks per bucket, with referrer and user agent breakdowns for hour and day buckets.
+     */
+    @GetMapping("/{shortCode}/stats")
+    public ResponseEntity<UrlStats> getStats(@PathVariable String shortCode,
+                                             @RequestParam(defaultValue = "hour") String granularity,
+                                             @RequestParam(required = false) Instant from,
+                                             @RequestParam(required = false) Instant to) {
+        return ResponseEntity.ok(urlStatsService.getStats(shortCode, granularity, from, to));
     }
 }
\ No newline at end of file
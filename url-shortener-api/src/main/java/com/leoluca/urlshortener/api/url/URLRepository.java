@@ -1,24 +1,24 @@
 package com.leoluca.urlshortener.api.url;
 
-import org.bson.types.ObjectId;
 import org.springframework.data.mongodb.repository.MongoRepository;
-import org.springframework.data.mongodb.repository.Query;
-import org.springframework.data.mongodb.repository.Update;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
-public interface URLRepository extends MongoRepository<URL, String> {
+public interface URLRepository extends MongoRepository<URL, String>, URLRepositoryCustom {
 
     Optional<URL> findByShortCode(String shortCode);
 
-    Optional<URL> findByLongUrl(String longUrl);
+    Optional<URL> findByUrlHash(byte[] urlHash);
 
-    List<URL> findByUserId(ObjectId userId);
+    // Only for documents that don't have their digest backfilled yet, expiring links never get one
+    Optional<URL> findByLongUrlAndExpiresAtIsNull(String longUrl);
 
-    List<URL> findTop10ByOrderByHitCountDesc();
+    List<URL> findAllByShortCodeIn(Collection<String> shortCodes);
 
-    @Query("{ 'shortCode': ?0 }")
-    @Update("{ '$inc': { 'hitCount': 1 } }")
-    void incrementHitCount(String shortCode);
-}
\ No newline at end of file
+    List<URL> findAllByUrlHashIn(Collection<byte[]> urlHashes);
+
+    // Only for documents that don't have their digest backfilled yet, expiring links never get one
+    List<URL> findAllByLongUrlInAndExpiresAtIsNull(Collection<String> longUrls);
+}
@@ -0,0 +1,77 @@
+package com.leoluca.urlshortener.api.url;
+
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The queries that don't fit a derived repository method: keyset pages, cursors over large result sets and bulk
+ * updates. Streams hold a database cursor (or a segment of the embedded log) open, close them when done.
+ */
+public interface URLRepositoryCustom {
+
+    /**
+     * @param userId The user whose URLs to list.
+     * @param afterCreatedAt The creation time of the last URL of the previous page, or null for the first page.
+     * @param afterId The id of the last URL of the previous page, or null for the first page.
+     * @param limit The maximum number of URLs to return.
+     * @return The user's URLs ordered by creation time and id, starting right after the given position.
+     */
+    List<URL> findPageByUserId(ObjectId userId, Date afterCreatedAt, String afterId, int limit);
+
+    /**
+     * @param afterId The id of the last URL of the previous page, or null for the first page.
+     * @param limit The maximum number of URLs to return.
+     * @return URLs in id (insertion) order, starting right after the given id.
+     */
+    List<URL> findPage(String afterId, int limit);
+
+    /**
+     * @param userId The user whose URLs to export, or null for every URL.
+     * @return Every matching URL, fetched in batches.
+     */
+    Stream<URL> streamForExport(ObjectId userId);
+
+    /**
+     * @param limit The number of URLs to return.
+     * @return The most clicked URLs, most clicked first, with only their short and long URL and expiry set.
+     */
+    Stream<URL> streamMostClicked(int limit);
+
+    /**
+     * @param since Only URLs inserted at or after this time (give or take a second), or null for every URL.
+     * @return The matching URLs with only their short code set.
+     */
+    Stream<URL> streamShortCodes(Date since);
+
+    /**
+     * @param since Only URLs inserted at or after this time (give or take a second), or null for every URL.
+     * @return The matching URLs with only their short and long URL and expiry set.
+     */
+    Stream<URL> streamMappings(Date since);
+
+    /**
+     * @return Every URL that never expires, with only its id, long URL and digest set.
+     */
+    Stream<URL> streamDigests();
+
+    /**
+     * Writes back digests computed for URLs stored before digests existed.
+     *
+     * @param urlHashes The digest per URL id.
+     * @return The number of URLs that couldn't get their digest, because another URL already has it.
+     */
+    int setUrlHashes(Map<String, byte[]> urlHashes);
+
+    /**
+     * Adds hits to the stored hit counts. Codes that don't exist (anymore) are skipped.
+     *
+     * @param deltas The hits to add per short code.
+     * @return The short codes whose update failed and should be retried.
+     */
+    Set<String> incrementHitCounts(Map<String, Long> deltas);
+}
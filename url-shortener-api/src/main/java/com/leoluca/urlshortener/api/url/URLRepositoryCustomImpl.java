@@ -0,0 +1,151 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * MongoDB implementation of {@link URLRepositoryCustom}, picked up by Spring Data as a repository fragment.
+ * The indexes these queries rely on are created and checked by MongoIndexBootstrap.
+ */
+class URLRepositoryCustomImpl implements URLRepositoryCustom {
+
+    private static final Logger logger = LoggerFactory.getLogger(URLRepositoryCustomImpl.class);
+    private static final int CURSOR_BATCH_SIZE = 1000;
+    private static final int EXPORT_BATCH_SIZE = 500;
+    // Ordering for listings by creation time, _id breaks ties between URLs created in the same millisecond
+    private static final Sort BY_CREATED_AT = Sort.by(Sort.Order.asc("createdAt"), Sort.Order.asc("_id"));
+    private static final Sort BY_ID = Sort.by(Sort.Order.asc("_id"));
+
+    private final MongoTemplate mongoTemplate;
+
+    URLRepositoryCustomImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<URL> findPageByUserId(ObjectId userId, Date afterCreatedAt, String afterId, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (afterCreatedAt != null) {
+            criteria = criteria.orOperator(
+                    Criteria.where("createdAt").gt(afterCreatedAt),
+                    Criteria.where("createdAt").is(afterCreatedAt).and("_id").gt(new ObjectId(afterId)));
+        }
+        return mongoTemplate.find(Query.query(criteria).with(BY_CREATED_AT).limit(limit), URL.class);
+    }
+
+    @Override
+    public List<URL> findPage(String afterId, int limit) {
+        Query query = afterId == null ? new Query() : Query.query(Criteria.where("_id").gt(new ObjectId(afterId)));
+        return mongoTemplate.find(query.with(BY_ID).limit(limit), URL.class);
+    }
+
+    @Override
+    public Stream<URL> streamForExport(ObjectId userId) {
+        Query query = userId == null ? new Query() : Query.query(Criteria.where("userId").is(userId));
+        return mongoTemplate.stream(query.cursorBatchSize(EXPORT_BATCH_SIZE), URL.class);
+    }
+
+    @Override
+    public Stream<URL> streamMostClicked(int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "hitCount")).limit(limit)
+                .cursorBatchSize(Math.min(limit, CURSOR_BATCH_SIZE));
+        query.fields().include("shortCode").include("longUrl").include("expiresAt");
+        return mongoTemplate.stream(query, URL.class);
+    }
+
+    @Override
+    public Stream<URL> streamShortCodes(Date since) {
+        Query query = insertedSince(since);
+        query.fields().include("shortCode");
+        return mongoTemplate.stream(query, URL.class);
+    }
+
+    @Override
+    public Stream<URL> streamMappings(Date since) {
+        Query query = insertedSince(since);
+        query.fields().include("shortCode").include("longUrl").include("expiresAt");
+        return mongoTemplate.stream(query, URL.class);
+    }
+
+    @Override
+    public Stream<URL> streamDigests() {
+        // Expiring links are never deduplicated, so they don't get a digest either
+        Query query = Query.query(Criteria.where("expiresAt").exists(false)).cursorBatchSize(CURSOR_BATCH_SIZE);
+        query.fields().include("longUrl").include("urlHash");
+        return mongoTemplate.stream(query, URL.class);
+    }
+
+    @Override
+    public int setUrlHashes(Map<String, byte[]> urlHashes) {
+        if (urlHashes.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, URL.class);
+        urlHashes.forEach((id, urlHash) ->
+                bulk.updateOne(Query.query(Criteria.where("_id").is(id)), new Update().set("urlHash", urlHash)));
+        try {
+            bulk.execute();
+            return 0;
+        } catch (BulkOperationException e) {
+            // Duplicates stored before the unique index existed, only the first of them gets the digest
+            logger.debug("Digest backfill failed for {} URLs: {}", e.getErrors().size(), e.getErrors().getFirst().getMessage());
+            return e.getErrors().size();
+        }
+    }
+
+    @Override
+    public Set<String> incrementHitCounts(Map<String, Long> deltas) {
+        if (deltas.isEmpty()) {
+            return Set.of();
+        }
+
+        List<String> shortCodes = new ArrayList<>(deltas.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, URL.class);
+        deltas.forEach((shortCode, delta) -> {
+            shortCodes.add(shortCode);
+            bulk.updateOne(Query.query(Criteria.where("shortCode").is(shortCode)), new Update().inc("hitCount", delta));
+        });
+
+        try {
+            bulk.execute();
+            return Set.of();
+        } catch (BulkOperationException e) {
+            // Unordered, so everything except the failed updates went through
+            Set<String> failed = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failed.add(shortCodes.get(error.getIndex()));
+            }
+            return failed;
+        }
+    }
+
+    /**
+     * ObjectIds start with their creation time in seconds, so a time range is a range scan on the _id index.
+     */
+    private static Query insertedSince(Date since) {
+        Query query = new Query();
+        if (since != null) {
+            ObjectId from = new ObjectId(String.format("%08x%016x", since.getTime() / 1000, 0));
+            query.addCriteria(Criteria.where("_id").gte(from));
+        }
+        return query.cursorBatchSize(CURSOR_BATCH_SIZE);
+    }
+}
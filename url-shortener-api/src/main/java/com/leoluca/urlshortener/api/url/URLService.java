@@ -1,18 +1,39 @@
 package com.leoluca.urlshortener.api.url;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.leoluca.urlshortener.api.url.accesslog.ResolveAccessLog;
+import com.leoluca.urlshortener.api.url.cache.ShortCodeFilter;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import com.leoluca.urlshortener.api.url.codegen.ShortCodeGenerator;
+import com.leoluca.urlshortener.api.url.dedup.LongUrlFilter;
+import com.leoluca.urlshortener.api.url.dedup.UrlDigest;
 import com.leoluca.urlshortener.api.url.exception.*;
+import com.leoluca.urlshortener.api.url.hits.HitCountBuffer;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuards;
+import com.leoluca.urlshortener.api.url.warmup.HotSetTracker;
+import com.leoluca.urlshortener.api.util.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.bson.types.ObjectId;
-import org.springframework.boot.context.event.ApplicationReadyEvent;
-import org.springframework.context.event.EventListener;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
-import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 @Service
 public class URLService {
@@ -20,29 +41,83 @@ public class URLService {
     private static final Logger logger = LoggerFactory.getLogger(URLService.class);
 
     private final URLRepository urlRepository;
-    private final RedisTemplate<String, String> redisTemplate;
-    private static final String BASE62_CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private final ShortUrlCache shortUrlCache;
+    private final ShortCodeFilter shortCodeFilter;
+    private final HitCountBuffer hitCountBuffer;
+    private final HotSetTracker hotSetTracker;
+    private final ShortCodeGenerator shortCodeGenerator;
+    private final LongUrlFilter longUrlFilter;
+    private final ObjectMapper objectMapper;
+    private final ResolveAccessLog accessLog;
+    private final BackendGuards backends;
+    private final int maxPageSize;
+    // So a popular code that just dropped out of the cache doesn't send every concurrent request to MongoDB
+    private final SingleFlight<String, Resolution> cacheFills = new SingleFlight<>();
+    private final Timer resolvedTimer;
+    private final Timer notFoundTimer;
+    private final Timer goneTimer;
+    private final Timer unavailableTimer;
+    private final Timer resolveFailedTimer;
+    private final Counter staleResolves;
+    private final Timer saveTimer;
+    private final Timer encodeTimer;
+    private final Counter shortCodeCollisions;
+    private final Counter digestCollisions;
 
-    public URLService(URLRepository urlRepository, RedisTemplate<String, String> redisTemplate) {
+    // Generated codes never collide with each other, only with codes left over from the old random generator
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+    static final String EXPIRY_IN_PAST = "The expiry has to be in the future.";
+
+    public URLService(URLRepository urlRepository, ShortUrlCache shortUrlCache, ShortCodeFilter shortCodeFilter,
+                      HitCountBuffer hitCountBuffer, HotSetTracker hotSetTracker, ShortCodeGenerator shortCodeGenerator,
+                      LongUrlFilter longUrlFilter, ObjectMapper objectMapper, ResolveAccessLog accessLog,
+                      BackendGuards backends, MeterRegistry meterRegistry,
+                      @Value("${urlshortener.listing.max-page-size:1000}") int maxPageSize) {
         this.urlRepository = urlRepository;
-        this.redisTemplate = redisTemplate;
+        this.shortUrlCache = shortUrlCache;
+        this.shortCodeFilter = shortCodeFilter;
+        this.hitCountBuffer = hitCountBuffer;
+        this.hotSetTracker = hotSetTracker;
+        this.shortCodeGenerator = shortCodeGenerator;
+        this.longUrlFilter = longUrlFilter;
+        this.objectMapper = objectMapper;
+        this.accessLog = accessLog;
+        this.backends = backends;
+        this.maxPageSize = maxPageSize;
+
+        // Percentile histograms so p99 can be aggregated across instances in Prometheus
+        this.resolvedTimer = resolveTimer(meterRegistry, "found");
+        this.notFoundTimer = resolveTimer(meterRegistry, "not_found");
+        this.goneTimer = resolveTimer(meterRegistry, "gone");
+        this.unavailableTimer = resolveTimer(meterRegistry, "unavailable");
+        this.resolveFailedTimer = resolveTimer(meterRegistry, "error");
+        this.staleResolves = Counter.builder("shorturl.resolve.stale")
+                .description("Resolves answered from the stale copy of L1 because Redis and the database were unavailable")
+                .register(meterRegistry);
+        this.saveTimer = Timer.builder("shorturl.save")
+                .description("Time to shorten a URL, including the dedup lookup")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.encodeTimer = Timer.builder("shorturl.encode")
+                .description("Time to generate a short code")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.shortCodeCollisions = Counter.builder("shorturl.collisions")
+                .description("Inserts that failed because the short code or the URL digest was already taken")
+                .tag("kind", "short_code")
+                .register(meterRegistry);
+        this.digestCollisions = Counter.builder("shorturl.collisions")
+                .description("Inserts that failed because the short code or the URL digest was already taken")
+                .tag("kind", "digest")
+                .register(meterRegistry);
     }
 
-    // This annotation guarantees that the method will be executed after the application context has been initialized
-    // PostConstruct would typically run midway through the startup process and therefore may cause issues.
-    @EventListener(ApplicationReadyEvent.class)
-    public void preloadCache() {
-        logger.info("Preloading cache with top 10 most clicked URLs...");
-        try {
-            List<URL> urls = urlRepository.findTop10ByOrderByHitCountDesc(); // Get the top 10 most clicked URLs
-            for (URL url : urls) {
-                String redisKey = "shortUrls::" + url.getShortCode();
-                redisTemplate.opsForValue().set(redisKey, url.getLongUrl());
-                logger.info("Cached URL: {}", redisKey);
-            }
-        } catch (Exception e) {
-            logger.error("Failed to preload cache: {}", e.getMessage(), e);
-        }
+    private static Timer resolveTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("shorturl.resolve")
+                .description("Time to resolve a short code, the count per result includes not found and expired codes")
+                .tag("result", result)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
     /**
@@ -52,153 +127,257 @@ public class URLService {
      * @return The generated short code.
      */
     public String saveShortUrl(String longUrl, ObjectId userId) {
+        return saveShortUrl(longUrl, userId, null);
+    }
+
+    /**
+     * Saves a new URL in the database and returns the generated short code.
+     * A URL that never expires gets the short code it already has, if it was shortened before. A URL with an expiry
+     * always gets a new short code.
+     *
+     * @param longUrl The long URL to shorten.
+     * @param userId The ID of the user who created the short URL.
+     * @param expiresAt When the short URL stops resolving, or null to keep it forever.
+     * @return The generated short code.
+     */
+    public String saveShortUrl(String longUrl, ObjectId userId, Instant expiresAt) {
+        Timer.Sample sample = Timer.start();
         try {
             // Normalize the URL
-            longUrl = normalizeUrl(longUrl);
+            longUrl = UrlNormalizer.normalize(longUrl);
 
             // Validate URL before processing
-            if (!isValidUrl(longUrl)) {
+            if (!UrlNormalizer.isValid(longUrl)) {
                 throw new InvalidUrlException("Invalid URL format. Please provide a valid HTTP/HTTPS URL.");
             }
+            if (expiresAt != null && !expiresAt.isAfter(Instant.now())) {
+                throw new InvalidUrlException(EXPIRY_IN_PAST);
+            }
 
-            Optional<URL> existingUrl = urlRepository.findByLongUrl(longUrl);
-            if (existingUrl.isPresent()) {
-                return existingUrl.get().getShortCode();
+            // Each expiring link is its own, with no digest so it never shows up in the dedup lookups
+            byte[] urlHash = expiresAt == null ? UrlDigest.of(longUrl) : null;
+            // Most new URLs are ruled out by the Bloom filter and never pay for the dedup lookup
+            if (urlHash != null && longUrlFilter.mightContain(urlHash)) {
+                Optional<String> existingShortCode = findExistingShortCode(longUrl, urlHash);
+                if (existingShortCode.isPresent()) {
+                    return existingShortCode.get();
+                }
             }
 
-            // Create the short URL object
-            String shortCode = encodeURL();
-            URL url = new URL();
-            url.setLongUrl(longUrl);
-            url.setShortCode(shortCode);
-            url.setUserId(userId);
-            url.setCreatedAt(new Date());
-
-            urlRepository.save(url);
-            logger.info("Created short URL: {} -> {}", shortCode, longUrl);
-            return shortCode;
+            // Create the short URL object, no existence check needed since the generator hands out unique codes
+            for (int attempt = 1; ; attempt++) {
+                URL url = new URL(longUrl, urlHash, encodeURL(), userId);
+                url.setExpiresAt(expiresAt == null ? null : Date.from(expiresAt));
+                try {
+                    urlRepository.insert(url);
+                    if (urlHash != null) {
+                        longUrlFilter.add(urlHash);
+                    }
+                    shortCodeFilter.add(url.getShortCode());
+                    // Write through, other instances resolve it from Redis until their short code filter catches up
+                    shortUrlCache.put(url.getShortCode(), ShortUrlCache.cacheValue(url));
+                    logger.debug("Created short URL: {} -> {}", url.getShortCode(), longUrl);
+                    return url.getShortCode();
+                } catch (DuplicateKeyException e) {
+                    // Either someone else stored the same URL in the meantime, or the short code is taken
+                    Optional<String> existingShortCode = urlHash == null ? Optional.empty()
+                            : findExistingShortCode(longUrl, urlHash);
+                    if (existingShortCode.isPresent()) {
+                        longUrlFilter.add(urlHash);
+                        return existingShortCode.get();
+                    }
+                    shortCodeCollisions.increment();
+                    if (attempt >= MAX_INSERT_ATTEMPTS) {
+                        throw e;
+                    }
+                    logger.warn("Short code {} is already taken, generating a new one", url.getShortCode());
+                }
+            }
         } catch (InvalidUrlException e) {
             logger.warn("URL validation failed: {}", e.getMessage());
             throw e;
         } catch (Exception e) {
             logger.error("Error saving short URL: {}", e.getMessage(), e);
             throw new UrlCreationException("Could not shorten the URL", e);
+        } finally {
+            sample.stop(saveTimer);
         }
     }
 
     /**
-     * Normalizes a URL by converting http to https, removing www., and trailing slashes.
-     * @param url The URL to normalize.
-     * @return The normalized URL.
+     * Looks up the short code of an already stored URL by its digest.
+     *
+     * @param longUrl The normalized long URL.
+     * @param urlHash The digest of the long URL.
+     * @return The existing short code, or empty if the URL isn't stored yet.
      */
-    private String normalizeUrl(String url) {
-        if (url == null || url.isBlank()) {
-            throw new InvalidUrlException("URL cannot be null or empty.");
+    private Optional<String> findExistingShortCode(String longUrl, byte[] urlHash) {
+        Optional<URL> existingUrl = urlRepository.findByUrlHash(urlHash);
+        if (existingUrl.isEmpty() && !longUrlFilter.isLoaded()) {
+            // Old documents may not have their digest backfilled yet
+            existingUrl = urlRepository.findByLongUrlAndExpiresAtIsNull(longUrl);
         }
-
-        // Convert http to https
-        if (url.startsWith("http://")) {
-            url = url.replaceFirst("http://", "https://");
+        if (existingUrl.isPresent() && !existingUrl.get().getLongUrl().equals(longUrl)) {
+            // Two URLs sharing a 128-bit digest, the unique index won't let us store this one
+            logger.error("Digest collision between {} and {}", longUrl, existingUrl.get().getLongUrl());
+            digestCollisions.increment();
+            throw new UrlCreationException("Could not shorten the URL", null);
         }
-
-        // Remove www.
-        url = url.replaceFirst("^(https://)?www\\.", "$1");
-
-        // Remove trailing slash
-        if (url.endsWith("/")) {
-            url = url.substring(0, url.length() - 1);
-        }
-
-        return url;
-    }
-
-    /**
-     * Validates the format of a URL.
-     * @param url The URL to validate.
-     * @return True if the URL is valid, false otherwise.
-     */
-    private boolean isValidUrl(String url) {
-        String regex = "^(http|https)://.*$"; // thanks google
-        return url != null && !url.isBlank() && url.matches(regex);
+        return existingUrl.map(URL::getShortCode);
     }
 
     /**
      * Resolves a short code to its corresponding long URL.
+     * Unknown and expired codes are an expected outcome (typos, scanners, old links), so they come back as a
+     * resolution instead of an exception. Most unknown codes are ruled out by the short code filter and expired
+     * ones are answered by the cache tiers, before MongoDB is asked.
      *
      * @param shortCode The short code to resolve.
-     * @return The original long URL.
+     * @return The long URL if the code resolves, otherwise whether it never existed or has expired.
+     * @throws BackendUnavailableException If neither Redis, the database nor a stale copy could answer in time.
      */
-    public String resolveShortCode(String shortCode) {
-        logger.info("Resolving short code: {}", shortCode);
-        String redisKey = "shortUrls::" + shortCode;
+    public Resolution resolveShortCode(String shortCode) {
+        long start = System.nanoTime();
+        String result = "error";
 
         try {
-            // Check cache first
-            String cachedLongUrl = redisTemplate.opsForValue().get(redisKey);
-            if (cachedLongUrl != null) {
-                logger.info("Cache hit for {}", shortCode);
-                return cachedLongUrl;
+            // L1 and the off-heap table first, then Redis, then the database, then what L1 held before it expired
+            Resolution resolution = shortUrlCache.getLocal(shortCode);
+            if (resolution == null) {
+                resolution = getFromRedis(shortCode);
+            }
+            if (resolution == null) {
+                if (!shortCodeFilter.mightExist(shortCode, backends.redis().isAvailable())) {
+                    logger.debug("Unknown short code {}", shortCode);
+                    result = "not_found";
+                    return Resolution.notFound();
+                }
+                resolution = getFromDatabase(shortCode);
             }
 
-            // Retrieve from database
-            logger.info("Cache miss for {}. Querying MongoDB...", shortCode);
-            cachedLongUrl = urlRepository.findByShortCode(shortCode)
-                    .map(URL::getLongUrl)
-                    .orElseThrow(() -> new UrlNotFoundException("Short URL not found: " + shortCode));
-
-            // Store in cache
-            redisTemplate.opsForValue().set(redisKey, cachedLongUrl); // opsforValue is basically the SET command
-            logger.info("Cached {} in Redis", shortCode);
-
-            // Increment hit count
-            urlRepository.incrementHitCount(shortCode);
-            logger.info("Incremented hit count for {}", shortCode);
-
-            return cachedLongUrl;
-        } catch (UrlNotFoundException e) {
-            logger.warn("URL not found: {}", shortCode);
+            switch (resolution.status()) {
+                case FOUND -> {
+                    // Count the hit, flushed to MongoDB in the background unless it is under pressure
+                    hitCountBuffer.record(shortCode);
+                    hotSetTracker.record(shortCode);
+                    result = "found";
+                }
+                case GONE -> {
+                    logger.debug("Short code {} has expired", shortCode);
+                    result = "gone";
+                }
+                case NOT_FOUND -> {
+                    logger.debug("URL not found: {}", shortCode);
+                    result = "not_found";
+                }
+            }
+            return resolution;
+        } catch (BackendUnavailableException e) {
+            logger.warn("Could not resolve short code {}: {}", shortCode, e.getMessage());
+            result = "unavailable";
             throw e;
         } catch (Exception e) {
             logger.error("Error resolving short code {}: {}", shortCode, e.getMessage(), e);
             throw new UrlResolutionException("Error resolving short URL: " + shortCode, e);
+        } finally {
+            long duration = System.nanoTime() - start;
+            Timer timer = switch (result) {
+                case "found" -> resolvedTimer;
+                case "not_found" -> notFoundTimer;
+                case "gone" -> goneTimer;
+                case "unavailable" -> unavailableTimer;
+                default -> resolveFailedTimer;
+            };
+            timer.record(duration, TimeUnit.NANOSECONDS);
+            accessLog.record(shortCode, result, duration);
         }
     }
 
     /**
-     * Generates a unique 7-character short code for a URL.
-     *
-     * @return The generated short code.
+     * @return The cached resolution from Redis, or null if Redis doesn't have it or is unavailable.
      */
-    private String encodeURL() {
-        Random random = new Random();
-        StringBuilder shortCode;
+    private Resolution getFromRedis(String shortCode) {
+        try {
+            return shortUrlCache.getRemote(shortCode, backends.redis());
+        } catch (BackendUnavailableException e) {
+            // The database has every code, Redis is only a shortcut
+            logger.debug("Skipping Redis for {}: {}", shortCode, e.getMessage());
+            return null;
+        }
+    }
 
+    /**
+     * Looks a short code up in the database and caches the result. Concurrent misses for the same code share one query.
+     * If the database is unavailable too, falls back to what L1 held for the code before it expired.
+     *
+     * @throws BackendUnavailableException If the database is unavailable and there is no stale copy.
+     */
+    private Resolution getFromDatabase(String shortCode) {
         try {
-            do {
-                shortCode = new StringBuilder();
-                for (int i = 0; i < 7; i++) {
-                    int index = random.nextInt(BASE62_CHARACTERS.length());
-                    shortCode.append(BASE62_CHARACTERS.charAt(index));
+            return cacheFills.execute(shortCode, () -> {
+                logger.debug("Cache miss for {}, querying the repository", shortCode);
+                Optional<URL> url = backends.mongo().callBlocking(() -> urlRepository.findByShortCode(shortCode));
+                if (url.isEmpty()) {
+                    shortCodeFilter.recordMissing(shortCode);
+                    return Resolution.notFound();
                 }
-            } while (urlRepository.findByShortCode(shortCode.toString()).isPresent());
-            // Keep generating short codes until we find one that doesn't already exist
 
-            return shortCode.toString();
+                // Store in the cache tiers, expired links too so they are answered as gone from now on.
+                // While Redis is down the write would only queue up behind the stalled ones
+                String value = ShortUrlCache.cacheValue(url.get());
+                if (backends.redis().isAvailable()) {
+                    shortUrlCache.put(shortCode, value);
+                } else {
+                    shortUrlCache.putWithoutRedis(shortCode, value);
+                }
+                return url.get().isExpiredAt(System.currentTimeMillis())
+                        ? Resolution.gone()
+                        : Resolution.found(url.get().getLongUrl());
+            });
+        } catch (BackendUnavailableException e) {
+            Resolution stale = shortUrlCache.getStale(shortCode);
+            if (stale == null) {
+                throw e;
+            }
+            logger.debug("Serving a stale copy of {}: {}", shortCode, e.getMessage());
+            staleResolves.increment();
+            return stale;
+        }
+    }
+
+    /**
+     * Generates a unique short code for a URL.
+     *
+     * @return The generated short code.
+     */
+    private String encodeURL() {
+        long start = System.nanoTime();
+        try {
+            return shortCodeGenerator.nextShortCode();
         } catch (Exception e) {
             logger.error("Error generating short code: {}", e.getMessage(), e);
             throw new UrlCreationException("Error generating short code", e);
+        } finally {
+            encodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         }
     }
 
     /**
-     * Retrieves all URLs created by a specific user.
+     * Retrieves one page of the URLs created by a specific user, oldest first.
      *
      * @param userId The ID of the user to retrieve URLs for.
-     * @return A list of URLs created by the user.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of URLs to return, capped at the configured maximum page size.
+     * @return A page of URLs created by the user.
      */
-    public List<URL> getUrlsByUserId(ObjectId userId) {
+    public UrlPage getUrlsByUserId(ObjectId userId, String cursor, int limit) {
+        PageCursor.Position after = cursor == null ? null : PageCursor.parseCreatedAt(cursor);
+
         try {
-            return urlRepository.findByUserId(userId);
+            return fetchPage(pageSize -> after == null
+                            ? urlRepository.findPageByUserId(userId, null, null, pageSize)
+                            : urlRepository.findPageByUserId(userId, after.createdAt(), after.id(), pageSize),
+                    limit, PageCursor::byCreatedAt);
         } catch (Exception e) {
             logger.error("Error retrieving URLs for user {}: {}", userId, e.getMessage(), e);
             throw new UrlRetrievalException("Error retrieving URLs for user", e);
@@ -206,16 +385,50 @@ public class URLService {
     }
 
     /**
-     * Retrieves all URLs in the database.
+     * Retrieves one page of all URLs in the database, in insertion order.
      *
-     * @return A list of all URLs.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of URLs to return, capped at the configured maximum page size.
+     * @return A page of URLs.
      */
-    public Iterable<URL> getAllUrls() {
+    public UrlPage getUrls(String cursor, int limit) {
+        String afterId = cursor == null ? null : PageCursor.parseId(cursor);
+
         try {
-            return urlRepository.findAll();
+            return fetchPage(pageSize -> urlRepository.findPage(afterId, pageSize), limit, PageCursor::byId);
         } catch (Exception e) {
             logger.error("Error retrieving all URLs: {}", e.getMessage(), e);
             throw new UrlRetrievalException("Error retrieving all URLs", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Writes every URL (or every URL of one user) as newline-delimited JSON, straight from a database cursor.
+     * Only one cursor batch is held in memory at a time.
+     *
+     * @param userId The user to export URLs for, or null to export all URLs.
+     * @param output Where the URLs are written.
+     */
+    public void exportUrls(ObjectId userId, OutputStream output) throws IOException {
+        try (Stream<URL> urls = urlRepository.streamForExport(userId);
+             SequenceWriter writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(output)) {
+            Iterator<URL> iterator = urls.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+            }
+        }
+    }
+
+    private UrlPage fetchPage(IntFunction<List<URL>> query, int limit, Function<URL, String> cursorOf) {
+        int pageSize = Math.clamp(limit, 1, maxPageSize);
+
+        // Fetch one extra document to find out whether there is a next page
+        List<URL> urls = query.apply(pageSize + 1);
+        if (urls.size() <= pageSize) {
+            return new UrlPage(urls, null);
+        }
+
+        List<URL> page = urls.subList(0, pageSize);
+        return new UrlPage(page, cursorOf.apply(page.get(pageSize - 1)));
+    }
+}
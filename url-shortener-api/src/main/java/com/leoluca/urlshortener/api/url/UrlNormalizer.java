@@ -0,0 +1,331 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.leoluca.urlshortener.api.url.exception.InvalidUrlException;
+
+/**
+ * URL normalization and validation shared by the single and batch shorten paths.
+ * Both are hand-written single passes over the string, no regex is involved. A URL that is already in canonical
+ * form is returned as is, otherwise the normalized URL is built with exactly one StringBuilder.
+ */
+public final class UrlNormalizer {
+
+    private static final String HTTP = "http://";
+    private static final String HTTPS = "https://";
+    private static final String WWW = "www.";
+
+    private UrlNormalizer() {}
+
+    /**
+     * Normalizes a URL so the same link always ends up with the same string, which makes dedup hit more often.
+     * <ul>
+     *     <li>surrounding whitespace is removed</li>
+     *     <li>http is upgraded to https and the scheme is lowercased</li>
+     *     <li>the host is lowercased and leading "www." labels are removed</li>
+     *     <li>default ports (80 for http, 443) are removed</li>
+     *     <li>percent-encoded unreserved characters are decoded, other escapes get uppercase hex digits</li>
+     *     <li>a single trailing slash at the end of the path is removed, query and fragment are left alone, and so
+     *     is a path ending in "//" since the empty segment is part of it</li>
+     * </ul>
+     * URLs that aren't http(s) are only trimmed, {@link #isValid(String)} rejects them.
+     *
+     * @param url The URL to normalize.
+     * @return The normalized URL.
+     * @throws InvalidUrlException If the URL is blank or has whitespace or control characters inside.
+     */
+    public static String normalize(String url) {
+        if (url == null || url.isBlank()) {
+            throw new InvalidUrlException("URL cannot be null or empty.");
+        }
+
+        int start = 0;
+        int end = url.length();
+        while (start < end && url.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && url.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            throw new InvalidUrlException("URL cannot be null or empty.");
+        }
+        for (int i = start; i < end; i++) {
+            if (isWhitespaceOrControl(url.charAt(i))) {
+                throw new InvalidUrlException("URL cannot contain whitespace or control characters.");
+            }
+        }
+
+        boolean http;
+        if (url.regionMatches(true, start, HTTPS, 0, HTTPS.length())) {
+            http = false;
+        } else if (url.regionMatches(true, start, HTTP, 0, HTTP.length())) {
+            http = true;
+        } else {
+            return url.substring(start, end);
+        }
+
+        int authorityStart = start + (http ? HTTP.length() : HTTPS.length());
+        int authorityEnd = authorityEnd(url, authorityStart, end);
+        int hostStart = hostStart(url, authorityStart, authorityEnd);
+        int hostEnd = hostEnd(url, hostStart, authorityEnd);
+
+        // Drop "www." labels as long as a real domain is left, so www.com stays www.com
+        int domainStart = hostStart;
+        while (url.regionMatches(true, domainStart, WWW, 0, WWW.length())) {
+            int nextDot = url.indexOf('.', domainStart + WWW.length());
+            if (nextDot < 0 || nextDot >= hostEnd) {
+                break;
+            }
+            domainStart += WWW.length();
+        }
+
+        // Everything after the host, minus the port if it is the default one for the scheme
+        int restStart = hostEnd;
+        if (hostEnd < authorityEnd && isDefaultPort(url, hostEnd + 1, authorityEnd, http)) {
+            restStart = authorityEnd;
+        }
+
+        // The path runs up to the query or fragment, only its own trailing slash is dropped
+        int pathEnd = queryStart(url, authorityEnd, end);
+        int slashEnd = pathEnd;
+        if (pathEnd > authorityEnd && url.charAt(pathEnd - 1) == '/'
+                && (pathEnd - 1 == authorityEnd || url.charAt(pathEnd - 2) != '/')) {
+            slashEnd--;
+        }
+
+        if (start == 0 && end == url.length() && !http && url.startsWith(HTTPS)
+                && domainStart == hostStart && restStart == hostEnd && slashEnd == pathEnd
+                && isLowerCase(url, hostStart, hostEnd) && isCanonicalEncoding(url, restStart, end)) {
+            return url;
+        }
+
+        StringBuilder normalized = new StringBuilder(end - start + 1);
+        normalized.append(HTTPS);
+        normalized.append(url, authorityStart, hostStart);
+        for (int i = domainStart; i < hostEnd; i++) {
+            normalized.append(toLowerCase(url.charAt(i)));
+        }
+        appendCanonicalEncoding(normalized, url, restStart, slashEnd);
+        appendCanonicalEncoding(normalized, url, pathEnd, end);
+        return normalized.toString();
+    }
+
+    /**
+     * Validates the format of a URL: an http(s) scheme, a non-empty host made of valid host characters,
+     * an optional numeric port and no whitespace or control characters anywhere.
+     *
+     * @param url The URL to validate.
+     * @return True if the URL is valid, false otherwise.
+     */
+    public static boolean isValid(String url) {
+        if (url == null) {
+            return false;
+        }
+
+        int end = url.length();
+        int authorityStart;
+        if (url.regionMatches(true, 0, HTTPS, 0, HTTPS.length())) {
+            authorityStart = HTTPS.length();
+        } else if (url.regionMatches(true, 0, HTTP, 0, HTTP.length())) {
+            authorityStart = HTTP.length();
+        } else {
+            return false;
+        }
+
+        for (int i = authorityStart; i < end; i++) {
+            if (isWhitespaceOrControl(url.charAt(i))) {
+                return false;
+            }
+        }
+
+        int authorityEnd = authorityEnd(url, authorityStart, end);
+        int hostStart = hostStart(url, authorityStart, authorityEnd);
+        int hostEnd = hostEnd(url, hostStart, authorityEnd);
+        if (hostStart == hostEnd || !isValidHost(url, hostStart, hostEnd)) {
+            return false;
+        }
+
+        if (hostEnd < authorityEnd) {
+            // Whatever follows the host has to be ":" and at most five digits
+            int portLength = authorityEnd - hostEnd - 1;
+            if (url.charAt(hostEnd) != ':' || portLength > 5) {
+                return false;
+            }
+            for (int i = hostEnd + 1; i < authorityEnd; i++) {
+                if (!isDigit(url.charAt(i))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static int authorityEnd(String url, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            if (c == '/' || c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    private static int queryStart(String url, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    // Skips user info ("user:password@") if there is any
+    private static int hostStart(String url, int authorityStart, int authorityEnd) {
+        for (int i = authorityEnd - 1; i >= authorityStart; i--) {
+            if (url.charAt(i) == '@') {
+                return i + 1;
+            }
+        }
+        return authorityStart;
+    }
+
+    private static int hostEnd(String url, int hostStart, int authorityEnd) {
+        if (hostStart < authorityEnd && url.charAt(hostStart) == '[') {
+            // IPv6 literal, the colons inside the brackets aren't a port
+            for (int i = hostStart + 1; i < authorityEnd; i++) {
+                if (url.charAt(i) == ']') {
+                    return i + 1;
+                }
+            }
+            return authorityEnd;
+        }
+
+        for (int i = hostStart; i < authorityEnd; i++) {
+            if (url.charAt(i) == ':') {
+                return i;
+            }
+        }
+        return authorityEnd;
+    }
+
+    private static boolean isDefaultPort(String url, int portStart, int portEnd, boolean http) {
+        int length = portEnd - portStart;
+        return length == 0
+                || (length == 3 && url.startsWith("443", portStart))
+                || (http && length == 2 && url.startsWith("80", portStart));
+    }
+
+    private static boolean isValidHost(String url, int hostStart, int hostEnd) {
+        if (url.charAt(hostStart) == '[') {
+            if (url.charAt(hostEnd - 1) != ']' || hostEnd - hostStart < 3) {
+                return false;
+            }
+            for (int i = hostStart + 1; i < hostEnd - 1; i++) {
+                char c = url.charAt(i);
+                if (!isHexDigit(c) && c != ':' && c != '.') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (int i = hostStart; i < hostEnd; i++) {
+            char c = url.charAt(i);
+            // Non-ASCII is allowed for internationalized domain names
+            if (!isAsciiLetter(c) && !isDigit(c) && c != '-' && c != '.' && c != '_' && c < 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLowerCase(String url, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = url.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isCanonicalEncoding(String url, int from, int to) {
+        for (int i = url.indexOf('%', from); i >= 0 && i + 2 < to; i = url.indexOf('%', i + 1)) {
+            char high = url.charAt(i + 1);
+            char low = url.charAt(i + 2);
+            if (isHexDigit(high) && isHexDigit(low)
+                    && (isUnreserved(hexValue(high) << 4 | hexValue(low)) || isLowerHex(high) || isLowerHex(low))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void appendCanonicalEncoding(StringBuilder out, String url, int from, int to) {
+        int i = from;
+        while (i < to) {
+            char c = url.charAt(i);
+            if (c == '%' && i + 2 < to && isHexDigit(url.charAt(i + 1)) && isHexDigit(url.charAt(i + 2))) {
+                int decoded = hexValue(url.charAt(i + 1)) << 4 | hexValue(url.charAt(i + 2));
+                if (isUnreserved(decoded) && !completesEscape(out, (char) decoded)) {
+                    out.append((char) decoded);
+                } else {
+                    out.append('%').append(toUpperCase(url.charAt(i + 1))).append(toUpperCase(url.charAt(i + 2)));
+                }
+                i += 3;
+            } else {
+                out.append(c);
+                i++;
+            }
+        }
+    }
+
+    // Decoding e.g. the "%31" in "%4%31" would turn it into "%41", which is a different escape
+    private static boolean completesEscape(StringBuilder out, char decoded) {
+        int length = out.length();
+        return isHexDigit(decoded) && length > 0
+                && (out.charAt(length - 1) == '%'
+                || (length > 1 && out.charAt(length - 2) == '%' && isHexDigit(out.charAt(length - 1))));
+    }
+
+    // RFC 3986 unreserved characters, escaping them doesn't change the meaning of the URL
+    private static boolean isUnreserved(int c) {
+        return isAsciiLetter((char) c) || isDigit((char) c) || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    // ASCII and C1 controls, and any kind of space including the Unicode ones like U+00A0 and U+2028
+    private static boolean isWhitespaceOrControl(char c) {
+        return c <= ' ' || (c >= 0x7F && c <= 0x9F) || (c >= 0x80 && (Character.isWhitespace(c) || Character.isSpaceChar(c)));
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHexDigit(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isLowerHex(char c) {
+        return c >= 'a' && c <= 'f';
+    }
+
+    private static int hexValue(char c) {
+        if (c <= '9') {
+            return c - '0';
+        }
+        return (c | 0x20) - 'a' + 10;
+    }
+
+    private static char toLowerCase(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static char toUpperCase(char c) {
+        return c >= 'a' && c <= 'z' ? (char) (c - ('a' - 'A')) : c;
+    }
+}
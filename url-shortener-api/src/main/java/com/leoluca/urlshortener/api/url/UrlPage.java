@@ -0,0 +1,12 @@
+package com.leoluca.urlshortener.api.url;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated URL listing.
+ *
+ * @param urls The URLs on this page.
+ * @param nextCursor Pass this back to get the next page, null when this is the last one.
+ */
+public record UrlPage(List<URL> urls, String nextCursor) {
+}
@@ -0,0 +1,79 @@
+package com.leoluca.urlshortener.api.url.accesslog;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sampled access log for resolves, written to the "access" logger as key-value pairs so the structured
+ * log format turns them into JSON fields.
+ * A resolve is logged with the configured probability, and never more often than max-per-second. Both checks
+ * happen before anything is allocated, so a resolve that isn't logged costs a random number and a volatile read.
+ * Each line carries the sample rate so counts can be scaled back up.
+ */
+@Component
+public class ResolveAccessLog {
+
+    static final String LOGGER_NAME = "access";
+
+    private static final Logger logger = LoggerFactory.getLogger(LOGGER_NAME);
+
+    private final double sampleRate;
+    private final long intervalNanos;
+    private final long burstNanos;
+    // Theoretical arrival time of the next line, the same GCRA bucket the rate limiter uses
+    private final AtomicLong nextLine = new AtomicLong(System.nanoTime());
+
+    public ResolveAccessLog(@Value("${urlshortener.accesslog.sample-rate:0.01}") double sampleRate,
+                            @Value("${urlshortener.accesslog.max-per-second:100}") int maxPerSecond) {
+        this.sampleRate = sampleRate;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, maxPerSecond);
+        this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Records one resolve, if it is sampled.
+     *
+     * @param shortCode The short code that was resolved.
+     * @param result found, not_found, gone, unavailable or error.
+     * @param durationNanos How long the resolve took.
+     */
+    public void record(String shortCode, String result, long durationNanos) {
+        if (sampleRate <= 0 || !logger.isInfoEnabled()) {
+            return;
+        }
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return;
+        }
+        if (!acquire()) {
+            return;
+        }
+
+        logger.atInfo()
+                .addKeyValue("event", "resolve")
+                .addKeyValue("shortCode", shortCode)
+                .addKeyValue("result", result)
+                .addKeyValue("durationMicros", TimeUnit.NANOSECONDS.toMicros(durationNanos))
+                .addKeyValue("sampleRate", sampleRate)
+                .log("resolve {} {}", shortCode, result);
+    }
+
+    private boolean acquire() {
+        long now = System.nanoTime();
+        while (true) {
+            long theoreticalArrival = nextLine.get();
+            long next = Math.max(theoreticalArrival, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (nextLine.compareAndSet(theoreticalArrival, next)) {
+                return true;
+            }
+        }
+    }
+}
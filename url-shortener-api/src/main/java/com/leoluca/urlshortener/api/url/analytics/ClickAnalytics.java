@@ -0,0 +1,257 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Click analytics pipeline.
+ * Redirects only put the raw event into a {@link ClickRing}, a background thread drains it, rolls the events up
+ * into minute, hour and day buckets in memory and periodically writes the buckets as $inc upserts.
+ * Every stage drops rather than waits: a full ring drops the event, a bucket that can't be written after the
+ * in-memory buffer filled up is dropped too. Both are counted in analytics.dropped.
+ * The same thread feeds the {@link TrendingTracker}.
+ */
+@Component
+public class ClickAnalytics {
+
+    static final String DIRECT = "direct";
+    static final String OTHER_REFERRERS = "other";
+
+    private static final Logger logger = LoggerFactory.getLogger(ClickAnalytics.class);
+    private static final int DRAIN_LIMIT = 10_000;
+
+    private final UrlStatsRepository statsRepository;
+    private final TrendingTracker trendingTracker;
+    private final boolean enabled;
+    private final ClickRing ring;
+    private final Duration drainInterval;
+    private final long flushIntervalNanos;
+    private final int maxBuckets;
+    private final int maxReferrers;
+    private final int batchSize;
+    private final Map<Granularity, Duration> retention;
+    private final ScheduledExecutorService aggregator;
+    private final Counter droppedClicks;
+    private final Counter droppedBuckets;
+
+    // Only touched by the aggregator thread, and by stop() once that thread is done
+    private final Map<String, UrlStatsBucket> pending = new HashMap<>();
+    private long lastFlush = System.nanoTime();
+
+    public ClickAnalytics(UrlStatsRepository statsRepository,
+                          TrendingTracker trendingTracker,
+                          MeterRegistry meterRegistry,
+                          @Value("${urlshortener.analytics.enabled:true}") boolean enabled,
+                          @Value("${urlshortener.analytics.ring-size:65536}") int ringSize,
+                          @Value("${urlshortener.analytics.drain-interval:100ms}") Duration drainInterval,
+                          @Value("${urlshortener.analytics.flush-interval:10s}") Duration flushInterval,
+                          @Value("${urlshortener.analytics.max-buckets:100000}") int maxBuckets,
+                          @Value("${urlshortener.analytics.max-referrers:20}") int maxReferrers,
+                          @Value("${urlshortener.analytics.batch-size:1000}") int batchSize,
+                          @Value("${urlshortener.analytics.retention.minute:2d}") Duration minuteRetention,
+                          @Value("${urlshortener.analytics.retention.hour:90d}") Duration hourRetention,
+                          @Value("${urlshortener.analytics.retention.day:0}") Duration dayRetention) {
+        this.statsRepository = statsRepository;
+        this.trendingTracker = trendingTracker;
+        this.enabled = enabled;
+        this.ring = new ClickRing(ringSize);
+        this.drainInterval = drainInterval;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxBuckets = maxBuckets;
+        this.maxReferrers = maxReferrers;
+        this.batchSize = batchSize;
+        this.retention = Map.of(Granularity.MINUTE, minuteRetention, Granularity.HOUR, hourRetention,
+                Granularity.DAY, dayRetention);
+        this.aggregator = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "click-aggregator");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("analytics.ring.size", ring, ClickRing::size)
+                .description("Click events waiting to be aggregated")
+                .register(meterRegistry);
+        this.droppedClicks = Counter.builder("analytics.dropped")
+                .description("Clicks or aggregated buckets dropped instead of slowing down redirects")
+                .tag("stage", "ring")
+                .register(meterRegistry);
+        this.droppedBuckets = Counter.builder("analytics.dropped")
+                .description("Clicks or aggregated buckets dropped instead of slowing down redirects")
+                .tag("stage", "flush")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        if (enabled) {
+            long intervalMillis = drainInterval.toMillis();
+            aggregator.scheduleWithFixedDelay(this::aggregateQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Runs before the repository is destroyed since we depend on it, so the last buckets still make it out
+    @PreDestroy
+    void stop() throws InterruptedException {
+        aggregator.shutdown();
+        if (aggregator.awaitTermination(5, TimeUnit.SECONDS)) {
+            while (ring.drain(this::aggregate, DRAIN_LIMIT) > 0) {
+                // Keep going until the ring is empty
+            }
+            flush();
+        }
+    }
+
+    /**
+     * Records a click. Never blocks and never allocates, if the ring is full the click is dropped.
+     *
+     * @param shortCode The short code that was resolved.
+     * @param referrer The Referer header, may be null.
+     * @param userAgent The User-Agent header, may be null.
+     */
+    public void record(String shortCode, String referrer, String userAgent) {
+        if (enabled && !ring.offer(shortCode, referrer, userAgent, System.currentTimeMillis())) {
+            droppedClicks.increment();
+        }
+    }
+
+    private void aggregateQuietly() {
+        try {
+            int drained;
+            do {
+                drained = ring.drain(this::aggregate, DRAIN_LIMIT);
+                if (pending.size() >= maxBuckets) {
+                    // Too many distinct buckets since the last flush, write early instead of growing without bound
+                    flush();
+                }
+            } while (drained == DRAIN_LIMIT);
+
+            trendingTracker.refresh(System.currentTimeMillis());
+            if (System.nanoTime() - lastFlush >= flushIntervalNanos) {
+                flush();
+            }
+        } catch (Exception e) {
+            logger.error("Click aggregation failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void aggregate(String shortCode, String referrer, String userAgent, long timestamp) {
+        String referrerHost = referrerHost(referrer);
+        String agent = UserAgentFamily.of(userAgent).label();
+        trendingTracker.record(shortCode, timestamp);
+
+        for (Granularity granularity : Granularity.values()) {
+            long start = granularity.bucketStart(timestamp);
+            UrlStatsBucket bucket = pending.computeIfAbsent(UrlStatsBucket.id(shortCode, granularity, start),
+                    id -> new UrlStatsBucket(shortCode, granularity, start, expireAt(granularity, start)));
+            bucket.addClick();
+            if (granularity == Granularity.MINUTE) {
+                continue;
+            }
+
+            Map<String, Long> referrers = bucket.referrers();
+            String referrerKey = referrers.containsKey(referrerHost) || referrers.size() < maxReferrers
+                    ? referrerHost : OTHER_REFERRERS;
+            referrers.merge(referrerKey, 1L, Long::sum);
+            bucket.agents().merge(agent, 1L, Long::sum);
+        }
+    }
+
+    private Date expireAt(Granularity granularity, long bucketStart) {
+        Duration keepFor = retention.get(granularity);
+        return keepFor.isZero() ? null : new Date(bucketStart + granularity.unitMillis() + keepFor.toMillis());
+    }
+
+    /**
+     * Writes the pending buckets. Buckets that fail are kept for the next flush as long as there is room.
+     */
+    private void flush() {
+        lastFlush = System.nanoTime();
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<UrlStatsBucket> buckets = new ArrayList<>(pending.values());
+        pending.clear();
+        for (int from = 0; from < buckets.size(); from += batchSize) {
+            List<UrlStatsBucket> batch = buckets.subList(from, Math.min(from + batchSize, buckets.size()));
+            try {
+                Set<String> failed = statsRepository.upsertAll(batch);
+                if (!failed.isEmpty()) {
+                    logger.warn("Failed to write {} of {} click buckets", failed.size(), batch.size());
+                    batch.stream().filter(bucket -> failed.contains(bucket.getId())).forEach(this::requeue);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to write click buckets, retrying with the next flush: {}", e.getMessage());
+                batch.forEach(this::requeue);
+            }
+        }
+    }
+
+    private void requeue(UrlStatsBucket bucket) {
+        UrlStatsBucket newer = pending.get(bucket.getId());
+        if (newer != null) {
+            newer.merge(bucket);
+        } else if (pending.size() < maxBuckets) {
+            pending.put(bucket.getId(), bucket);
+        } else {
+            droppedBuckets.increment();
+        }
+    }
+
+    /**
+     * @param referrer The Referer header.
+     * @return The referrer's host without "www.", "direct" if there is none, or "other" if it isn't a host name.
+     */
+    static String referrerHost(String referrer) {
+        if (referrer == null || referrer.isBlank()) {
+            return DIRECT;
+        }
+
+        int start = referrer.indexOf("://");
+        start = start < 0 ? 0 : start + 3;
+        int end = start;
+        while (end < referrer.length()) {
+            char c = referrer.charAt(end);
+            if (c == '/' || c == '?' || c == '#' || c == ':') {
+                break;
+            }
+            end++;
+        }
+        if (referrer.regionMatches(true, start, "www.", 0, 4)) {
+            start += 4;
+        }
+        if (start >= end) {
+            return DIRECT;
+        }
+        // The header is client input and the host becomes a field name in the stats, so only host name characters pass
+        for (int i = start; i < end; i++) {
+            if (!isHostChar(referrer.charAt(i))) {
+                return OTHER_REFERRERS;
+            }
+        }
+        return referrer.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean isHostChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.';
+    }
+}
@@ -0,0 +1,102 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded multi-producer, single-consumer ring of click events, lock-free on both sides.
+ * Events are stored field by field in preallocated arrays, so offering one allocates nothing. Producers claim a
+ * sequence with a CAS on the tail, fill the slot and publish it by writing the sequence into the slot's marker.
+ * The consumer reads published slots in order and frees them by advancing the head.
+ * A full ring rejects the event, a slow consumer never makes producers wait.
+ */
+final class ClickRing {
+
+    @FunctionalInterface
+    interface ClickVisitor {
+        void visit(String shortCode, String referrer, String userAgent, long timestamp);
+    }
+
+    private final int mask;
+    private final String[] shortCodes;
+    private final String[] referrers;
+    private final String[] userAgents;
+    private final long[] timestamps;
+    // Sequence + 1 of the event a slot holds once it is published, so the initial 0 never matches
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    // Only written by the consumer
+    private volatile long head;
+
+    /**
+     * @param capacity The number of events the ring holds, rounded up to a power of two.
+     */
+    ClickRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.shortCodes = new String[size];
+        this.referrers = new String[size];
+        this.userAgents = new String[size];
+        this.timestamps = new long[size];
+        this.published = new AtomicLongArray(size);
+    }
+
+    /**
+     * @return False if the ring is full and the event was dropped.
+     */
+    boolean offer(String shortCode, String referrer, String userAgent, long timestamp) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head > mask) {
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        shortCodes[slot] = shortCode;
+        referrers[slot] = referrer;
+        userAgents[slot] = userAgent;
+        timestamps[slot] = timestamp;
+        published.setRelease(slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Hands published events to the visitor in order. Must only be called from one thread at a time.
+     * Stops at the first claimed but not yet published slot, that event is picked up by the next drain.
+     *
+     * @param visitor Receives the events.
+     * @param limit The maximum number of events to drain.
+     * @return The number of events drained.
+     */
+    int drain(ClickVisitor visitor, int limit) {
+        long sequence = head;
+        int drained = 0;
+        while (drained < limit) {
+            int slot = (int) sequence & mask;
+            if (published.getAcquire(slot) != sequence + 1) {
+                break;
+            }
+
+            visitor.visit(shortCodes[slot], referrers[slot], userAgents[slot], timestamps[slot]);
+            shortCodes[slot] = null;
+            referrers[slot] = null;
+            userAgents[slot] = null;
+            head = ++sequence;
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * @return The number of events claimed but not drained yet.
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
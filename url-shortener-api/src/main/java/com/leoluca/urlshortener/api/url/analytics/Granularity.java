@@ -0,0 +1,58 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * The time buckets clicks are counted in, aligned to UTC.
+ */
+public enum Granularity {
+
+    MINUTE(Duration.ofMinutes(1), Duration.ofHours(1)),
+    HOUR(Duration.ofHours(1), Duration.ofHours(48)),
+    DAY(Duration.ofDays(1), Duration.ofDays(30));
+
+    private final long unitMillis;
+    private final Duration defaultWindow;
+
+    Granularity(Duration unit, Duration defaultWindow) {
+        this.unitMillis = unit.toMillis();
+        this.defaultWindow = defaultWindow;
+    }
+
+    /**
+     * @param epochMillis A point in time.
+     * @return The start of the bucket the point falls into.
+     */
+    public long bucketStart(long epochMillis) {
+        return Math.floorDiv(epochMillis, unitMillis) * unitMillis;
+    }
+
+    public long unitMillis() {
+        return unitMillis;
+    }
+
+    /**
+     * @return How far back stats go when no range is asked for.
+     */
+    public Duration defaultWindow() {
+        return defaultWindow;
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param label minute, hour or day, in any case.
+     * @return The granularity, or null if there is no such granularity.
+     */
+    public static Granularity fromLabel(String label) {
+        for (Granularity granularity : values()) {
+            if (granularity.name().equalsIgnoreCase(label)) {
+                return granularity;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,131 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import com.mongodb.bulk.BulkWriteError;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * url_stats on MongoDB. Deltas go out as one unordered bulk of $inc upserts, so concurrent writers (several API
+ * instances) add up instead of overwriting each other. The indexes are created by MongoIndexBootstrap.
+ */
+@Repository
+@Profile("!embedded")
+class MongoUrlStatsRepository implements UrlStatsRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    MongoUrlStatsRepository(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Set<String> upsertAll(Collection<UrlStatsBucket> deltas) {
+        if (deltas.isEmpty()) {
+            return Set.of();
+        }
+
+        List<String> ids = new ArrayList<>(deltas.size());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, UrlStatsBucket.class);
+        for (UrlStatsBucket delta : deltas) {
+            ids.add(delta.getId());
+            Update update = new Update()
+                    .inc("clicks", delta.getClicks())
+                    .setOnInsert("shortCode", delta.getShortCode())
+                    .setOnInsert("granularity", delta.getGranularity())
+                    .setOnInsert("bucket", delta.getBucket());
+            if (delta.getExpireAt() != null) {
+                update.setOnInsert("expireAt", delta.getExpireAt());
+            }
+            inc(update, "referrers", delta.getReferrers());
+            inc(update, "agents", delta.getAgents());
+            bulk.upsert(Query.query(Criteria.where("_id").is(delta.getId())), update);
+        }
+
+        try {
+            bulk.execute();
+            return Set.of();
+        } catch (BulkOperationException e) {
+            // Unordered, so everything except the failed upserts went through
+            Set<String> failed = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failed.add(ids.get(error.getIndex()));
+            }
+            return failed;
+        }
+    }
+
+    @Override
+    public List<UrlStatsBucket> findBuckets(String shortCode, Granularity granularity, Date from, Date to) {
+        Query query = Query.query(Criteria.where("shortCode").is(shortCode)
+                        .and("granularity").is(granularity.label())
+                        .and("bucket").gte(from).lt(to))
+                .with(Sort.by(Sort.Order.asc("bucket")));
+        List<UrlStatsBucket> buckets = mongoTemplate.find(query, UrlStatsBucket.class);
+        buckets.forEach(bucket -> bucket.setReferrers(decodeKeys(bucket.getReferrers())));
+        return buckets;
+    }
+
+    private static void inc(Update update, String field, Map<String, Long> counts) {
+        if (counts != null) {
+            counts.forEach((key, count) -> update.inc(field + '.' + encodeKey(key), count));
+        }
+    }
+
+    // Dots would make "referrers.example.com" a nested path and a leading $ an operator, so both are escaped like
+    // in URLs, and so is the escape character itself to keep the encoding reversible
+    static String encodeKey(String key) {
+        StringBuilder encoded = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            switch (c) {
+                case '%' -> encoded.append("%25");
+                case '.' -> encoded.append("%2E");
+                case '$' -> encoded.append("%24");
+                default -> encoded.append(c);
+            }
+        }
+        return encoded.toString();
+    }
+
+    static String decodeKey(String key) {
+        if (key.indexOf('%') < 0) {
+            return key;
+        }
+        StringBuilder decoded = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '%' && i + 2 < key.length()) {
+                decoded.append((char) Integer.parseInt(key, i + 1, i + 3, 16));
+                i += 2;
+            } else {
+                decoded.append(c);
+            }
+        }
+        return decoded.toString();
+    }
+
+    private static Map<String, Long> decodeKeys(Map<String, Long> counts) {
+        if (counts == null) {
+            return null;
+        }
+        Map<String, Long> decoded = new HashMap<>();
+        counts.forEach((key, count) -> decoded.put(decodeKey(key), count));
+        return decoded;
+    }
+}
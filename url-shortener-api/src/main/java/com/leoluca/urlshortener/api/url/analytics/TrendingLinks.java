@@ -0,0 +1,20 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * The most clicked links within a window.
+ *
+ * @param window 5m, 1h or 24h.
+ * @param asOf When the ranking was computed.
+ * @param links The links, most clicked first.
+ */
+public record TrendingLinks(String window, Instant asOf, List<Link> links) {
+
+    /**
+     * @param shortCode The short code.
+     * @param clicks The estimated clicks within the window, across all instances.
+     */
+    public record Link(String shortCode, long clicks) {}
+}
@@ -0,0 +1,289 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import com.leoluca.urlshortener.api.util.SpaceSaving;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Most clicked links over the last 5 minutes, hour and day, answered from memory.
+ * Clicks come in through the click aggregator thread ({@link ClickAnalytics}), which counts them into a ring of
+ * time slices per window, each slice a {@link SpaceSaving} summary. Once per refresh interval the same thread sums
+ * the live slices of each window and publishes the ranking, so reading it is a volatile read.
+ * With Redis every instance publishes its rankings as sorted sets every sync interval and sums them with those of
+ * the other instances, which makes the answer cluster-wide and at most one sync interval old.
+ */
+@Component
+public class TrendingTracker {
+
+    static final String KEY_PREFIX = "trending:";
+    static final String INSTANCES_KEY = "trending:instances";
+
+    private static final Logger logger = LoggerFactory.getLogger(TrendingTracker.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final int capacity;
+    private final int maxResults;
+    private final long refreshIntervalMillis;
+    private final Duration syncInterval;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<TrendingWindow, Slices> slices = new EnumMap<>(TrendingWindow.class);
+    private final ScheduledExecutorService syncer;
+    private long lastRefresh;
+
+    // This instance's rankings, kept at capacity entries so they sum up well with other instances
+    private volatile Map<TrendingWindow, List<TrendingLinks.Link>> local = Map.of();
+    // What gets served, cluster-wide if there is Redis
+    private volatile Map<TrendingWindow, TrendingLinks> trending = Map.of();
+
+    public TrendingTracker(@Nullable RedisTemplate<String, String> redisTemplate,
+                           @Value("${urlshortener.trending.capacity:1000}") int capacity,
+                           @Value("${urlshortener.trending.max-results:100}") int maxResults,
+                           @Value("${urlshortener.trending.refresh-interval:1s}") Duration refreshInterval,
+                           @Value("${urlshortener.trending.sync-interval:5s}") Duration syncInterval) {
+        this.redisTemplate = redisTemplate;
+        this.capacity = capacity;
+        this.maxResults = maxResults;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.syncInterval = syncInterval;
+        for (TrendingWindow window : TrendingWindow.values()) {
+            slices.put(window, new Slices(window, capacity));
+        }
+        this.syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "trending-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    void start() {
+        if (redisTemplate != null) {
+            long intervalMillis = syncInterval.toMillis();
+            syncer.scheduleWithFixedDelay(this::syncQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        syncer.shutdownNow();
+    }
+
+    /**
+     * @param window The window to rank over.
+     * @param limit The maximum number of links, capped at max-results.
+     * @return The most clicked links.
+     */
+    public TrendingLinks top(TrendingWindow window, int limit) {
+        TrendingLinks links = trending.get(window);
+        if (links == null) {
+            return new TrendingLinks(window.label(), Instant.now(), List.of());
+        }
+        int size = Math.clamp(limit, 0, links.links().size());
+        return size == links.links().size() ? links : new TrendingLinks(links.window(), links.asOf(), links.links().subList(0, size));
+    }
+
+    /**
+     * Counts one click. Only called from the click aggregator thread.
+     */
+    void record(String shortCode, long timestamp) {
+        for (Slices window : slices.values()) {
+            window.record(shortCode, timestamp);
+        }
+    }
+
+    /**
+     * Republishes the local rankings if the refresh interval has passed. Only called from the click aggregator thread.
+     */
+    void refresh(long now) {
+        if (now - lastRefresh < refreshIntervalMillis) {
+            return;
+        }
+        lastRefresh = now;
+
+        Map<TrendingWindow, List<TrendingLinks.Link>> rankings = new EnumMap<>(TrendingWindow.class);
+        slices.forEach((window, windowSlices) -> rankings.put(window, rank(windowSlices.counts(now), capacity)));
+        local = rankings;
+        if (redisTemplate == null) {
+            publish(rankings, List.of());
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (Exception e) {
+            logger.warn("Trending sync through Redis failed, serving the last ranking: {}", e.getMessage());
+            publish(local, List.of());
+        }
+    }
+
+    /**
+     * Publishes this instance's rankings and sums them with the ones the other live instances published.
+     */
+    void sync() {
+        Map<TrendingWindow, List<TrendingLinks.Link>> rankings = local;
+        long now = System.currentTimeMillis();
+        long stale = now - 3 * syncInterval.toMillis();
+        Duration ttl = syncInterval.multipliedBy(3);
+
+        List<Object> results = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                rankings.forEach((window, links) -> {
+                    // A peer reading in between sees this instance's ranking missing for one sync, which is fine
+                    String key = key(window, instanceId);
+                    redis.delete(key);
+                    if (!links.isEmpty()) {
+                        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>();
+                        links.forEach(link -> tuples.add(ZSetOperations.TypedTuple.of(link.shortCode(), (double) link.clicks())));
+                        redis.opsForZSet().add(key, tuples);
+                        redis.expire(key, ttl);
+                    }
+                });
+                redis.opsForZSet().add(INSTANCES_KEY, instanceId, now);
+                redis.opsForZSet().removeRangeByScore(INSTANCES_KEY, 0, stale);
+                redis.opsForZSet().range(INSTANCES_KEY, 0, -1);
+                return null;
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        Set<String> instances = (Set<String>) results.getLast();
+        List<String> peers = instances == null ? List.of()
+                : instances.stream().filter(instance -> !instance.equals(instanceId)).toList();
+        if (peers.isEmpty()) {
+            publish(rankings, List.of());
+            return;
+        }
+
+        List<Object> peerRankings = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                for (TrendingWindow window : TrendingWindow.values()) {
+                    for (String peer : peers) {
+                        redis.opsForZSet().reverseRangeWithScores(key(window, peer), 0, capacity - 1);
+                    }
+                }
+                return null;
+            }
+        });
+        publish(rankings, peerRankings);
+    }
+
+    /**
+     * Sums the local rankings with the peers' and makes the result what {@link #top} serves.
+     *
+     * @param rankings This instance's rankings.
+     * @param peerRankings The peers' sorted sets, window by window in enum order, as read by {@link #sync}.
+     */
+    @SuppressWarnings("unchecked")
+    private void publish(Map<TrendingWindow, List<TrendingLinks.Link>> rankings, List<Object> peerRankings) {
+        Instant asOf = Instant.now();
+        int peers = peerRankings.size() / TrendingWindow.values().length;
+        Map<TrendingWindow, TrendingLinks> published = new EnumMap<>(TrendingWindow.class);
+        for (TrendingWindow window : TrendingWindow.values()) {
+            List<TrendingLinks.Link> links = rankings.getOrDefault(window, List.of());
+            if (peers > 0) {
+                Map<String, Long> counts = new HashMap<>();
+                links.forEach(link -> counts.merge(link.shortCode(), link.clicks(), Long::sum));
+                for (int peer = 0; peer < peers; peer++) {
+                    Object ranking = peerRankings.get(window.ordinal() * peers + peer);
+                    if (ranking instanceof Set<?> tuples) {
+                        for (ZSetOperations.TypedTuple<String> tuple : (Set<ZSetOperations.TypedTuple<String>>) tuples) {
+                            counts.merge(tuple.getValue(), tuple.getScore().longValue(), Long::sum);
+                        }
+                    }
+                }
+                links = rank(counts, maxResults);
+            } else if (links.size() > maxResults) {
+                links = links.subList(0, maxResults);
+            }
+            published.put(window, new TrendingLinks(window.label(), asOf, List.copyOf(links)));
+        }
+        trending = published;
+    }
+
+    private static List<TrendingLinks.Link> rank(Map<String, Long> counts, int limit) {
+        List<TrendingLinks.Link> links = new ArrayList<>(counts.size());
+        counts.forEach((shortCode, clicks) -> links.add(new TrendingLinks.Link(shortCode, clicks)));
+        links.sort(Comparator.comparingLong(TrendingLinks.Link::clicks).reversed()
+                .thenComparing(TrendingLinks.Link::shortCode));
+        return links.size() > limit ? List.copyOf(links.subList(0, limit)) : links;
+    }
+
+    private static String key(TrendingWindow window, String instance) {
+        return KEY_PREFIX + window.label() + ':' + instance;
+    }
+
+    /**
+     * The ring of slices covering one window. A slot is cleared when a click for a newer slice lands in it.
+     */
+    private static final class Slices {
+
+        private final TrendingWindow window;
+        private final long sliceMillis;
+        private final List<SpaceSaving<String>> summaries = new ArrayList<>();
+        private final long[] starts = new long[TrendingWindow.SLICES];
+
+        Slices(TrendingWindow window, int capacity) {
+            this.window = window;
+            this.sliceMillis = window.sliceMillis();
+            for (int i = 0; i < TrendingWindow.SLICES; i++) {
+                summaries.add(new SpaceSaving<>(capacity));
+            }
+        }
+
+        void record(String shortCode, long timestamp) {
+            long start = Math.floorDiv(timestamp, sliceMillis) * sliceMillis;
+            int slot = (int) Math.floorMod(start / sliceMillis, TrendingWindow.SLICES);
+            if (starts[slot] != start) {
+                if (starts[slot] > start) {
+                    // Older than the whole ring, it can't be in any window anymore
+                    return;
+                }
+                summaries.get(slot).clear();
+                starts[slot] = start;
+            }
+            summaries.get(slot).offer(shortCode, 1);
+        }
+
+        // Every slice that ends after the window start counts, so the window is covered to within one slice
+        Map<String, Long> counts(long now) {
+            Map<String, Long> counts = new HashMap<>();
+            for (int slot = 0; slot < TrendingWindow.SLICES; slot++) {
+                if (starts[slot] + sliceMillis > now - window.millis() && starts[slot] <= now) {
+                    summaries.get(slot).forEach((shortCode, clicks) -> counts.merge(shortCode, clicks, Long::sum));
+                }
+            }
+            return counts;
+        }
+    }
+}
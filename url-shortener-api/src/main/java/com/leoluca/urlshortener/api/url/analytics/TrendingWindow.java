@@ -0,0 +1,49 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import java.time.Duration;
+
+/**
+ * The windows trending links are ranked over. Each window is covered by a ring of slices, so it slides in steps
+ * of one slice.
+ */
+public enum TrendingWindow {
+
+    FIVE_MINUTES("5m", Duration.ofMinutes(5)),
+    HOUR("1h", Duration.ofHours(1)),
+    DAY("24h", Duration.ofHours(24));
+
+    static final int SLICES = 12;
+
+    private final String label;
+    private final long millis;
+
+    TrendingWindow(String label, Duration length) {
+        this.label = label;
+        this.millis = length.toMillis();
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public long millis() {
+        return millis;
+    }
+
+    public long sliceMillis() {
+        return millis / SLICES;
+    }
+
+    /**
+     * @param label 5m, 1h or 24h.
+     * @return The window, or null if there is no such window.
+     */
+    public static TrendingWindow fromLabel(String label) {
+        for (TrendingWindow window : values()) {
+            if (window.label.equalsIgnoreCase(label)) {
+                return window;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,17 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Clicks on a short URL over a time range. Buckets without clicks are left out.
+ *
+ * @param shortCode The short code.
+ * @param granularity minute, hour or day.
+ * @param from The start of the range, inclusive.
+ * @param to The end of the range, exclusive.
+ * @param totalClicks The clicks summed over all buckets in the range.
+ * @param buckets The buckets with clicks, oldest first.
+ */
+public record UrlStats(String shortCode, String granularity, Instant from, Instant to, long totalClicks,
+                       List<UrlStatsBucket> buckets) {}
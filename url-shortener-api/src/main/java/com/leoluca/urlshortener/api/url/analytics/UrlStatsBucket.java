@@ -0,0 +1,141 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Clicks on one short URL within one time bucket, pre-aggregated so reading stats never touches raw events.
+ * Minute buckets only count clicks, hour and day buckets also break them down by referrer host and user agent family.
+ * The same class carries the deltas the aggregator writes, which are added onto the stored bucket.
+ */
+@Document(collection = "url_stats")
+public class UrlStatsBucket {
+
+    @Id
+    @JsonIgnore
+    private String id; // shortCode:granularity:bucket start in epoch millis
+    private String shortCode;
+    private String granularity;
+    private Date bucket; // Start of the bucket
+    private long clicks;
+    private Map<String, Long> referrers;
+    private Map<String, Long> agents;
+    // Dropped by a TTL index once the bucket is past its retention, null keeps it forever
+    @JsonIgnore
+    private Date expireAt;
+
+    public UrlStatsBucket() {}
+
+    public UrlStatsBucket(String shortCode, Granularity granularity, long bucketStart, Date expireAt) {
+        this.id = id(shortCode, granularity, bucketStart);
+        this.shortCode = shortCode;
+        this.granularity = granularity.label();
+        this.bucket = new Date(bucketStart);
+        this.expireAt = expireAt;
+    }
+
+    public static String id(String shortCode, Granularity granularity, long bucketStart) {
+        return shortCode + ':' + granularity.label() + ':' + bucketStart;
+    }
+
+    /**
+     * Adds another delta for the same bucket onto this one.
+     */
+    public void merge(UrlStatsBucket other) {
+        clicks += other.clicks;
+        if (other.referrers != null) {
+            other.referrers.forEach((referrer, count) -> referrers().merge(referrer, count, Long::sum));
+        }
+        if (other.agents != null) {
+            other.agents.forEach((agent, count) -> agents().merge(agent, count, Long::sum));
+        }
+    }
+
+    void addClick() {
+        clicks++;
+    }
+
+    Map<String, Long> referrers() {
+        if (referrers == null) {
+            referrers = new HashMap<>();
+        }
+        return referrers;
+    }
+
+    Map<String, Long> agents() {
+        if (agents == null) {
+            agents = new HashMap<>();
+        }
+        return agents;
+    }
+
+    // Getters and setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getShortCode() {
+        return shortCode;
+    }
+
+    public void setShortCode(String shortCode) {
+        this.shortCode = shortCode;
+    }
+
+    public String getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(String granularity) {
+        this.granularity = granularity;
+    }
+
+    public Date getBucket() {
+        return bucket;
+    }
+
+    public void setBucket(Date bucket) {
+        this.bucket = bucket;
+    }
+
+    public long getClicks() {
+        return clicks;
+    }
+
+    public void setClicks(long clicks) {
+        this.clicks = clicks;
+    }
+
+    public Map<String, Long> getReferrers() {
+        return referrers;
+    }
+
+    public void setReferrers(Map<String, Long> referrers) {
+        this.referrers = referrers;
+    }
+
+    public Map<String, Long> getAgents() {
+        return agents;
+    }
+
+    public void setAgents(Map<String, Long> agents) {
+        this.agents = agents;
+    }
+
+    public Date getExpireAt() {
+        return expireAt;
+    }
+
+    public void setExpireAt(Date expireAt) {
+        this.expireAt = expireAt;
+    }
+}
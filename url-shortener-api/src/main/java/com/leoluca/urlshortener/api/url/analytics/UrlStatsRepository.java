@@ -0,0 +1,29 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Storage for the pre-aggregated click buckets, MongoDB's url_stats collection or the embedded store.
+ */
+public interface UrlStatsRepository {
+
+    /**
+     * Adds click deltas onto the stored buckets, creating the ones that don't exist yet.
+     *
+     * @param deltas At most one delta per bucket.
+     * @return The ids of the buckets that couldn't be written.
+     */
+    Set<String> upsertAll(Collection<UrlStatsBucket> deltas);
+
+    /**
+     * @param shortCode The short code to get buckets for.
+     * @param granularity The bucket size.
+     * @param from The start of the range, inclusive.
+     * @param to The end of the range, exclusive.
+     * @return The buckets that have clicks, oldest first.
+     */
+    List<UrlStatsBucket> findBuckets(String shortCode, Granularity granularity, Date from, Date to);
+}
@@ -0,0 +1,63 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.exception.InvalidStatsQueryException;
+import com.leoluca.urlshortener.api.url.exception.UrlNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+
+@Service
+public class UrlStatsService {
+
+    private final UrlStatsRepository statsRepository;
+    private final URLRepository urlRepository;
+    private final int maxBuckets;
+
+    public UrlStatsService(UrlStatsRepository statsRepository,
+                           URLRepository urlRepository,
+                           @Value("${urlshortener.analytics.max-query-buckets:2000}") int maxBuckets) {
+        this.statsRepository = statsRepository;
+        this.urlRepository = urlRepository;
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * Retrieves the clicks on a short URL, bucketed by time. Clicks show up here within one flush interval.
+     *
+     * @param shortCode The short code to get stats for.
+     * @param granularityLabel minute, hour or day.
+     * @param from The start of the range, defaults to the granularity's default window before {@code to}.
+     * @param to The end of the range, defaults to now.
+     * @return The stats.
+     */
+    public UrlStats getStats(String shortCode, String granularityLabel, Instant from, Instant to) {
+        Granularity granularity = Granularity.fromLabel(granularityLabel);
+        if (granularity == null) {
+            throw new InvalidStatsQueryException("Unknown granularity " + granularityLabel + ", use minute, hour or day.");
+        }
+
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(granularity.defaultWindow());
+        if (!start.isBefore(end)) {
+            throw new InvalidStatsQueryException("The start of the range must be before its end.");
+        }
+        if ((end.toEpochMilli() - start.toEpochMilli()) / granularity.unitMillis() > maxBuckets) {
+            throw new InvalidStatsQueryException("The range spans more than " + maxBuckets + " "
+                    + granularity.label() + " buckets, use a coarser granularity.");
+        }
+
+        if (urlRepository.findByShortCode(shortCode).isEmpty()) {
+            throw new UrlNotFoundException("Short URL not found: " + shortCode);
+        }
+
+        // Include the bucket the start falls into, so a range starting mid-hour still gets that hour
+        Date bucketFrom = new Date(granularity.bucketStart(start.toEpochMilli()));
+        List<UrlStatsBucket> buckets = statsRepository.findBuckets(shortCode, granularity, bucketFrom, Date.from(end));
+        long totalClicks = buckets.stream().mapToLong(UrlStatsBucket::getClicks).sum();
+        return new UrlStats(shortCode, granularity.label(), start, end, totalClicks, buckets);
+    }
+}
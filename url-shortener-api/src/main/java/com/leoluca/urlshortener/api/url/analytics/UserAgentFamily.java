@@ -0,0 +1,64 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import java.util.Locale;
+
+/**
+ * Coarse browser families, enough to tell people from crawlers and scripts without a full user agent parser.
+ */
+public enum UserAgentFamily {
+
+    BOT, LIBRARY, EDGE, OPERA, FIREFOX, CHROME, SAFARI, OTHER, UNKNOWN;
+
+    private static final String[] BOT_MARKERS = {"bot", "crawl", "spider", "slurp", "preview", "facebookexternalhit"};
+    private static final String[] LIBRARY_MARKERS = {"curl/", "wget/", "python", "java/", "okhttp", "go-http-client", "axios", "node-fetch"};
+
+    /**
+     * Checks the markers in order, since most browsers also claim to be the ones they descend from
+     * (Edge and Opera say Chrome, Chrome says Safari).
+     *
+     * @param userAgent The User-Agent header, may be null.
+     * @return The family.
+     */
+    public static UserAgentFamily of(String userAgent) {
+        if (userAgent == null || userAgent.isBlank()) {
+            return UNKNOWN;
+        }
+
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        if (containsAny(agent, BOT_MARKERS)) {
+            return BOT;
+        }
+        if (containsAny(agent, LIBRARY_MARKERS)) {
+            return LIBRARY;
+        }
+        if (agent.contains("edg/") || agent.contains("edge/")) {
+            return EDGE;
+        }
+        if (agent.contains("opr/") || agent.contains("opera")) {
+            return OPERA;
+        }
+        if (agent.contains("firefox/") || agent.contains("fxios/")) {
+            return FIREFOX;
+        }
+        if (agent.contains("chrome/") || agent.contains("crios/") || agent.contains("chromium/")) {
+            return CHROME;
+        }
+        if (agent.contains("safari/")) {
+            return SAFARI;
+        }
+        return OTHER;
+    }
+
+    public String label() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean containsAny(String agent, String[] markers) {
+        for (String marker : markers) {
+            if (agent.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,54 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.leoluca.urlshortener.api.util.RendezvousHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Which short codes this API instance is responsible for, when several run behind a balancer.
+ * The instances come from static config, every code is owned by the one rendezvous hashing picks. Each instance still
+ * serves every code, ownership only decides how long L1 keeps it: with a balancer that routes by short code, an
+ * instance's L1 ends up holding its own share instead of a copy of everything, so N instances cache N times as
+ * many distinct codes in memory. Without a node list this instance owns every code.
+ */
+@Component
+public class CacheAffinity {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheAffinity.class);
+
+    private final RendezvousHash ring;
+    private final String nodeId;
+
+    public CacheAffinity(@Value("${urlshortener.cluster.nodes:}") List<String> nodes,
+                         @Value("${urlshortener.cluster.node-id:${HOSTNAME:}}") String nodeId) {
+        if (nodes.isEmpty()) {
+            this.ring = null;
+            this.nodeId = nodeId;
+            return;
+        }
+        if (!nodes.contains(nodeId)) {
+            throw new IllegalArgumentException("The node id '" + nodeId + "' is not one of the cluster nodes " + nodes);
+        }
+        this.ring = new RendezvousHash(nodes);
+        this.nodeId = nodeId;
+        logger.info("Running as {} of {} cluster nodes", nodeId, nodes.size());
+    }
+
+    /**
+     * @return Whether this instance owns the short code, always true outside a cluster.
+     */
+    public boolean isLocal(String shortCode) {
+        return ring == null || ring.owner(shortCode).equals(nodeId);
+    }
+
+    /**
+     * @return The id of the instance owning the short code, this instance's outside a cluster.
+     */
+    public String ownerOf(String shortCode) {
+        return ring == null ? nodeId : ring.owner(shortCode);
+    }
+}
@@ -0,0 +1,92 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPassword;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class CacheConfig {
+
+    /**
+     * Subscribes to the invalidation channel so L1 entries are dropped when another instance changes a mapping.
+     * Messages published while the subscription is down are lost, the L1 TTL bounds how stale an entry can get.
+     * The embedded profile runs without Redis and as a single instance, so there is nothing to subscribe to.
+     */
+    @Bean
+    @Profile("!embedded")
+    public RedisMessageListenerContainer shortUrlInvalidationListener(RedisConnectionFactory connectionFactory,
+                                                                      ShortUrlCache shortUrlCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> shortUrlCache.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(ShortUrlCache.INVALIDATION_CHANNEL));
+        return container;
+    }
+
+    /**
+     * Keys and value encoding of the shared cache in Redis. The defaults keep the original one string key per code
+     * with plain values; switching the codec to compact is safe on a running cluster since plain values are still
+     * read, switching the layout starts from an empty cache (the old keys expire or can be dropped).
+     * <p>
+     * With a list of nodes the short codes are sharded over those Redis servers instead of the one of
+     * spring.data.redis, which keeps everything else (invalidations, rate limits, trending). Credentials, database
+     * and timeout are taken from spring.data.redis for every node.
+     */
+    @Bean
+    @Profile("!embedded")
+    public RedisUrlLayout redisUrlLayout(RedisConnectionFactory connectionFactory,
+                                         RedisProperties redisProperties,
+                                         @Value("${urlshortener.cache.redis.nodes:}") List<String> nodes,
+                                         @Value("${urlshortener.cache.redis.layout:string}") RedisUrlLayout.Type type,
+                                         @Value("${urlshortener.cache.redis.codec:plain}") RedisUrlLayout.Codec codec,
+                                         @Value("${urlshortener.cache.redis.hash.buckets:65536}") int buckets) {
+        if (nodes.isEmpty()) {
+            return RedisUrlLayout.create(connectionFactory, type, codec, buckets);
+        }
+
+        List<RedisUrlLayout> shards = new ArrayList<>(nodes.size());
+        List<LettuceConnectionFactory> nodeConnectionFactories = new ArrayList<>(nodes.size());
+        for (String node : nodes) {
+            LettuceConnectionFactory nodeConnectionFactory = nodeConnectionFactory(node, redisProperties);
+            nodeConnectionFactories.add(nodeConnectionFactory);
+            shards.add(RedisUrlLayout.create(nodeConnectionFactory, type, codec, buckets));
+        }
+        return new ShardedRedisUrlLayout(nodes, shards, nodeConnectionFactories);
+    }
+
+    private static LettuceConnectionFactory nodeConnectionFactory(String node, RedisProperties redisProperties) {
+        int separator = node.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Redis nodes have to be given as host:port, not " + node);
+        }
+
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                node.substring(0, separator), Integer.parseInt(node.substring(separator + 1)));
+        configuration.setDatabase(redisProperties.getDatabase());
+        configuration.setUsername(redisProperties.getUsername());
+        configuration.setPassword(RedisPassword.of(redisProperties.getPassword()));
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder clientConfiguration = LettuceClientConfiguration.builder();
+        if (redisProperties.getTimeout() != null) {
+            clientConfiguration.commandTimeout(redisProperties.getTimeout());
+        }
+
+        LettuceConnectionFactory connectionFactory = new LettuceConnectionFactory(configuration, clientConfiguration.build());
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        return connectionFactory;
+    }
+}
@@ -0,0 +1,158 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Serializes cache values (see {@link ShortUrlCache#cacheValue}) into a compact binary form for Redis.
+ * Common URL fragments ({@code https://www.}, {@code .com/}, {@code ?utm_source=}, ...) are replaced by one byte
+ * each from a dictionary shared by every instance, and the expiry of an expiring link takes 8 bytes instead of
+ * 13 digits and a separator.
+ * <p>
+ * Layout: {@code [format][expiresAt if expiring][body]}. Bytes 0x01 to 0x1F never occur in a normalized URL, so they
+ * are free for the dictionary codes, and the format byte tells compact values apart from plain UTF-8 ones written
+ * before, which always start with a printable character and are still read as they are.
+ * The dictionary is part of the stored format, new fragments can only be appended and only up to code 0x1F.
+ */
+public final class CompactUrlSerializer implements RedisSerializer<String> {
+
+    private static final byte TOKENIZED = 1;
+    private static final byte TOKENIZED_EXPIRING = 2;
+    // URLs that contain a byte the dictionary uses, never produced by the normalizer but stored safely anyway
+    private static final byte RAW = 3;
+    private static final byte RAW_EXPIRING = 4;
+
+    private static final String[] DICTIONARY = {
+            "https://www.", "http://www.", "https://", "http://",
+            ".com/", ".org/", ".net/", ".de/", ".ch/", ".co.uk/", ".com", ".html", ".php",
+            "?utm_source=", "&utm_medium=", "&utm_campaign=", "&utm_content=", "utm_",
+            "youtube.com/watch?v=", "github.com/", "/wiki/", "/search?q=", "/products/", "/articles/", "/blog/",
+            "/index", ".jpg", ".png", "?id=", "&id=", "/en/"
+    };
+    private static final byte[][] TOKENS = new byte[DICTIONARY.length + 1][];
+    // Codes of the tokens starting with each byte, longest first so the greedy match takes the biggest saving
+    private static final byte[][] CODES_BY_FIRST_BYTE = new byte[128][];
+
+    static {
+        List<List<Integer>> byFirstByte = new ArrayList<>();
+        for (int i = 0; i < CODES_BY_FIRST_BYTE.length; i++) {
+            byFirstByte.add(new ArrayList<>());
+        }
+        for (int code = 1; code <= DICTIONARY.length; code++) {
+            TOKENS[code] = DICTIONARY[code - 1].getBytes(StandardCharsets.US_ASCII);
+            byFirstByte.get(TOKENS[code][0]).add(code);
+        }
+        for (int first = 0; first < CODES_BY_FIRST_BYTE.length; first++) {
+            List<Integer> codes = byFirstByte.get(first);
+            codes.sort(Comparator.comparingInt((Integer code) -> TOKENS[code].length).reversed());
+            CODES_BY_FIRST_BYTE[first] = new byte[codes.size()];
+            for (int i = 0; i < codes.size(); i++) {
+                CODES_BY_FIRST_BYTE[first][i] = codes.get(i).byteValue();
+            }
+        }
+    }
+
+    @Override
+    public byte[] serialize(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        long expiresAt = ShortUrlCache.expiresAt(value);
+        boolean expiring = expiresAt != ShortUrlCache.NO_EXPIRY;
+        byte[] url = (expiring ? value.substring(value.indexOf('|') + 1) : value).getBytes(StandardCharsets.UTF_8);
+        int headerLength = 1 + (expiring ? Long.BYTES : 0);
+        // Tokenizing never makes a URL longer
+        byte[] out = new byte[headerLength + url.length];
+        ByteBuffer header = ByteBuffer.wrap(out, 0, headerLength);
+        if (expiring) {
+            header.position(1);
+            header.putLong(expiresAt);
+        }
+
+        if (containsCodes(url)) {
+            out[0] = expiring ? RAW_EXPIRING : RAW;
+            System.arraycopy(url, 0, out, headerLength, url.length);
+            return out;
+        }
+
+        out[0] = expiring ? TOKENIZED_EXPIRING : TOKENIZED;
+        int length = headerLength;
+        for (int i = 0; i < url.length; ) {
+            int code = url[i] >= 0 ? longestMatch(url, i) : 0;
+            if (code == 0) {
+                out[length++] = url[i++];
+            } else {
+                out[length++] = (byte) code;
+                i += TOKENS[code].length;
+            }
+        }
+        return length == out.length ? out : Arrays.copyOf(out, length);
+    }
+
+    @Override
+    public String deserialize(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == 0 || bytes[0] < TOKENIZED || bytes[0] > RAW_EXPIRING) {
+            // Written as plain UTF-8
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        byte format = bytes[0];
+        boolean expiring = format == TOKENIZED_EXPIRING || format == RAW_EXPIRING;
+        int offset = 1 + (expiring ? Long.BYTES : 0);
+        String longUrl;
+        if (format == RAW || format == RAW_EXPIRING) {
+            longUrl = new String(bytes, offset, bytes.length - offset, StandardCharsets.UTF_8);
+        } else {
+            int length = 0;
+            for (int i = offset; i < bytes.length; i++) {
+                length += isCode(bytes[i]) ? TOKENS[bytes[i]].length : 1;
+            }
+            byte[] url = new byte[length];
+            int position = 0;
+            for (int i = offset; i < bytes.length; i++) {
+                if (isCode(bytes[i])) {
+                    byte[] token = TOKENS[bytes[i]];
+                    System.arraycopy(token, 0, url, position, token.length);
+                    position += token.length;
+                } else {
+                    url[position++] = bytes[i];
+                }
+            }
+            longUrl = new String(url, StandardCharsets.UTF_8);
+        }
+        return expiring ? ShortUrlCache.cacheValue(longUrl, ByteBuffer.wrap(bytes, 1, Long.BYTES).getLong()) : longUrl;
+    }
+
+    private static int longestMatch(byte[] url, int position) {
+        for (byte code : CODES_BY_FIRST_BYTE[url[position]]) {
+            byte[] token = TOKENS[code];
+            if (Arrays.equals(url, position, Math.min(position + token.length, url.length), token, 0, token.length)) {
+                return code;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean containsCodes(byte[] url) {
+        for (byte b : url) {
+            if (isCode(b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCode(byte b) {
+        return b >= 1 && b <= DICTIONARY.length;
+    }
+}
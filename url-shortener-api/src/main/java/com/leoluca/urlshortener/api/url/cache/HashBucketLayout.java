@@ -0,0 +1,92 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Short codes spread over a fixed number of hashes, {@code shortUrls:b:<bucket>} with one field per code.
+ * Small hashes are stored as listpacks, which drops the per-key overhead of the string layout, as long as every bucket
+ * stays below {@code hash-max-listpack-entries} and every value below {@code hash-max-listpack-value}. The defaults
+ * (128 entries, 64 bytes) are too small for this, e.g. 10M links over 65536 buckets needs about 160 entries per
+ * bucket, so raise both on the server; a bucket that outgrows either turns into a regular hash table.
+ * <p>
+ * Links with a TTL get a per-field expiry (HPEXPIRE), which needs Redis 7.4 or newer. On older servers those
+ * writes fail and are only logged like any other failed cache fill, permanent links are unaffected.
+ */
+public final class HashBucketLayout implements RedisUrlLayout {
+
+    static final String KEY_PREFIX = "shortUrls:b:";
+
+    private static final byte[] HPEXPIRE_FIELDS = "FIELDS".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] ONE_FIELD = "1".getBytes(StandardCharsets.US_ASCII);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisSerializer<String> valueSerializer;
+    private final int buckets;
+
+    @SuppressWarnings("unchecked")
+    public HashBucketLayout(RedisTemplate<String, String> redisTemplate, int buckets) {
+        if (buckets < 1) {
+            throw new IllegalArgumentException("The hash layout needs at least one bucket, not " + buckets);
+        }
+        this.redisTemplate = redisTemplate;
+        this.valueSerializer = (RedisSerializer<String>) redisTemplate.getHashValueSerializer();
+        this.buckets = buckets;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> getAll(List<String> shortCodes) {
+        return (List<String>) (List<?>) redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String shortCode : shortCodes) {
+                connection.hashCommands().hGet(key(shortCode), field(shortCode));
+            }
+            return null;
+        }, valueSerializer);
+    }
+
+    @Override
+    public void setAll(List<Entry> entries) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Entry entry : entries) {
+                set(connection, entry);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void delete(String shortCode) {
+        redisTemplate.execute((RedisCallback<Long>) connection ->
+                connection.hashCommands().hDel(key(shortCode), field(shortCode)));
+    }
+
+    private void set(RedisConnection connection, Entry entry) {
+        byte[] key = key(entry.shortCode());
+        byte[] field = field(entry.shortCode());
+        connection.hashCommands().hSet(key, field, valueSerializer.serialize(entry.value()));
+        if (entry.ttl() != null) {
+            byte[] millis = Long.toString(entry.ttl().toMillis()).getBytes(StandardCharsets.US_ASCII);
+            connection.execute("HPEXPIRE", key, millis, HPEXPIRE_FIELDS, ONE_FIELD, field);
+        }
+    }
+
+    private byte[] key(String shortCode) {
+        return (KEY_PREFIX + bucket(shortCode)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] field(String shortCode) {
+        return shortCode.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Short codes are base62 counters and random strings, String.hashCode alone clusters them in the low bits
+    int bucket(String shortCode) {
+        int hash = shortCode.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), buckets);
+    }
+}
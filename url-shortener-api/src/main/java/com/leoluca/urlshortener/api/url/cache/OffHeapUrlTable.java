@@ -0,0 +1,288 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.codegen.Base62;
+import com.leoluca.urlshortener.api.util.OffHeapLongLongMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Optional tier holding every short code mapping off-heap, so the whole working set resolves without Redis
+ * and without millions of Strings on the heap.
+ * Short codes are packed into a long (base62 value plus length), long URLs are stored as length-prefixed UTF-8
+ * in direct-memory slabs, and an off-heap hash map points from the packed code to the slab offset.
+ * A lookup allocates nothing until it builds the String for the Location header. Links with an expiry are stored
+ * in their {@link ShortUrlCache#cacheValue} form and stay here as gone after they expire.
+ * Mappings never change once issued, so the table is loaded with one streaming pass over the database and then
+ * catches up with newly inserted URLs periodically. Write-throughs from this instance show up right away.
+ * Disabled by default, it then holds no memory and every lookup misses.
+ */
+@Component
+public class OffHeapUrlTable {
+
+    private static final Logger logger = LoggerFactory.getLogger(OffHeapUrlTable.class);
+    private static final long MISSING = -1;
+    // Marks an invalidated code, the map has no removal
+    private static final long REMOVED = -2;
+    // 62^10 < 2^60, so the length fits in the top 4 bits
+    private static final int MAX_PACKED_LENGTH = 10;
+    // How far the catch-up looks back beyond the last run, covers clock skew between instances
+    private static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+
+    private final URLRepository urlRepository;
+    private final boolean enabled;
+    private final OffHeapLongLongMap index;
+    private final List<ByteBuffer> slabs = new CopyOnWriteArrayList<>();
+    private final int slabSize;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final Counter hits;
+    private final Counter misses;
+    // Only touched by writers, which hold the lock
+    private int slabPosition;
+    private volatile long arenaBytes;
+    private volatile long syncedUntilMillis;
+
+    public OffHeapUrlTable(URLRepository urlRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${urlshortener.cache.offheap.enabled:false}") boolean enabled,
+                           @Value("${urlshortener.cache.offheap.initial-capacity:1000000}") int initialCapacity,
+                           @Value("${urlshortener.cache.offheap.slab-size:64MB}") DataSize slabSize,
+                           @Value("${urlshortener.cache.offheap.refresh-interval:5s}") Duration refreshInterval) {
+        this(urlRepository, meterRegistry, enabled ? new OffHeapLongLongMap(initialCapacity) : null, slabSize,
+                refreshInterval);
+    }
+
+    /**
+     * @param index The map from packed code to slab offset, null to disable the table.
+     */
+    OffHeapUrlTable(URLRepository urlRepository,
+                    MeterRegistry meterRegistry,
+                    OffHeapLongLongMap index,
+                    DataSize slabSize,
+                    Duration refreshInterval) {
+        this.urlRepository = urlRepository;
+        this.enabled = index != null;
+        this.index = index;
+        this.slabSize = Math.toIntExact(slabSize.toBytes());
+        this.refreshInterval = refreshInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "offheap-url-table");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.hits = Counter.builder("cache.gets")
+                .tags("cache", ShortUrlCache.CACHE_NAME, "tier", "offheap", "result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("cache.gets")
+                .tags("cache", ShortUrlCache.CACHE_NAME, "tier", "offheap", "result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("cache.offheap.entries", this, OffHeapUrlTable::size)
+                .description("Short codes held in the off-heap table")
+                .register(meterRegistry);
+        Gauge.builder("cache.offheap.memory", this, OffHeapUrlTable::memoryUsage)
+                .description("Bytes of direct memory used by the off-heap table, index and URL bytes")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads every stored mapping in the background, then keeps catching up with URLs inserted by other instances.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        if (!enabled) {
+            return;
+        }
+        scheduler.execute(() -> {
+            try {
+                load();
+            } catch (Exception e) {
+                logger.error("Failed to load the off-heap URL table, it only holds write-throughs: {}", e.getMessage(), e);
+            }
+            long intervalMillis = refreshInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::catchUpQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @param shortCode The short code to look up.
+     * @return The long URL, or null if the table doesn't have it (or is disabled).
+     */
+    public String get(String shortCode) {
+        if (!enabled) {
+            return null;
+        }
+
+        long key = pack(shortCode);
+        long offset = key == 0 ? MISSING : index.get(key, MISSING);
+        if (offset < 0) {
+            misses.increment();
+            return null;
+        }
+
+        ByteBuffer slab = slabs.get((int) (offset >>> 32));
+        int position = (int) offset;
+        byte[] longUrl = new byte[slab.getInt(position)];
+        slab.get(position + Integer.BYTES, longUrl);
+        hits.increment();
+        return new String(longUrl, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Stores a mapping. Storing a mapping that is already there costs no memory.
+     */
+    public void put(String shortCode, String longUrl) {
+        if (!enabled) {
+            return;
+        }
+        long key = pack(shortCode);
+        if (key == 0) {
+            return; // Not a base62 code, resolved by the other tiers
+        }
+
+        byte[] bytes = longUrl.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length + Integer.BYTES > slabSize) {
+            return;
+        }
+        synchronized (this) {
+            long existing = index.get(key, MISSING);
+            if (existing >= 0 && matches(existing, bytes)) {
+                return;
+            }
+            if (existing == MISSING && index.isFull()) {
+                return; // New codes are left to the other tiers
+            }
+            index.put(key, append(bytes));
+        }
+    }
+
+    /**
+     * Drops a mapping. Its bytes stay in the slab, invalidations are rare enough not to reclaim them.
+     */
+    public void invalidate(String shortCode) {
+        long key = pack(shortCode);
+        if (!enabled || key == 0) {
+            return;
+        }
+        synchronized (this) {
+            if (index.get(key, MISSING) != MISSING) {
+                index.put(key, REMOVED);
+            }
+        }
+    }
+
+    public int size() {
+        return enabled ? index.size() : 0;
+    }
+
+    public long memoryUsage() {
+        return enabled ? index.memoryUsage() + (long) slabs.size() * slabSize : 0;
+    }
+
+    void load() {
+        long start = System.currentTimeMillis();
+        // Anything inserted while we stream is picked up by the first catch-up
+        syncedUntilMillis = start;
+        long count = putAll(urlRepository.streamMappings(null));
+        int size = Math.max(1, size());
+        logger.info("Loaded {} mappings into the off-heap URL table in {} ms, {} bytes of direct memory per entry",
+                count, System.currentTimeMillis() - start, (index.memoryUsage() + arenaBytes) / size);
+    }
+
+    void catchUp() {
+        long now = System.currentTimeMillis();
+        putAll(urlRepository.streamMappings(new Date(syncedUntilMillis - CATCH_UP_MARGIN.toMillis())));
+        syncedUntilMillis = now;
+    }
+
+    private void catchUpQuietly() {
+        try {
+            catchUp();
+        } catch (Exception e) {
+            logger.warn("Off-heap URL table catch-up failed, retrying with the next interval: {}", e.getMessage());
+        }
+    }
+
+    private long putAll(Stream<URL> mappings) {
+        long count = 0;
+        try (Stream<URL> urls = mappings) {
+            for (URL url : (Iterable<URL>) urls::iterator) {
+                put(url.getShortCode(), ShortUrlCache.cacheValue(url));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private long append(byte[] bytes) {
+        int length = Integer.BYTES + bytes.length;
+        if (slabs.isEmpty() || slabPosition + length > slabSize) {
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+            slabPosition = 0;
+        }
+
+        ByteBuffer slab = slabs.get(slabs.size() - 1);
+        slab.putInt(slabPosition, bytes.length);
+        slab.put(slabPosition + Integer.BYTES, bytes);
+        long offset = (long) (slabs.size() - 1) << 32 | slabPosition;
+        slabPosition += length;
+        arenaBytes += length;
+        return offset;
+    }
+
+    private boolean matches(long offset, byte[] bytes) {
+        ByteBuffer slab = slabs.get((int) (offset >>> 32));
+        int position = (int) offset;
+        return slab.getInt(position) == bytes.length
+                && slab.slice(position + Integer.BYTES, bytes.length).equals(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * @return The code's base62 value with its length in the top 4 bits, or 0 if it isn't a base62 code of up to
+     * ten characters.
+     */
+    static long pack(String shortCode) {
+        int length = shortCode.length();
+        if (length == 0 || length > MAX_PACKED_LENGTH) {
+            return 0;
+        }
+
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = Base62.digit(shortCode.charAt(i));
+            if (digit < 0) {
+                return 0;
+            }
+            value = value * Base62.RADIX + digit;
+        }
+        return (long) length << 60 | value;
+    }
+}
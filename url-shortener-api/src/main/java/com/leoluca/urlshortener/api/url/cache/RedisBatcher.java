@@ -0,0 +1,168 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent Redis reads into one MGET (or pipeline of HGETs) and cache fills into one pipeline.
+ * Each direction has a dispatcher thread. It takes whatever queued up while the previous round trip was in
+ * flight, waits up to the batch window for more, and sends it all at once. Under load batches grow on their own,
+ * when idle a lookup only pays the window on top of its round trip.
+ * Lookups are bounded by the callers waiting on them, writes aren't, so at most {@link #PENDING_WRITE_BATCHES} full
+ * batches of writes are queued and fills beyond that are dropped. When Redis is slow or down, queueing more would
+ * only grow the heap, and a dropped fill just means the code is read from MongoDB again later.
+ */
+final class RedisBatcher {
+
+    static final int PENDING_WRITE_BATCHES = 64;
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisBatcher.class);
+
+    private record Lookup(String shortCode, CompletableFuture<String> result) {}
+
+    private final RedisUrlLayout layout;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final BlockingQueue<Lookup> lookups = new LinkedBlockingQueue<>();
+    private final BlockingQueue<RedisUrlLayout.Entry> writes;
+    private final DistributionSummary lookupBatchSizes;
+    private final DistributionSummary writeBatchSizes;
+    private final Counter droppedWrites;
+    private final Thread lookupDispatcher;
+    private final Thread writeDispatcher;
+    private volatile boolean running = true;
+
+    RedisBatcher(RedisUrlLayout layout, MeterRegistry meterRegistry, Duration window, int maxBatchSize) {
+        this.layout = layout;
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.writes = new LinkedBlockingQueue<>(maxBatchSize * PENDING_WRITE_BATCHES);
+        this.lookupBatchSizes = DistributionSummary.builder("cache.redis.batch.size")
+                .description("Commands sent to Redis in one round trip")
+                .tags("operation", "mget")
+                .register(meterRegistry);
+        this.writeBatchSizes = DistributionSummary.builder("cache.redis.batch.size")
+                .description("Commands sent to Redis in one round trip")
+                .tags("operation", "set")
+                .register(meterRegistry);
+        this.droppedWrites = Counter.builder("cache.redis.writes.dropped")
+                .description("Cache fills dropped because too many writes were waiting for Redis")
+                .register(meterRegistry);
+        this.lookupDispatcher = Thread.ofPlatform().name("redis-mget-batcher").daemon().start(this::dispatchLookups);
+        this.writeDispatcher = Thread.ofPlatform().name("redis-set-batcher").daemon().start(this::dispatchWrites);
+    }
+
+    /**
+     * @param shortCode The short code to read.
+     * @return The value, or null if it isn't stored, once the batch it went out with is back.
+     */
+    CompletableFuture<String> get(String shortCode) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new IllegalStateException("Redis batcher is shut down"));
+            return result;
+        }
+        lookups.add(new Lookup(shortCode, result));
+        return result;
+    }
+
+    /**
+     * Queues a write, it goes out with the next pipeline. Failures are only logged and a full queue drops the write,
+     * it's a cache fill.
+     *
+     * @param ttl The expiry, or null for none.
+     */
+    void set(String shortCode, String value, Duration ttl) {
+        if (running && !writes.offer(new RedisUrlLayout.Entry(shortCode, value, ttl))) {
+            droppedWrites.increment();
+        }
+    }
+
+    void close() {
+        running = false;
+        lookupDispatcher.interrupt();
+        writeDispatcher.interrupt();
+        Lookup lookup;
+        while ((lookup = lookups.poll()) != null) {
+            lookup.result().completeExceptionally(new IllegalStateException("Redis batcher is shut down"));
+        }
+    }
+
+    private void dispatchLookups() {
+        List<Lookup> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                collect(lookups, batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            // The same hot code often shows up several times in one batch, it's only read once
+            Map<String, List<CompletableFuture<String>>> waiting = new LinkedHashMap<>();
+            for (Lookup lookup : batch) {
+                waiting.computeIfAbsent(lookup.shortCode(), shortCode -> new ArrayList<>(1)).add(lookup.result());
+            }
+            lookupBatchSizes.record(waiting.size());
+
+            try {
+                List<String> shortCodes = new ArrayList<>(waiting.keySet());
+                List<String> values = layout.getAll(shortCodes);
+                for (int i = 0; i < shortCodes.size(); i++) {
+                    String value = values == null ? null : values.get(i);
+                    waiting.get(shortCodes.get(i)).forEach(result -> result.complete(value));
+                }
+            } catch (Exception e) {
+                waiting.values().forEach(results -> results.forEach(result -> result.completeExceptionally(e)));
+            }
+            batch.clear();
+        }
+    }
+
+    private void dispatchWrites() {
+        List<RedisUrlLayout.Entry> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                collect(writes, batch);
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            writeBatchSizes.record(batch.size());
+            try {
+                layout.setAll(batch);
+            } catch (Exception e) {
+                logger.warn("Failed to write {} cache entries to Redis: {}", batch.size(), e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    // Blocks for the first element, then takes everything queued and whatever arrives within the window
+    private <T> void collect(BlockingQueue<T> queue, List<T> batch) throws InterruptedException {
+        batch.add(queue.take());
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        long deadline = System.nanoTime() + windowNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            T next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * How short code mappings are laid out in Redis: which keys they live under and how their values are encoded.
+ * Reads and writes always come in batches, {@link RedisBatcher} sends each batch in one round trip.
+ */
+public interface RedisUrlLayout {
+
+    enum Type {
+        /** One string key per short code, {@code shortUrls::<code>}. */
+        STRING,
+        /** Short codes spread over a fixed number of hashes, one field per code. */
+        HASH
+    }
+
+    enum Codec {
+        /** Values are stored as UTF-8 text. */
+        PLAIN,
+        /** Values are stored as {@link CompactUrlSerializer} bytes, plain values written before are still read. */
+        COMPACT
+    }
+
+    /**
+     * @param shortCode The short code.
+     * @param value The long URL or {@link ShortUrlCache#cacheValue} to store.
+     * @param ttl The expiry, or null for none.
+     */
+    record Entry(String shortCode, String value, Duration ttl) {}
+
+    /**
+     * @param shortCodes The short codes to read.
+     * @return The stored value per short code in the same order, null for codes that aren't stored.
+     */
+    List<String> getAll(List<String> shortCodes);
+
+    void setAll(List<Entry> entries);
+
+    void delete(String shortCode);
+
+    /**
+     * @param buckets Number of hashes for the {@link Type#HASH} layout, ignored by the string layout.
+     */
+    static RedisUrlLayout create(RedisConnectionFactory connectionFactory, Type type, Codec codec, int buckets) {
+        RedisSerializer<String> valueSerializer = codec == Codec.COMPACT ? new CompactUrlSerializer() : RedisSerializer.string();
+        RedisTemplate<String, String> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(connectionFactory);
+        redisTemplate.setKeySerializer(RedisSerializer.string());
+        redisTemplate.setHashKeySerializer(RedisSerializer.string());
+        redisTemplate.setValueSerializer(valueSerializer);
+        redisTemplate.setHashValueSerializer(valueSerializer);
+        redisTemplate.afterPropertiesSet();
+        return type == Type.HASH ? new HashBucketLayout(redisTemplate, buckets) : new StringKeyLayout(redisTemplate);
+    }
+}
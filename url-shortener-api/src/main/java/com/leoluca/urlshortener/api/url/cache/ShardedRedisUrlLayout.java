@@ -0,0 +1,160 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.leoluca.urlshortener.api.util.RendezvousHash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Spreads short codes over several independent Redis nodes, each code lives on the node rendezvous hashing picks
+ * for it. Routing happens in the client, so the nodes need no cluster mode and every API instance configured with
+ * the same node list finds every code. A batch touching several nodes is sent to all of them at once, it takes as long
+ * as the slowest node instead of the sum. Adding or removing a node only moves that node's share of the codes,
+ * which then just miss once and are refilled from the database.
+ */
+public final class ShardedRedisUrlLayout implements RedisUrlLayout, AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedRedisUrlLayout.class);
+
+    private final RendezvousHash ring;
+    private final List<RedisUrlLayout> shards;
+    private final List<? extends DisposableBean> resources;
+    private final ExecutorService fanOut = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param nodeIds The id of every node, e.g. its host:port. Routing only depends on these, not on their order.
+     * @param shards The layout of every node, in the same order.
+     * @param resources Released on close, e.g. the connection factories of the nodes.
+     */
+    public ShardedRedisUrlLayout(List<String> nodeIds, List<RedisUrlLayout> shards, List<? extends DisposableBean> resources) {
+        if (nodeIds.size() != shards.size()) {
+            throw new IllegalArgumentException("Got " + nodeIds.size() + " node ids for " + shards.size() + " shards");
+        }
+        this.ring = new RendezvousHash(nodeIds);
+        this.shards = List.copyOf(shards);
+        this.resources = List.copyOf(resources);
+    }
+
+    @Override
+    public List<String> getAll(List<String> shortCodes) {
+        int[] owners = new int[shortCodes.size()];
+        List<List<String>> codesByShard = group(shortCodes, owners);
+        int single = singleShard(codesByShard);
+        if (single >= 0) {
+            return shards.get(single).getAll(shortCodes);
+        }
+
+        List<List<String>> valuesByShard = new ArrayList<>(shards.size());
+        List<CompletableFuture<List<String>>> pending = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<String> codes = codesByShard.get(shard);
+            RedisUrlLayout layout = shards.get(shard);
+            pending.add(codes.isEmpty() ? null : CompletableFuture.supplyAsync(() -> layout.getAll(codes), fanOut));
+        }
+        for (CompletableFuture<List<String>> values : pending) {
+            valuesByShard.add(values == null ? null : join(values));
+        }
+
+        // Each shard answers in the order its codes were sent, which is their order in the batch
+        int[] positions = new int[shards.size()];
+        String[] values = new String[shortCodes.size()];
+        for (int i = 0; i < values.length; i++) {
+            List<String> shardValues = valuesByShard.get(owners[i]);
+            int position = positions[owners[i]]++;
+            values[i] = shardValues == null ? null : shardValues.get(position);
+        }
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public void setAll(List<Entry> entries) {
+        List<List<Entry>> entriesByShard = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            entriesByShard.add(new ArrayList<>());
+        }
+        for (Entry entry : entries) {
+            entriesByShard.get(ring.select(entry.shortCode())).add(entry);
+        }
+        int single = singleShard(entriesByShard);
+        if (single >= 0) {
+            shards.get(single).setAll(entries);
+            return;
+        }
+
+        List<CompletableFuture<Void>> pending = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            List<Entry> shardEntries = entriesByShard.get(shard);
+            RedisUrlLayout layout = shards.get(shard);
+            if (!shardEntries.isEmpty()) {
+                pending.add(CompletableFuture.runAsync(() -> layout.setAll(shardEntries), fanOut));
+            }
+        }
+        pending.forEach(ShardedRedisUrlLayout::join);
+    }
+
+    @Override
+    public void delete(String shortCode) {
+        shards.get(ring.select(shortCode)).delete(shortCode);
+    }
+
+    /**
+     * @return The id of the node a short code lives on.
+     */
+    public String nodeFor(String shortCode) {
+        return ring.owner(shortCode);
+    }
+
+    @Override
+    public void close() {
+        fanOut.close();
+        for (DisposableBean resource : resources) {
+            try {
+                resource.destroy();
+            } catch (Exception e) {
+                logger.warn("Failed to release a Redis node: {}", e.getMessage());
+            }
+        }
+    }
+
+    private List<List<String>> group(List<String> shortCodes, int[] owners) {
+        List<List<String>> codesByShard = new ArrayList<>(shards.size());
+        for (int shard = 0; shard < shards.size(); shard++) {
+            codesByShard.add(new ArrayList<>());
+        }
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = ring.select(shortCodes.get(i));
+            codesByShard.get(owners[i]).add(shortCodes.get(i));
+        }
+        return codesByShard;
+    }
+
+    // The only shard a batch goes to, or -1 if it spans several, so the common case skips the fan-out
+    private static int singleShard(List<? extends List<?>> batchesByShard) {
+        int single = -1;
+        for (int shard = 0; shard < batchesByShard.size(); shard++) {
+            if (!batchesByShard.get(shard).isEmpty()) {
+                if (single >= 0) {
+                    return -1;
+                }
+                single = shard;
+            }
+        }
+        return single;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Answers "does this short code exist?" without the database for codes that don't.
+ * A Bloom filter over every issued code rules out codes that were never issued, a short-lived negative cache
+ * catches the rest (Bloom false positives) after their first miss. Codes issued by other instances are picked up
+ * by a periodic catch-up query on insertion time, until then their write-through Redis entry resolves them.
+ * While Redis is unavailable nothing vouches for those codes, so a Bloom filter miss goes to MongoDB instead, once per
+ * negative cache TTL.
+ */
+@Component
+public class ShortCodeFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShortCodeFilter.class);
+    // How far the catch-up looks back beyond the last run, covers clock skew between instances
+    static final Duration CATCH_UP_MARGIN = Duration.ofMinutes(1);
+    // Derives the second Bloom filter hash from the first
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final URLRepository urlRepository;
+    private final BloomFilter filter;
+    private final Cache<String, Boolean> missingCodes;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final Counter rejected;
+    private final Counter unconfirmed;
+    // Until the issued codes are loaded every code might exist
+    private volatile boolean loaded;
+    private volatile long syncedUntilMillis;
+
+    public ShortCodeFilter(URLRepository urlRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${urlshortener.cache.short-codes.expected-insertions:10000000}") long expectedInsertions,
+                           @Value("${urlshortener.cache.short-codes.false-positive-rate:0.01}") double falsePositiveRate,
+                           @Value("${urlshortener.cache.short-codes.refresh-interval:5s}") Duration refreshInterval,
+                           @Value("${urlshortener.cache.negative.maximum-size:100000}") long negativeMaximumSize,
+                           @Value("${urlshortener.cache.negative.ttl:30s}") Duration negativeTtl) {
+        this.urlRepository = urlRepository;
+        this.filter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.missingCodes = Caffeine.newBuilder()
+                .maximumSize(negativeMaximumSize)
+                .expireAfterWrite(negativeTtl)
+                .build();
+        this.refreshInterval = refreshInterval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "short-code-filter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.rejected = Counter.builder("shorturl.resolve.unknown")
+                .description("Resolves answered as not found without querying MongoDB")
+                .register(meterRegistry);
+        this.unconfirmed = Counter.builder("shorturl.resolve.unknown.unconfirmed")
+                .description("Short code filter misses looked up in MongoDB because Redis was unavailable")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads every issued code in the background, then keeps catching up with codes issued by other instances.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        scheduler.execute(() -> {
+            try {
+                load();
+            } catch (Exception e) {
+                logger.error("Failed to load the short code filter, unknown codes keep querying MongoDB: {}",
+                        e.getMessage(), e);
+                return;
+            }
+            long intervalMillis = refreshInterval.toMillis();
+            scheduler.scheduleWithFixedDelay(this::catchUpQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * A code another instance issued after the last catch-up, less its margin, isn't in the filter yet. Normally its
+     * Redis entry answers before the filter is asked, while Redis is unavailable such a miss has to be looked up.
+     *
+     * @param shortCode      A short code that isn't in any cache tier.
+     * @param redisAvailable Whether Redis could have answered for recently issued codes.
+     * @return False if the code definitely doesn't exist, true if it has to be looked up.
+     */
+    public boolean mightExist(String shortCode, boolean redisAvailable) {
+        if (loaded) {
+            long hash = hash(shortCode);
+            if (!filter.mightContain(hash, mix(hash + GOLDEN_GAMMA))) {
+                if (redisAvailable) {
+                    rejected.increment();
+                    return false;
+                }
+                unconfirmed.increment();
+            }
+        }
+        if (missingCodes.getIfPresent(shortCode) != null) {
+            rejected.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers for a short while that the database doesn't know a code.
+     */
+    public void recordMissing(String shortCode) {
+        missingCodes.put(shortCode, Boolean.TRUE);
+    }
+
+    /**
+     * Records a code that was just issued.
+     */
+    public void add(String shortCode) {
+        long hash = hash(shortCode);
+        filter.put(hash, mix(hash + GOLDEN_GAMMA));
+        missingCodes.invalidate(shortCode);
+    }
+
+    void load() {
+        long start = System.currentTimeMillis();
+        // Anything inserted while we stream is picked up by the first catch-up
+        syncedUntilMillis = start;
+        long count = addAll(urlRepository.streamShortCodes(null));
+        loaded = true;
+        logger.info("Loaded {} short codes into the short code filter in {} ms", count, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Adds the codes of everything inserted since the last run, a range scan on the _id index in MongoDB.
+     */
+    void catchUp() {
+        long now = System.currentTimeMillis();
+        addAll(urlRepository.streamShortCodes(new Date(syncedUntilMillis - CATCH_UP_MARGIN.toMillis())));
+        syncedUntilMillis = now;
+    }
+
+    private void catchUpQuietly() {
+        try {
+            catchUp();
+        } catch (Exception e) {
+            logger.warn("Short code filter catch-up failed, retrying with the next interval: {}", e.getMessage());
+        }
+    }
+
+    private long addAll(Stream<URL> shortCodes) {
+        long count = 0;
+        try (Stream<URL> urls = shortCodes) {
+            for (URL url : (Iterable<URL>) urls::iterator) {
+                if (url.getShortCode() != null) {
+                    add(url.getShortCode());
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // FNV-1a over the characters, no allocation on the resolve path, mixed so all bits depend on every character
+    private static long hash(String shortCode) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < shortCode.length(); i++) {
+            hash ^= shortCode.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    // Murmur3 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85B53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
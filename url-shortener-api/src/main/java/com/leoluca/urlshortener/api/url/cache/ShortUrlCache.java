@@ -0,0 +1,389 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Scheduler;
+import com.leoluca.urlshortener.api.url.Resolution;
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Two-tier cache for short code lookups.
+ * L1 is a bounded in-process Caffeine cache (W-TinyLFU eviction), L2 is Redis, laid out by {@link RedisUrlLayout}.
+ * When enabled, the {@link OffHeapUrlTable} sits between the two and answers everything it holds without Redis.
+ * Invalidations are broadcast over Redis pub/sub so every instance drops its local copy.
+ * Concurrent Redis reads and writes go out in batches through {@link RedisBatcher}.
+ * Without Redis (the embedded profile) only L1 is used. What expires from L1 is kept a while longer in a stale tier,
+ * which is only read while the backends are unavailable (see {@link #getStale}). In a cluster, L1 keeps codes owned by other instances
+ * (see {@link CacheAffinity}) only for {@code foreign-ttl}.
+ * <p>
+ * Links with an expiry are cached as {@code expiresAtMillis|longUrl} in every tier, all other links as the plain
+ * long URL (which always starts with its scheme, never with a digit). Past their expiry such entries resolve as gone
+ * for another {@code gone-retention}, so expired codes are answered without asking the database, and they carry
+ * that deadline as their TTL in L1 and Redis. L1 expires entries on Caffeine's timer wheel, driven by a scheduler
+ * so expired links leave the cache without waiting for the next read.
+ */
+@Component
+public class ShortUrlCache {
+
+    public static final String KEY_PREFIX = "shortUrls::";
+    public static final String INVALIDATION_CHANNEL = "shortUrls:invalidations";
+    public static final String CACHE_NAME = "shortUrls";
+
+    static final long NO_EXPIRY = Long.MIN_VALUE;
+
+    private static final Logger logger = LoggerFactory.getLogger(ShortUrlCache.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisUrlLayout redisLayout;
+    private final RedisBatcher redisBatcher;
+    private final OffHeapUrlTable offHeapTable;
+    private final CacheAffinity affinity;
+    private final Cache<String, String> localCache;
+    private final Cache<String, String> staleCache;
+    private final Duration localTtl;
+    private final Duration foreignTtl;
+    private final Duration goneRetention;
+    // Lets us ignore our own invalidation messages when they come back from Redis
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+
+    public ShortUrlCache(@Nullable RedisTemplate<String, String> redisTemplate,
+                         @Nullable RedisUrlLayout redisLayout,
+                         OffHeapUrlTable offHeapTable,
+                         CacheAffinity affinity,
+                         MeterRegistry meterRegistry,
+                         @Value("${urlshortener.cache.local.maximum-size:100000}") long maximumSize,
+                         @Value("${urlshortener.cache.local.ttl:10m}") Duration localTtl,
+                         @Value("${urlshortener.cache.local.foreign-ttl:10s}") Duration foreignTtl,
+                         @Value("${urlshortener.cache.stale.maximum-size:100000}") long staleMaximumSize,
+                         @Value("${urlshortener.cache.stale.ttl:1h}") Duration staleTtl,
+                         @Value("${urlshortener.cache.redis.batch-window:100us}") Duration batchWindow,
+                         @Value("${urlshortener.cache.redis.max-batch-size:256}") int maxBatchSize,
+                         @Value("${urlshortener.expiry.gone-retention:1h}") Duration goneRetention) {
+        this.redisTemplate = redisTemplate;
+        this.redisLayout = redisLayout;
+        this.redisBatcher = redisLayout == null ? null
+                : new RedisBatcher(redisLayout, meterRegistry, batchWindow, maxBatchSize);
+        this.offHeapTable = offHeapTable;
+        this.affinity = affinity;
+        this.localTtl = localTtl;
+        this.foreignTtl = foreignTtl;
+        this.goneRetention = goneRetention;
+        this.staleCache = Caffeine.newBuilder()
+                .maximumSize(staleMaximumSize)
+                .expireAfterWrite(staleTtl)
+                .build();
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, String>() {
+                    @Override
+                    public long expireAfterCreate(String key, String value, long currentTime) {
+                        return localTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, String value, long currentTime, long currentDuration) {
+                        return localTtl.toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, String value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .scheduler(Scheduler.systemScheduler())
+                // Called synchronously with the removal, so an entry is always in one of the two
+                .evictionListener((String shortCode, String value, RemovalCause cause) -> {
+                    if (cause == RemovalCause.EXPIRED) {
+                        staleCache.put(shortCode, value);
+                    }
+                })
+                .recordStats()
+                .build();
+
+        // L1 reports cache.gets / cache.evictions through Caffeine's own stats, L2 uses the same meter names
+        CaffeineCacheMetrics.monitor(meterRegistry, localCache, CACHE_NAME, "tier", "l1");
+        this.remoteHits = Counter.builder("cache.gets")
+                .tags("cache", CACHE_NAME, "tier", "l2", "result", "hit")
+                .register(meterRegistry);
+        this.remoteMisses = Counter.builder("cache.gets")
+                .tags("cache", CACHE_NAME, "tier", "l2", "result", "miss")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (redisBatcher != null) {
+            redisBatcher.close();
+        }
+    }
+
+    /**
+     * @param url A stored URL.
+     * @return What the cache tiers hold for it, see {@link #cacheValue(String, Date)}.
+     */
+    public static String cacheValue(URL url) {
+        return cacheValue(url.getLongUrl(), url.getExpiresAt());
+    }
+
+    /**
+     * @param longUrl The long URL.
+     * @param expiresAt When the link expires, or null if it never does.
+     * @return The long URL itself for links that never expire, otherwise the expiry followed by the long URL.
+     */
+    public static String cacheValue(String longUrl, Date expiresAt) {
+        return expiresAt == null ? longUrl : cacheValue(longUrl, expiresAt.getTime());
+    }
+
+    static String cacheValue(String longUrl, long expiresAtMillis) {
+        return expiresAtMillis + "|" + longUrl;
+    }
+
+    /**
+     * Looks up a short code in L1, then in the off-heap table. Off-heap hits are promoted into L1.
+     *
+     * @param shortCode The short code to look up.
+     * @return The cached resolution (found or gone), or null if neither has the code.
+     */
+    public Resolution getLocal(String shortCode) {
+        String value = localCache.getIfPresent(shortCode);
+        if (value != null) {
+            return resolve(value);
+        }
+
+        value = offHeapTable.get(shortCode);
+        if (value != null) {
+            putLocal(shortCode, value, ttlFor(value, null));
+            return resolve(value);
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a short code in Redis, hits are promoted into L1 and the off-heap table.
+     * The lookup shares one round trip with whatever other lookups are in flight at the same time.
+     *
+     * @param shortCode The short code to look up, after {@link #getLocal} missed.
+     * @param guard Bounds the wait for Redis.
+     * @return The cached resolution (found or gone), or null if Redis doesn't have the code or isn't used.
+     * @throws com.leoluca.urlshortener.api.url.exception.BackendUnavailableException If Redis failed or didn't answer in time.
+     */
+    public Resolution getRemote(String shortCode, BackendGuard guard) {
+        if (redisBatcher == null) {
+            return null;
+        }
+
+        String value = guard.call(() -> redisBatcher.get(shortCode));
+        if (value == null) {
+            remoteMisses.increment();
+            return null;
+        }
+
+        remoteHits.increment();
+        putLocal(shortCode, value, ttlFor(value, null));
+        offHeapTable.put(shortCode, value);
+        return resolve(value);
+    }
+
+    /**
+     * Looks up what L1 held for a short code before it expired there, the last resort while the backends are down.
+     * {@link #invalidate} drops a code from here too, on every instance, expired links still resolve as gone.
+     *
+     * @param shortCode The short code to look up.
+     * @return The stale resolution, or null if L1 never had the code or it's past the stale TTL.
+     */
+    public Resolution getStale(String shortCode) {
+        String value = staleCache.getIfPresent(shortCode);
+        return value == null ? null : resolve(value);
+    }
+
+    /**
+     * Stores a mapping in both tiers without an expiry in Redis, unless the link itself expires.
+     *
+     * @param shortCode The short code.
+     * @param value The long URL it resolves to, or the {@link #cacheValue} of a link that expires.
+     */
+    public void put(String shortCode, String value) {
+        put(shortCode, value, null);
+    }
+
+    /**
+     * Stores a mapping in both tiers. The Redis write is queued and goes out with the next pipeline.
+     *
+     * @param shortCode The short code.
+     * @param value The long URL it resolves to, or the {@link #cacheValue} of a link that expires.
+     * @param ttl How long the entry may live, or null to use the tier defaults. Expiring links never outlive
+     *            their expiry plus the gone retention.
+     */
+    public void put(String shortCode, String value, Duration ttl) {
+        ttl = ttlFor(value, ttl);
+        if (ttl != null && !ttl.isPositive()) {
+            return;
+        }
+
+        putLocal(shortCode, value, ttl);
+        offHeapTable.put(shortCode, value);
+        if (redisBatcher == null) {
+            return;
+        }
+        redisBatcher.set(shortCode, value, ttl);
+    }
+
+    /**
+     * Stores a mapping in L1 and the off-heap table only, for while Redis is unavailable.
+     *
+     * @param shortCode The short code.
+     * @param value The long URL it resolves to, or the {@link #cacheValue} of a link that expires.
+     */
+    public void putWithoutRedis(String shortCode, String value) {
+        Duration ttl = ttlFor(value, null);
+        if (ttl != null && !ttl.isPositive()) {
+            return;
+        }
+        putLocal(shortCode, value, ttl);
+        offHeapTable.put(shortCode, value);
+    }
+
+    /**
+     * Stores many mappings in both tiers, with all Redis writes sent in a single pipeline.
+     *
+     * @param mappings The long URL (or {@link #cacheValue}) per short code.
+     * @param ttl How long the entries may live, or null to use the tier defaults.
+     */
+    public void putAll(Map<String, String> mappings, Duration ttl) {
+        List<RedisUrlLayout.Entry> entries = new ArrayList<>(mappings.size());
+        mappings.forEach((shortCode, value) -> {
+            Duration entryTtl = ttlFor(value, ttl);
+            if (entryTtl == null || entryTtl.isPositive()) {
+                entries.add(new RedisUrlLayout.Entry(shortCode, value, entryTtl));
+                putLocal(shortCode, value, entryTtl);
+                offHeapTable.put(shortCode, value);
+            }
+        });
+        if (entries.isEmpty() || redisLayout == null) {
+            return;
+        }
+        redisLayout.setAll(entries);
+    }
+
+    /**
+     * Looks up a short code in L1 only, without touching Redis or the L1 statistics.
+     *
+     * @param shortCode The short code to look up.
+     * @return The locally cached value (long URL or {@link #cacheValue}), or null.
+     */
+    public String peekLocal(String shortCode) {
+        return localCache.policy().getIfPresentQuietly(shortCode);
+    }
+
+    /**
+     * Drops a mapping from both tiers and tells the other instances to drop their L1 copy.
+     *
+     * @param shortCode The short code to invalidate.
+     */
+    public void invalidate(String shortCode) {
+        localCache.invalidate(shortCode);
+        staleCache.invalidate(shortCode);
+        offHeapTable.invalidate(shortCode);
+        if (redisLayout == null) {
+            return;
+        }
+        redisLayout.delete(shortCode);
+        redisTemplate.convertAndSend(INVALIDATION_CHANNEL, instanceId + ":" + shortCode);
+    }
+
+    /**
+     * Handles an invalidation message published by any instance (including this one).
+     *
+     * @param message The message body in the form "instanceId:shortCode".
+     */
+    void onInvalidation(String message) {
+        int separator = message.indexOf(':');
+        if (separator < 0) {
+            logger.warn("Ignoring malformed invalidation message: {}", message);
+            return;
+        }
+
+        if (message.regionMatches(0, instanceId, 0, separator) && separator == instanceId.length()) {
+            return; // Already evicted locally in invalidate()
+        }
+
+        String shortCode = message.substring(separator + 1);
+        localCache.invalidate(shortCode);
+        staleCache.invalidate(shortCode);
+        offHeapTable.invalidate(shortCode);
+    }
+
+    private void putLocal(String shortCode, String value, Duration ttl) {
+        // Codes another instance owns only stay long enough to absorb a burst, L1 is kept for our own share
+        if (!affinity.isLocal(shortCode) && (ttl == null || ttl.compareTo(foreignTtl) > 0)) {
+            ttl = foreignTtl;
+        }
+        if (ttl == null || ttl.compareTo(localTtl) >= 0) {
+            localCache.put(shortCode, value);
+            return;
+        }
+        if (!ttl.isPositive()) {
+            return;
+        }
+
+        // Entries that expire sooner than the default get their own deadline
+        localCache.policy().expireVariably()
+                .ifPresentOrElse(
+                        expiration -> expiration.put(shortCode, value, ttl),
+                        () -> localCache.put(shortCode, value));
+    }
+
+    /**
+     * @return The given TTL for links that never expire, for expiring links the time until their gone retention
+     * ends if that is shorter (zero or negative once it has).
+     */
+    private Duration ttlFor(String value, Duration ttl) {
+        long expiresAt = expiresAt(value);
+        if (expiresAt == NO_EXPIRY) {
+            return ttl;
+        }
+        Duration remaining = Duration.ofMillis(expiresAt + goneRetention.toMillis() - System.currentTimeMillis());
+        return ttl == null || remaining.compareTo(ttl) < 0 ? remaining : ttl;
+    }
+
+    private static Resolution resolve(String value) {
+        long expiresAt = expiresAt(value);
+        if (expiresAt == NO_EXPIRY) {
+            return Resolution.found(value);
+        }
+        if (expiresAt <= System.currentTimeMillis()) {
+            return Resolution.gone();
+        }
+        return Resolution.found(value.substring(value.indexOf('|') + 1));
+    }
+
+    static long expiresAt(String value) {
+        if (value.isEmpty() || !Character.isDigit(value.charAt(0))) {
+            return NO_EXPIRY;
+        }
+        int separator = value.indexOf('|');
+        return separator < 0 ? NO_EXPIRY : Long.parseLong(value, 0, separator, 10);
+    }
+}
@@ -0,0 +1,55 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One string key per short code. Every key costs a dict entry, a key object and its own TTL slot on top of the
+ * value, which dominates for short URLs but keeps every command O(1) and every entry individually expirable.
+ */
+public final class StringKeyLayout implements RedisUrlLayout {
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    public StringKeyLayout(RedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public List<String> getAll(List<String> shortCodes) {
+        List<String> keys = new ArrayList<>(shortCodes.size());
+        for (String shortCode : shortCodes) {
+            keys.add(ShortUrlCache.KEY_PREFIX + shortCode);
+        }
+        return redisTemplate.opsForValue().multiGet(keys);
+    }
+
+    @Override
+    public void setAll(List<Entry> entries) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                for (Entry entry : entries) {
+                    String key = ShortUrlCache.KEY_PREFIX + entry.shortCode();
+                    if (entry.ttl() == null) {
+                        redis.opsForValue().set(key, entry.value());
+                    } else {
+                        redis.opsForValue().set(key, entry.value(), entry.ttl());
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void delete(String shortCode) {
+        redisTemplate.delete(ShortUrlCache.KEY_PREFIX + shortCode);
+    }
+}
@@ -0,0 +1,53 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+/**
+ * Fixed-width base62 encoding used for short codes.
+ */
+public final class Base62 {
+
+    public static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    public static final int RADIX = 62;
+
+    private Base62() {}
+
+    /**
+     * Encodes a non-negative value into exactly {@code width} characters, most significant digit first.
+     *
+     * @param value The value to encode, must be below 62^width.
+     * @param width The number of characters to produce.
+     * @return The encoded value, left padded with the zero digit.
+     */
+    public static String encode(long value, int width) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Cannot encode negative value: " + value);
+        }
+
+        char[] digits = new char[width];
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = CHARACTERS.charAt((int) (value % RADIX));
+            value /= RADIX;
+        }
+
+        if (value != 0) {
+            throw new IllegalArgumentException("Value does not fit in " + width + " base62 characters");
+        }
+        return new String(digits);
+    }
+
+    /**
+     * @param c A base62 character.
+     * @return Its digit value, or -1 if it is not part of the alphabet.
+     */
+    public static int digit(char c) {
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A';
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 26;
+        }
+        if (c >= '0' && c <= '9') {
+            return c - '0' + 52;
+        }
+        return -1;
+    }
+}
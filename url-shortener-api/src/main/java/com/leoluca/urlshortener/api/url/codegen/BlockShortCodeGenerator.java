@@ -0,0 +1,81 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates 7-character codes from a global counter.
+ * Each instance leases a block of ids from the {@link IdBlockSource} and hands them out locally, so there is one
+ * remote call per block instead of per code. Ids go through a bijective permutation of [0, 62^7) before encoding,
+ * which keeps codes unique but stops consecutive links from getting look-alike codes.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.strategy", havingValue = "block", matchIfMissing = true)
+public class BlockShortCodeGenerator implements ShortCodeGenerator {
+
+    static final int CODE_LENGTH = 7;
+    static final long CAPACITY = 3_521_614_606_208L; // 62^7
+
+    // Both multipliers are coprime with 62^7 (odd and not a multiple of 31), so multiplying is a bijection.
+    // They stay below 2^20 so id * multiplier can't overflow a long for ids below 2^42.
+    private static final long FIRST_MULTIPLIER = 1_046_527L;
+    private static final long SECOND_MULTIPLIER = 917_503L;
+    private static final long OFFSET = 1_234_567_890_123L;
+
+    private final IdBlockSource blockSource;
+    private final long blockSize;
+
+    // Not synchronized so leasing a block over the network doesn't pin a virtual thread to its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Current lease, guarded by lock
+    private long next;
+    private long limit;
+
+    public BlockShortCodeGenerator(IdBlockSource blockSource,
+                                   @Value("${urlshortener.codegen.block.size:1000}") long blockSize) {
+        this.blockSource = blockSource;
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public String nextShortCode() {
+        long id;
+        lock.lock();
+        try {
+            if (next >= limit) {
+                next = blockSource.reserve(blockSize);
+                limit = next + blockSize;
+            }
+            id = next++;
+        } finally {
+            lock.unlock();
+        }
+
+        if (id >= CAPACITY) {
+            throw new IllegalStateException("The 7-character short code space is exhausted");
+        }
+        return Base62.encode(permute(id), CODE_LENGTH);
+    }
+
+    /**
+     * Maps an id onto another id in [0, 62^7), one to one. Not meant to be cryptographically strong.
+     */
+    static long permute(long id) {
+        long mixed = (id * FIRST_MULTIPLIER) % CAPACITY;
+        mixed = reverseDigits(mixed);
+        return (mixed * SECOND_MULTIPLIER + OFFSET) % CAPACITY;
+    }
+
+    private static long reverseDigits(long value) {
+        long reversed = 0;
+        for (int i = 0; i < CODE_LENGTH; i++) {
+            reversed = reversed * Base62.RADIX + value % Base62.RADIX;
+            value /= Base62.RADIX;
+        }
+        return reversed;
+    }
+}
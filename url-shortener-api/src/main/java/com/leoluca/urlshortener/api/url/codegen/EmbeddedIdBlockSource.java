@@ -0,0 +1,24 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import com.leoluca.urlshortener.api.embedded.EmbeddedStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Leases id blocks from the embedded store's sequence, for single-node deployments without Redis or MongoDB.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.block.source", havingValue = "embedded")
+public class EmbeddedIdBlockSource implements IdBlockSource {
+
+    private final EmbeddedStore store;
+
+    public EmbeddedIdBlockSource(EmbeddedStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public long reserve(long blockSize) {
+        return store.reserveIds(blockSize);
+    }
+}
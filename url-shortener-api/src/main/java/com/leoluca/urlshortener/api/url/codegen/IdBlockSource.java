@@ -0,0 +1,15 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+/**
+ * Hands out disjoint ranges of a global sequence, shared by every API instance.
+ */
+public interface IdBlockSource {
+
+    /**
+     * Atomically reserves the next {@code blockSize} ids.
+     *
+     * @param blockSize The number of ids to reserve.
+     * @return The first id of the reserved range, the range is [first, first + blockSize).
+     */
+    long reserve(long blockSize);
+}
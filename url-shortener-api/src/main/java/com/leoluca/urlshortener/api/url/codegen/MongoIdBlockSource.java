@@ -0,0 +1,73 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Leases id blocks with an atomic $inc on a counter document. The default, MongoDB already holds the URLs and is
+ * the only durable store, so the sequence can't fall behind the codes it has handed out.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.block.source", havingValue = "mongo", matchIfMissing = true)
+public class MongoIdBlockSource implements IdBlockSource {
+
+    static final String COLLECTION = "counters";
+    static final String COUNTER_ID = "shortUrls";
+
+    private static final Logger logger = LoggerFactory.getLogger(MongoIdBlockSource.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIdBlockSource(MongoTemplate mongoTemplate, @Nullable RedisTemplate<String, String> redisTemplate) {
+        this.mongoTemplate = mongoTemplate;
+        if (redisTemplate != null) {
+            catchUpWithRedis(redisTemplate);
+        }
+    }
+
+    /**
+     * Deployments that leased blocks from Redis before have their high-water mark there, the counter document
+     * must not start below it or the first blocks would hand out existing short codes again.
+     */
+    private void catchUpWithRedis(RedisTemplate<String, String> redisTemplate) {
+        String redisSequence;
+        try {
+            redisSequence = redisTemplate.opsForValue().get(RedisIdBlockSource.SEQUENCE_KEY);
+        } catch (RuntimeException e) {
+            logger.warn("Could not check {} in Redis for a higher sequence: {}", RedisIdBlockSource.SEQUENCE_KEY, e.getMessage());
+            return;
+        }
+        if (redisSequence != null) {
+            mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(COUNTER_ID)),
+                    new Update().max("seq", Long.parseLong(redisSequence)),
+                    FindAndModifyOptions.options().upsert(true),
+                    Document.class,
+                    COLLECTION);
+        }
+    }
+
+    @Override
+    public long reserve(long blockSize) {
+        Document counter = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(COUNTER_ID)),
+                new Update().inc("seq", blockSize),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                Document.class,
+                COLLECTION);
+        if (counter == null) {
+            throw new IllegalStateException("Could not reserve an id block from " + COLLECTION);
+        }
+        return counter.get("seq", Number.class).longValue() - blockSize;
+    }
+}
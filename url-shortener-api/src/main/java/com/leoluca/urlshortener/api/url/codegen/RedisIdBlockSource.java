@@ -0,0 +1,89 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Leases id blocks with a single INCRBY on a Redis counter.
+ * Redis is also used as an evictable cache, so the counter can disappear (FLUSHALL, a restart without persistence,
+ * maxmemory eviction) and a fresh INCRBY would hand out ids, and with them short codes, a second time. The end of
+ * every leased block is therefore also written to the MongoDB counter document {@link MongoIdBlockSource} uses,
+ * before the block is handed out. When the Redis counter is missing it is seeded from there (SET NX) instead of
+ * starting over at 0. Costs one MongoDB write per block on top of the INCRBY.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.block.source", havingValue = "redis")
+public class RedisIdBlockSource implements IdBlockSource {
+
+    static final String SEQUENCE_KEY = "shortUrls:sequence";
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisIdBlockSource.class);
+
+    // INCRBY that refuses to start a missing counter at 0, returns nil instead
+    private static final RedisScript<Long> INCREMENT_EXISTING = new DefaultRedisScript<>("""
+            if redis.call('EXISTS', KEYS[1]) == 0 then
+                return false
+            end
+            return redis.call('INCRBY', KEYS[1], ARGV[1])
+            """, Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MongoTemplate mongoTemplate;
+
+    public RedisIdBlockSource(RedisTemplate<String, String> redisTemplate, MongoTemplate mongoTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public long reserve(long blockSize) {
+        Long end = increment(blockSize);
+        if (end == null) {
+            seed();
+            end = increment(blockSize);
+            if (end == null) {
+                throw new IllegalStateException(SEQUENCE_KEY + " vanished again right after it was seeded");
+            }
+        }
+
+        // Durable before anyone gets to use the block
+        mongoTemplate.findAndModify(
+                counterQuery(),
+                new Update().max("seq", end),
+                FindAndModifyOptions.options().upsert(true),
+                Document.class,
+                MongoIdBlockSource.COLLECTION);
+        return end - blockSize;
+    }
+
+    private Long increment(long blockSize) {
+        return redisTemplate.execute(INCREMENT_EXISTING, List.of(SEQUENCE_KEY), Long.toString(blockSize));
+    }
+
+    private void seed() {
+        Document counter = mongoTemplate.findOne(counterQuery(), Document.class, MongoIdBlockSource.COLLECTION);
+        long highWaterMark = counter == null ? 0 : counter.get("seq", Number.class).longValue();
+        // Only one instance gets to seed, the others just use its value
+        Boolean seeded = redisTemplate.opsForValue().setIfAbsent(SEQUENCE_KEY, Long.toString(highWaterMark));
+        if (Boolean.TRUE.equals(seeded)) {
+            logger.warn("{} was missing in Redis, seeded it with the durable high-water mark {}", SEQUENCE_KEY, highWaterMark);
+        }
+    }
+
+    private static Query counterQuery() {
+        return Query.query(Criteria.where("_id").is(MongoIdBlockSource.COUNTER_ID));
+    }
+}
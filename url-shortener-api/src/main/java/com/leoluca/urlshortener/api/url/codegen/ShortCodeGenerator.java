@@ -0,0 +1,13 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+/**
+ * Produces short codes that are unique by construction, so callers never have to check the database for collisions.
+ * The active strategy is picked with the urlshortener.codegen.strategy property.
+ */
+public interface ShortCodeGenerator {
+
+    /**
+     * @return A short code that has not been handed out before.
+     */
+    String nextShortCode();
+}
@@ -0,0 +1,78 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Snowflake-style generator that needs no shared state at all, only a worker id that is unique per instance.
+ * There is no default for the worker id, two instances both falling back to the same one would issue the same codes.
+ * Ids pack 40 bits of milliseconds since 2025-01-01 (about 34 years), 8 bits of worker id and a 10 bit sequence,
+ * which needs 10 base62 characters instead of 7.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.codegen.strategy", havingValue = "snowflake")
+public class SnowflakeShortCodeGenerator implements ShortCodeGenerator {
+
+    static final int CODE_LENGTH = 10;
+    static final long EPOCH = 1_735_689_600_000L; // 2025-01-01T00:00:00Z
+
+    private static final int WORKER_BITS = 8;
+    private static final int SEQUENCE_BITS = 10;
+    private static final int ID_BITS = 40 + WORKER_BITS + SEQUENCE_BITS;
+    private static final long ID_MASK = (1L << ID_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_WORKER_ID = (1L << WORKER_BITS) - 1;
+    private static final long MIX_MULTIPLIER = 0x9E3779B97F4A7C15L; // odd, so multiplying mod 2^58 is a bijection
+
+    private final long workerId;
+    private final LongSupplier clock;
+
+    // Guarded by this
+    private long lastTimestamp = -1;
+    private long sequence;
+
+    public SnowflakeShortCodeGenerator(@Value("${urlshortener.codegen.snowflake.worker-id}") long workerId) {
+        this(workerId, System::currentTimeMillis);
+    }
+
+    SnowflakeShortCodeGenerator(long workerId, LongSupplier clock) {
+        if (workerId < 0 || workerId > MAX_WORKER_ID) {
+            throw new IllegalArgumentException("Worker id must be between 0 and " + MAX_WORKER_ID + ", got " + workerId);
+        }
+        this.workerId = workerId;
+        this.clock = clock;
+    }
+
+    @Override
+    public synchronized String nextShortCode() {
+        // Never go back in time, if the clock does we keep counting from the last timestamp we used
+        long timestamp = Math.max(clock.getAsLong() - EPOCH, lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // Sequence exhausted for this millisecond, borrow the next one instead of spinning
+                timestamp++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = timestamp;
+
+        long id = (timestamp << (WORKER_BITS + SEQUENCE_BITS)) | (workerId << SEQUENCE_BITS) | sequence;
+        return Base62.encode(scramble(id), CODE_LENGTH);
+    }
+
+    /**
+     * Bijective mix over 58 bits so codes issued in the same millisecond don't share a prefix.
+     */
+    static long scramble(long id) {
+        long x = id & ID_MASK;
+        x ^= x >>> 29;
+        x = (x * MIX_MULTIPLIER) & ID_MASK;
+        x ^= x >>> 29;
+        return x;
+    }
+}
@@ -0,0 +1,132 @@
+package com.leoluca.urlshortener.api.url.dedup;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.util.BloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over the digests of every stored long URL.
+ * When it says a URL was never stored, shortening skips the dedup lookup and goes straight to the insert.
+ * It only knows about URLs stored through this instance and what was in the database when it was loaded,
+ * a URL another instance stored since then is caught by the unique index on the digest instead.
+ */
+@Component
+public class LongUrlFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LongUrlFilter.class);
+    private static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final URLRepository urlRepository;
+    private final BloomFilter filter;
+    private final Counter skippedLookups;
+    // Until the existing digests are loaded every URL might be known
+    private volatile boolean loaded;
+
+    public LongUrlFilter(URLRepository urlRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${urlshortener.dedup.bloom.expected-insertions:10000000}") long expectedInsertions,
+                         @Value("${urlshortener.dedup.bloom.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.urlRepository = urlRepository;
+        this.filter = new BloomFilter(expectedInsertions, falsePositiveRate);
+        this.skippedLookups = Counter.builder("shorturl.dedup.lookups.skipped")
+                .description("Dedup lookups skipped because the Bloom filter ruled the URL out")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Loads the digests of all stored URLs in the background, the filter answers "maybe" until that is done.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        Thread.ofPlatform().name("long-url-filter-loader").daemon().start(() -> {
+            try {
+                load();
+            } catch (Exception e) {
+                logger.error("Failed to load the long URL filter, every shorten keeps doing the dedup lookup: {}",
+                        e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * @param digest The digest of a normalized long URL.
+     * @return False if the URL was definitely never stored, true if it might have been.
+     */
+    public boolean mightContain(byte[] digest) {
+        if (!loaded) {
+            return true;
+        }
+        if (filter.mightContain(UrlDigest.high(digest), UrlDigest.low(digest))) {
+            return true;
+        }
+        skippedLookups.increment();
+        return false;
+    }
+
+    /**
+     * Records a URL that was just stored.
+     *
+     * @param digest The digest of the normalized long URL.
+     */
+    public void add(byte[] digest) {
+        filter.put(UrlDigest.high(digest), UrlDigest.low(digest));
+    }
+
+    /**
+     * @return True once the digests of all URLs stored before startup are in the filter.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Streams every stored URL that never expires into the filter. URLs stored before digests existed get theirs written back
+     * on the way, so the digest lookup finds them from then on.
+     */
+    void load() {
+        long start = System.currentTimeMillis();
+        long count = 0;
+        Map<String, byte[]> backfill = new HashMap<>();
+        try (Stream<URL> urls = urlRepository.streamDigests()) {
+            for (URL url : (Iterable<URL>) urls::iterator) {
+                byte[] digest = url.getUrlHash();
+                if (digest == null) {
+                    digest = UrlDigest.of(url.getLongUrl());
+                    backfill.put(url.getId(), digest);
+                    if (backfill.size() == BACKFILL_BATCH_SIZE) {
+                        executeBackfill(backfill);
+                        backfill = new HashMap<>();
+                    }
+                }
+                add(digest);
+                count++;
+            }
+        }
+        if (!backfill.isEmpty()) {
+            executeBackfill(backfill);
+        }
+
+        loaded = true;
+        logger.info("Loaded {} long URL digests into the dedup filter in {} ms", count, System.currentTimeMillis() - start);
+    }
+
+    private void executeBackfill(Map<String, byte[]> backfill) {
+        int failed = urlRepository.setUrlHashes(backfill);
+        if (failed > 0) {
+            // Duplicates stored before the unique index existed, only the first of them gets the digest
+            logger.warn("Could not backfill the digest of {} of {} URLs", failed, backfill.size());
+        }
+    }
+}
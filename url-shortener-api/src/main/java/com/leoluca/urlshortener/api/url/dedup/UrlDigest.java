@@ -0,0 +1,54 @@
+package com.leoluca.urlshortener.api.url.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Fixed-width digest of a normalized long URL, used as the dedup key instead of the URL itself.
+ * It is the first 128 bits of the SHA-256 of the UTF-8 bytes, so the unique index stays 16 bytes per document
+ * no matter how long the URL is. SHA-256 ships with every JDK, a faster non-cryptographic hash would need an
+ * extra dependency for a step that is dwarfed by the database round trip it saves.
+ */
+public final class UrlDigest {
+
+    public static final int LENGTH = 16;
+
+    private UrlDigest() {}
+
+    /**
+     * @param longUrl The normalized long URL.
+     * @return The 16-byte digest.
+     */
+    public static byte[] of(String longUrl) {
+        try {
+            byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(longUrl.getBytes(StandardCharsets.UTF_8));
+            return Arrays.copyOf(sha256, LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return The first 8 bytes of the digest as a long.
+     */
+    public static long high(byte[] digest) {
+        return toLong(digest, 0);
+    }
+
+    /**
+     * @return The last 8 bytes of the digest as a long.
+     */
+    public static long low(byte[] digest) {
+        return toLong(digest, 8);
+    }
+
+    private static long toLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = value << 8 | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,12 @@
+package com.leoluca.urlshortener.api.url.exception;
+
+// Thrown a lot while a backend is down, so it skips the stack trace unless it wraps the actual failure
+public class BackendUnavailableException extends RuntimeException {
+    public BackendUnavailableException(String message) {
+        super(message, null, false, false);
+    }
+
+    public BackendUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -2,6 +2,7 @@ package com.leoluca.urlshortener.api.url.exception;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -14,7 +15,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(UrlNotFoundException.class)
     public ResponseEntity<String> handleUrlNotFound(UrlNotFoundException ex) {
-        logger.warn("Handling UrlNotFoundException: {}", ex.getMessage());
+        logger.debug("Handling UrlNotFoundException: {}", ex.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
     }
 
@@ -30,6 +31,14 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ex.getMessage());
     }
 
+    @ExceptionHandler(BackendUnavailableException.class)
+    public ResponseEntity<String> handleBackendUnavailable(BackendUnavailableException ex) {
+        logger.warn("Handling BackendUnavailableException: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ex.getMessage());
+    }
+
     @ExceptionHandler(UrlRetrievalException.class)
     public ResponseEntity<String> handleUrlRetrieval(UrlRetrievalException ex) {
         logger.error("Handling UrlRetrievalException: {}", ex.getMessage());
@@ -47,4 +56,14 @@ public class GlobalExceptionHandler {
     public ResponseEntity<String> handleInvalidUrl(InvalidUrlException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidStatsQueryException.class)
+    public ResponseEntity<String> handleInvalidStatsQuery(InvalidStatsQueryException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
 }
\ No newline at end of file
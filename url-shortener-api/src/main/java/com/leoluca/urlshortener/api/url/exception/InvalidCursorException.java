@@ -0,0 +1,7 @@
+package com.leoluca.urlshortener.api.url.exception;
+
+public class InvalidCursorException extends RuntimeException {
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.leoluca.urlshortener.api.url.exception;
+
+public class InvalidStatsQueryException extends RuntimeException {
+    public InvalidStatsQueryException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,8 @@
 package com.leoluca.urlshortener.api.url.exception;
 
+// Not-found is an expected outcome, not a bug, so it skips the stack trace
 public class UrlNotFoundException extends RuntimeException {
     public UrlNotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
\ No newline at end of file
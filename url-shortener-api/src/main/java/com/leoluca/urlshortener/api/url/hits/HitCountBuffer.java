@@ -0,0 +1,195 @@
+package com.leoluca.urlshortener.api.url.hits;
+
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuard;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind hit counter.
+ * Resolves only bump an in-memory LongAdder per short code, a background thread periodically writes
+ * the aggregated deltas to the repository in batches (unordered bulk updates on MongoDB).
+ * Background flushes are skipped while MongoDB is under pressure, so resolves get its capacity. The deltas stay
+ * buffered meanwhile, hits for codes that don't fit into the buffer any more are dropped.
+ */
+@Component
+public class HitCountBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(HitCountBuffer.class);
+
+    private final URLRepository urlRepository;
+    private final BackendGuard mongo;
+    private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final int maxKeys;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final Counter droppedHits;
+    private final Counter shedFlushes;
+    // When the last flush that got every delta written finished, failed deltas are retried and keep the lag growing
+    private volatile long lastCompleteFlush = System.nanoTime();
+
+    public HitCountBuffer(URLRepository urlRepository,
+                          BackendGuards backends,
+                          MeterRegistry meterRegistry,
+                          @Value("${urlshortener.hits.max-keys:100000}") int maxKeys,
+                          @Value("${urlshortener.hits.batch-size:1000}") int batchSize,
+                          @Value("${urlshortener.hits.flush-interval:1s}") Duration flushInterval) {
+        this.urlRepository = urlRepository;
+        this.mongo = backends.mongo();
+        this.maxKeys = maxKeys;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hit-count-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        Gauge.builder("shorturl.hits.pending", counters, Map::size)
+                .description("Short codes with hits waiting to be flushed")
+                .register(meterRegistry);
+        this.droppedHits = Counter.builder("shorturl.hits.dropped")
+                .description("Hits dropped because the buffer was full")
+                .register(meterRegistry);
+        this.shedFlushes = Counter.builder("shorturl.hits.flush.shed")
+                .description("Background flushes skipped because MongoDB was under pressure")
+                .register(meterRegistry);
+        TimeGauge.builder("shorturl.hits.flush.lag", this, TimeUnit.NANOSECONDS,
+                        buffer -> System.nanoTime() - buffer.lastCompleteFlush)
+                .description("Time since hit counts were last fully written, how far behind the stored counts can be")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void start() {
+        long intervalMillis = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs before the repository is destroyed since we depend on it, so the last deltas still make it out
+    @PreDestroy
+    void stop() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flush();
+    }
+
+    /**
+     * Records a single hit for a short code. Never touches the database.
+     *
+     * @param shortCode The short code that was resolved.
+     */
+    public void record(String shortCode) {
+        LongAdder counter = counters.get(shortCode);
+        if (counter == null) {
+            if (counters.size() >= maxKeys) {
+                // Too many distinct codes since the last flush, drain early instead of growing without bound
+                requestFlush();
+                droppedHits.increment();
+                return;
+            }
+            counter = counters.computeIfAbsent(shortCode, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Writes all pending deltas to the database.
+     * Codes that saw no hits since the previous flush are evicted from the buffer. A hit that races with the
+     * eviction of its (idle) code can be lost, which we accept for a popularity counter.
+     */
+    public synchronized void flush() {
+        long started = System.nanoTime();
+        boolean complete = true;
+        Map<String, Long> batch = new HashMap<>();
+        for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            long delta = entry.getValue().sumThenReset();
+            if (delta == 0) {
+                counters.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            batch.put(entry.getKey(), delta);
+            if (batch.size() >= batchSize) {
+                complete &= write(batch);
+                batch = new HashMap<>();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            complete &= write(batch);
+        }
+        if (complete) {
+            lastCompleteFlush = started;
+        }
+    }
+
+    /**
+     * @return True if every delta was written, false if some were requeued.
+     */
+    private boolean write(Map<String, Long> deltas) {
+        try {
+            Set<String> failed = urlRepository.incrementHitCounts(deltas);
+            if (!failed.isEmpty()) {
+                logger.warn("Failed to flush {} of {} hit count updates", failed.size(), deltas.size());
+                failed.forEach(shortCode -> requeue(shortCode, deltas.get(shortCode)));
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            logger.warn("Failed to flush hit counts, retrying with the next flush: {}", e.getMessage());
+            deltas.forEach(this::requeue);
+            return false;
+        }
+    }
+
+    private void requeue(String shortCode, long delta) {
+        counters.computeIfAbsent(shortCode, key -> new LongAdder()).add(delta);
+    }
+
+    private void requestFlush() {
+        if (flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // Shutting down, stop() does the final flush
+            }
+        }
+    }
+
+    void flushQuietly() {
+        flushRequested.set(false);
+        if (mongo.isUnderPressure()) {
+            shedFlushes.increment();
+            return;
+        }
+        try {
+            flush();
+        } catch (Exception e) {
+            logger.error("Hit count flush failed: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.leoluca.urlshortener.api.url.redirect;
+
+import com.leoluca.urlshortener.api.url.Resolution;
+import com.leoluca.urlshortener.api.url.URLService;
+import com.leoluca.urlshortener.api.url.analytics.ClickAnalytics;
+import com.leoluca.urlshortener.api.url.exception.BackendUnavailableException;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Redirect-only listener on its own port, on the JDK's built-in HTTP server instead of Tomcat and Spring MVC.
+ * Serves {@code GET /{shortCode}} (and HEAD) and nothing else: no dispatcher, no handler mapping, no argument binding,
+ * no ResponseEntity and no exceptions for unknown or expired codes, just a status line and a Location header.
+ * Resolves go through the same {@link URLService}, so cache tiers, hit counts and click analytics all stay the same.
+ * Connections are kept alive between requests, every request runs on its own virtual thread unless a fixed
+ * number of threads is configured. The rate limit filter doesn't apply here, same as for redirects on the main port.
+ */
+@Component
+@ConditionalOnProperty(name = "urlshortener.redirect-server.enabled", havingValue = "true")
+public class RedirectServer implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedirectServer.class);
+
+    // Bodyless responses, Content-Length: 0 and the connection stays usable
+    private static final long NO_BODY = -1;
+    private static final String LOCATION = "Location";
+    private static final String ALLOW = "Allow";
+    private static final String RETRY_AFTER = "Retry-After";
+    private static final String ALLOWED_METHODS = "GET, HEAD";
+    private static final String REFERER = "Referer";
+    private static final String USER_AGENT = "User-Agent";
+
+    private final URLService urlService;
+    private final ClickAnalytics clickAnalytics;
+    private final int port;
+    private final int backlog;
+    private final int threads;
+    private final int redirectStatus;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public RedirectServer(URLService urlService,
+                          ClickAnalytics clickAnalytics,
+                          @Value("${urlshortener.redirect-server.port:8081}") int port,
+                          @Value("${urlshortener.redirect-server.backlog:1000}") int backlog,
+                          @Value("${urlshortener.redirect-server.threads:0}") int threads,
+                          @Value("${urlshortener.redirect-server.status:302}") int redirectStatus) {
+        if (redirectStatus != 301 && redirectStatus != 302) {
+            throw new IllegalArgumentException("The redirect status has to be 301 or 302, not " + redirectStatus);
+        }
+        this.urlService = urlService;
+        this.clickAnalytics = clickAnalytics;
+        this.port = port;
+        this.backlog = backlog;
+        this.threads = threads;
+        this.redirectStatus = redirectStatus;
+    }
+
+    @Override
+    public synchronized void start() {
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), backlog);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the redirect server on port " + port, e);
+        }
+        executor = threads > 0 ? Executors.newFixedThreadPool(threads) : Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        logger.info("Redirect server listening on port {}", server.getAddress().getPort());
+    }
+
+    @Override
+    public synchronized void stop() {
+        // Give in-flight redirects a moment, they are fast
+        server.stop(1);
+        executor.close();
+        server = null;
+    }
+
+    @Override
+    public synchronized boolean isRunning() {
+        return server != null;
+    }
+
+    /**
+     * @return The port the server listens on, useful when it was configured as 0.
+     */
+    public synchronized int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set(ALLOW, ALLOWED_METHODS);
+                exchange.sendResponseHeaders(405, NO_BODY);
+                return;
+            }
+
+            String shortCode = shortCode(exchange.getRequestURI().getRawPath());
+            Resolution resolution = shortCode == null ? Resolution.notFound() : urlService.resolveShortCode(shortCode);
+            if (!resolution.isFound()) {
+                exchange.sendResponseHeaders(resolution.status() == Resolution.Status.GONE ? 410 : 404, NO_BODY);
+                return;
+            }
+
+            Headers requestHeaders = exchange.getRequestHeaders();
+            clickAnalytics.record(shortCode, requestHeaders.getFirst(REFERER), requestHeaders.getFirst(USER_AGENT));
+            exchange.getResponseHeaders().set(LOCATION, resolution.longUrl());
+            exchange.sendResponseHeaders(redirectStatus, NO_BODY);
+        } catch (BackendUnavailableException e) {
+            // Logged by URLService already
+            exchange.getResponseHeaders().set(RETRY_AFTER, "1");
+            exchange.sendResponseHeaders(503, NO_BODY);
+        } catch (RuntimeException e) {
+            // Resolve errors are logged by URLService too, this also covers the analytics and the response itself
+            logger.error("Failed to redirect {}: {}", exchange.getRequestURI(), e.getMessage(), e);
+            // Once the status line is out all that's left is closing the body
+            if (exchange.getResponseCode() == -1) {
+                exchange.sendResponseHeaders(500, NO_BODY);
+            }
+        } finally {
+            // Not exchange.close(), which also closes the request stream and gets kept-alive connections reset
+            exchange.getResponseBody().close();
+        }
+    }
+
+    /**
+     * @param path The raw request path.
+     * @return The short code in a path of exactly one segment, null for any other path.
+     */
+    static String shortCode(String path) {
+        if (path == null || path.length() < 2 || path.charAt(0) != '/' || path.indexOf('/', 1) >= 0) {
+            return null;
+        }
+        return path.substring(1);
+    }
+}
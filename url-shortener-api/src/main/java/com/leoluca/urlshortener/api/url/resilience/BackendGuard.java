@@ -0,0 +1,144 @@
+package com.leoluca.urlshortener.api.url.resilience;
+
+import com.leoluca.urlshortener.api.url.exception.BackendUnavailableException;
+import com.leoluca.urlshortener.api.util.CircuitBreaker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Timeout, bulkhead and circuit breaker around the calls to one backend.
+ * A call first needs a bulkhead permit, which it holds until the backend has really answered, even after the caller
+ * gave up waiting, so a stalled backend can tie up at most {@code maxConcurrent} calls. Then the circuit breaker has to
+ * let it through, and the caller waits for the answer for at most the timeout. Every way a call can fail ends in a
+ * {@link BackendUnavailableException}, so callers have one thing to catch and fall back on.
+ */
+public final class BackendGuard {
+
+    private final String name;
+    private final Duration timeout;
+    private final int maxConcurrent;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker breaker;
+    private final Executor blockingExecutor;
+    private final Counter successes;
+    private final Counter failures;
+    private final Counter timeouts;
+    private final Counter rejected;
+    private final Counter shortCircuited;
+
+    BackendGuard(String name, Duration timeout, int maxConcurrent, CircuitBreaker breaker, Executor blockingExecutor,
+                 MeterRegistry meterRegistry) {
+        this.name = name;
+        this.timeout = timeout;
+        this.maxConcurrent = maxConcurrent;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.breaker = breaker;
+        this.blockingExecutor = blockingExecutor;
+        this.successes = callCounter(meterRegistry, "success");
+        this.failures = callCounter(meterRegistry, "failure");
+        this.timeouts = callCounter(meterRegistry, "timeout");
+        this.rejected = callCounter(meterRegistry, "bulkhead_full");
+        this.shortCircuited = callCounter(meterRegistry, "circuit_open");
+
+        // One series per state with the current one at 1, the same shape Resilience4j exports
+        for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+            Gauge.builder("resilience.circuitbreaker.state", breaker, b -> b.state() == state ? 1 : 0)
+                    .description("Whether the circuit breaker of a backend is in this state")
+                    .tags("backend", name, "state", state.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("resilience.bulkhead.in_flight", bulkhead, b -> maxConcurrent - b.availablePermits())
+                .description("Calls to a backend that haven't answered yet, including the ones callers gave up on")
+                .tag("backend", name)
+                .register(meterRegistry);
+    }
+
+    private Counter callCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("resilience.calls")
+                .description("Calls to a backend by outcome, rejected ones never reached it")
+                .tags("backend", name, "outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param call Starts the call and returns its result, e.g. a batched Redis lookup.
+     * @return The result, if the backend answered in time.
+     * @throws BackendUnavailableException If the bulkhead is full, the breaker is open, the call failed or timed out.
+     */
+    public <T> T call(Supplier<CompletableFuture<T>> call) {
+        if (!bulkhead.tryAcquire()) {
+            rejected.increment();
+            throw new BackendUnavailableException(name + " has " + maxConcurrent + " calls in flight already");
+        }
+        if (!breaker.tryAcquirePermission()) {
+            bulkhead.release();
+            shortCircuited.increment();
+            throw new BackendUnavailableException(name + " is unavailable, its circuit breaker is open");
+        }
+
+        CompletableFuture<T> future;
+        try {
+            future = call.get();
+        } catch (RuntimeException e) {
+            bulkhead.release();
+            throw failed(e);
+        }
+        future.whenComplete((result, e) -> bulkhead.release());
+
+        try {
+            T result = future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            breaker.onSuccess();
+            successes.increment();
+            return result;
+        } catch (TimeoutException e) {
+            breaker.onFailure();
+            timeouts.increment();
+            throw new BackendUnavailableException(name + " did not answer within " + timeout.toMillis() + "ms");
+        } catch (ExecutionException e) {
+            throw failed(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failed(e);
+        }
+    }
+
+    /**
+     * Runs a blocking call, e.g. a repository query, on its own virtual thread so the caller can stop waiting for it.
+     *
+     * @see #call(Supplier)
+     */
+    public <T> T callBlocking(Supplier<T> call) {
+        return call(() -> CompletableFuture.supplyAsync(call, blockingExecutor));
+    }
+
+    /**
+     * @return Whether the breaker is closed, i.e. the backend looks healthy.
+     */
+    public boolean isAvailable() {
+        return breaker.state() == CircuitBreaker.State.CLOSED;
+    }
+
+    /**
+     * @return Whether optional work should stay away from the backend: the breaker isn't closed or at least half the
+     * bulkhead is in use.
+     */
+    public boolean isUnderPressure() {
+        return !isAvailable() || bulkhead.availablePermits() < maxConcurrent / 2;
+    }
+
+    private BackendUnavailableException failed(Throwable cause) {
+        breaker.onFailure();
+        failures.increment();
+        return new BackendUnavailableException(name + " call failed: " + cause.getMessage(), cause);
+    }
+}
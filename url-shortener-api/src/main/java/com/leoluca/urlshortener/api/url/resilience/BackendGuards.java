@@ -0,0 +1,54 @@
+package com.leoluca.urlshortener.api.url.resilience;
+
+import com.leoluca.urlshortener.api.util.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The guards around the backends a resolve depends on. Both breakers share the same thresholds, the timeouts and
+ * bulkhead sizes are per backend: Redis answers in well under a millisecond when healthy, MongoDB takes longer.
+ */
+@Component
+public class BackendGuards {
+
+    private final ExecutorService blockingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final BackendGuard redis;
+    private final BackendGuard mongo;
+
+    public BackendGuards(MeterRegistry meterRegistry,
+                         @Value("${urlshortener.resilience.redis.timeout:50ms}") Duration redisTimeout,
+                         @Value("${urlshortener.resilience.redis.max-concurrent:500}") int redisMaxConcurrent,
+                         @Value("${urlshortener.resilience.mongo.timeout:500ms}") Duration mongoTimeout,
+                         @Value("${urlshortener.resilience.mongo.max-concurrent:100}") int mongoMaxConcurrent,
+                         @Value("${urlshortener.resilience.failure-rate-threshold:50}") double failureRateThreshold,
+                         @Value("${urlshortener.resilience.window-size:100}") int windowSize,
+                         @Value("${urlshortener.resilience.minimum-calls:20}") int minimumCalls,
+                         @Value("${urlshortener.resilience.open-duration:5s}") Duration openDuration,
+                         @Value("${urlshortener.resilience.half-open-calls:5}") int halfOpenCalls) {
+        this.redis = new BackendGuard("redis", redisTimeout, redisMaxConcurrent,
+                new CircuitBreaker("redis", failureRateThreshold, windowSize, minimumCalls, openDuration, halfOpenCalls),
+                blockingExecutor, meterRegistry);
+        this.mongo = new BackendGuard("mongo", mongoTimeout, mongoMaxConcurrent,
+                new CircuitBreaker("mongo", failureRateThreshold, windowSize, minimumCalls, openDuration, halfOpenCalls),
+                blockingExecutor, meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        blockingExecutor.shutdownNow();
+    }
+
+    public BackendGuard redis() {
+        return redis;
+    }
+
+    public BackendGuard mongo() {
+        return mongo;
+    }
+}
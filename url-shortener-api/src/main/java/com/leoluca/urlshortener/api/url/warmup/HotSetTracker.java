@@ -0,0 +1,183 @@
+package com.leoluca.urlshortener.api.url.warmup;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import com.leoluca.urlshortener.api.util.CountMinSketch;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps the currently hot short codes warm in Redis.
+ * Every resolve is counted in a Count-Min sketch that is halved periodically, so it tracks recent rather than
+ * all-time popularity. Codes whose estimate reaches the current top-N threshold become candidates, and every
+ * promote interval the top N of them are written to both cache tiers with a TTL in one Redis pipeline. When the
+ * candidates fill up in between they are cut back to the top N right away, which raises the threshold, so codes that
+ * happened to come first can't keep hotter ones out until the next promotion.
+ * That way a Redis flush or a fresh deploy only leaves the hot set cold for one interval.
+ */
+@Component
+public class HotSetTracker {
+
+    private static final Logger logger = LoggerFactory.getLogger(HotSetTracker.class);
+    private static final int SKETCH_DEPTH = 4;
+
+    private final ShortUrlCache shortUrlCache;
+    private final URLRepository urlRepository;
+    private final CountMinSketch sketch;
+    private final Set<String> candidates = ConcurrentHashMap.newKeySet();
+    private final int topN;
+    private final int maxCandidates;
+    private final Duration promoteInterval;
+    private final Duration decayInterval;
+    private final Duration redisTtl;
+    private final ScheduledExecutorService scheduler;
+    // Only one resolving thread cuts the candidates back at a time, the others carry on
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    // Estimate of the N-th hottest code at the last promotion, anything below can't make the top N
+    private volatile long admissionThreshold = 1;
+
+    public HotSetTracker(ShortUrlCache shortUrlCache,
+                         URLRepository urlRepository,
+                         @Value("${urlshortener.warmup.top-n:10000}") int topN,
+                         @Value("${urlshortener.warmup.promote-interval:30s}") Duration promoteInterval,
+                         @Value("${urlshortener.warmup.decay-interval:5m}") Duration decayInterval,
+                         @Value("${urlshortener.warmup.redis-ttl:1h}") Duration redisTtl) {
+        this.shortUrlCache = shortUrlCache;
+        this.urlRepository = urlRepository;
+        this.topN = topN;
+        this.maxCandidates = topN * 2;
+        this.promoteInterval = promoteInterval;
+        this.decayInterval = decayInterval;
+        this.redisTtl = redisTtl;
+        // Around 16 counters per tracked code keeps the overcount of a code well below the top-N threshold
+        this.sketch = new CountMinSketch(topN * 16, SKETCH_DEPTH);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "hot-set-warmer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    void start() {
+        long promoteMillis = promoteInterval.toMillis();
+        long decayMillis = decayInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::promoteQuietly, promoteMillis, promoteMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::decay, decayMillis, decayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Counts one successful resolve of a short code. Only touches the sketch, and the candidate set when the code
+     * is hot enough.
+     *
+     * @param shortCode The short code that was resolved.
+     */
+    public void record(String shortCode) {
+        long estimate = sketch.increment(hash(shortCode));
+        if (estimate < admissionThreshold) {
+            return;
+        }
+        if (candidates.size() >= maxCandidates && pruning.compareAndSet(false, true)) {
+            try {
+                prune();
+            } finally {
+                pruning.set(false);
+            }
+        }
+        if (estimate >= admissionThreshold && candidates.size() < maxCandidates) {
+            candidates.add(shortCode);
+        }
+    }
+
+    /**
+     * Writes the current top N codes to both cache tiers and drops every other candidate.
+     */
+    void promote() {
+        List<Map.Entry<String, Long>> top = prune();
+        if (top.isEmpty()) {
+            return;
+        }
+
+        // Hot codes are almost always in L1 already, only the rest costs a database read
+        Map<String, String> mappings = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : top) {
+            String value = shortUrlCache.peekLocal(entry.getKey());
+            if (value != null) {
+                mappings.put(entry.getKey(), value);
+            } else {
+                missing.add(entry.getKey());
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (URL url : urlRepository.findAllByShortCodeIn(missing)) {
+                mappings.put(url.getShortCode(), ShortUrlCache.cacheValue(url));
+            }
+        }
+
+        shortUrlCache.putAll(mappings, redisTtl);
+        logger.debug("Promoted {} hot short codes, admission threshold is now {}", mappings.size(), admissionThreshold);
+    }
+
+    /**
+     * Ranks the candidates by their current estimate, drops all but the top N and makes the N-th estimate the
+     * admission threshold.
+     *
+     * @return The top N candidates with their estimates, hottest first.
+     */
+    private List<Map.Entry<String, Long>> prune() {
+        List<Map.Entry<String, Long>> ranked = new ArrayList<>(candidates.size());
+        for (String shortCode : candidates) {
+            ranked.add(Map.entry(shortCode, sketch.estimate(hash(shortCode))));
+        }
+        ranked.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+
+        List<Map.Entry<String, Long>> top = ranked.subList(0, Math.min(topN, ranked.size()));
+        for (Map.Entry<String, Long> entry : ranked.subList(top.size(), ranked.size())) {
+            candidates.remove(entry.getKey());
+        }
+        admissionThreshold = top.size() < topN ? 1 : Math.max(1, top.getLast().getValue());
+        return top;
+    }
+
+    private void promoteQuietly() {
+        try {
+            promote();
+        } catch (Exception e) {
+            logger.warn("Hot set promotion failed, retrying with the next interval: {}", e.getMessage());
+        }
+    }
+
+    private void decay() {
+        sketch.halve();
+        admissionThreshold = Math.max(1, admissionThreshold / 2);
+    }
+
+    private static long hash(String shortCode) {
+        // Spread the 32-bit String hash over 64 bits, the sketch derives its row hashes from this
+        return shortCode.hashCode() * 0x9E3779B97F4A7C15L;
+    }
+}
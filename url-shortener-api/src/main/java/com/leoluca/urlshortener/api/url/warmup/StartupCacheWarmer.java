@@ -0,0 +1,123 @@
+package com.leoluca.urlshortener.api.url.warmup;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Preloads the all-time most clicked URLs into both cache tiers at startup.
+ * The URLs are streamed from the database in hit count order and written to Redis in pipelined batches, several
+ * batches at a time. Runs as an ApplicationRunner, so the readiness probe keeps refusing traffic until the
+ * preload is done or the warm-up deadline passes, whichever comes first. After the deadline the preload
+ * carries on in the background.
+ */
+@Component
+public class StartupCacheWarmer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupCacheWarmer.class);
+
+    private final URLRepository urlRepository;
+    private final ShortUrlCache shortUrlCache;
+    private final int preloadSize;
+    private final int batchSize;
+    private final int parallelism;
+    private final Duration deadline;
+    private final Duration redisTtl;
+
+    public StartupCacheWarmer(URLRepository urlRepository,
+                              ShortUrlCache shortUrlCache,
+                              @Value("${urlshortener.warmup.preload-size:10000}") int preloadSize,
+                              @Value("${urlshortener.warmup.preload-batch-size:500}") int batchSize,
+                              @Value("${urlshortener.warmup.preload-parallelism:4}") int parallelism,
+                              @Value("${urlshortener.warmup.deadline:30s}") Duration deadline,
+                              @Value("${urlshortener.warmup.redis-ttl:1h}") Duration redisTtl) {
+        this.urlRepository = urlRepository;
+        this.shortUrlCache = shortUrlCache;
+        this.preloadSize = preloadSize;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.deadline = deadline;
+        this.redisTtl = redisTtl;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (preloadSize <= 0) {
+            return;
+        }
+
+        logger.info("Preloading cache with the top {} most clicked URLs...", preloadSize);
+        long start = System.currentTimeMillis();
+        AtomicInteger threadCount = new AtomicInteger();
+        // One thread reads from the database, the others write batches to Redis
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism + 1, runnable -> {
+            Thread thread = new Thread(runnable, "cache-warmer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        CompletableFuture<Integer> preload = CompletableFuture.supplyAsync(() -> preload(executor), executor);
+        preload.whenComplete((count, e) -> {
+            executor.shutdown();
+            if (e != null) {
+                logger.error("Failed to preload cache: {}", e.getMessage(), e);
+            } else {
+                logger.info("Preloaded {} URLs in {} ms", count, System.currentTimeMillis() - start);
+            }
+        });
+
+        try {
+            preload.get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Cache warm-up did not finish within {}, accepting traffic while it continues", deadline);
+        } catch (ExecutionException e) {
+            // Already logged above, a cold cache is slower but not broken
+        }
+    }
+
+    private int preload(ExecutorService executor) {
+        List<CompletableFuture<Void>> writes = new ArrayList<>();
+        int count = 0;
+        Map<String, String> batch = new HashMap<>();
+        try (Stream<URL> urls = urlRepository.streamMostClicked(preloadSize)) {
+            for (URL url : (Iterable<URL>) urls::iterator) {
+                batch.put(url.getShortCode(), ShortUrlCache.cacheValue(url));
+                count++;
+                if (batch.size() == batchSize) {
+                    writes.add(write(batch, executor));
+                    batch = new HashMap<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            writes.add(write(batch, executor));
+        }
+
+        CompletableFuture.allOf(writes.toArray(CompletableFuture[]::new)).join();
+        return count;
+    }
+
+    private CompletableFuture<Void> write(Map<String, String> batch, ExecutorService executor) {
+        return CompletableFuture.runAsync(() -> shortUrlCache.putAll(batch, redisTtl), executor);
+    }
+}
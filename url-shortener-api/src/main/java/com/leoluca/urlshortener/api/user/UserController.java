@@ -1,11 +1,14 @@
 package com.leoluca.urlshortener.api.user;
 
 import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLController;
 import com.leoluca.urlshortener.api.url.URLService;
 import org.bson.types.ObjectId;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 import java.util.Optional;
@@ -100,19 +103,36 @@ public class UserController {
     }
 
     /**
-     * GET /users/{userId}/urls - Retrieve all URLs created by a user.
+     * GET /users/{userId}/urls - Retrieve the URLs created by a user, one page at a time.
      *
      * @param userId The ID of the user.
-     * @return A list of all URLs created by the user.
+     * @param cursor The X-Next-Cursor header of the previous page, omit it for the first page.
+     * @param limit The maximum number of URLs per page.
+     * @return A page of URLs created by the user, with the cursor for the next page in the X-Next-Cursor header.
      */
     @GetMapping("/{userId}/urls")
-    public ResponseEntity<List<URL>> getUserUrls(@PathVariable ObjectId userId) {
+    public ResponseEntity<List<URL>> getUserUrls(@PathVariable ObjectId userId,
+                                                 @RequestParam(required = false) String cursor,
+                                                 @RequestParam(defaultValue = "100") int limit) {
         User user = userService.getUserById(userId);
         if (user == null) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
         }
 
-        List<URL> urls = urlService.getUrlsByUserId(userId);
-        return ResponseEntity.ok(urls);
+        return URLController.toResponse(urlService.getUrlsByUserId(userId, cursor, limit));
+    }
+
+    /**
+     * GET /users/{userId}/urls/export - Stream all URLs created by a user as newline-delimited JSON.
+     *
+     * @param userId The ID of the user.
+     * @return Every URL created by the user, one JSON document per line.
+     */
+    @GetMapping(value = "/{userId}/urls/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUserUrls(@PathVariable ObjectId userId) {
+        userService.getUserById(userId);
+
+        StreamingResponseBody urls = output -> urlService.exportUrls(userId, output);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(urls);
     }
 }
\ No newline at end of file
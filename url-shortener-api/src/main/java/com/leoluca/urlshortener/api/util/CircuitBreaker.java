@@ -0,0 +1,155 @@
+package com.leoluca.urlshortener.api.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker.
+ * While closed, the outcomes of the last {@code windowSize} calls are kept and the breaker opens once at least
+ * {@code minimumCalls} of them were recorded and the failure rate reaches the threshold. An open breaker rejects every
+ * call until {@code openDuration} has passed, then lets {@code halfOpenCalls} trial calls through: if all of them
+ * succeed it closes again, the first failure opens it for another round.
+ * <p>
+ * Asking for a permission while closed is a single volatile read, outcomes are recorded under the breaker's lock.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final double failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final LongSupplier nanoClock;
+    // Ring of the latest outcomes, true for a failure
+    private final boolean[] window;
+    private int position;
+    private int recorded;
+    private int failures;
+    private volatile State state = State.CLOSED;
+    private long openedAt;
+    private int halfOpenPermits;
+    private int halfOpenSuccesses;
+
+    /**
+     * @param name Used in log messages.
+     * @param failureRateThreshold Failure rate in percent at which the breaker opens.
+     */
+    public CircuitBreaker(String name, double failureRateThreshold, int windowSize, int minimumCalls,
+                          Duration openDuration, int halfOpenCalls) {
+        this(name, failureRateThreshold, windowSize, minimumCalls, openDuration, halfOpenCalls, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, double failureRateThreshold, int windowSize, int minimumCalls,
+                   Duration openDuration, int halfOpenCalls, LongSupplier nanoClock) {
+        if (windowSize < 1 || minimumCalls < 1 || minimumCalls > windowSize || halfOpenCalls < 1) {
+            throw new IllegalArgumentException("The window needs at least minimumCalls >= 1 entries and at least one trial call");
+        }
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.nanoClock = nanoClock;
+        this.window = new boolean[windowSize];
+    }
+
+    /**
+     * @return Whether a call may go through. Every permitted call has to be followed by
+     * {@link #onSuccess()} or {@link #onFailure()}.
+     */
+    public boolean tryAcquirePermission() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        synchronized (this) {
+            if (state == State.OPEN) {
+                if (nanoClock.getAsLong() - openedAt < openNanos) {
+                    return false;
+                }
+                transitionTo(State.HALF_OPEN);
+                halfOpenPermits = halfOpenCalls;
+                halfOpenSuccesses = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (halfOpenPermits == 0) {
+                    return false;
+                }
+                halfOpenPermits--;
+            }
+            return true;
+        }
+    }
+
+    public synchronized void onSuccess() {
+        switch (state) {
+            case CLOSED -> record(false);
+            case HALF_OPEN -> {
+                if (++halfOpenSuccesses == halfOpenCalls) {
+                    transitionTo(State.CLOSED);
+                }
+            }
+            case OPEN -> {
+                // A call that started before the breaker opened, too late to count
+            }
+        }
+    }
+
+    public synchronized void onFailure() {
+        switch (state) {
+            case CLOSED -> {
+                record(true);
+                if (recorded >= minimumCalls && failures * 100.0 / recorded >= failureRateThreshold) {
+                    open();
+                }
+            }
+            case HALF_OPEN -> open();
+            case OPEN -> {
+                // Already open
+            }
+        }
+    }
+
+    public State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[position]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        window[position] = failure;
+        if (failure) {
+            failures++;
+        }
+        position = (position + 1) % window.length;
+    }
+
+    private void open() {
+        openedAt = nanoClock.getAsLong();
+        transitionTo(State.OPEN);
+    }
+
+    private void transitionTo(State next) {
+        if (next == State.CLOSED) {
+            // Start over, the failures that opened the breaker are history
+            position = 0;
+            recorded = 0;
+            failures = 0;
+        }
+        if (state != next) {
+            logger.warn("Circuit breaker {} changed from {} to {}", name, state, next);
+        }
+        state = next;
+    }
+}
@@ -0,0 +1,84 @@
+package com.leoluca.urlshortener.api.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Count-Min sketch for approximate frequencies in a fixed amount of memory.
+ * Estimates never undercount, they overcount by at most a small fraction of the total count with high probability.
+ * {@link #halve()} ages the counts so old activity fades out and the sketch follows recent frequencies.
+ */
+public final class CountMinSketch {
+
+    private static final long SEED = 0x9E3779B97F4A7C15L;
+
+    private final AtomicLongArray counters;
+    private final int depth;
+    private final int widthBits;
+
+    /**
+     * @param width Counters per row, rounded up to a power of two. Wider means smaller overcounts.
+     * @param depth Number of rows. Deeper means overcounts are less likely.
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Width and depth must be positive");
+        }
+        this.widthBits = 32 - Integer.numberOfLeadingZeros(Math.max(2, width) - 1);
+        this.depth = depth;
+        this.counters = new AtomicLongArray(depth << widthBits);
+    }
+
+    /**
+     * Counts one occurrence.
+     *
+     * @param hash A 64-bit hash of the element.
+     * @return The estimated count including this occurrence.
+     */
+    public long increment(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @param hash A 64-bit hash of the element.
+     * @return The estimated count.
+     */
+    public long estimate(long hash) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Halves every counter. Increments racing with this may or may not be halved as well.
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            long count;
+            do {
+                count = counters.get(i);
+            } while (count != 0 && !counters.compareAndSet(i, count, count >>> 1));
+        }
+    }
+
+    private int index(long hash, int row) {
+        // Every row gets its own independent-looking hash, derived from the one we were given
+        long h = mix(hash + row * SEED);
+        return (row << widthBits) | (int) (h >>> (64 - widthBits));
+    }
+
+    // Murmur3 finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB93FE1A85B53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,173 @@
+package com.leoluca.urlshortener.api.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Open-addressing hash map from long keys to long values, kept off-heap in a direct buffer so millions of entries
+ * cost the garbage collector nothing.
+ * Slots are 16 bytes (key, value) probed linearly. Key 0 marks an empty slot and can't be used.
+ * Readers never lock: a writer stores the value before it publishes the key, readers acquire the key before
+ * they read the value. Writers are serialized. Growing copies everything into a table twice the size and
+ * swaps it in, readers still on the old table simply don't see entries added after they started.
+ */
+public final class OffHeapLongLongMap {
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final int SLOT_BYTES = 16;
+    // Keeps slot offsets and the buffer size within an int: 2^26 slots of 16 bytes are 1 GB
+    static final int MAX_CAPACITY = 1 << 26;
+    private static final double MAX_LOAD = 0.7;
+
+    private record Table(ByteBuffer slots, int mask) {
+        int capacity() {
+            return mask + 1;
+        }
+    }
+
+    private final int maxCapacity;
+    private volatile Table table;
+    private int size;
+
+    /**
+     * @param initialCapacity The number of entries to size the table for, it grows past that as needed.
+     */
+    public OffHeapLongLongMap(int initialCapacity) {
+        this(initialCapacity, MAX_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity The number of entries to size the table for.
+     * @param maxCapacity     The number of slots the table never grows past, a power of two up to 2^26. Once it is
+     *                        full new keys are rejected, see {@link #isFull()}.
+     */
+    public OffHeapLongLongMap(int initialCapacity, int maxCapacity) {
+        if (Integer.bitCount(maxCapacity) != 1 || maxCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("The maximum capacity must be a power of two up to " + MAX_CAPACITY);
+        }
+        this.maxCapacity = maxCapacity;
+        this.table = allocate(Math.min(maxCapacity, tableSizeFor((int) Math.min(maxCapacity, (long) (initialCapacity / MAX_LOAD) + 1))));
+    }
+
+    /**
+     * @return The value stored for the key, or {@code missingValue} if there is none.
+     */
+    public long get(long key, long missingValue) {
+        Table current = table;
+        for (int slot = spread(key) & current.mask(); ; slot = (slot + 1) & current.mask()) {
+            int offset = slot * SLOT_BYTES;
+            long storedKey = (long) LONGS.getAcquire(current.slots(), offset);
+            if (storedKey == key) {
+                return (long) LONGS.getAcquire(current.slots(), offset + 8);
+            }
+            if (storedKey == 0) {
+                return missingValue;
+            }
+        }
+    }
+
+    /**
+     * Stores a value, replacing the previous value of the key if there is one.
+     *
+     * @param key Any key except 0.
+     * @throws IllegalStateException If the key is new and the map holds as many entries as it can, the map is unchanged then.
+     */
+    public synchronized void put(long key, long value) {
+        if (key == 0) {
+            throw new IllegalArgumentException("0 is reserved for empty slots");
+        }
+        // Grow before inserting, so the table never fills past the load factor and probes always end at an empty slot
+        if (size + 1 > table.capacity() * MAX_LOAD && !contains(table, key)) {
+            grow();
+        }
+        if (insert(table, key, value)) {
+            size++;
+        }
+    }
+
+    /**
+     * @return Whether a new key would no longer fit, puts of keys already in the map still do.
+     */
+    public synchronized boolean isFull() {
+        return table.capacity() >= maxCapacity && size + 1 > table.capacity() * MAX_LOAD;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The bytes of off-heap memory in use.
+     */
+    public long memoryUsage() {
+        return (long) table.capacity() * SLOT_BYTES;
+    }
+
+    private static boolean contains(Table table, long key) {
+        for (int slot = spread(key) & table.mask(); ; slot = (slot + 1) & table.mask()) {
+            long storedKey = (long) LONGS.get(table.slots(), slot * SLOT_BYTES);
+            if (storedKey == key) {
+                return true;
+            }
+            if (storedKey == 0) {
+                return false;
+            }
+        }
+    }
+
+    // Returns true if the key is new
+    private static boolean insert(Table table, long key, long value) {
+        for (int slot = spread(key) & table.mask(); ; slot = (slot + 1) & table.mask()) {
+            int offset = slot * SLOT_BYTES;
+            long storedKey = (long) LONGS.get(table.slots(), offset);
+            if (storedKey == key) {
+                LONGS.setRelease(table.slots(), offset + 8, value);
+                return false;
+            }
+            if (storedKey == 0) {
+                LONGS.set(table.slots(), offset + 8, value);
+                LONGS.setRelease(table.slots(), offset, key);
+                return true;
+            }
+        }
+    }
+
+    private void grow() {
+        Table old = table;
+        if (old.capacity() >= maxCapacity) {
+            throw new IllegalStateException("Off-heap map is full at " + size + " entries");
+        }
+
+        Table grown = allocate(old.capacity() * 2);
+        for (int slot = 0; slot < old.capacity(); slot++) {
+            int offset = slot * SLOT_BYTES;
+            long key = (long) LONGS.get(old.slots(), offset);
+            if (key != 0) {
+                insert(grown, key, (long) LONGS.get(old.slots(), offset + 8));
+            }
+        }
+        table = grown;
+    }
+
+    private static Table allocate(int capacity) {
+        // allocateDirect zeroes the memory, so every slot starts out empty
+        ByteBuffer slots = ByteBuffer.allocateDirect(Math.multiplyExact(capacity, SLOT_BYTES)).order(ByteOrder.nativeOrder());
+        return new Table(slots, capacity - 1);
+    }
+
+    private static int tableSizeFor(int entries) {
+        return Math.max(16, Integer.highestOneBit(Math.max(1, entries - 1)) << 1);
+    }
+
+    // Murmur3 finalizer, keys are often hashes already but may just as well be sequential
+    private static int spread(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB93FE1A85B53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
@@ -0,0 +1,73 @@
+package com.leoluca.urlshortener.api.util;
+
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Rendezvous (highest random weight) hashing over a fixed list of node ids.
+ * Every key goes to the node with the highest score for it, so all processes with the same node ids agree on the
+ * owner without talking to each other, load spreads evenly without virtual nodes, and adding or removing a node
+ * only moves the keys that node gains or loses. Choosing costs one hash per node, fine for the handful of nodes
+ * of a cluster.
+ */
+public final class RendezvousHash {
+
+    private final List<String> nodeIds;
+    private final long[] nodeSeeds;
+
+    public RendezvousHash(List<String> nodeIds) {
+        if (nodeIds.isEmpty()) {
+            throw new IllegalArgumentException("Rendezvous hashing needs at least one node");
+        }
+        if (new HashSet<>(nodeIds).size() != nodeIds.size()) {
+            throw new IllegalArgumentException("Node ids have to be unique: " + nodeIds);
+        }
+        this.nodeIds = List.copyOf(nodeIds);
+        this.nodeSeeds = new long[nodeIds.size()];
+        for (int i = 0; i < nodeSeeds.length; i++) {
+            nodeSeeds[i] = hash(nodeIds.get(i));
+        }
+    }
+
+    /**
+     * @return The index of the node owning the key, in the order the node ids were given.
+     */
+    public int select(String key) {
+        long keyHash = hash(key);
+        int owner = 0;
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < nodeSeeds.length; i++) {
+            long score = mix(nodeSeeds[i] ^ keyHash);
+            // Ties are practically impossible with 64-bit scores, the lower index wins so the choice stays stable
+            if (score > best) {
+                best = score;
+                owner = i;
+            }
+        }
+        return owner;
+    }
+
+    public String owner(String key) {
+        return nodeIds.get(select(key));
+    }
+
+    public List<String> nodeIds() {
+        return nodeIds;
+    }
+
+    // 64-bit FNV-1a over the chars, String.hashCode() alone would leave only 32 bits for the scores
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,160 @@
+package com.leoluca.urlshortener.api.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Space-Saving heavy hitters summary: tracks the most frequent items of a stream in a fixed number of counters.
+ * Any item occurring more than total / capacity times is guaranteed to be tracked, and a tracked item's count
+ * overestimates its true count by at most its error (the count of the item it replaced).
+ * Counters sit in a min-heap, so an update is a hash lookup plus O(log capacity) sifting.
+ * Not thread-safe, meant to be updated from one thread.
+ *
+ * @param <T> The item type.
+ */
+public final class SpaceSaving<T> {
+
+    /**
+     * @param item The tracked item.
+     * @param count The estimated count, never below the true count.
+     * @param error How much the count may overestimate.
+     */
+    public record Entry<T>(T item, long count, long error) {}
+
+    private static final class Counter<T> {
+        T item;
+        long count;
+        long error;
+        int position;
+    }
+
+    private final int capacity;
+    private final Map<T, Counter<T>> counters;
+    private final Counter<T>[] heap;
+    private int size;
+    private long total;
+
+    @SuppressWarnings("unchecked")
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Counts occurrences of an item. An untracked item takes over the counter of the least frequent tracked item
+     * once all counters are in use.
+     *
+     * @param item The item.
+     * @param count How many occurrences to add.
+     */
+    public void offer(T item, long count) {
+        total += count;
+        Counter<T> counter = counters.get(item);
+        boolean added = false;
+        if (counter == null) {
+            if (size < capacity) {
+                counter = new Counter<>();
+                counter.position = size;
+                heap[size++] = counter;
+                added = true;
+            } else {
+                counter = heap[0];
+                counters.remove(counter.item);
+                counter.error = counter.count;
+            }
+            counter.item = item;
+            counters.put(item, counter);
+        }
+        counter.count += count;
+        if (added) {
+            siftUp(counter.position);
+        } else {
+            siftDown(counter.position);
+        }
+    }
+
+    /**
+     * @return The tracked items, in no particular order.
+     */
+    public List<Entry<T>> entries() {
+        List<Entry<T>> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            entries.add(new Entry<>(heap[i].item, heap[i].count, heap[i].error));
+        }
+        return entries;
+    }
+
+    /**
+     * Hands every tracked item with its count to the consumer, without allocating entries.
+     */
+    public void forEach(ObjLongConsumer<T> consumer) {
+        for (int i = 0; i < size; i++) {
+            consumer.accept(heap[i].item, heap[i].count);
+        }
+    }
+
+    /**
+     * @return The number of occurrences offered so far.
+     */
+    public long total() {
+        return total;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        counters.clear();
+        for (int i = 0; i < size; i++) {
+            heap[i] = null;
+        }
+        size = 0;
+        total = 0;
+    }
+
+    // A new counter starts out at the bottom, below counts that may be larger than its own
+    private void siftUp(int position) {
+        Counter<T> counter = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            heap[position] = heap[parent];
+            heap[position].position = position;
+            position = parent;
+        }
+        heap[position] = counter;
+        counter.position = position;
+    }
+
+    // Counts only grow, so a tracked counter that changed can only move down the min-heap
+    private void siftDown(int position) {
+        Counter<T> counter = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (heap[child].count >= counter.count) {
+                break;
+            }
+            heap[position] = heap[child];
+            heap[position].position = position;
+            position = child;
+        }
+        heap[position] = counter;
+        counter.position = position;
+    }
+}
@@ -2,8 +2,11 @@ package com.leoluca.urlshortener.api;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
 
-@SpringBootTest
+// The embedded store needs neither MongoDB nor Redis, each run gets a fresh data directory
+@SpringBootTest(properties = "urlshortener.embedded.data-dir=build/embedded-test/${random.uuid}")
+@ActiveProfiles("embedded")
 class UrlShortenerApiApplicationTests {
 
 	@Test
@@ -0,0 +1,168 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AppendOnlyLogTest {
+
+    // Records of 20 byte payloads take 29 bytes, two of them fit a segment
+    private static final int SEGMENT_SIZE = 64;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEveryRecordAndAppendsAfterThem() {
+        long second;
+        try (AppendOnlyLog log = open()) {
+            log.append(Records.URL, payload("a"));
+            second = log.append(Records.HITS, payload("b"));
+            log.append(Records.USER, payload("c"));
+        }
+
+        try (AppendOnlyLog log = open()) {
+            List<String> replayed = new ArrayList<>();
+            log.replay((offset, type, payload) -> replayed.add(type + ":" + text(payload)));
+            assertThat(replayed).containsExactly("1:a", "2:b", "3:c");
+            assertThat(text(log.payload(second))).isEqualTo("b");
+
+            // The third record went to the second segment, the next one follows it there
+            assertThat(log.append(Records.SEQUENCE, payload("d"))).isEqualTo(1L << 32 | 29);
+        }
+        assertThat(replay()).containsExactly("a", "b", "c", "d");
+    }
+
+    @Test
+    void aRecordFailingItsChecksumAtTheEndIsCutOff() throws IOException {
+        long third;
+        try (AppendOnlyLog log = open()) {
+            log.append(Records.URL, payload("a"));
+            log.append(Records.URL, payload("b"));
+            third = log.append(Records.URL, payload("c"));
+        }
+        corrupt(segment(1), (int) third + 7);
+
+        try (AppendOnlyLog log = open()) {
+            List<String> replayed = new ArrayList<>();
+            log.replay((offset, type, payload) -> replayed.add(text(payload)));
+            assertThat(replayed).containsExactly("a", "b");
+            assertThat(log.append(Records.URL, payload("d"))).isEqualTo(third);
+        }
+        assertThat(replay()).containsExactly("a", "b", "d");
+    }
+
+    @Test
+    void aRecordThatLostItsLengthIsCutOffWithEverythingBehindIt() throws IOException {
+        long second;
+        try (AppendOnlyLog log = open()) {
+            log.append(Records.URL, payload("a"));
+            second = log.append(Records.URL, payload("a much longer one"));
+        }
+        // A crash before the length was written, the rest of the record is there already
+        write(segment(0), (int) second, new byte[Integer.BYTES]);
+
+        try (AppendOnlyLog log = open()) {
+            log.replay((offset, type, payload) -> {});
+            assertThat(log.append(Records.URL, new byte[]{'b'})).isEqualTo(second);
+            // Rolls, so the first segment is no longer the last one
+            log.append(Records.URL, payload("c"));
+        }
+
+        // Leftovers of the cut record behind the shorter one would now fail the startup
+        assertThat(replay()).containsExactly("a", "b", "c");
+        ByteBuffer firstSegment = ByteBuffer.wrap(Files.readAllBytes(segment(0)));
+        for (int i = (int) second + 10; i < SEGMENT_SIZE; i++) {
+            assertThat(firstSegment.get(i)).isZero();
+        }
+    }
+
+    @Test
+    void aDamagedRecordBeforeTheLastSegmentRefusesToStart() throws IOException {
+        try (AppendOnlyLog log = open()) {
+            for (String record : List.of("a", "b", "c", "d", "e")) {
+                log.append(Records.URL, payload(record));
+            }
+        }
+        corrupt(segment(0), 29 + 7);
+
+        try (AppendOnlyLog log = open()) {
+            assertThatThrownBy(() -> log.replay((offset, type, payload) -> {}))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("segment-00000.log");
+        }
+    }
+
+    @Test
+    void aBatchIsTakenBackIfItCantBeWrittenCompletely() throws IOException {
+        try (AppendOnlyLog log = open()) {
+            log.append(Records.URL, payload("a"));
+
+            assertThatThrownBy(() -> log.appendAll(Records.URL, List.of(payload("b"), new byte[SEGMENT_SIZE])))
+                    .isInstanceOf(IllegalArgumentException.class);
+
+            // The second record needs a new segment, which can't be created while a directory is in the way
+            Path blocker = Files.createDirectory(segment(1));
+            assertThatThrownBy(() -> log.appendAll(Records.URL, List.of(payload("b"), payload("c"))))
+                    .isInstanceOf(UncheckedIOException.class);
+            Files.delete(blocker);
+
+            assertThat(log.appendAll(Records.URL, List.of(payload("d"), payload("e")))).containsExactly(29, 1L << 32);
+        }
+        assertThat(replay()).containsExactly("a", "d", "e");
+    }
+
+    private AppendOnlyLog open() {
+        return new AppendOnlyLog(directory, SEGMENT_SIZE);
+    }
+
+    private List<String> replay() {
+        List<String> replayed = new ArrayList<>();
+        try (AppendOnlyLog log = open()) {
+            log.replay((offset, type, payload) -> replayed.add(text(payload)));
+        }
+        return replayed;
+    }
+
+    private Path segment(int number) {
+        return directory.resolve(String.format("segment-%05d.log", number));
+    }
+
+    // Pads to 20 bytes so the records have a known size
+    private static byte[] payload(String text) {
+        byte[] payload = new byte[20];
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(bytes, 0, payload, 0, bytes.length);
+        return payload;
+    }
+
+    private static String text(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8).replace("\0", "");
+    }
+
+    private static void corrupt(Path file, int position) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        write(file, position, new byte[]{(byte) (bytes[position] ^ 0xFF)});
+    }
+
+    private static void write(Path file, int position, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), position);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.leoluca.urlshortener.api.embedded;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.dedup.UrlDigest;
+import com.leoluca.urlshortener.api.user.User;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EmbeddedStoreTest {
+
+    private static final DataSize SEGMENT_SIZE = DataSize.ofKilobytes(4);
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void everythingWrittenComesBackAfterAReopen() {
+        User user = new User("someone@example.com");
+        long firstBlock;
+        EmbeddedStore store = open();
+        try {
+            store.saveUser(user);
+            store.insertUrls(List.of(new URL("https://example.com/a", "aaaaaaa", user.getUserId()),
+                    new URL("https://example.com/b", "bbbbbbb", null)));
+            store.incrementHitCounts(Map.of("aaaaaaa", 3L, "bbbbbbb", 1L));
+            store.incrementHitCounts(Map.of("aaaaaaa", 2L, "unknown", 7L));
+            firstBlock = store.reserveIds(1000);
+        } finally {
+            store.close();
+        }
+
+        store = open();
+        try {
+            assertThat(store.countUrls()).isEqualTo(2);
+            URL a = store.findUrlByShortCode("aaaaaaa").orElseThrow();
+            assertThat(a.getLongUrl()).isEqualTo("https://example.com/a");
+            assertThat(a.getHitCount()).isEqualTo(5);
+            assertThat(store.findUrlByShortCode("bbbbbbb").orElseThrow().getHitCount()).isEqualTo(1);
+            assertThat(store.findUrlByUrlHash(UrlDigest.of("https://example.com/b")).orElseThrow().getShortCode())
+                    .isEqualTo("bbbbbbb");
+            assertThat(store.findUserUrlsAfter(user.getUserId(), null, null, 10))
+                    .extracting(URL::getShortCode).containsExactly("aaaaaaa");
+
+            assertThat(store.countUsers()).isEqualTo(1);
+            assertThat(store.findUserByEmail("someone@example.com").orElseThrow().getUserId())
+                    .isEqualTo(user.getUserId());
+
+            // The sequence continues after the block reserved before the restart
+            assertThat(store.reserveIds(1000)).isEqualTo(firstBlock + 1000);
+
+            // New ids still sort after the recovered ones
+            store.insertUrls(List.of(new URL("https://example.com/c", "ccccccc", null)));
+            URL c = store.findUrlByShortCode("ccccccc").orElseThrow();
+            assertThat(new ObjectId(c.getId()).compareTo(new ObjectId(a.getId()))).isPositive();
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void aTornLastWriteIsDroppedAndTheStoreKeepsAppending() throws IOException {
+        EmbeddedStore store = open();
+        try {
+            store.insertUrls(List.of(new URL("https://example.com/a", "aaaaaaa", null)));
+            store.insertUrls(List.of(new URL("https://example.com/b", "bbbbbbb", null)));
+        } finally {
+            store.close();
+        }
+        // Lose the length of the second record, as if the crash hit right before it was written
+        int firstLength;
+        try (FileChannel channel = FileChannel.open(segment(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(length, 0);
+            firstLength = length.flip().getInt();
+            channel.write(ByteBuffer.allocate(Integer.BYTES), firstLength + 9);
+        }
+
+        store = open();
+        try {
+            assertThat(store.countUrls()).isEqualTo(1);
+            assertThat(store.findUrlByShortCode("bbbbbbb")).isEmpty();
+            store.insertUrls(List.of(new URL("https://example.com/c", "ccccccc", null)));
+        } finally {
+            store.close();
+        }
+
+        store = open();
+        try {
+            assertThat(store.countUrls()).isEqualTo(2);
+            assertThat(store.findUrlByShortCode("aaaaaaa")).isPresent();
+            assertThat(store.findUrlByShortCode("ccccccc")).isPresent();
+            assertThat(store.findUrlByShortCode("bbbbbbb")).isEmpty();
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void aBatchThatCantBeWrittenLeavesNothingBehind() {
+        EmbeddedStore store = open();
+        try {
+            List<URL> batch = List.of(new URL("https://example.com/a", "aaaaaaa", null),
+                    new URL("https://example.com/" + "x".repeat((int) SEGMENT_SIZE.toBytes()), "bbbbbbb", null));
+            assertThatThrownBy(() -> store.insertUrls(batch)).isInstanceOf(IllegalArgumentException.class);
+
+            assertThat(store.countUrls()).isZero();
+            assertThat(store.findUrlByShortCode("aaaaaaa")).isEmpty();
+            assertThat(store.findUrlByUrlHash(UrlDigest.of("https://example.com/a"))).isEmpty();
+
+            // Nothing of the batch is left in the way either
+            store.insertUrls(List.of(new URL("https://example.com/a", "aaaaaaa", null)));
+        } finally {
+            store.close();
+        }
+
+        EmbeddedStore reopened = open();
+        try {
+            assertThat(reopened.countUrls()).isEqualTo(1);
+        } finally {
+            reopened.close();
+        }
+    }
+
+    private EmbeddedStore open() {
+        return new EmbeddedStore(dataDir, SEGMENT_SIZE, 16, Duration.ZERO);
+    }
+
+    private Path segment() {
+        return dataDir.resolve("segment-00000.log");
+    }
+}
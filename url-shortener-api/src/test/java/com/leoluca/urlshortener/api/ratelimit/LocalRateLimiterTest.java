@@ -0,0 +1,78 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalRateLimiterTest {
+
+    // 5 requests of burst, then one every 100ms
+    private static final RateLimitRules.Rule RULE = rule("shorten", 5, 10);
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final LocalRateLimiter rateLimiter = new LocalRateLimiter(1000, Duration.ofMinutes(10), now::get);
+
+    @Test
+    void aNewClientMayBurstExactlyTheCapacity() {
+        for (int i = 0; i < 5; i++) {
+            assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isZero();
+        }
+
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isEqualTo(INTERVAL);
+    }
+
+    @Test
+    void tokensComeBackAtTheRefillRate() {
+        drain("1.2.3.4");
+
+        now.addAndGet(INTERVAL - 1);
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isEqualTo(1);
+        now.addAndGet(1);
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isZero();
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isEqualTo(INTERVAL);
+
+        // An idle client banks no more than the capacity
+        now.addAndGet(TimeUnit.MINUTES.toNanos(1));
+        for (int i = 0; i < 5; i++) {
+            assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isZero();
+        }
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isPositive();
+    }
+
+    @Test
+    void rejectedRequestsTakeNoToken() {
+        drain("1.2.3.4");
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isEqualTo(INTERVAL);
+        }
+
+        now.addAndGet(INTERVAL);
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isZero();
+    }
+
+    @Test
+    void clientsAndRulesHaveTheirOwnBuckets() {
+        drain("1.2.3.4");
+
+        assertThat(rateLimiter.tryAcquire(RULE, "5.6.7.8")).isZero();
+        assertThat(rateLimiter.tryAcquire(rule("login", 1, 1), "1.2.3.4")).isZero();
+    }
+
+    private void drain(String client) {
+        while (rateLimiter.tryAcquire(RULE, client) == 0) {
+            // Take every banked token
+        }
+    }
+
+    static RateLimitRules.Rule rule(String name, long capacity, double refillPerSecond) {
+        RateLimitRules rules = new RateLimitRules(List.of(new RateLimitProperties.Rule(name, null, "/**",
+                RateLimitProperties.KeyType.IP, capacity, refillPerSecond)));
+        return rules.match("GET", "/").rule();
+    }
+}
@@ -0,0 +1,93 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitFilterTest {
+
+    private final RateLimitRules rules = new RateLimitRules(List.of(
+            new RateLimitProperties.Rule("shorten", "POST", "/api/urls/shorten", RateLimitProperties.KeyType.IP, 50, 10),
+            new RateLimitProperties.Rule("user-urls", "GET", "/api/users/{userId}/urls/**", RateLimitProperties.KeyType.USER, 20, 5),
+            new RateLimitProperties.Rule("login", "POST", "/api/users/login", RateLimitProperties.KeyType.USER, 10, 0.2)));
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> clients = new ArrayList<>();
+    private long waitNanos;
+    private final RateLimitFilter filter = new RateLimitFilter(rules, (rule, client) -> {
+        clients.add(rule.name() + " " + client);
+        return waitNanos;
+    }, meterRegistry);
+
+    @Test
+    void letsRequestsWithTokensThrough() throws ServletException, IOException {
+        MockHttpServletResponse response = perform("POST", "/api/urls/shorten");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(clients).containsExactly("shorten 1.2.3.4");
+    }
+
+    @Test
+    void rejectsWithARetryAfterRoundedUpToWholeSeconds() throws ServletException, IOException {
+        assertThat(retryAfter(1)).isEqualTo("1");
+        assertThat(retryAfter(TimeUnit.SECONDS.toNanos(1))).isEqualTo("1");
+        assertThat(retryAfter(TimeUnit.SECONDS.toNanos(1) + 1)).isEqualTo("2");
+        assertThat(retryAfter(TimeUnit.MILLISECONDS.toNanos(4500))).isEqualTo("5");
+
+        assertThat(meterRegistry.get("ratelimit.rejected").tag("rule", "shorten").counter().count()).isEqualTo(4);
+    }
+
+    @Test
+    void userRulesKeyOnTheUserIdInThePath() throws ServletException, IOException {
+        perform("GET", "/api/users/42/urls");
+        perform("GET", "/api/users/43/urls/page/2");
+
+        assertThat(clients).containsExactly("user-urls user:42", "user-urls user:43");
+    }
+
+    @Test
+    void userRulesWithoutAUserIdInThePathKeyOnTheAddress() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/users/login");
+        request.setRemoteAddr("1.2.3.4");
+        // Clients can't pick their own bucket
+        request.addHeader("X-User-Id", "someone-else");
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertThat(clients).containsExactly("login 1.2.3.4");
+    }
+
+    @Test
+    void requestsNoRuleMatchesAreNotLimited() throws ServletException, IOException {
+        waitNanos = TimeUnit.SECONDS.toNanos(1);
+
+        MockHttpServletResponse response = perform("GET", "/abc123");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(clients).isEmpty();
+    }
+
+    private String retryAfter(long waitNanos) throws ServletException, IOException {
+        this.waitNanos = waitNanos;
+        MockHttpServletResponse response = perform("POST", "/api/urls/shorten");
+        assertThat(response.getStatus()).isEqualTo(429);
+        return response.getHeader("Retry-After");
+    }
+
+    private MockHttpServletResponse perform(String method, String path) throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest(method, path);
+        request.setRemoteAddr("1.2.3.4");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
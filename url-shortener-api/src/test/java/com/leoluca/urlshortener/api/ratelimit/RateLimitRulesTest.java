@@ -0,0 +1,58 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitRulesTest {
+
+    private final RateLimitRules rules = new RateLimitRules(List.of(
+            new RateLimitProperties.Rule("shorten-batch", "POST", "/api/urls/shorten/batch", RateLimitProperties.KeyType.IP, 5, 0.1),
+            new RateLimitProperties.Rule("shorten", "POST", "/api/urls/**", RateLimitProperties.KeyType.IP, 50, 10),
+            new RateLimitProperties.Rule("user-urls", "GET", "/api/users/{userId}/urls/**", RateLimitProperties.KeyType.USER, 20, 5),
+            new RateLimitProperties.Rule("users", null, "/api/users/**", RateLimitProperties.KeyType.USER, 10, 1)));
+
+    @Test
+    void theFirstMatchingRuleApplies() {
+        assertThat(rules.match("POST", "/api/urls/shorten/batch").rule().name()).isEqualTo("shorten-batch");
+        assertThat(rules.match("POST", "/api/urls/shorten").rule().name()).isEqualTo("shorten");
+        assertThat(rules.match("GET", "/api/users/42/urls").rule().name()).isEqualTo("user-urls");
+    }
+
+    @Test
+    void rulesOnlyMatchTheirMethodAndARuleWithoutOneMatchesAny() {
+        assertThat(rules.match("GET", "/api/urls/shorten")).isNull();
+        assertThat(rules.match("post", "/api/urls/shorten").rule().name()).isEqualTo("shorten");
+        assertThat(rules.match("DELETE", "/api/users/42/urls").rule().name()).isEqualTo("users");
+    }
+
+    @Test
+    void userRulesExtractTheUserIdFromThePath() {
+        RateLimitRules.Match match = rules.match("GET", "/api/users/42/urls/page/2");
+        assertThat(match.userId()).isEqualTo("42");
+
+        RateLimitRules.Match withoutUserId = rules.match("POST", "/api/users/login");
+        assertThat(withoutUserId.rule().name()).isEqualTo("users");
+        assertThat(withoutUserId.userId()).isNull();
+
+        assertThat(rules.match("POST", "/api/urls/shorten").userId()).isNull();
+    }
+
+    @Test
+    void unlimitedRequestsMatchNothing() {
+        assertThat(rules.match("GET", "/abc123")).isNull();
+        assertThat(rules.isEmpty()).isFalse();
+        assertThat(new RateLimitRules(List.of()).isEmpty()).isTrue();
+    }
+
+    @Test
+    void theRefillRateBecomesTheTokenInterval() {
+        RateLimitRules.Rule rule = rules.match("POST", "/api/urls/shorten/batch").rule();
+
+        assertThat(rule.capacity()).isEqualTo(5);
+        assertThat(rule.intervalNanos()).isEqualTo(10_000_000_000L);
+        assertThat(rule.burstNanos()).isEqualTo(50_000_000_000L);
+    }
+}
@@ -0,0 +1,61 @@
+package com.leoluca.urlshortener.api.ratelimit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The script itself runs on Redis, this covers what goes in and what comes back
+class RedisRateLimiterTest {
+
+    private static final RateLimitRules.Rule RULE = LocalRateLimiterTest.rule("shorten", 50, 10);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RedisTemplate<String, String> redisTemplate;
+    private RedisRateLimiter rateLimiter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redisTemplate = mock(RedisTemplate.class);
+        rateLimiter = new RedisRateLimiter(redisTemplate, meterRegistry);
+    }
+
+    @Test
+    void passesTheBucketPerRuleAndClientInMicroseconds() {
+        when(redisTemplate.<Long>execute(any(), anyList(), any(), any())).thenReturn(0L);
+
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isZero();
+
+        // One token per 100ms, 50 of them banked
+        verify(redisTemplate).execute(any(), eq(List.of("ratelimit:shorten:1.2.3.4")), eq("100000"), eq("5000000"));
+    }
+
+    @Test
+    void returnsTheWaitInNanoseconds() {
+        when(redisTemplate.<Long>execute(any(), anyList(), any(), any())).thenReturn(1500L);
+
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isEqualTo(1_500_000L);
+    }
+
+    @Test
+    void letsRequestsThroughWhenRedisFails() {
+        when(redisTemplate.<Long>execute(any(), anyList(), any(), any()))
+                .thenThrow(new RedisConnectionFailureException("connection refused"));
+
+        assertThat(rateLimiter.tryAcquire(RULE, "1.2.3.4")).isZero();
+        assertThat(meterRegistry.get("ratelimit.redis.failures").counter().count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,112 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leoluca.urlshortener.api.url.cache.ShortCodeFilter;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import com.leoluca.urlshortener.api.url.codegen.ShortCodeGenerator;
+import com.leoluca.urlshortener.api.url.dedup.LongUrlFilter;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchShortenServiceTest {
+
+    private static final ObjectId USER_ID = new ObjectId("507f1f77bcf86cd799439011");
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<List<URL>> inserts = new ArrayList<>();
+    private URLRepository urlRepository;
+    private URLService urlService;
+    private ShortCodeFilter shortCodeFilter;
+    private BatchShortenService service;
+
+    @BeforeEach
+    void setUp() {
+        urlRepository = mock(URLRepository.class);
+        urlService = mock(URLService.class);
+        shortCodeFilter = mock(ShortCodeFilter.class);
+        AtomicInteger codes = new AtomicInteger();
+        ShortCodeGenerator shortCodeGenerator = () -> "code" + codes.incrementAndGet();
+        // Nothing is stored yet as far as the long URL filter knows, so there is no $in lookup up front
+        LongUrlFilter longUrlFilter = mock(LongUrlFilter.class);
+        service = new BatchShortenService(urlRepository, urlService, shortCodeGenerator, longUrlFilter, shortCodeFilter,
+                mock(ShortUrlCache.class), objectMapper, 1000);
+    }
+
+    @Test
+    void duplicatesWithinAChunkShareOneNewCode() throws Exception {
+        recordInserts();
+
+        List<BatchShortenResult> results = shorten(
+                "https://example.com/a", "http://www.example.com/a/", "https://example.com/b", "https://example.com/a");
+
+        assertThat(results).containsExactly(
+                new BatchShortenResult(0, "https://example.com/a", "code1", "created", null),
+                new BatchShortenResult(1, "https://example.com/a", "code1", "existing", null),
+                new BatchShortenResult(2, "https://example.com/b", "code2", "created", null),
+                new BatchShortenResult(3, "https://example.com/a", "code1", "existing", null));
+        // One insertMany with each URL once
+        assertThat(inserts).hasSize(1);
+        assertThat(inserts.get(0)).extracting(URL::getLongUrl).containsExactly("https://example.com/a", "https://example.com/b");
+        verify(urlRepository, never()).findAllByUrlHashIn(any());
+        verify(shortCodeFilter).add("code1");
+        verify(shortCodeFilter).add("code2");
+    }
+
+    @Test
+    void aFailedInsertManyFallsBackToSingleInserts() throws Exception {
+        when(urlRepository.insert(anyIterable())).thenThrow(new DuplicateKeyException("E11000 duplicate key"));
+        // The first URL made it in before the failure, another request stored the second one in the meantime
+        when(urlRepository.findAllByUrlHashIn(any())).thenReturn(List.of(
+                new URL("https://example.com/a", null, "code1", USER_ID),
+                new URL("https://example.com/b", null, "stored", USER_ID)));
+        when(urlService.saveShortUrl("https://example.com/c", USER_ID)).thenReturn("single");
+
+        List<BatchShortenResult> results = shorten("https://example.com/a", "https://example.com/b", "https://example.com/c");
+
+        assertThat(results).containsExactly(
+                new BatchShortenResult(0, "https://example.com/a", "code1", "created", null),
+                new BatchShortenResult(1, "https://example.com/b", "stored", "existing", null),
+                new BatchShortenResult(2, "https://example.com/c", "single", "created", null));
+        verify(urlService, never()).saveShortUrl("https://example.com/a", USER_ID);
+        verify(urlService, never()).saveShortUrl("https://example.com/b", USER_ID);
+        // Only the code that really is ours counts as issued here, saveShortUrl records its own
+        verify(shortCodeFilter).add("code1");
+        verify(shortCodeFilter, never()).add("code2");
+    }
+
+    private void recordInserts() {
+        when(urlRepository.insert(anyIterable())).thenAnswer(invocation -> {
+            List<URL> urls = new ArrayList<>();
+            invocation.<Iterable<URL>>getArgument(0).forEach(urls::add);
+            inserts.add(urls);
+            return urls;
+        });
+    }
+
+    private List<BatchShortenResult> shorten(String... longUrls) throws Exception {
+        StringBuilder input = new StringBuilder();
+        for (String longUrl : longUrls) {
+            input.append("{\"longUrl\":\"").append(longUrl).append("\",\"userId\":\"").append(USER_ID).append("\"}\n");
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        service.shortenAll(new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), output);
+        return objectMapper.readerFor(BatchShortenResult.class).<BatchShortenResult>readValues(output.toByteArray()).readAll();
+    }
+}
@@ -0,0 +1,25 @@
+package com.leoluca.urlshortener.api.url;
+
+/**
+ * The regex based normalization UrlNormalizer used to do, the reference {@link UrlNormalizerTest} checks plain URLs
+ * against and the baseline for UrlNormalizerBenchmark, which gets it from the test classes.
+ */
+final class LegacyUrlNormalizer {
+
+    private LegacyUrlNormalizer() {}
+
+    static String normalize(String url) {
+        if (url.startsWith("http://")) {
+            url = url.replaceFirst("http://", "https://");
+        }
+        url = url.replaceFirst("^(https://)?www\\.", "$1");
+        if (url.endsWith("/")) {
+            url = url.substring(0, url.length() - 1);
+        }
+        return url;
+    }
+
+    static boolean isValid(String url) {
+        return url != null && !url.isBlank() && url.matches("^(http|https)://.*$");
+    }
+}
@@ -0,0 +1,67 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.leoluca.urlshortener.api.url.analytics.ClickAnalytics;
+import com.leoluca.urlshortener.api.url.analytics.TrendingTracker;
+import com.leoluca.urlshortener.api.url.analytics.UrlStatsService;
+import com.leoluca.urlshortener.api.url.exception.BackendUnavailableException;
+import com.leoluca.urlshortener.api.url.exception.GlobalExceptionHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class URLControllerTest {
+
+    private URLService urlService;
+    private ClickAnalytics clickAnalytics;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        urlService = mock(URLService.class);
+        clickAnalytics = mock(ClickAnalytics.class);
+        URLController controller = new URLController(urlService, mock(BatchShortenService.class), clickAnalytics,
+                mock(UrlStatsService.class), mock(TrendingTracker.class));
+        mockMvc = MockMvcBuilders.standaloneSetup(controller)
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void redirectsFoundCodes() throws Exception {
+        when(urlService.resolveShortCode("abc")).thenReturn(Resolution.found("https://example.com/"));
+
+        mockMvc.perform(get("/api/urls/abc"))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location", "https://example.com/"));
+        verify(clickAnalytics).record("abc", null, null);
+    }
+
+    @Test
+    void answersUnknownAndExpiredCodes() throws Exception {
+        when(urlService.resolveShortCode("unknown")).thenReturn(Resolution.notFound());
+        when(urlService.resolveShortCode("expired")).thenReturn(Resolution.gone());
+
+        mockMvc.perform(get("/api/urls/unknown")).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/urls/expired")).andExpect(status().isGone());
+    }
+
+    @Test
+    void unavailableBackendsAreNotReportedAsUnknownCodes() throws Exception {
+        when(urlService.resolveShortCode("abc")).thenThrow(new BackendUnavailableException("mongo is unavailable"));
+
+        mockMvc.perform(get("/api/urls/abc"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        verify(clickAnalytics, never()).record(any(), any(), any());
+    }
+}
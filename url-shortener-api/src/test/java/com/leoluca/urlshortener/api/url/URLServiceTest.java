@@ -0,0 +1,152 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.leoluca.urlshortener.api.url.accesslog.ResolveAccessLog;
+import com.leoluca.urlshortener.api.url.cache.ShortCodeFilter;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import com.leoluca.urlshortener.api.url.codegen.ShortCodeGenerator;
+import com.leoluca.urlshortener.api.url.dedup.LongUrlFilter;
+import com.leoluca.urlshortener.api.url.exception.BackendUnavailableException;
+import com.leoluca.urlshortener.api.url.hits.HitCountBuffer;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuard;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuards;
+import com.leoluca.urlshortener.api.url.warmup.HotSetTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The fallbacks of resolveShortCode, with every tier mocked
+class URLServiceTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private URLRepository urlRepository;
+    private ShortUrlCache shortUrlCache;
+    private HitCountBuffer hitCountBuffer;
+    private BackendGuard redis;
+    private BackendGuard mongo;
+    private URLService urlService;
+
+    @BeforeEach
+    void setUp() {
+        urlRepository = mock(URLRepository.class);
+        shortUrlCache = mock(ShortUrlCache.class);
+        hitCountBuffer = mock(HitCountBuffer.class);
+        redis = mock(BackendGuard.class);
+        mongo = mock(BackendGuard.class);
+        BackendGuards backends = mock(BackendGuards.class);
+        when(backends.redis()).thenReturn(redis);
+        when(backends.mongo()).thenReturn(mongo);
+        ShortCodeFilter shortCodeFilter = mock(ShortCodeFilter.class);
+        when(shortCodeFilter.mightExist(anyString(), anyBoolean())).thenReturn(true);
+
+        urlService = new URLService(urlRepository, shortUrlCache, shortCodeFilter, hitCountBuffer,
+                mock(HotSetTracker.class), mock(ShortCodeGenerator.class), mock(LongUrlFilter.class), new ObjectMapper(),
+                mock(ResolveAccessLog.class), backends, meterRegistry, 1000);
+    }
+
+    @Test
+    void aRedisOutageFallsThroughToTheDatabase() {
+        when(shortUrlCache.getRemote(eq("abc"), any())).thenThrow(new BackendUnavailableException("redis is unavailable"));
+        when(mongo.callBlocking(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(urlRepository.findByShortCode("abc")).thenReturn(Optional.of(new URL("https://example.com/", "abc", null)));
+
+        assertThat(urlService.resolveShortCode("abc")).isEqualTo(Resolution.found("https://example.com/"));
+
+        // Redis is down, so the result only goes to the local tiers
+        verify(shortUrlCache).putWithoutRedis(eq("abc"), anyString());
+        verify(shortUrlCache, never()).put(anyString(), anyString());
+        verify(hitCountBuffer).record("abc");
+    }
+
+    @Test
+    void servesTheStaleCopyWhenTheDatabaseIsUnavailable() {
+        when(mongo.callBlocking(any())).thenThrow(new BackendUnavailableException("mongo is unavailable"));
+        when(shortUrlCache.getStale("abc")).thenReturn(Resolution.found("https://example.com/"));
+
+        assertThat(urlService.resolveShortCode("abc")).isEqualTo(Resolution.found("https://example.com/"));
+
+        assertThat(meterRegistry.get("shorturl.resolve.stale").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shorturl.resolve").tag("result", "found").timer().count()).isEqualTo(1);
+        verify(hitCountBuffer).record("abc");
+    }
+
+    @Test
+    void withoutAStaleCopyTheOutageReachesTheCaller() {
+        when(mongo.callBlocking(any())).thenThrow(new BackendUnavailableException("mongo is unavailable"));
+
+        assertThatThrownBy(() -> urlService.resolveShortCode("abc")).isInstanceOf(BackendUnavailableException.class);
+
+        assertThat(meterRegistry.get("shorturl.resolve").tag("result", "unavailable").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shorturl.resolve.stale").counter().count()).isZero();
+        verify(hitCountBuffer, never()).record(anyString());
+    }
+
+    @Test
+    void anExpiredLinkInL1IsGoneWithoutAskingTheOtherTiers() {
+        when(shortUrlCache.getLocal("abc")).thenReturn(Resolution.gone());
+
+        assertThat(urlService.resolveShortCode("abc")).isEqualTo(Resolution.gone());
+
+        verify(shortUrlCache, never()).getRemote(anyString(), any());
+        verify(urlRepository, never()).findByShortCode(anyString());
+        assertThat(meterRegistry.get("shorturl.resolve").tag("result", "gone").timer().count()).isEqualTo(1);
+        verify(hitCountBuffer, never()).record(anyString());
+    }
+
+    @Test
+    void anExpiredLinkInRedisIsGoneWithoutAskingTheDatabase() {
+        when(shortUrlCache.getRemote(eq("abc"), any())).thenReturn(Resolution.gone());
+
+        assertThat(urlService.resolveShortCode("abc")).isEqualTo(Resolution.gone());
+
+        verify(urlRepository, never()).findByShortCode(anyString());
+        assertThat(meterRegistry.get("shorturl.resolve").tag("result", "gone").timer().count()).isEqualTo(1);
+        verify(hitCountBuffer, never()).record(anyString());
+    }
+
+    @Test
+    void anExpiredLinkFromTheDatabaseIsGoneAndCachedAsGone() {
+        long expiresAt = System.currentTimeMillis() - 60_000;
+        URL url = new URL("https://example.com/", "abc", null);
+        url.setExpiresAt(new Date(expiresAt));
+        when(redis.isAvailable()).thenReturn(true);
+        when(mongo.callBlocking(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(urlRepository.findByShortCode("abc")).thenReturn(Optional.of(url));
+
+        assertThat(urlService.resolveShortCode("abc")).isEqualTo(Resolution.gone());
+
+        // Cached with its expiry, so the tiers answer it as gone from now on
+        verify(shortUrlCache).put(eq("abc"), startsWith(expiresAt + "|"));
+        assertThat(meterRegistry.get("shorturl.resolve").tag("result", "gone").timer().count()).isEqualTo(1);
+        verify(hitCountBuffer, never()).record(anyString());
+    }
+
+    @Test
+    void anExpiredStaleCopyIsGoneWhileTheDatabaseIsUnavailable() {
+        when(mongo.callBlocking(any())).thenThrow(new BackendUnavailableException("mongo is unavailable"));
+        when(shortUrlCache.getStale("abc")).thenReturn(Resolution.gone());
+
+        assertThat(urlService.resolveShortCode("abc")).isEqualTo(Resolution.gone());
+
+        assertThat(meterRegistry.get("shorturl.resolve.stale").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shorturl.resolve").tag("result", "gone").timer().count()).isEqualTo(1);
+        verify(hitCountBuffer, never()).record(anyString());
+    }
+}
@@ -0,0 +1,187 @@
+package com.leoluca.urlshortener.api.url;
+
+import com.leoluca.urlshortener.api.url.exception.InvalidUrlException;
+import net.jqwik.api.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UrlNormalizerTest {
+
+    @Property
+    void normalizingTwiceChangesNothing(@ForAll("urls") String url) {
+        String normalized = UrlNormalizer.normalize(url);
+        assertThat(UrlNormalizer.normalize(normalized)).isEqualTo(normalized);
+    }
+
+    @Property
+    void normalizedUrlsAreValidHttps(@ForAll("urls") String url) {
+        String normalized = UrlNormalizer.normalize(url);
+        assertThat(normalized).startsWith("https://");
+        assertThat(UrlNormalizer.isValid(normalized)).isTrue();
+    }
+
+    @Property
+    void canonicalUrlsAreReturnedAsIs(@ForAll("urls") String url) {
+        String normalized = UrlNormalizer.normalize(url);
+        assertThat(UrlNormalizer.normalize(normalized)).isSameAs(normalized);
+    }
+
+    @Property
+    void equivalentSpellingsNormalizeToTheSameUrl(@ForAll("hosts") String host, @ForAll("paths") String path) {
+        // A path ending in a slash would end in "//" once another one is added, and that one is kept
+        Assume.that(!path.endsWith("/"));
+        String canonical = UrlNormalizer.normalize("https://" + host + path);
+
+        assertThat(UrlNormalizer.normalize("http://www." + host.toUpperCase() + ":80" + path + "/")).isEqualTo(canonical);
+        assertThat(UrlNormalizer.normalize("HTTPS://" + host + ":443" + path + "/")).isEqualTo(canonical);
+        assertThat(UrlNormalizer.normalize("  https://" + host + encodeUnreserved(path) + "\n")).isEqualTo(canonical);
+    }
+
+    @Property
+    void agreesWithThePreviousImplementationOnPlainUrls(@ForAll("plainUrls") String url) {
+        assertThat(UrlNormalizer.normalize(url)).isEqualTo(LegacyUrlNormalizer.normalize(url));
+    }
+
+    @Property
+    void neverFailsUnexpectedlyOnArbitraryInput(@ForAll String input) {
+        Assume.that(!input.isBlank());
+        try {
+            UrlNormalizer.isValid(UrlNormalizer.normalize(input));
+        } catch (InvalidUrlException e) {
+            // Only allowed for strings that are blank once trimmed or have whitespace or control characters inside
+            String trimmed = input.trim();
+            assertThat(trimmed.isEmpty() || trimmed.chars().anyMatch(c -> c <= ' ' || Character.isWhitespace(c)
+                    || Character.isSpaceChar(c) || Character.isISOControl(c))).isTrue();
+        }
+    }
+
+    @Property
+    void rejectsOtherSchemes(@ForAll("hosts") String host, @ForAll("otherSchemes") String scheme) {
+        assertThat(UrlNormalizer.isValid(UrlNormalizer.normalize(scheme + host))).isFalse();
+    }
+
+    @Property
+    void rejectsWhitespaceInsideTheUrl(@ForAll("urls") String url, @ForAll("whitespace") char whitespace) {
+        String normalized = UrlNormalizer.normalize(url);
+        String broken = normalized.substring(0, 9) + whitespace + normalized.substring(9);
+        assertThat(UrlNormalizer.isValid(broken)).isFalse();
+    }
+
+    @Property
+    void rejectsWhitespaceWhenNormalizing(@ForAll("urls") String url, @ForAll("whitespace") char whitespace) {
+        String broken = url.substring(0, 9) + whitespace + url.substring(9);
+        assertThatThrownBy(() -> UrlNormalizer.normalize(broken)).isInstanceOf(InvalidUrlException.class);
+    }
+
+    @Example
+    void normalizesEveryPartOfTheUrl() {
+        assertThat(UrlNormalizer.normalize(" HTTP://User@WWW.Example.COM:80/a%7e%2fb/?q=%41// "))
+                .isEqualTo("https://User@example.com/a~%2Fb?q=A//");
+    }
+
+    @Example
+    void onlyDropsASingleTrailingSlashFromThePath() {
+        assertThat(UrlNormalizer.normalize("https://example.com/a/")).isEqualTo("https://example.com/a");
+        assertThat(UrlNormalizer.normalize("https://example.com/a//")).isEqualTo("https://example.com/a//");
+        assertThat(UrlNormalizer.normalize("https://example.com/a?next=/b/")).isEqualTo("https://example.com/a?next=/b/");
+        assertThat(UrlNormalizer.normalize("https://example.com/a/#/b/")).isEqualTo("https://example.com/a#/b/");
+        assertThat(UrlNormalizer.normalize("https://example.com/?q=")).isEqualTo("https://example.com?q=");
+    }
+
+    @Example
+    void rejectsWhitespaceAndControlCharactersInsideTheUrl() {
+        for (String url : new String[] {"https://example.com/a b", "https://example.com/a?q=\tb",
+                "https://exa\u0000mple.com", "https://example.com/\u00A0", "https://example.com/\u2028x"}) {
+            assertThatThrownBy(() -> UrlNormalizer.normalize(url)).isInstanceOf(InvalidUrlException.class);
+        }
+    }
+
+    @Example
+    void keepsWwwWhenItIsTheDomain() {
+        assertThat(UrlNormalizer.normalize("https://www.com/")).isEqualTo("https://www.com");
+    }
+
+    @Example
+    void keepsIpv6LiteralsAndPorts() {
+        String url = UrlNormalizer.normalize("http://[::1]:8080/path");
+        assertThat(url).isEqualTo("https://[::1]:8080/path");
+        assertThat(UrlNormalizer.isValid(url)).isTrue();
+    }
+
+    @Example
+    void rejectsBlankUrls() {
+        assertThatThrownBy(() -> UrlNormalizer.normalize("   ")).isInstanceOf(InvalidUrlException.class);
+    }
+
+    @Provide
+    Arbitrary<String> urls() {
+        Arbitrary<String> scheme = Arbitraries.of("http://", "https://", "HTTP://", "HtTpS://");
+        Arbitrary<String> www = Arbitraries.of("", "www.", "WWW.");
+        Arbitrary<String> port = Arbitraries.of("", ":", ":443", ":8080");
+        Arbitrary<String> query = Arbitraries.oneOf(Arbitraries.just(""), paths().map(path -> "?q=" + path));
+        return Combinators.combine(scheme, www, hosts(), port, paths(), query)
+                .as((s, w, h, p, path, q) -> s + w + h + p + path + q);
+    }
+
+    @Provide
+    Arbitrary<String> plainUrls() {
+        Arbitrary<String> scheme = Arbitraries.of("http://", "https://");
+        Arbitrary<String> www = Arbitraries.of("", "www.");
+        Arbitrary<String> path = Arbitraries.oneOf(Arbitraries.just(""), labels().map(label -> "/" + label));
+        Arbitrary<String> trailingSlash = Arbitraries.of("", "/");
+        return Combinators.combine(scheme, www, hosts().filter(host -> !host.startsWith("www.")), path, trailingSlash)
+                .as((s, w, h, p, t) -> s + w + h + p + t);
+    }
+
+    @Provide
+    Arbitrary<String> hosts() {
+        return Combinators.combine(labels(), Arbitraries.of("com", "ch", "org", "io"))
+                .as((label, tld) -> label + "." + tld);
+    }
+
+    @Provide
+    Arbitrary<String> paths() {
+        Arbitrary<String> character = Arbitraries.strings()
+                .withCharRange('a', 'z').withCharRange('A', 'Z').numeric().withChars("-._~!$&'()*+,;=:@/")
+                .ofLength(1);
+        Arbitrary<String> escape = Arbitraries.strings().withChars("0123456789abcdefABCDEF").ofLength(2)
+                .map(hex -> "%" + hex);
+        return Arbitraries.frequencyOf(Tuple.of(9, character), Tuple.of(1, escape))
+                .list().ofMaxSize(20)
+                .map(tokens -> tokens.isEmpty() ? "" : "/" + String.join("", tokens));
+    }
+
+    @Provide
+    Arbitrary<String> otherSchemes() {
+        return Arbitraries.of("ftp://", "mailto:", "javascript:", "file:///", "htp://", "");
+    }
+
+    @Provide
+    Arbitrary<Character> whitespace() {
+        return Arbitraries.of(' ', '\t', '\n', '\r', '\u0000', '\u007F');
+    }
+
+    private Arbitrary<String> labels() {
+        return Arbitraries.strings().withCharRange('a', 'z').numeric().ofMinLength(1).ofMaxLength(12);
+    }
+
+    // Spells 'a' and '~' as escapes, leaving the hex digits of the path's own escapes alone
+    private static String encodeUnreserved(String path) {
+        StringBuilder encoded = new StringBuilder(path.length() * 3);
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '%' && i + 2 < path.length()) {
+                encoded.append(path, i, i + 3);
+                i += 2;
+            } else if (c == 'a') {
+                encoded.append("%61");
+            } else if (c == '~') {
+                encoded.append("%7e");
+            } else {
+                encoded.append(c);
+            }
+        }
+        return encoded.toString();
+    }
+}
@@ -0,0 +1,33 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClickAnalyticsTest {
+
+    @Test
+    void referrerHostDropsSchemeWwwPortAndPath() {
+        assertThat(ClickAnalytics.referrerHost("https://www.Example.com:8443/path?q=1#top")).isEqualTo("example.com");
+        assertThat(ClickAnalytics.referrerHost("http://news.ycombinator.com/item")).isEqualTo("news.ycombinator.com");
+        assertThat(ClickAnalytics.referrerHost("android-app://com.google.android.gm/")).isEqualTo("com.google.android.gm");
+        assertThat(ClickAnalytics.referrerHost("t.co")).isEqualTo("t.co");
+    }
+
+    @Test
+    void referrerHostIsDirectWithoutAHost() {
+        assertThat(ClickAnalytics.referrerHost(null)).isEqualTo(ClickAnalytics.DIRECT);
+        assertThat(ClickAnalytics.referrerHost(" ")).isEqualTo(ClickAnalytics.DIRECT);
+        assertThat(ClickAnalytics.referrerHost("https:///path")).isEqualTo(ClickAnalytics.DIRECT);
+        assertThat(ClickAnalytics.referrerHost("https://www./")).isEqualTo(ClickAnalytics.DIRECT);
+    }
+
+    @Test
+    void referrerHostRejectsAnythingButHostNames() {
+        assertThat(ClickAnalytics.referrerHost("$")).isEqualTo(ClickAnalytics.OTHER_REFERRERS);
+        assertThat(ClickAnalytics.referrerHost("https://$where/")).isEqualTo(ClickAnalytics.OTHER_REFERRERS);
+        assertThat(ClickAnalytics.referrerHost("https://user@example.com/")).isEqualTo(ClickAnalytics.OTHER_REFERRERS);
+        assertThat(ClickAnalytics.referrerHost("https://exa mple.com/")).isEqualTo(ClickAnalytics.OTHER_REFERRERS);
+        assertThat(ClickAnalytics.referrerHost("https://b\u00fccher.de/")).isEqualTo(ClickAnalytics.OTHER_REFERRERS);
+    }
+}
@@ -0,0 +1,25 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MongoUrlStatsRepositoryTest {
+
+    @Test
+    void encodedKeysAreValidFieldNames() {
+        assertThat(MongoUrlStatsRepository.encodeKey("example.com")).isEqualTo("example%2Ecom");
+        assertThat(MongoUrlStatsRepository.encodeKey("$x")).isEqualTo("%24x");
+        assertThat(MongoUrlStatsRepository.encodeKey("direct")).isEqualTo("direct");
+    }
+
+    @Test
+    void encodingIsReversible() {
+        for (String key : new String[] {"example.com", "a,b.c", "$", "$x.y", "100%", "%2E", "%", "", "direct"}) {
+            String encoded = MongoUrlStatsRepository.encodeKey(key);
+
+            assertThat(encoded).doesNotContain(".", "$");
+            assertThat(MongoUrlStatsRepository.decodeKey(encoded)).isEqualTo(key);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.leoluca.urlshortener.api.url.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TrendingTrackerTest {
+
+    private static final int CAPACITY = 50;
+    private static final long NOW = 1_767_225_600_000L;
+
+    // Without Redis, the local ranking is what gets served
+    private final TrendingTracker tracker = new TrendingTracker(null, CAPACITY, 10, Duration.ofSeconds(1), Duration.ofSeconds(5));
+
+    @Test
+    void ranksTheTopLinksOfASkewedStream() {
+        // hot0 to hot4 with 5000 down to 1000 clicks, under a long tail of 5000 codes with two clicks each
+        List<String> clicks = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            clicks.addAll(Collections.nCopies((5 - i) * 1000, "hot" + i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            clicks.addAll(List.of("cold" + i, "cold" + i));
+        }
+        Collections.shuffle(clicks, new Random(1));
+        // Spread over the last four minutes, so over ten of the 5 minute window's slices
+        for (int i = 0; i < clicks.size(); i++) {
+            tracker.record(clicks.get(i), NOW - Duration.ofMinutes(4).toMillis() + i * Duration.ofMinutes(4).toMillis() / clicks.size());
+        }
+        tracker.refresh(NOW);
+
+        List<TrendingLinks.Link> top = tracker.top(TrendingWindow.FIVE_MINUTES, 5).links();
+        assertThat(top).extracting(TrendingLinks.Link::shortCode).containsExactly("hot0", "hot1", "hot2", "hot3", "hot4");
+        // Each slice overcounts by at most its total / capacity, so the window by at most total / capacity
+        long maxError = clicks.size() / CAPACITY;
+        for (int i = 0; i < 5; i++) {
+            assertThat(top.get(i).clicks()).isBetween((5L - i) * 1000, (5L - i) * 1000 + maxError);
+        }
+    }
+
+    @Test
+    void clicksLeaveAWindowOnceItSlidesPastThem() {
+        for (int i = 0; i < 30; i++) {
+            tracker.record("old", NOW - Duration.ofMinutes(20).toMillis());
+        }
+        for (int i = 0; i < 10; i++) {
+            tracker.record("new", NOW - Duration.ofMinutes(1).toMillis());
+        }
+        tracker.refresh(NOW);
+
+        assertThat(tracker.top(TrendingWindow.FIVE_MINUTES, 10).links())
+                .containsExactly(new TrendingLinks.Link("new", 10));
+        assertThat(tracker.top(TrendingWindow.HOUR, 10).links())
+                .containsExactly(new TrendingLinks.Link("old", 30), new TrendingLinks.Link("new", 10));
+    }
+
+    @Test
+    void limitsAreCappedAtTheMaximumResults() {
+        for (int i = 0; i < 20; i++) {
+            for (int click = 0; click <= i; click++) {
+                tracker.record("code" + i, NOW);
+            }
+        }
+        tracker.refresh(NOW);
+
+        assertThat(tracker.top(TrendingWindow.DAY, 3).links()).extracting(TrendingLinks.Link::shortCode)
+                .containsExactly("code19", "code18", "code17");
+        assertThat(tracker.top(TrendingWindow.DAY, 1000).links()).hasSize(10);
+        assertThat(tracker.top(TrendingWindow.DAY, 0).links()).isEmpty();
+    }
+}
@@ -0,0 +1,82 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CompactUrlSerializerTest {
+
+    private final CompactUrlSerializer serializer = new CompactUrlSerializer();
+
+    @Test
+    void tokenizedUrlsRoundTripAndShrink() {
+        for (String url : List.of(
+                "https://www.example.com/",
+                "http://www.example.org/index.html",
+                "https://github.com/spring-projects/spring-boot/blob/main/README.md",
+                "https://www.youtube.com/watch?v=dQw4w9WgXcQ",
+                "https://shop.example.de/products/42?utm_source=news&utm_medium=mail&utm_campaign=spring",
+                "https://example.com",
+                "x")) {
+            byte[] bytes = serializer.serialize(url);
+            assertThat(bytes[0]).isEqualTo((byte) 1);
+            assertThat(serializer.deserialize(bytes)).isEqualTo(url);
+        }
+        assertThat(serializer.serialize("https://www.example.com/").length)
+                .isLessThan("https://www.example.com/".length());
+    }
+
+    @Test
+    void urlsContainingDictionaryCodesAreStoredRaw() {
+        for (int b = 0x01; b <= 0x1F; b++) {
+            String url = "https://www.example.com/" + (char) b + "/path";
+            byte[] bytes = serializer.serialize(url);
+            assertThat(bytes[0]).isEqualTo((byte) 3);
+            assertThat(serializer.deserialize(bytes)).isEqualTo(url);
+        }
+    }
+
+    @Test
+    void expiringValuesKeepTheirExpiry() {
+        long expiresAt = 1_767_225_600_000L;
+        String tokenized = ShortUrlCache.cacheValue("https://www.example.com/sale?id=7", expiresAt);
+        byte[] bytes = serializer.serialize(tokenized);
+        assertThat(bytes[0]).isEqualTo((byte) 2);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(tokenized);
+        assertThat(ShortUrlCache.expiresAt(serializer.deserialize(bytes))).isEqualTo(expiresAt);
+
+        String raw = ShortUrlCache.cacheValue("https://example.com/\u0002|still/the/url", expiresAt);
+        bytes = serializer.serialize(raw);
+        assertThat(bytes[0]).isEqualTo((byte) 4);
+        assertThat(serializer.deserialize(bytes)).isEqualTo(raw);
+
+        String pastExpiry = ShortUrlCache.cacheValue("https://example.com/old", 0);
+        assertThat(serializer.deserialize(serializer.serialize(pastExpiry))).isEqualTo(pastExpiry);
+    }
+
+    @Test
+    void nonAsciiUrlsRoundTrip() {
+        for (String url : List.of(
+                "https://www.example.com/st\u00e4dte/z\u00fcrich",
+                "https://\u4f8b\u3048.jp/\u30c6\u30b9\u30c8.html",
+                "https://example.org/emoji/\ud83d\ude80?id=1")) {
+            assertThat(serializer.deserialize(serializer.serialize(url))).isEqualTo(url);
+            String expiring = ShortUrlCache.cacheValue(url, 1_767_225_600_000L);
+            assertThat(serializer.deserialize(serializer.serialize(expiring))).isEqualTo(expiring);
+        }
+    }
+
+    @Test
+    void plainValuesWrittenBeforeAreStillRead() {
+        for (String legacy : List.of("https://www.example.com/", "1767225600000|https://example.com/sale",
+                "http://example.org/\u00e4")) {
+            assertThat(serializer.deserialize(legacy.getBytes(StandardCharsets.UTF_8))).isEqualTo(legacy);
+        }
+        assertThat(serializer.deserialize(new byte[0])).isEqualTo("");
+        assertThat(serializer.deserialize(null)).isNull();
+        assertThat(serializer.serialize(null)).isNull();
+    }
+}
@@ -0,0 +1,54 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.leoluca.urlshortener.api.url.codegen.Base62;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Random;
+import java.util.function.LongFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashBucketLayoutTest {
+
+    private static final int BUCKETS = 1024;
+    // About 200 codes per bucket, the bounds below are more than five standard deviations wide
+    private static final int CODES = 200 * BUCKETS;
+
+    private final HashBucketLayout layout = new HashBucketLayout(new RedisTemplate<>(), BUCKETS);
+
+    @Test
+    void sequentialCodesSpreadEvenly() {
+        // Counter codes only differ in their last characters, which String.hashCode alone keeps in the low bits
+        assertEvenSpread(i -> Base62.encode(1_000_000_000L + i, 7));
+    }
+
+    @Test
+    void randomCodesSpreadEvenly() {
+        Random random = new Random(42);
+        assertEvenSpread(i -> Base62.encode(Math.floorMod(random.nextLong(), 3_521_614_606_208L), 7));
+    }
+
+    @Test
+    void aCodeAlwaysLandsInTheSameBucket() {
+        HashBucketLayout other = new HashBucketLayout(new RedisTemplate<>(), BUCKETS);
+        for (int i = 0; i < 1000; i++) {
+            String code = Base62.encode(i * 7919L, 7);
+            assertThat(other.bucket(code)).isEqualTo(layout.bucket(code));
+        }
+        assertThat(new HashBucketLayout(new RedisTemplate<>(), 1).bucket("abcdefg")).isZero();
+    }
+
+    private void assertEvenSpread(LongFunction<String> codes) {
+        int[] counts = new int[BUCKETS];
+        for (long i = 0; i < CODES; i++) {
+            int bucket = layout.bucket(codes.apply(i));
+            assertThat(bucket).isBetween(0, BUCKETS - 1);
+            counts[bucket]++;
+        }
+        int perBucket = CODES / BUCKETS;
+        for (int count : counts) {
+            assertThat(count).isBetween(perBucket * 6 / 10, perBucket * 14 / 10);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Several API instances and Redis nodes in one JVM, the Redis nodes are in-memory fakes
+// that serve one command at a time, optionally with a fixed round trip time
+class MultiNodeCacheTest {
+
+    private static final int CODES = 10_000;
+
+    @Test
+    void everyInstanceFindsEveryCodeOnTheSameNode() {
+        List<FakeRedisNode> nodes = nodes(4);
+        List<ShardedRedisUrlLayout> instances = List.of(sharded(nodes), sharded(nodes), sharded(nodes));
+        List<String> codes = codes();
+
+        List<RedisUrlLayout.Entry> entries = new ArrayList<>();
+        for (String code : codes) {
+            entries.add(new RedisUrlLayout.Entry(code, "https://example.com/" + code, null));
+        }
+        instances.get(0).setAll(entries);
+
+        for (ShardedRedisUrlLayout instance : instances) {
+            List<String> values = instance.getAll(codes);
+            for (int i = 0; i < codes.size(); i++) {
+                assertThat(values.get(i)).isEqualTo("https://example.com/" + codes.get(i));
+            }
+            assertThat(instance.getAll(List.of("unknown", codes.get(0)))).containsExactly(null, "https://example.com/" + codes.get(0));
+        }
+        // Each code is stored once and the nodes get about the same share
+        assertThat(nodes.stream().mapToInt(node -> node.values.size()).sum()).isEqualTo(CODES);
+        for (FakeRedisNode node : nodes) {
+            assertThat(node.values.size()).isBetween(CODES / 4 * 8 / 10, CODES / 4 * 12 / 10);
+        }
+
+        instances.forEach(ShardedRedisUrlLayout::close);
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsOwnCodes() {
+        ShardedRedisUrlLayout fourNodes = sharded(nodes(4));
+        ShardedRedisUrlLayout threeNodes = new ShardedRedisUrlLayout(List.of("redis-0", "redis-1", "redis-3"),
+                new ArrayList<>(nodes(3)), List.of());
+
+        for (String code : codes()) {
+            String before = fourNodes.nodeFor(code);
+            if (!before.equals("redis-2")) {
+                assertThat(threeNodes.nodeFor(code)).isEqualTo(before);
+            }
+        }
+
+        fourNodes.close();
+        threeNodes.close();
+    }
+
+    @Test
+    void everyCodeHasExactlyOneOwningInstance() {
+        List<String> ids = List.of("api-1", "api-2", "api-3");
+        List<CacheAffinity> instances = ids.stream().map(id -> new CacheAffinity(ids, id)).toList();
+
+        int[] owned = new int[ids.size()];
+        for (String code : codes()) {
+            int owners = 0;
+            for (int i = 0; i < instances.size(); i++) {
+                if (instances.get(i).isLocal(code)) {
+                    owners++;
+                    owned[i]++;
+                    assertThat(instances.get((i + 1) % ids.size()).ownerOf(code)).isEqualTo(ids.get(i));
+                }
+            }
+            assertThat(owners).isEqualTo(1);
+        }
+        for (int count : owned) {
+            assertThat(count).isBetween(CODES / 3 * 8 / 10, CODES / 3 * 12 / 10);
+        }
+        assertThat(new CacheAffinity(List.of(), "api-1").isLocal(codes().get(0))).isTrue();
+    }
+
+    @Test
+    void lookupsOnlyReachTheNodesOwningTheirCodes() {
+        List<FakeRedisNode> nodes = nodes(4);
+        ShardedRedisUrlLayout layout = sharded(nodes);
+        List<String> codes = codes();
+
+        // Single code lookups, the common case, cost one command on the owning node and none elsewhere
+        for (String code : codes) {
+            layout.getAll(List.of(code));
+        }
+        for (int i = 0; i < nodes.size(); i++) {
+            FakeRedisNode node = nodes.get(i);
+            assertThat(node.commands).hasSizeBetween(CODES / 4 * 8 / 10, CODES / 4 * 12 / 10);
+            for (List<String> command : node.commands) {
+                assertThat(layout.nodeFor(command.get(0))).isEqualTo("redis-" + i);
+            }
+            node.commands.clear();
+        }
+
+        // A batch costs one command per node, each with the node's own codes only
+        List<String> batch = codes.subList(0, 100);
+        layout.getAll(batch);
+        for (int i = 0; i < nodes.size(); i++) {
+            List<String> expected = new ArrayList<>();
+            for (String code : batch) {
+                if (layout.nodeFor(code).equals("redis-" + i)) {
+                    expected.add(code);
+                }
+            }
+            assertThat(nodes.get(i).commands).containsExactly(expected);
+        }
+
+        layout.close();
+    }
+
+    @Test
+    void lookupsScaleWithTheNumberOfRedisNodes() throws InterruptedException {
+        long oneNode = lookupsWithin(1);
+        long twoNodes = lookupsWithin(2);
+        long fourNodes = lookupsWithin(4);
+
+        // Every node is kept busy and serves one command per round trip, so the ideal is 2x and 4x.
+        // The bounds leave room for a slow or loaded machine without letting a bottleneck in the router slip through
+        assertThat(oneNode).isGreaterThan(0);
+        assertThat((double) twoNodes / oneNode).isGreaterThan(1.5);
+        assertThat((double) fourNodes / oneNode).isGreaterThan(2.5);
+        assertThat((double) fourNodes / twoNodes).isGreaterThan(1.3);
+    }
+
+    // Lookups completed by more clients than the nodes can serve at once, within a fixed window
+    private static long lookupsWithin(int nodeCount) throws InterruptedException {
+        List<FakeRedisNode> nodes = nodes(nodeCount, Duration.ofMillis(2));
+        ShardedRedisUrlLayout layout = sharded(nodes);
+        List<String> codes = codes();
+        LongAdder lookups = new LongAdder();
+
+        long until = System.nanoTime() + Duration.ofMillis(400).toNanos();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 64; i++) {
+                clients.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < until) {
+                        layout.getAll(List.of(codes.get(random.nextInt(codes.size()))));
+                        // Clients still queued when the window closes finish late, those lookups don't count
+                        if (System.nanoTime() < until) {
+                            lookups.increment();
+                        }
+                    }
+                });
+            }
+        }
+
+        layout.close();
+        return lookups.sum();
+    }
+
+    private static ShardedRedisUrlLayout sharded(List<FakeRedisNode> nodes) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            ids.add("redis-" + i);
+        }
+        return new ShardedRedisUrlLayout(ids, new ArrayList<>(nodes), List.of());
+    }
+
+    private static List<FakeRedisNode> nodes(int count) {
+        return nodes(count, Duration.ZERO);
+    }
+
+    private static List<FakeRedisNode> nodes(int count, Duration roundTrip) {
+        List<FakeRedisNode> nodes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            nodes.add(new FakeRedisNode(roundTrip));
+        }
+        return nodes;
+    }
+
+    private static List<String> codes() {
+        List<String> codes = new ArrayList<>(CODES);
+        for (int i = 0; i < CODES; i++) {
+            codes.add(Long.toString(1_000_000_000L + i * 7919L, 36));
+        }
+        return codes;
+    }
+
+    // Keeps its values in memory and remembers the codes of every lookup it was sent.
+    // Like Redis it serves one command at a time, and every round trip takes the same time
+    private static final class FakeRedisNode implements RedisUrlLayout {
+
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+        private final List<List<String>> commands = new CopyOnWriteArrayList<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final long roundTripNanos;
+
+        FakeRedisNode(Duration roundTrip) {
+            this.roundTripNanos = roundTrip.toNanos();
+        }
+
+        @Override
+        public List<String> getAll(List<String> shortCodes) {
+            commands.add(List.copyOf(shortCodes));
+            return serve(() -> shortCodes.stream().map(values::get).toList());
+        }
+
+        @Override
+        public void setAll(List<Entry> entries) {
+            serve(() -> {
+                entries.forEach(entry -> values.put(entry.shortCode(), entry.value()));
+                return null;
+            });
+        }
+
+        @Override
+        public void delete(String shortCode) {
+            serve(() -> values.remove(shortCode));
+        }
+
+        private <T> T serve(Supplier<T> command) {
+            lock.lock();
+            try {
+                long deadline = System.nanoTime() + roundTripNanos;
+                for (long remaining = roundTripNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+                    LockSupport.parkNanos(remaining);
+                }
+                return command.get();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.util.OffHeapLongLongMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class OffHeapUrlTableTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void looksUpWhatWasStored() {
+        OffHeapUrlTable table = table(new OffHeapLongLongMap(1000), DataSize.ofKilobytes(64));
+        table.put("abc1234", "https://example.com/a");
+        table.put("A", "https://example.com/b");
+        table.put("AA", "https://example.com/c");
+        table.put("xyz9876", "https://example.com/gr\u00fc\u00dfe/\u2603");
+        table.put("xyz9877", "1767225600000|https://example.com/expiring");
+
+        assertThat(table.get("abc1234")).isEqualTo("https://example.com/a");
+        // Same base62 value, told apart by their length
+        assertThat(table.get("A")).isEqualTo("https://example.com/b");
+        assertThat(table.get("AA")).isEqualTo("https://example.com/c");
+        assertThat(table.get("xyz9876")).isEqualTo("https://example.com/gr\u00fc\u00dfe/\u2603");
+        assertThat(table.get("xyz9877")).isEqualTo("1767225600000|https://example.com/expiring");
+        assertThat(table.get("abc1235")).isNull();
+        assertThat(table.size()).isEqualTo(5);
+
+        assertThat(meterRegistry.get("cache.gets").tag("tier", "offheap").tag("result", "hit").counter().count())
+                .isEqualTo(5);
+        assertThat(meterRegistry.get("cache.gets").tag("tier", "offheap").tag("result", "miss").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void codesItCantPackAreLeftToTheOtherTiers() {
+        OffHeapUrlTable table = table(new OffHeapLongLongMap(1000), DataSize.ofKilobytes(64));
+        table.put("my-link", "https://example.com/a");
+        table.put("abcdefghijk", "https://example.com/b");
+
+        assertThat(table.get("my-link")).isNull();
+        assertThat(table.get("abcdefghijk")).isNull();
+        assertThat(table.size()).isZero();
+    }
+
+    @Test
+    void urlsSpillIntoNewSlabsAndOversizedOnesAreSkipped() {
+        OffHeapUrlTable table = table(new OffHeapLongLongMap(1000), DataSize.ofBytes(64));
+        for (int i = 0; i < 100; i++) {
+            table.put("code" + i, "https://example.com/" + i);
+        }
+        table.put("huge", "https://example.com/" + "x".repeat(64));
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(table.get("code" + i)).isEqualTo("https://example.com/" + i);
+        }
+        assertThat(table.get("huge")).isNull();
+        assertThat(table.size()).isEqualTo(100);
+    }
+
+    @Test
+    void aFullTableKeepsServingAndLeavesNewCodesToTheOtherTiers() {
+        // 16 slots at a load factor of 0.7 hold 11 codes
+        OffHeapUrlTable table = table(new OffHeapLongLongMap(1, 16), DataSize.ofKilobytes(64));
+        for (int i = 0; i < 11; i++) {
+            table.put("code" + i, "https://example.com/" + i);
+        }
+        long memory = table.memoryUsage();
+
+        table.put("code11", "https://example.com/11");
+        assertThat(table.get("code11")).isNull();
+        assertThat(table.size()).isEqualTo(11);
+
+        // Codes already in it still resolve, are stored again without growing and can be invalidated
+        table.put("code3", "https://example.com/3");
+        table.invalidate("code5");
+        for (int i = 0; i < 11; i++) {
+            assertThat(table.get("code" + i)).isEqualTo(i == 5 ? null : "https://example.com/" + i);
+        }
+        assertThat(table.memoryUsage()).isEqualTo(memory);
+    }
+
+    @Test
+    void aDisabledTableHoldsNothing() {
+        OffHeapUrlTable table = table(null, DataSize.ofKilobytes(64));
+        table.put("abc1234", "https://example.com/a");
+
+        assertThat(table.get("abc1234")).isNull();
+        assertThat(table.size()).isZero();
+        assertThat(table.memoryUsage()).isZero();
+    }
+
+    private OffHeapUrlTable table(OffHeapLongLongMap index, DataSize slabSize) {
+        return new OffHeapUrlTable(mock(URLRepository.class), meterRegistry, index, slabSize, Duration.ofSeconds(5));
+    }
+}
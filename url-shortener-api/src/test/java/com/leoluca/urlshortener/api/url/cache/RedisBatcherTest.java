@@ -0,0 +1,153 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RedisBatcherTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final FakeLayout layout = new FakeLayout();
+    private RedisBatcher batcher;
+
+    @AfterEach
+    void tearDown() {
+        layout.release.countDown();
+        batcher.close();
+    }
+
+    @Test
+    void concurrentLookupsGoOutAsOneMget() throws Exception {
+        // A window long enough that every lookup below is queued before it closes
+        batcher = new RedisBatcher(layout, meterRegistry, Duration.ofMillis(500), 256);
+        layout.release.countDown();
+        for (int i = 0; i < 100; i++) {
+            layout.values.put("code" + i, "https://example.com/" + i);
+        }
+
+        List<CompletableFuture<String>> results = new CopyOnWriteArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int first = t * 25;
+            callers.add(Thread.ofPlatform().start(() -> {
+                for (int i = first; i < first + 25; i++) {
+                    results.add(batcher.get("code" + i));
+                    // The same hot code from every caller
+                    results.add(batcher.get("code0"));
+                }
+            }));
+        }
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        for (CompletableFuture<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).startsWith("https://example.com/");
+        }
+        // One round trip, every code in it once
+        assertThat(layout.lookups).hasSize(1);
+        assertThat(layout.lookups.get(0)).hasSize(100).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void batchesNeverExceedTheMaximumSize() throws Exception {
+        batcher = new RedisBatcher(layout, meterRegistry, Duration.ofMillis(200), 64);
+        layout.release.countDown();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            results.add(batcher.get("code" + i));
+        }
+        for (CompletableFuture<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isNull();
+        }
+        assertThat(layout.lookups).hasSizeBetween(4, 200);
+        for (List<String> lookup : layout.lookups) {
+            assertThat(lookup.size()).isLessThanOrEqualTo(64);
+        }
+    }
+
+    @Test
+    void aFailedRoundTripFailsEveryLookupInIt() {
+        batcher = new RedisBatcher(layout, meterRegistry, Duration.ZERO, 256);
+        layout.failure = new IllegalStateException("Redis is down");
+        layout.release.countDown();
+
+        assertThatThrownBy(() -> batcher.get("code").get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseMessage("Redis is down");
+    }
+
+    @Test
+    void writesBeyondTheQueueBoundAreDropped() throws Exception {
+        batcher = new RedisBatcher(layout, meterRegistry, Duration.ZERO, 1);
+        int bound = RedisBatcher.PENDING_WRITE_BATCHES;
+
+        // The first write is taken and hangs in a slow pipeline, the queue behind it fills up
+        batcher.set("first", "https://example.com/", null);
+        assertThat(layout.writing.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < bound + 10; i++) {
+            batcher.set("code" + i, "https://example.com/" + i, null);
+        }
+        assertThat(meterRegistry.get("cache.redis.writes.dropped").counter().count()).isEqualTo(10);
+
+        layout.release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (layout.values.size() < bound + 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(layout.values).hasSize(bound + 1);
+        assertThat(layout.values).containsKey("code" + (bound - 1)).doesNotContainKey("code" + bound);
+    }
+
+    // Answers from memory, records every lookup batch and holds writes until released
+    private static final class FakeLayout implements RedisUrlLayout {
+
+        private final Map<String, String> values = new ConcurrentHashMap<>();
+        private final List<List<String>> lookups = new CopyOnWriteArrayList<>();
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile RuntimeException failure;
+
+        @Override
+        public List<String> getAll(List<String> shortCodes) {
+            lookups.add(List.copyOf(shortCodes));
+            if (failure != null) {
+                throw failure;
+            }
+            return shortCodes.stream().map(values::get).toList();
+        }
+
+        @Override
+        public void setAll(List<Entry> entries) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            entries.forEach(entry -> values.put(entry.shortCode(), entry.value()));
+        }
+
+        @Override
+        public void delete(String shortCode) {
+            values.remove(shortCode);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShortCodeFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<Date> catchUpsSince = new ArrayList<>();
+    // What the next load or catch-up query returns
+    private List<String> issued = List.of();
+    private ShortCodeFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        URLRepository urlRepository = mock(URLRepository.class);
+        when(urlRepository.streamShortCodes(any())).thenAnswer(invocation -> {
+            catchUpsSince.add(invocation.getArgument(0));
+            return issued.stream().map(shortCode -> new URL("https://example.com/" + shortCode, shortCode, null));
+        });
+        filter = new ShortCodeFilter(urlRepository, meterRegistry, 10_000, 0.01, Duration.ofSeconds(5), 1000,
+                Duration.ofMillis(200));
+    }
+
+    @Test
+    void loadingRulesOutCodesThatWereNeverIssued() {
+        issued = IntStream.range(0, 1000).mapToObj(i -> "code" + i).toList();
+
+        // Until the issued codes are loaded every code has to be looked up
+        assertThat(filter.mightExist("unknown", true)).isTrue();
+
+        filter.load();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.mightExist("code" + i, true)).isTrue();
+        }
+        long admitted = IntStream.range(0, 1000).filter(i -> filter.mightExist("other" + i, true)).count();
+        assertThat(admitted).isLessThan(50);
+        assertThat(meterRegistry.get("shorturl.resolve.unknown").counter().count()).isEqualTo(1000 - admitted);
+    }
+
+    @Test
+    void catchUpAddsCodesIssuedElsewhereLookingBackByTheMargin() {
+        long loadStart = System.currentTimeMillis();
+        filter.load();
+        assertThat(filter.mightExist("elsewhere", true)).isFalse();
+
+        issued = List.of("elsewhere");
+        long catchUpStart = System.currentTimeMillis();
+        filter.catchUp();
+        assertThat(filter.mightExist("elsewhere", true)).isTrue();
+
+        issued = List.of();
+        filter.catchUp();
+
+        // Every run looks back from where the previous one started, less the margin for clock skew
+        long margin = ShortCodeFilter.CATCH_UP_MARGIN.toMillis();
+        assertThat(catchUpsSince.get(0)).isNull();
+        assertThat(catchUpsSince.get(1).getTime()).isBetween(loadStart - margin, catchUpStart - margin);
+        assertThat(catchUpsSince.get(2).getTime()).isBetween(catchUpStart - margin, System.currentTimeMillis() - margin);
+    }
+
+    @Test
+    void theNegativeCacheRemembersMissesForItsTtl() throws Exception {
+        // Before the load and for Bloom false positives it is all there is
+        filter.recordMissing("abc");
+        assertThat(filter.mightExist("abc", true)).isFalse();
+        assertThat(filter.mightExist("def", true)).isTrue();
+
+        // Issuing the code takes it out right away
+        filter.add("abc");
+        assertThat(filter.mightExist("abc", true)).isTrue();
+
+        filter.recordMissing("def");
+        assertThat(filter.mightExist("def", true)).isFalse();
+        Thread.sleep(300);
+        assertThat(filter.mightExist("def", true)).isTrue();
+    }
+
+    @Test
+    void filterMissesAreLookedUpWhileRedisIsUnavailable() {
+        filter.load();
+
+        // Issued elsewhere since the last catch-up, without Redis nothing else would know about it
+        assertThat(filter.mightExist("recent", false)).isTrue();
+        assertThat(meterRegistry.get("shorturl.resolve.unknown.unconfirmed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shorturl.resolve.unknown").counter().count()).isZero();
+
+        // A code MongoDB didn't have either is answered from the negative cache from then on
+        filter.recordMissing("recent");
+        assertThat(filter.mightExist("recent", false)).isFalse();
+        assertThat(meterRegistry.get("shorturl.resolve.unknown").counter().count()).isEqualTo(1);
+    }
+}
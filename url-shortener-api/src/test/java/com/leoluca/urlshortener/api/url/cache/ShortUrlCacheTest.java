@@ -0,0 +1,120 @@
+package com.leoluca.urlshortener.api.url.cache;
+
+import com.leoluca.urlshortener.api.url.Resolution;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuard;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Expired links in each tier, with an in-memory fake in place of Redis
+class ShortUrlCacheTest {
+
+    private static final Duration GONE_RETENTION = Duration.ofHours(1);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private ShortUrlCache cache;
+
+    @AfterEach
+    void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    void anExpiredLinkIsGoneFromL1() {
+        cache = cache(null, Duration.ofMinutes(10));
+        long now = System.currentTimeMillis();
+        cache.put("live", ShortUrlCache.cacheValue("https://example.com/live", now + 60_000));
+        cache.put("expired", ShortUrlCache.cacheValue("https://example.com/expired", now - 60_000));
+        cache.put("forgotten", ShortUrlCache.cacheValue("https://example.com/forgotten",
+                now - GONE_RETENTION.toMillis() - 60_000));
+
+        assertThat(cache.getLocal("live")).isEqualTo(Resolution.found("https://example.com/live"));
+        assertThat(cache.getLocal("expired")).isEqualTo(Resolution.gone());
+        // Past the gone retention it isn't cached at all, the database answers from then on
+        assertThat(cache.getLocal("forgotten")).isNull();
+    }
+
+    @Test
+    void aLinkThatExpiresWhileStaleIsGoneFromTheStaleTier() throws InterruptedException {
+        cache = cache(null, Duration.ofMillis(50));
+        long expiresAt = System.currentTimeMillis() + 200;
+        cache.put("expiring", ShortUrlCache.cacheValue("https://example.com/expiring", expiresAt));
+        cache.put("plain", "https://example.com/plain");
+
+        // L1 drops both after its TTL and hands them over to the stale tier
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((cache.getStale("expiring") == null || cache.getStale("plain") == null
+                || System.currentTimeMillis() <= expiresAt) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            cache.getLocal("expiring");
+            cache.getLocal("plain");
+        }
+
+        assertThat(cache.getLocal("expiring")).isNull();
+        assertThat(cache.getStale("expiring")).isEqualTo(Resolution.gone());
+        assertThat(cache.getStale("plain")).isEqualTo(Resolution.found("https://example.com/plain"));
+    }
+
+    @Test
+    void anExpiredLinkIsGoneFromRedisAndStaysGoneInL1() {
+        cache = cache(new FakeLayout(), Duration.ofMinutes(10));
+        BackendGuard guard = mock(BackendGuard.class);
+        when(guard.call(any())).thenAnswer(invocation ->
+                invocation.<Supplier<CompletableFuture<?>>>getArgument(0).get().join());
+        long now = System.currentTimeMillis();
+        redis.put("expired", ShortUrlCache.cacheValue("https://example.com/expired", now - 60_000));
+        redis.put("live", ShortUrlCache.cacheValue("https://example.com/live", now + 60_000));
+
+        assertThat(cache.getLocal("expired")).isNull();
+        assertThat(cache.getRemote("expired", guard)).isEqualTo(Resolution.gone());
+        assertThat(cache.getRemote("live", guard)).isEqualTo(Resolution.found("https://example.com/live"));
+        assertThat(cache.getRemote("unknown", guard)).isNull();
+
+        // Promoted into L1, so the next lookup doesn't go to Redis
+        redis.clear();
+        assertThat(cache.getLocal("expired")).isEqualTo(Resolution.gone());
+        assertThat(cache.getLocal("live")).isEqualTo(Resolution.found("https://example.com/live"));
+    }
+
+    private ShortUrlCache cache(RedisUrlLayout layout, Duration localTtl) {
+        OffHeapUrlTable disabled = new OffHeapUrlTable(mock(URLRepository.class), meterRegistry, null,
+                DataSize.ofKilobytes(64), Duration.ofSeconds(5));
+        return new ShortUrlCache(null, layout, disabled, new CacheAffinity(List.of(), "api-1"), meterRegistry,
+                1000, localTtl, Duration.ofSeconds(10), 1000, Duration.ofHours(1), Duration.ZERO, 256, GONE_RETENTION);
+    }
+
+    private final class FakeLayout implements RedisUrlLayout {
+
+        @Override
+        public List<String> getAll(List<String> shortCodes) {
+            return shortCodes.stream().map(redis::get).toList();
+        }
+
+        @Override
+        public void setAll(List<Entry> entries) {
+            entries.forEach(entry -> redis.put(entry.shortCode(), entry.value()));
+        }
+
+        @Override
+        public void delete(String shortCode) {
+            redis.remove(shortCode);
+        }
+    }
+}
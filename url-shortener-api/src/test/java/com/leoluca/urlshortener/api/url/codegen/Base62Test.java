@@ -0,0 +1,40 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import net.jqwik.api.*;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.LongRange;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Base62Test {
+
+    @Property
+    void decodingAnEncodedValueGivesItBack(@ForAll @LongRange(max = 3_521_614_606_207L) long value) {
+        String encoded = Base62.encode(value, 7);
+        assertThat(encoded).hasSize(7);
+        assertThat(decode(encoded)).isEqualTo(value);
+    }
+
+    @Property
+    void everyCharacterIsItsOwnDigit(@ForAll @IntRange(max = 61) int digit) {
+        assertThat(Base62.digit(Base62.CHARACTERS.charAt(digit))).isEqualTo(digit);
+    }
+
+    @Example
+    void padsWithTheZeroDigitAndRejectsWhatDoesntFit() {
+        assertThat(Base62.encode(0, 7)).isEqualTo("AAAAAAA");
+        assertThat(Base62.encode(61, 2)).isEqualTo("A9");
+        assertThat(Base62.digit('-')).isEqualTo(-1);
+        assertThatThrownBy(() -> Base62.encode(62 * 62, 2)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Base62.encode(-1, 7)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long decode(String encoded) {
+        long value = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            value = value * Base62.RADIX + Base62.digit(encoded.charAt(i));
+        }
+        return value;
+    }
+}
@@ -0,0 +1,61 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import net.jqwik.api.*;
+import net.jqwik.api.constraints.LongRange;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BlockShortCodeGeneratorTest {
+
+    private static final long LAST_ID = BlockShortCodeGenerator.CAPACITY - 1;
+
+    @Property
+    void permuteStaysWithinTheCodeSpace(@ForAll @LongRange(max = LAST_ID) long id) {
+        assertThat(BlockShortCodeGenerator.permute(id)).isBetween(0L, LAST_ID);
+    }
+
+    @Property
+    void distinctIdsGetDistinctCodes(@ForAll @LongRange(max = LAST_ID) long first,
+                                     @ForAll @LongRange(max = LAST_ID) long second) {
+        Assume.that(first != second);
+        String firstCode = Base62.encode(BlockShortCodeGenerator.permute(first), BlockShortCodeGenerator.CODE_LENGTH);
+        String secondCode = Base62.encode(BlockShortCodeGenerator.permute(second), BlockShortCodeGenerator.CODE_LENGTH);
+        assertThat(firstCode).hasSize(7);
+        assertThat(firstCode).isNotEqualTo(secondCode);
+    }
+
+    // Counters hand out consecutive ids, which is where a weak mix would collide first
+    @Property(tries = 20)
+    void consecutiveIdsNeverCollide(@ForAll @LongRange(max = LAST_ID - (1 << 16)) long start) {
+        Set<Long> permuted = new HashSet<>();
+        for (long id = start; id < start + (1 << 16); id++) {
+            assertThat(permuted.add(BlockShortCodeGenerator.permute(id))).isTrue();
+        }
+    }
+
+    @Example
+    void theEdgesOfTheCodeSpaceNeverCollide() {
+        Set<Long> permuted = new HashSet<>();
+        for (long id = 0; id < 1 << 16; id++) {
+            assertThat(permuted.add(BlockShortCodeGenerator.permute(id))).isTrue();
+            assertThat(permuted.add(BlockShortCodeGenerator.permute(LAST_ID - id))).isTrue();
+        }
+    }
+
+    @Example
+    void codesStayUniqueAcrossBlocks() {
+        AtomicLong sequence = new AtomicLong();
+        BlockShortCodeGenerator generator = new BlockShortCodeGenerator(sequence::getAndAdd, 100);
+
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(codes.add(generator.nextShortCode())).isTrue();
+        }
+        // One lease per block
+        assertThat(sequence.get()).isEqualTo(1000);
+    }
+}
@@ -0,0 +1,59 @@
+package com.leoluca.urlshortener.api.url.codegen;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnowflakeShortCodeGeneratorTest {
+
+    private static final long NOW = SnowflakeShortCodeGenerator.EPOCH + 1_000_000;
+
+    @Test
+    void codesStayUniqueWhenTheSequenceRollsOverWithinOneMillisecond() {
+        AtomicLong clock = new AtomicLong(NOW);
+        SnowflakeShortCodeGenerator generator = new SnowflakeShortCodeGenerator(7, clock::get);
+
+        // The sequence holds 1024 codes per millisecond, this goes through it three times without the clock moving
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 3 * 1024 + 10; i++) {
+            String code = generator.nextShortCode();
+            assertThat(code).hasSize(SnowflakeShortCodeGenerator.CODE_LENGTH);
+            assertThat(codes.add(code)).isTrue();
+        }
+
+        // Catching up with the borrowed milliseconds, or the clock stepping back, still never repeats a code
+        clock.addAndGet(2);
+        for (int i = 0; i < 2048; i++) {
+            assertThat(codes.add(generator.nextShortCode())).isTrue();
+        }
+        clock.addAndGet(-100);
+        for (int i = 0; i < 2048; i++) {
+            assertThat(codes.add(generator.nextShortCode())).isTrue();
+        }
+    }
+
+    @Test
+    void workersNeverIssueTheSameCode() {
+        SnowflakeShortCodeGenerator first = new SnowflakeShortCodeGenerator(1, () -> NOW);
+        SnowflakeShortCodeGenerator second = new SnowflakeShortCodeGenerator(2, () -> NOW);
+
+        Set<String> codes = new HashSet<>();
+        for (int i = 0; i < 2048; i++) {
+            assertThat(codes.add(first.nextShortCode())).isTrue();
+            assertThat(codes.add(second.nextShortCode())).isTrue();
+        }
+    }
+
+    @Test
+    void rejectsWorkerIdsThatDontFit() {
+        assertThatThrownBy(() -> new SnowflakeShortCodeGenerator(256, () -> NOW))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeShortCodeGenerator(-1, () -> NOW))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,82 @@
+package com.leoluca.urlshortener.api.url.dedup;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LongUrlFilterTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final Map<String, byte[]> backfilled = new HashMap<>();
+    private URLRepository urlRepository;
+    private LongUrlFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        urlRepository = mock(URLRepository.class);
+        when(urlRepository.setUrlHashes(any())).thenAnswer(invocation -> {
+            backfilled.putAll(invocation.getArgument(0));
+            return 0;
+        });
+        filter = new LongUrlFilter(urlRepository, meterRegistry, 100_000, 0.01);
+    }
+
+    @Test
+    void storedUrlsAreNeverRuledOut() {
+        // Half of them were stored before digests existed
+        List<URL> stored = IntStream.range(0, 5000).mapToObj(i -> {
+            String longUrl = "https://example.com/stored/" + i;
+            URL url = new URL(longUrl, i % 2 == 0 ? UrlDigest.of(longUrl) : null, "code" + i, null);
+            url.setId("id" + i);
+            return url;
+        }).toList();
+        when(urlRepository.streamDigests()).thenAnswer(invocation -> stored.stream());
+
+        // Until the load is done every URL has to be looked up
+        assertThat(filter.mightContain(UrlDigest.of("https://example.com/unknown"))).isTrue();
+
+        filter.load();
+        assertThat(filter.isLoaded()).isTrue();
+        for (int i = 0; i < 5000; i++) {
+            assertThat(filter.mightContain(UrlDigest.of("https://example.com/stored/" + i))).isTrue();
+        }
+        // The missing digests were written back, the same ones the filter got
+        assertThat(backfilled).hasSize(2500);
+        assertThat(backfilled.get("id1")).isEqualTo(UrlDigest.of("https://example.com/stored/1"));
+
+        // Added after the load, e.g. stored through this instance
+        for (int i = 0; i < 5000; i++) {
+            filter.add(UrlDigest.of("https://example.com/added/" + i));
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertThat(filter.mightContain(UrlDigest.of("https://example.com/added/" + i))).isTrue();
+        }
+    }
+
+    @Test
+    void urlsThatWereNeverStoredAreMostlyRuledOut() {
+        when(urlRepository.streamDigests()).thenAnswer(invocation -> IntStream.range(0, 10_000)
+                .mapToObj(i -> new URL("https://example.com/" + i, UrlDigest.of("https://example.com/" + i), "code" + i, null)));
+        filter.load();
+
+        long maybe = IntStream.range(0, 10_000)
+                .filter(i -> filter.mightContain(UrlDigest.of("https://example.org/" + i)))
+                .count();
+        // Ten times fewer insertions than it is sized for, well below the 1% it is configured for
+        assertThat(maybe).isLessThan(100);
+        assertThat(meterRegistry.get("shorturl.dedup.lookups.skipped").counter().count()).isEqualTo(10_000 - maybe);
+    }
+}
@@ -0,0 +1,37 @@
+package com.leoluca.urlshortener.api.url.dedup;
+
+import net.jqwik.api.*;
+import net.jqwik.api.constraints.LongRange;
+
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UrlDigestTest {
+
+    // Digests are stored with every URL and looked up by value, they must never change between versions
+    @Example
+    void digestsStayTheSame() {
+        assertThat(HexFormat.of().formatHex(UrlDigest.of("https://example.com")))
+                .isEqualTo("100680ad546ce6a577f42f52df33b4cf");
+        // UTF-8, not the platform charset
+        assertThat(HexFormat.of().formatHex(UrlDigest.of("https://example.com/\u00e4")))
+                .isEqualTo("574d65d59c9ca8c93bec6fd9c252dfec");
+    }
+
+    @Example
+    void highAndLowAreTheTwoHalvesInBigEndianOrder() {
+        byte[] digest = UrlDigest.of("https://example.com");
+        assertThat(UrlDigest.high(digest)).isEqualTo(0x100680AD546CE6A5L);
+        assertThat(UrlDigest.low(digest)).isEqualTo(0x77F42F52DF33B4CFL);
+    }
+
+    @Property
+    void theSameUrlAlwaysGetsTheSameDigest(@ForAll @LongRange(min = 0) long id) {
+        String longUrl = "https://example.com/" + id;
+        byte[] digest = UrlDigest.of(longUrl);
+        assertThat(digest).hasSize(UrlDigest.LENGTH);
+        assertThat(UrlDigest.of(longUrl)).isEqualTo(digest);
+        assertThat(UrlDigest.of(longUrl + "/")).isNotEqualTo(digest);
+    }
+}
@@ -0,0 +1,58 @@
+package com.leoluca.urlshortener.api.url.hits;
+
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuard;
+import com.leoluca.urlshortener.api.url.resilience.BackendGuards;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HitCountBufferTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private URLRepository urlRepository;
+    private BackendGuard mongo;
+    private HitCountBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        urlRepository = mock(URLRepository.class);
+        mongo = mock(BackendGuard.class);
+        BackendGuards backends = mock(BackendGuards.class);
+        when(backends.mongo()).thenReturn(mongo);
+        // Not started, the test runs the flushes itself
+        buffer = new HitCountBuffer(urlRepository, backends, meterRegistry, 100, 10, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void backgroundFlushesPauseWhileMongoIsUnderPressure() {
+        buffer.record("abc");
+        buffer.record("abc");
+
+        when(mongo.isUnderPressure()).thenReturn(true);
+        buffer.flushQuietly();
+        buffer.record("abc");
+
+        verify(urlRepository, never()).incrementHitCounts(any());
+        assertThat(meterRegistry.get("shorturl.hits.flush.shed").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("shorturl.hits.pending").gauge().value()).isEqualTo(1);
+
+        // The hits stayed buffered and go out with the next flush
+        when(mongo.isUnderPressure()).thenReturn(false);
+        buffer.flushQuietly();
+
+        verify(urlRepository).incrementHitCounts(Map.of("abc", 3L));
+        assertThat(meterRegistry.get("shorturl.hits.flush.shed").counter().count()).isEqualTo(1);
+    }
+}
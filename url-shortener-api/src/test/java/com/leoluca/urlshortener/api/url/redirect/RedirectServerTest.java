@@ -0,0 +1,106 @@
+package com.leoluca.urlshortener.api.url.redirect;
+
+import com.leoluca.urlshortener.api.url.Resolution;
+import com.leoluca.urlshortener.api.url.URLService;
+import com.leoluca.urlshortener.api.url.analytics.ClickAnalytics;
+import com.leoluca.urlshortener.api.url.exception.BackendUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RedirectServerTest {
+
+    // Redirects are what's being tested, the client must not follow them
+    private final HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+    private URLService urlService;
+    private ClickAnalytics clickAnalytics;
+    private RedirectServer server;
+
+    @BeforeEach
+    void setUp() {
+        urlService = mock(URLService.class);
+        clickAnalytics = mock(ClickAnalytics.class);
+        server = new RedirectServer(urlService, clickAnalytics, 0, 100, 0, 302);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void redirectsFoundCodes() throws Exception {
+        when(urlService.resolveShortCode("abc")).thenReturn(Resolution.found("https://example.com/"));
+
+        HttpResponse<String> response = send("GET", "/abc", "https://referrer.example/");
+        assertThat(response.statusCode()).isEqualTo(302);
+        assertThat(response.headers().firstValue("Location")).hasValue("https://example.com/");
+        verify(clickAnalytics).record("abc", "https://referrer.example/", "test-agent");
+
+        // HEAD answers the same without a body
+        assertThat(send("HEAD", "/abc", null).statusCode()).isEqualTo(302);
+    }
+
+    @Test
+    void answersUnknownAndExpiredCodes() throws Exception {
+        when(urlService.resolveShortCode("unknown")).thenReturn(Resolution.notFound());
+        when(urlService.resolveShortCode("expired")).thenReturn(Resolution.gone());
+
+        assertThat(send("GET", "/unknown", null).statusCode()).isEqualTo(404);
+        assertThat(send("GET", "/expired", null).statusCode()).isEqualTo(410);
+        // Anything but a single path segment is never a short code
+        assertThat(send("GET", "/api/urls", null).statusCode()).isEqualTo(404);
+        verify(clickAnalytics, never()).record(any(), any(), any());
+    }
+
+    @Test
+    void rejectsOtherMethods() throws Exception {
+        HttpResponse<String> response = send("POST", "/abc", null);
+
+        assertThat(response.statusCode()).isEqualTo(405);
+        assertThat(response.headers().firstValue("Allow")).hasValue("GET, HEAD");
+        verify(urlService, never()).resolveShortCode(any());
+    }
+
+    @Test
+    void unavailableBackendsAreNotReportedAsUnknownCodes() throws Exception {
+        when(urlService.resolveShortCode("abc")).thenThrow(new BackendUnavailableException("mongo is unavailable"));
+
+        HttpResponse<String> response = send("GET", "/abc", null);
+        assertThat(response.statusCode()).isEqualTo(503);
+        assertThat(response.headers().firstValue("Retry-After")).hasValue("1");
+    }
+
+    @Test
+    void unexpectedErrorsAnswerWithAServerError() throws Exception {
+        when(urlService.resolveShortCode("abc")).thenThrow(new IllegalStateException("broken"));
+
+        assertThat(send("GET", "/abc", null).statusCode()).isEqualTo(500);
+        // The kept-alive connection is still usable afterwards
+        when(urlService.resolveShortCode("def")).thenReturn(Resolution.notFound());
+        assertThat(send("GET", "/def", null).statusCode()).isEqualTo(404);
+    }
+
+    private HttpResponse<String> send(String method, String path, String referrer) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+                .method(method, HttpRequest.BodyPublishers.noBody())
+                .header("User-Agent", "test-agent");
+        if (referrer != null) {
+            request.header("Referer", referrer);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+}
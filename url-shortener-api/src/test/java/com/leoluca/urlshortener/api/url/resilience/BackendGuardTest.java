@@ -0,0 +1,110 @@
+package com.leoluca.urlshortener.api.url.resilience;
+
+import com.leoluca.urlshortener.api.url.exception.BackendUnavailableException;
+import com.leoluca.urlshortener.api.util.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BackendGuardTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CircuitBreaker breaker = new CircuitBreaker("redis", 50, 10, 2, Duration.ofMinutes(1), 1);
+    private final BackendGuard guard = new BackendGuard("redis", Duration.ofMillis(20), 2, breaker, Runnable::run, meterRegistry);
+    // Never opens, for tests about the bulkhead alone
+    private final BackendGuard bulkheadOnly = new BackendGuard("mongo", Duration.ofMillis(20), 2,
+            new CircuitBreaker("mongo", 100, 10, 10, Duration.ofMinutes(1), 1), Runnable::run, meterRegistry);
+
+    @Test
+    void returnsTheAnswerOfAHealthyBackend() {
+        assertThat(guard.call(() -> CompletableFuture.completedFuture("value"))).isEqualTo("value");
+
+        assertThat(outcomes("success")).isEqualTo(1);
+        assertThat(inFlight()).isZero();
+        assertThat(guard.isUnderPressure()).isFalse();
+    }
+
+    @Test
+    void aTimedOutCallKeepsItsPermitUntilTheBackendAnswers() {
+        CompletableFuture<String> stalled = new CompletableFuture<>();
+
+        assertThatThrownBy(() -> guard.call(() -> stalled))
+                .isInstanceOf(BackendUnavailableException.class)
+                .hasMessageContaining("did not answer");
+        assertThat(outcomes("timeout")).isEqualTo(1);
+        assertThat(inFlight()).isEqualTo(1);
+
+        stalled.complete("late");
+        assertThat(inFlight()).isZero();
+        assertThat(guard.call(() -> CompletableFuture.completedFuture("value"))).isEqualTo("value");
+    }
+
+    @Test
+    void aFullBulkheadRejectsCallsWithoutStartingThem() {
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        assertThatThrownBy(() -> bulkheadOnly.call(() -> first)).isInstanceOf(BackendUnavailableException.class);
+        assertThatThrownBy(() -> bulkheadOnly.call(() -> second)).isInstanceOf(BackendUnavailableException.class);
+        assertThat(bulkheadOnly.isUnderPressure()).isTrue();
+
+        AtomicInteger started = new AtomicInteger();
+        assertThatThrownBy(() -> bulkheadOnly.call(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("value");
+        })).isInstanceOf(BackendUnavailableException.class).hasMessageContaining("in flight");
+        assertThat(started).hasValue(0);
+        assertThat(meterRegistry.get("resilience.calls").tags("backend", "mongo", "outcome", "bulkhead_full").counter().count())
+                .isEqualTo(1);
+
+        first.completeExceptionally(new IllegalStateException("connection reset"));
+        assertThat(bulkheadOnly.call(() -> CompletableFuture.completedFuture("value"))).isEqualTo("value");
+    }
+
+    @Test
+    void failuresOpenTheBreakerWhichShortCircuitsCalls() {
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> guard.call(() -> CompletableFuture.failedFuture(new IllegalStateException("down"))))
+                    .isInstanceOf(BackendUnavailableException.class)
+                    .hasRootCauseMessage("down");
+        }
+        assertThat(outcomes("failure")).isEqualTo(2);
+        assertThat(guard.isAvailable()).isFalse();
+
+        AtomicInteger started = new AtomicInteger();
+        assertThatThrownBy(() -> guard.call(() -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture("value");
+        })).isInstanceOf(BackendUnavailableException.class).hasMessageContaining("circuit breaker is open");
+        assertThat(started).hasValue(0);
+        assertThat(outcomes("circuit_open")).isEqualTo(1);
+        assertThat(inFlight()).isZero();
+        assertThat(meterRegistry.get("resilience.circuitbreaker.state").tags("backend", "redis", "state", "open").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void aCallThatFailsToStartReleasesItsPermit() {
+        for (int i = 0; i < 3; i++) {
+            assertThatThrownBy(() -> bulkheadOnly.call(() -> {
+                throw new IllegalStateException("no connection");
+            })).isInstanceOf(BackendUnavailableException.class);
+        }
+
+        assertThat(bulkheadOnly.callBlocking(() -> "value")).isEqualTo("value");
+        assertThat(bulkheadOnly.isUnderPressure()).isFalse();
+    }
+
+    private double outcomes(String outcome) {
+        return meterRegistry.get("resilience.calls").tags("backend", "redis", "outcome", outcome).counter().count();
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("resilience.bulkhead.in_flight").tag("backend", "redis").gauge().value();
+    }
+}
@@ -0,0 +1,106 @@
+package com.leoluca.urlshortener.api.url.warmup;
+
+import com.leoluca.urlshortener.api.url.URL;
+import com.leoluca.urlshortener.api.url.URLRepository;
+import com.leoluca.urlshortener.api.url.cache.ShortUrlCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HotSetTrackerTest {
+
+    private static final int TOP_N = 10;
+    private static final Duration REDIS_TTL = Duration.ofHours(1);
+
+    private ShortUrlCache shortUrlCache;
+    private URLRepository urlRepository;
+    private HotSetTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        shortUrlCache = mock(ShortUrlCache.class);
+        urlRepository = mock(URLRepository.class);
+        when(shortUrlCache.peekLocal(anyString())).thenAnswer(invocation -> "https://example.com/" + invocation.getArgument(0));
+        // Not started, the test promotes itself
+        tracker = new HotSetTracker(shortUrlCache, urlRepository, TOP_N, Duration.ofSeconds(30), Duration.ofMinutes(5),
+                REDIS_TTL);
+    }
+
+    @Test
+    void promotesTheTopNOfASkewedStream() {
+        resolveSkewed(new Random(1));
+
+        tracker.promote();
+
+        assertThat(promoted(1).keySet()).containsExactlyInAnyOrderElementsOf(hotCodes());
+    }
+
+    @Test
+    void codesMissingFromL1AreReadFromTheDatabase() {
+        when(shortUrlCache.peekLocal("hot0")).thenReturn(null);
+        when(urlRepository.findAllByShortCodeIn(List.of("hot0")))
+                .thenReturn(List.of(new URL("https://example.com/from-mongo", "hot0", null)));
+        resolveSkewed(new Random(2));
+
+        tracker.promote();
+
+        assertThat(promoted(1)).hasSize(TOP_N).containsEntry("hot0", "https://example.com/from-mongo");
+    }
+
+    @Test
+    void laterPromotionsKeepTheSameHotSet() {
+        Random random = new Random(3);
+        resolveSkewed(random);
+        tracker.promote();
+
+        // The same traffic again, the cold tail stays below the admission threshold the first promotion set
+        resolveSkewed(random);
+        tracker.promote();
+
+        assertThat(promoted(2).keySet()).containsExactlyInAnyOrderElementsOf(hotCodes());
+    }
+
+    // Each hot code far more often than any of the long tail, in random order
+    private void resolveSkewed(Random random) {
+        List<String> stream = new ArrayList<>();
+        for (int i = 0; i < TOP_N; i++) {
+            for (int hit = 0; hit < 500 + 50 * i; hit++) {
+                stream.add("hot" + i);
+            }
+        }
+        for (int i = 0; i < 5000; i++) {
+            for (int hit = 0; hit <= i % 3; hit++) {
+                stream.add("cold" + i);
+            }
+        }
+        Collections.shuffle(stream, random);
+        stream.forEach(tracker::record);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> promoted(int promotions) {
+        ArgumentCaptor<Map<String, String>> mappings = ArgumentCaptor.forClass(Map.class);
+        verify(shortUrlCache, times(promotions)).putAll(mappings.capture(), eq(REDIS_TTL));
+        return mappings.getValue();
+    }
+
+    private static List<String> hotCodes() {
+        return IntStream.range(0, TOP_N).mapToObj(i -> "hot" + i).toList();
+    }
+}
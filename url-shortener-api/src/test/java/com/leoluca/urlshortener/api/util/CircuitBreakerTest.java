@@ -0,0 +1,106 @@
+package com.leoluca.urlshortener.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(10);
+
+    private final AtomicLong now = new AtomicLong();
+    // Opens at 50% failures once 4 of the last 10 calls were recorded, then lets 2 trial calls through
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 50, 10, 4, OPEN_DURATION, 2, now::get);
+
+    @Test
+    void opensOnceEnoughCallsFailed() {
+        breaker.onSuccess();
+        breaker.onFailure();
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void letsTrialCallsThroughAfterTheOpenDurationAndClosesWhenTheySucceed() {
+        open();
+
+        advance(OPEN_DURATION.minusMillis(1));
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+
+        advance(Duration.ofMillis(1));
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // The failures that opened it are forgotten, a single new one doesn't reopen it
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void aFailedTrialCallOpensItForAnotherRound() {
+        open();
+        advance(OPEN_DURATION);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+
+        breaker.onFailure();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        advance(OPEN_DURATION.minusMillis(1));
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        advance(Duration.ofMillis(1));
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    @Test
+    void onlyTheLatestCallsCount() {
+        CircuitBreaker small = new CircuitBreaker("test", 50, 4, 4, OPEN_DURATION, 1, now::get);
+        small.onFailure();
+        for (int i = 0; i < 4; i++) {
+            small.onSuccess();
+        }
+
+        // With the first failure still counted this would be 2 of 4
+        small.onFailure();
+        assertThat(small.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        small.onFailure();
+        assertThat(small.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void lateOutcomesOfCallsFromBeforeItOpenedAreIgnored() {
+        open();
+
+        breaker.onSuccess();
+        breaker.onFailure();
+
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        advance(OPEN_DURATION);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+}
@@ -0,0 +1,77 @@
+package com.leoluca.urlshortener.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CountMinSketchTest {
+
+    private static final int WIDTH = 1024;
+    private static final int DEPTH = 4;
+    private static final int KEYS = 5000;
+
+    @Test
+    void estimatesStayWithinTheCountMinBounds() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        long[] counts = skewedStream(sketch, 200_000);
+        long total = 200_000;
+
+        // Never below the true count, and above it by more than e / width of the total with probability e^-depth
+        long bound = (long) Math.ceil(Math.E / WIDTH * total);
+        int withinBound = 0;
+        for (int key = 0; key < KEYS; key++) {
+            long estimate = sketch.estimate(hash(key));
+            assertThat(estimate).isGreaterThanOrEqualTo(counts[key]);
+            if (estimate - counts[key] <= bound) {
+                withinBound++;
+            }
+        }
+        assertThat(withinBound).isGreaterThanOrEqualTo((int) (KEYS * (1 - Math.exp(-DEPTH))));
+    }
+
+    @Test
+    void incrementReturnsTheEstimateIncludingThisOccurrence() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        for (int i = 1; i <= 100; i++) {
+            assertThat(sketch.increment(hash(7))).isEqualTo(i);
+        }
+        assertThat(sketch.estimate(hash(7))).isEqualTo(100);
+        assertThat(sketch.estimate(hash(8))).isZero();
+    }
+
+    @Test
+    void halvingKeepsEstimatesAboveHalfTheTrueCount() {
+        CountMinSketch sketch = new CountMinSketch(WIDTH, DEPTH);
+        long[] counts = skewedStream(sketch, 100_000);
+
+        sketch.halve();
+        for (int key = 0; key < KEYS; key++) {
+            assertThat(sketch.estimate(hash(key))).isGreaterThanOrEqualTo(counts[key] / 2);
+        }
+    }
+
+    @Test
+    void rejectsEmptyDimensions() {
+        assertThatThrownBy(() -> new CountMinSketch(0, DEPTH)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new CountMinSketch(WIDTH, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Zipf-like, key k is about 1 / (k + 1) as likely as key 0, like resolves of short codes
+    private static long[] skewedStream(CountMinSketch sketch, int length) {
+        Random random = new Random(42);
+        long[] counts = new long[KEYS];
+        for (int i = 0; i < length; i++) {
+            int key = (int) Math.min(KEYS - 1, Math.floor(Math.pow(KEYS, random.nextDouble())) - 1);
+            counts[key]++;
+            sketch.increment(hash(key));
+        }
+        return counts;
+    }
+
+    private static long hash(int key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+}
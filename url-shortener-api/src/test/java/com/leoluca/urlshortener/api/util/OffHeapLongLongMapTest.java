@@ -0,0 +1,68 @@
+package com.leoluca.urlshortener.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapLongLongMapTest {
+
+    @Test
+    void growsAndKeepsEveryEntry() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap(1);
+        long initialMemory = map.memoryUsage();
+
+        for (long key = 1; key <= 100_000; key++) {
+            map.put(key, key * 3);
+        }
+
+        assertThat(map.size()).isEqualTo(100_000);
+        assertThat(map.memoryUsage()).isGreaterThan(initialMemory);
+        for (long key = 1; key <= 100_000; key++) {
+            assertThat(map.get(key, -1)).isEqualTo(key * 3);
+        }
+        assertThat(map.get(100_001, -1)).isEqualTo(-1);
+    }
+
+    @Test
+    void replacesValuesWithoutCountingTwice() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap(16);
+
+        map.put(42, 1);
+        map.put(42, 2);
+
+        assertThat(map.size()).isEqualTo(1);
+        assertThat(map.get(42, -1)).isEqualTo(2);
+    }
+
+    @Test
+    void aFullMapRejectsNewKeysAndStaysUsable() {
+        // 16 slots at a load factor of 0.7 hold 11 entries
+        OffHeapLongLongMap map = new OffHeapLongLongMap(1, 16);
+        for (long key = 1; key <= 11; key++) {
+            map.put(key, key);
+        }
+        assertThat(map.isFull()).isTrue();
+
+        assertThatThrownBy(() -> map.put(12, 12)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(map.size()).isEqualTo(11);
+        assertThat(map.get(12, -1)).isEqualTo(-1);
+        assertThat(map.get(Long.MAX_VALUE, -1)).isEqualTo(-1);
+        map.put(5, 50);
+        assertThat(map.get(5, -1)).isEqualTo(50);
+        assertThat(map.size()).isEqualTo(11);
+    }
+
+    @Test
+    void theLargestTableFitsInADirectBuffer() {
+        assertThat((long) OffHeapLongLongMap.MAX_CAPACITY * 16).isLessThanOrEqualTo(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void rejectsTheEmptyKey() {
+        OffHeapLongLongMap map = new OffHeapLongLongMap(16);
+
+        assertThatThrownBy(() -> map.put(0, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,92 @@
+package com.leoluca.urlshortener.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        List<Object> results = new CopyOnWriteArrayList<>();
+        callConcurrently(50, () -> "https://example.com/", results);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(results).hasSize(50).allSatisfy(result -> assertThat(result).isEqualTo("https://example.com/"));
+
+        // Nothing is cached, the next miss loads again
+        assertThat(singleFlight.execute("abc", () -> "again")).isEqualTo("again");
+    }
+
+    @Test
+    void concurrentMissesShareTheLoadersException() throws Exception {
+        List<Object> results = new CopyOnWriteArrayList<>();
+        callConcurrently(20, () -> {
+            throw new IllegalStateException("MongoDB is down");
+        }, results);
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(results).hasSize(20).allSatisfy(result -> assertThat(result).isInstanceOf(IllegalStateException.class));
+    }
+
+    @Test
+    void differentKeysLoadIndependently() {
+        assertThat(singleFlight.execute("abc", () -> "first")).isEqualTo("first");
+        assertThat(singleFlight.execute("def", () -> "second")).isEqualTo("second");
+        assertThatThrownBy(() -> singleFlight.execute("abc", () -> {
+            throw new IllegalArgumentException("broken");
+        })).isInstanceOf(IllegalArgumentException.class);
+        assertThat(singleFlight.execute("abc", () -> "recovered")).isEqualTo("recovered");
+    }
+
+    // The first caller's load hangs until every other caller is parked waiting for it, then finishes
+    private void callConcurrently(int callers, Supplier<String> loader, List<Object> results) throws Exception {
+        Runnable call = () -> {
+            try {
+                results.add(singleFlight.execute("abc", () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return loader.get();
+                }));
+            } catch (RuntimeException e) {
+                results.add(e);
+            }
+        };
+
+        List<Thread> threads = new ArrayList<>();
+        threads.add(Thread.ofPlatform().start(call));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i < callers; i++) {
+            threads.add(Thread.ofPlatform().start(call));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (threads.stream().skip(1).anyMatch(thread -> thread.getState() != Thread.State.WAITING)
+                && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.leoluca.urlshortener.api.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SpaceSavingTest {
+
+    private static final int CAPACITY = 1000;
+    private static final int KEYS = 10_000;
+    private static final int LENGTH = 200_000;
+
+    @Test
+    void findsTheTopKOfASkewedStream() {
+        SpaceSaving<String> summary = new SpaceSaving<>(CAPACITY);
+        Map<String, Long> counts = skewedStream(summary, new Random(42));
+
+        // Counts overestimate by at most total / capacity, less than the gaps between the five most frequent keys
+        List<String> expected = top(counts, 5);
+        List<SpaceSaving.Entry<String>> top = summary.entries().stream()
+                .sorted(Comparator.comparingLong(SpaceSaving.Entry<String>::count).reversed())
+                .limit(5)
+                .toList();
+        assertThat(top.stream().map(SpaceSaving.Entry::item).toList()).isEqualTo(expected);
+        for (SpaceSaving.Entry<String> entry : top) {
+            assertThat(entry.count()).isBetween(counts.get(entry.item()), counts.get(entry.item()) + LENGTH / CAPACITY);
+        }
+    }
+
+    @Test
+    void everyFrequentKeyIsTrackedWithinItsError() {
+        SpaceSaving<String> summary = new SpaceSaving<>(CAPACITY);
+        Map<String, Long> counts = skewedStream(summary, new Random(7));
+
+        Map<String, SpaceSaving.Entry<String>> tracked = new HashMap<>();
+        summary.entries().forEach(entry -> tracked.put(entry.item(), entry));
+        assertThat(summary.size()).isEqualTo(CAPACITY);
+        assertThat(summary.total()).isEqualTo(LENGTH);
+
+        counts.forEach((key, count) -> {
+            if (count > LENGTH / CAPACITY) {
+                assertThat(tracked).containsKey(key);
+            }
+        });
+        tracked.forEach((key, entry) -> {
+            long count = counts.get(key);
+            assertThat(entry.count()).isGreaterThanOrEqualTo(count);
+            assertThat(entry.count() - entry.error()).isLessThanOrEqualTo(count);
+        });
+    }
+
+    @Test
+    void clearStartsOver() {
+        SpaceSaving<String> summary = new SpaceSaving<>(2);
+        summary.offer("a", 5);
+        summary.offer("b", 1);
+        summary.offer("c", 1);
+        assertThat(summary.entries()).containsExactlyInAnyOrder(
+                new SpaceSaving.Entry<>("a", 5, 0), new SpaceSaving.Entry<>("c", 2, 1));
+
+        summary.clear();
+        assertThat(summary.size()).isZero();
+        assertThat(summary.total()).isZero();
+        summary.offer("d", 1);
+        assertThat(summary.entries()).containsExactly(new SpaceSaving.Entry<>("d", 1, 0));
+    }
+
+    @Test
+    void rejectsAnEmptyCapacity() {
+        assertThatThrownBy(() -> new SpaceSaving<>(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Zipf-like, key k is about 1 / (k + 1) as likely as key 0
+    private static Map<String, Long> skewedStream(SpaceSaving<String> summary, Random random) {
+        Map<String, Long> counts = new HashMap<>();
+        for (int i = 0; i < LENGTH; i++) {
+            String key = "key" + (int) Math.min(KEYS - 1, Math.floor(Math.pow(KEYS, random.nextDouble())) - 1);
+            counts.merge(key, 1L, Long::sum);
+            summary.offer(key, 1);
+        }
+        return counts;
+    }
+
+    private static List<String> top(Map<String, Long> counts, int k) {
+        return counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+}
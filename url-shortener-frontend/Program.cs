@@ -151,12 +151,9 @@ class Program
 
     private static async Task RetrieveUserUrls()
     {
-        HttpResponseMessage response = await Client.GetAsync($"{BaseUrl}/users/{_userId}/urls");
-        if (response.IsSuccessStatusCode)
+        var urls = await RetrieveAllPages($"{BaseUrl}/users/{_userId}/urls");
+        if (urls != null)
         {
-            string responseData = await response.Content.ReadAsStringAsync();
-            var urls = JsonSerializer.Deserialize<List<UrlResponse>>(responseData);
-
             Console.WriteLine("Your URLs:");
             foreach (var url in urls)
             {
@@ -169,6 +166,30 @@ class Program
         }
     }
 
+    // Listings are paginated, keep following the X-Next-Cursor header until the last page
+    private static async Task<List<UrlResponse>?> RetrieveAllPages(string url)
+    {
+        var urls = new List<UrlResponse>();
+        string? cursor = null;
+
+        do
+        {
+            string pageUrl = cursor == null ? url : $"{url}?cursor={Uri.EscapeDataString(cursor)}";
+            HttpResponseMessage response = await Client.GetAsync(pageUrl);
+            if (!response.IsSuccessStatusCode)
+            {
+                return null;
+            }
+
+            string responseData = await response.Content.ReadAsStringAsync();
+            urls.AddRange(JsonSerializer.Deserialize<List<UrlResponse>>(responseData) ?? new List<UrlResponse>());
+
+            cursor = response.Headers.TryGetValues("X-Next-Cursor", out var values) ? values.FirstOrDefault() : null;
+        } while (cursor != null);
+
+        return urls;
+    }
+
     private static async Task ShortenUrl()
     {
         Console.Write("Enter the URL to shorten (must start with http:// or https://): ");
@@ -249,12 +270,9 @@ class Program
 
     private static async Task RetrieveAllUrls()
     {
-        HttpResponseMessage response = await Client.GetAsync($"{BaseUrl}/urls");
-        if (response.IsSuccessStatusCode)
+        var urls = await RetrieveAllPages($"{BaseUrl}/urls");
+        if (urls != null)
         {
-            string responseData = await response.Content.ReadAsStringAsync();
-            var urls = JsonSerializer.Deserialize<List<UrlResponse>>(responseData);
-
             Console.WriteLine("All URLs:");
             foreach (var url in urls)
             {